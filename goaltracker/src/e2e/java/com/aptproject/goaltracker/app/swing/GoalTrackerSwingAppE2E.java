@@ -20,7 +20,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
-import com.aptproject.goaltracker.model.HabitId;
 
 @RunWith(GUITestRunner.class)
 public class GoalTrackerSwingAppE2E extends AssertJSwingJUnitTestCase {
@@ -212,9 +211,12 @@ public class GoalTrackerSwingAppE2E extends AssertJSwingJUnitTestCase {
 
 	private void removeHabitFromDb(Goal goal, Habit habit) {
 		entityManager = emf.createEntityManager();
-		HabitId habitId = new HabitId(habit.getName(), habit.getGoal());
 		Goal existingGoal = entityManager.find(Goal.class, goal.getName());
-		Habit existingHabit = entityManager.find(Habit.class, habitId);
+		Habit existingHabit = entityManager
+				.createQuery("SELECT h FROM Habit h WHERE h.goal.name = :goal AND h.name = :name", Habit.class)
+				.setParameter("goal", habit.getGoal().getName())
+				.setParameter("name", habit.getName())
+				.getSingleResult();
 		entityManager.getTransaction().begin();
 		existingGoal.removeHabit(existingHabit);
 		entityManager.merge(existingGoal);
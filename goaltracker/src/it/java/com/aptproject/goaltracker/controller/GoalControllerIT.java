@@ -35,6 +35,7 @@ public class GoalControllerIT {
 	@After
 	public void releaseMocks() throws Exception {
 		closeable.close();
+		modelRepository.close();
 	}
 	
 	@Test
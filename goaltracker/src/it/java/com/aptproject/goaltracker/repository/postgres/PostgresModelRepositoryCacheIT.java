@@ -0,0 +1,180 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+@RunWith(Parameterized.class)
+public class PostgresModelRepositoryCacheIT {
+
+	@Parameters(name = "{0}")
+	public static PersistenceBackend[] backends() {
+		return PersistenceBackend.values();
+	}
+
+	@Parameter
+	public PersistenceBackend backend;
+
+	private PostgresModelRepository repository;
+
+	private Statistics statistics;
+
+	@Before
+	public void setup() {
+		createRepository(Collections.emptyMap());
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void testRepeatedFindAllGoalsIsServedByTheCaches() throws GoalExistsException {
+		addGoals(3, 2);
+		statistics.clear();
+		List<Goal> loaded = repository.findAllGoals();
+		long coldStatements = statistics.getPrepareStatementCount();
+		statistics.clear();
+
+		List<Goal> cached = repository.findAllGoals();
+
+		assertThat(cached).containsExactlyElementsOf(loaded);
+		assertThat(cached).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+		assertThat(coldStatements).isEqualTo(1);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testRepeatedSelectLoadingOfAGoalIsServedByTheCaches() throws GoalExistsException {
+		repository.setGoalLoadingMode(GoalLoadingMode.SELECT);
+		addGoals(1, 2);
+		statistics.clear();
+		repository.findGoalByName("Goal 0");
+		long coldStatements = statistics.getPrepareStatementCount();
+		statistics.clear();
+
+		Goal cached = repository.findGoalByName("Goal 0");
+
+		assertThat(cached.getHabits()).hasSize(2);
+		assertThat(coldStatements).isPositive();
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+	}
+
+	@Test
+	public void testCounterChangesOnlyReloadTheChangedHabit() throws GoalExistsException {
+		addGoals(2, 2);
+		Habit habit = repository.findAllGoals().get(0).getHabits().get(0);
+
+		repository.incrementCounter(habit);
+		statistics.clear();
+		List<Goal> goals = repository.findAllGoals();
+
+		assertThat(goals.get(0).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.contains(tuple(habit.getName(), 1));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testBufferedCounterChangesAreNotHiddenByTheCache() throws GoalExistsException {
+		addGoals(1, 1);
+		Habit habit = repository.findAllGoals().get(0).getHabits().get(0);
+
+		repository.updateCounters(Collections.singletonMap(habit.getHabitId(), 3));
+
+		assertThat(repository.findAllGoals().get(0).getHabits().get(0).getCounter()).isEqualTo(3);
+	}
+
+	@Test
+	public void testSnapshotsKeepTheCachedGoals() throws GoalExistsException {
+		addGoals(1, 1);
+		repository.incrementCounter(repository.findAllGoals().get(0).getHabits().get(0));
+		repository.findAllGoals();
+
+		repository.snapshotCounters();
+		statistics.clear();
+		List<Goal> goals = repository.findAllGoals();
+
+		assertThat(goals.get(0).getHabits().get(0).getCounter()).isEqualTo(1);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+	}
+
+	@Test
+	public void testGoalAndHabitChangesInvalidateTheCachedGoals()
+			throws GoalExistsException, HabitExistsException, HabitNotExistsException {
+		addGoals(1, 1);
+		repository.findAllGoals();
+
+		repository.addGoal(new Goal("Added"));
+		assertThat(repository.findAllGoals()).extracting(Goal::getName).containsExactly("Added", "Goal 0");
+
+		Goal goal = repository.findGoalByName("Goal 0");
+		repository.addHabitToGoal(goal, new Habit("Added habit"));
+		assertThat(repository.findGoalByName("Goal 0").getHabits()).extracting(Habit::getName)
+			.containsExactlyInAnyOrder("Habit 0", "Added habit");
+
+		repository.removeHabitFromGoal(goal, new Habit("Habit 0"));
+		assertThat(repository.findAllGoals().get(1).getHabits()).extracting(Habit::getName)
+			.containsExactly("Added habit");
+	}
+
+	@Test
+	public void testRegionSizesAreConfigurable() throws GoalExistsException {
+		repository.close();
+		createRepository(Collections.singletonMap(SizedJCacheRegionFactory.REGION_SIZE_PREFIX + "goal", "1"));
+		repository.setGoalLoadingMode(GoalLoadingMode.SELECT);
+		addGoals(2, 0);
+		repository.findGoalByName("Goal 0");
+		repository.findGoalByName("Goal 1");
+		statistics.clear();
+
+		repository.findGoalByName("Goal 1");
+		repository.findGoalByName("Goal 0");
+
+		// only the goal loaded last fits in the region
+		assertThat(statistics.getDomainDataRegionStatistics("goal").getHitCount()).isEqualTo(1);
+		assertThat(statistics.getDomainDataRegionStatistics("goal").getMissCount()).isEqualTo(1);
+	}
+
+	private void createRepository(Map<String, String> properties) {
+		Map<String, Object> overrides = backend.properties();
+		overrides.putAll(properties);
+		overrides.put("hibernate.generate_statistics", "true");
+		EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory(backend.getPersistenceUnit(),
+				overrides);
+		repository = new PostgresModelRepository(entityManagerFactory);
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	private void addGoals(int goals, int habitsPerGoal) throws GoalExistsException {
+		List<Goal> added = new ArrayList<>();
+		for (int i = 0; i < goals; i++) {
+			Goal goal = new Goal("Goal " + i);
+			for (int j = 0; j < habitsPerGoal; j++) {
+				goal.addHabit(new Habit("Habit " + j));
+			}
+			added.add(goal);
+		}
+		repository.addGoals(added);
+	}
+}
@@ -47,6 +47,11 @@ public class GoalSwingViewIT extends AssertJSwingJUnitTestCase {
 		window.show();
 	}
 
+	@Override
+	protected void onTearDown() {
+		modelRepository.close();
+	}
+
 	@Test
 	@GUITest
 	public void testAllGoals() throws GoalExistsException {
@@ -41,6 +41,11 @@ public class ModelViewControllerIT extends AssertJSwingJUnitTestCase {
 		window.show();
 	}
 
+	@Override
+	protected void onTearDown() {
+		modelRepository.close();
+	}
+
 	@Test
 	public void testAddGoal() {
 		window.textBox("goalTextBox").enterText("Goal");
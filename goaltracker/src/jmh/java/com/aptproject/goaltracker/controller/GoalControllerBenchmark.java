@@ -0,0 +1,125 @@
+package com.aptproject.goaltracker.controller;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.BenchmarkBackend;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.view.GoalView;
+
+/**
+ * The controller paths the GUI hits most, with a view that only consumes
+ * what it is given, so the numbers include the repository and the
+ * controller but no Swing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GoalControllerBenchmark {
+
+	private static final int HABITS_PER_GOAL = 3;
+
+	@Param({ "MEMORY", "H2" })
+	private BenchmarkBackend backend;
+
+	@Param({ "1000" })
+	private int goals;
+
+	private ModelRepository repository;
+	private GoalController goalController;
+	private List<Habit> habits;
+	private int nextHabit;
+
+	@Setup(Level.Trial)
+	public void setup(Blackhole blackhole) {
+		repository = backend.create(goals, HABITS_PER_GOAL);
+		goalController = new GoalController(new ConsumingView(blackhole), repository);
+		habits = repository.findGoalByName(BenchmarkBackend.goalName(0)).getHabits();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Benchmark
+	public void allGoals() {
+		goalController.allGoals();
+	}
+
+	@Benchmark
+	public void incrementCounter() {
+		goalController.incrementCounter(habits.get(nextHabit++ % habits.size()));
+	}
+
+	private static class ConsumingView implements GoalView {
+		private final Blackhole blackhole;
+
+		ConsumingView(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void showAllGoals(List<Goal> goals) {
+			blackhole.consume(goals);
+		}
+
+		@Override
+		public void showMoreGoals(List<Goal> goals) {
+			blackhole.consume(goals);
+		}
+
+		@Override
+		public void goalsLoaded(List<Goal> goals) {
+			blackhole.consume(goals);
+		}
+
+		@Override
+		public void showError(String message) {
+			blackhole.consume(message);
+		}
+
+		@Override
+		public void goalAdded(Goal goal) {
+			blackhole.consume(goal);
+		}
+
+		@Override
+		public void goalRemoved(Goal goal) {
+			blackhole.consume(goal);
+		}
+
+		@Override
+		public void habitAdded(Habit habit) {
+			blackhole.consume(habit);
+		}
+
+		@Override
+		public void habitRemoved(Habit habit) {
+			blackhole.consume(habit);
+		}
+
+		@Override
+		public void counterUpdated(Habit habit) {
+			blackhole.consume(habit);
+		}
+	}
+}
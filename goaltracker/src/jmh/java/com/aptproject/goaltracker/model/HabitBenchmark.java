@@ -0,0 +1,74 @@
+package com.aptproject.goaltracker.model;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Habit#hashCode()} and {@link Habit#equals(Object)}, which are on
+ * the path of every list and set lookup of habits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HabitBenchmark {
+
+	private static final int HABITS = 1000;
+
+	private Habit habit;
+	private Habit equalHabit;
+	private Habit otherHabit;
+	private Set<Habit> habits;
+
+	@Setup
+	public void setup() {
+		habit = habit("Goal", "Habit", 3);
+		equalHabit = habit("Goal", "Habit", 3);
+		otherHabit = habit("Goal", "Other habit", 3);
+		habits = new HashSet<>();
+		for (int i = 0; i < HABITS; i++) {
+			habits.add(habit("Goal " + i % 10, "Habit " + i, i));
+		}
+		habits.add(habit);
+	}
+
+	@Benchmark
+	public int hashCodeOfHabit() {
+		return habit.hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsEqualHabit() {
+		return habit.equals(equalHabit);
+	}
+
+	@Benchmark
+	public boolean equalsOtherHabit() {
+		return habit.equals(otherHabit);
+	}
+
+	@Benchmark
+	public boolean containsInHashSet() {
+		return habits.contains(equalHabit);
+	}
+
+	private static Habit habit(String goalName, String habitName, int counter) {
+		Habit habit = new Habit(habitName);
+		habit.setCounter(counter);
+		new Goal(goalName).addHabit(habit);
+		return habit;
+	}
+}
@@ -0,0 +1,128 @@
+package com.aptproject.goaltracker.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.file.MappedFileModelRepository;
+import com.aptproject.goaltracker.repository.memory.InMemoryModelRepository;
+import com.aptproject.goaltracker.repository.postgres.PostgresModelRepository;
+
+/**
+ * Repositories the benchmarks run against, none of them needs Docker or a
+ * running database. {@link #H2} goes through the JPA repository with an
+ * embedded in-memory database instead of PostgreSQL, {@link #FILE} logs to a
+ * temporary file.
+ */
+public enum BenchmarkBackend {
+	MEMORY {
+		@Override
+		public ModelRepository create(int goals, int habitsPerGoal) {
+			InMemoryModelRepository repository = new InMemoryModelRepository();
+			try {
+				for (int i = 0; i < goals; i++) {
+					repository.addGoal(goal(i, habitsPerGoal));
+				}
+			} catch (GoalExistsException e) {
+				throw new IllegalStateException(e);
+			}
+			return repository;
+		}
+	},
+	H2 {
+		@Override
+		public ModelRepository create(int goals, int habitsPerGoal) {
+			return new PostgresModelRepository(createH2EntityManagerFactory(goals, habitsPerGoal));
+		}
+	},
+	FILE {
+		@Override
+		public ModelRepository create(int goals, int habitsPerGoal) {
+			try {
+				Path directory = Files.createTempDirectory("goaltracker-benchmark");
+				directory.toFile().deleteOnExit();
+				Path file = directory.resolve("goaltracker.log");
+				file.toFile().deleteOnExit();
+				file.resolveSibling("goaltracker.log.lock").toFile().deleteOnExit();
+				MappedFileModelRepository repository = new MappedFileModelRepository(file);
+				for (int i = 0; i < goals; i++) {
+					repository.addGoal(goal(i, habitsPerGoal));
+				}
+				return repository;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (GoalExistsException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private static final int INSERT_BATCH_SIZE = 1000;
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	/**
+	 * Creates a repository holding {@code goals} goals named
+	 * {@link #goalName(int)}, each with {@code habitsPerGoal} habits.
+	 */
+	public abstract ModelRepository create(int goals, int habitsPerGoal);
+
+	/**
+	 * Creates a new embedded database through the JPA mapping of the
+	 * application, holding the same goals as {@link #create(int, int)}.
+	 */
+	public static EntityManagerFactory createH2EntityManagerFactory(int goals, int habitsPerGoal) {
+		EntityManagerFactory emf = Persistence.createEntityManagerFactory("PersistenceUnit", h2Properties());
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			for (int i = 0; i < goals; i++) {
+				entityManager.persist(goal(i, habitsPerGoal));
+				if (i % INSERT_BATCH_SIZE == INSERT_BATCH_SIZE - 1) {
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+			entityManager.getTransaction().commit();
+		} finally {
+			entityManager.close();
+		}
+		return emf;
+	}
+
+	private static Map<String, Object> h2Properties() {
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+		properties.put("javax.persistence.jdbc.url",
+				"jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+		properties.put("javax.persistence.jdbc.user", "sa");
+		properties.put("javax.persistence.jdbc.password", "");
+		properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		properties.put("hibernate.hbm2ddl.auto", "create-drop");
+		properties.put("hibernate.show_sql", "false");
+		properties.put("hibernate.jdbc.batch_size", String.valueOf(INSERT_BATCH_SIZE));
+		properties.put("hibernate.order_inserts", "true");
+		properties.put("hibernate.hikari.maximumPoolSize", "4");
+		return properties;
+	}
+
+	public static String goalName(int index) {
+		return String.format("Goal %06d", index);
+	}
+
+	private static Goal goal(int index, int habitsPerGoal) {
+		Goal goal = new Goal(goalName(index));
+		for (int j = 0; j < habitsPerGoal; j++) {
+			goal.addHabit(new Habit("Habit " + j));
+		}
+		return goal;
+	}
+}
@@ -0,0 +1,120 @@
+package com.aptproject.goaltracker.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+/**
+ * Lookup and insert throughput of habits on the embedded database: lookups
+ * by the generated id against queries on the natural key, goal and name, and
+ * inserts one at a time or in a batch, where the pooled id generator needs a
+ * single sequence call for up to 50 habits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HabitKeyBenchmark {
+
+	private static final int HABITS_PER_GOAL = 3;
+	private static final int INSERT_BATCH = 50;
+
+	@Param({ "1000", "100000" })
+	private int goals;
+
+	private EntityManagerFactory emf;
+	private List<Long> ids;
+	private Random random = new Random(42);
+	private int inserted;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		emf = BenchmarkBackend.createH2EntityManagerFactory(goals, HABITS_PER_GOAL);
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			ids = entityManager.createQuery("SELECT h.id FROM Habit h", Long.class).getResultList();
+			Collections.shuffle(ids, random);
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		emf.close();
+	}
+
+	@Benchmark
+	public Habit findById() {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			return entityManager.find(Habit.class, ids.get(random.nextInt(ids.size())));
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Benchmark
+	public Habit findByNaturalKey() {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			return entityManager
+					.createQuery("SELECT h FROM Habit h WHERE h.goal.name = :goal AND h.name = :name", Habit.class)
+					.setParameter("goal", BenchmarkBackend.goalName(random.nextInt(goals)))
+					.setParameter("name", "Habit " + random.nextInt(HABITS_PER_GOAL))
+					.getSingleResult();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Benchmark
+	public Habit insert() {
+		return insert(1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(INSERT_BATCH)
+	public Habit insertBatch() {
+		return insert(INSERT_BATCH);
+	}
+
+	private Habit insert(int habits) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			Goal goal = entityManager.getReference(Goal.class, BenchmarkBackend.goalName(random.nextInt(goals)));
+			Habit habit = null;
+			for (int i = 0; i < habits; i++) {
+				habit = new Habit("Inserted " + inserted++);
+				habit.setGoal(goal);
+				entityManager.persist(habit);
+			}
+			entityManager.getTransaction().commit();
+			return habit;
+		} finally {
+			entityManager.close();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.aptproject.goaltracker.repository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+
+/**
+ * Single threaded cost of the repository operations behind the GUI actions,
+ * for every backend and for small to large numbers of stored goals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+	private static final int HABITS_PER_GOAL = 3;
+	private static final int COUNTED_GOALS = 100;
+
+	@Param({ "MEMORY", "H2", "FILE" })
+	private BenchmarkBackend backend;
+
+	@Param({ "10", "1000", "100000" })
+	private int goals;
+
+	private ModelRepository repository;
+	private List<Habit> habits;
+	private int nextHabit;
+	private int nextGoal;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		repository = backend.create(goals, HABITS_PER_GOAL);
+		habits = repository.findGoalsPage(null, COUNTED_GOALS).stream()
+				.flatMap(goal -> goal.getHabits().stream())
+				.collect(Collectors.toList());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.close();
+	}
+
+	/**
+	 * A goal with no habits, stored before every invocation so that adding a
+	 * habit always starts from the same state.
+	 */
+	@State(Scope.Thread)
+	public static class EmptyGoal {
+		private static int created;
+
+		private Goal goal;
+
+		@Setup(Level.Invocation)
+		public void setup(RepositoryBenchmark benchmark) throws GoalExistsException {
+			goal = new Goal("Empty goal " + created++);
+			benchmark.repository.addGoal(goal);
+		}
+	}
+
+	@Benchmark
+	public List<Goal> findAllGoals() {
+		return repository.findAllGoals();
+	}
+
+	@Benchmark
+	public Goal addGoal() throws GoalExistsException {
+		Goal goal = new Goal("Added goal " + nextGoal++);
+		repository.addGoal(goal);
+		return goal;
+	}
+
+	@Benchmark
+	public Habit addHabit(EmptyGoal emptyGoal) throws HabitExistsException {
+		Habit habit = new Habit("Added habit");
+		repository.addHabitToGoal(emptyGoal.goal, habit);
+		return habit;
+	}
+
+	@Benchmark
+	public int incrementCounter() {
+		return repository.incrementCounter(habits.get(nextHabit++ % habits.size()));
+	}
+}
@@ -0,0 +1,73 @@
+package com.aptproject.goaltracker.repository.writebehind;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.BenchmarkBackend;
+
+/**
+ * Throughput of counter taps buffered in memory from several threads: through
+ * the write-behind repository, with the flushes to the in-memory repository
+ * in the background, and straight into its counter store by habit index. Run
+ * with {@code -prof gc} to check that taps allocate nothing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CounterTapBenchmark {
+
+	private static final int GOALS = 100;
+	private static final int HABITS_PER_GOAL = 10;
+	private static final long FLUSH_INTERVAL_MILLIS = 100;
+	private static final int FLUSH_SIZE = 1_000_000;
+
+	private WriteBehindModelRepository repository;
+	private Habit[] habits;
+	private HabitCounterStore store;
+	private int[] indexes;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		repository = new WriteBehindModelRepository(BenchmarkBackend.MEMORY.create(GOALS, HABITS_PER_GOAL),
+				FLUSH_INTERVAL_MILLIS, FLUSH_SIZE);
+		List<Habit> stored = repository.findAllGoals().stream().flatMap(goal -> goal.getHabits().stream())
+				.collect(Collectors.toList());
+		habits = stored.toArray(new Habit[0]);
+		store = new HabitCounterStore();
+		indexes = stored.stream().mapToInt(habit -> store.indexOf(habit.getHabitId())).toArray();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Benchmark
+	public int writeBehindTap() {
+		return repository.incrementCounter(habits[ThreadLocalRandom.current().nextInt(habits.length)]);
+	}
+
+	@Benchmark
+	public void storeTapByIndex() {
+		store.add(indexes[ThreadLocalRandom.current().nextInt(indexes.length)], 1);
+	}
+}
@@ -0,0 +1,49 @@
+package com.aptproject.goaltracker.app.swing;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.transfer.GoalExporter;
+import com.aptproject.goaltracker.transfer.GoalFormat;
+import com.aptproject.goaltracker.transfer.GoalWriter;
+import com.aptproject.goaltracker.transfer.TransferResult;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+import picocli.CommandLine.Model.CommandSpec;
+
+@Command(name = "export", mixinStandardHelpOptions = true, description = "Exports every goal with its habits to a file without starting the GUI")
+public class ExportCommand implements Callable<Integer> {
+
+	@Parameters(index = "0", description = "The CSV or JSON file to write, replaced if it exists")
+	private File file;
+
+	@Option(names = { "--format" }, description = "The format of the file: ${COMPLETION-CANDIDATES}, by default from its extension")
+	private GoalFormat format;
+
+	@Option(names = { "--batch-size" }, description = "Number of goals between progress reports")
+	private int batchSize = GoalExporter.DEFAULT_BATCH_SIZE;
+
+	@Spec
+	private CommandSpec spec;
+
+	@Override
+	public Integer call() throws Exception {
+		GoalFormat fileFormat = format != null ? format : GoalFormat.fromFileName(file.getName());
+		ModelRepository modelRepository = GoalTrackerSwingApp.createModelRepository();
+		try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+				GoalWriter writer = fileFormat.writer(out)) {
+			TransferResult result = new GoalExporter(modelRepository, batchSize).exportGoals(writer,
+					(goals, habits) -> spec.commandLine().getErr()
+							.println("Exported " + goals + " goals, " + habits + " habits"));
+			spec.commandLine().getOut().println("Exported " + result.getGoals() + " goals, " + result.getHabits() + " habits");
+		} finally {
+			modelRepository.close();
+		}
+		return 0;
+	}
+}
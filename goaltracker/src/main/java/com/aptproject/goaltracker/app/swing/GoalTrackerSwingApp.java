@@ -1,38 +1,165 @@
 package com.aptproject.goaltracker.app.swing;
 
 import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.aptproject.goaltracker.controller.ControllerExecutor;
 import com.aptproject.goaltracker.controller.GoalController;
+import com.aptproject.goaltracker.controller.metrics.ControllerMetrics;
+import com.aptproject.goaltracker.controller.metrics.ControllerMetricsMXBean;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.cache.CachingModelRepository;
+import com.aptproject.goaltracker.repository.change.CoalescingChangeStream;
+import com.aptproject.goaltracker.repository.change.RepositoryChangeStream;
+import com.aptproject.goaltracker.repository.file.MappedFileModelRepository;
+import com.aptproject.goaltracker.repository.memory.InMemoryModelRepository;
+import com.aptproject.goaltracker.repository.postgres.EmbeddedDatabase;
+import com.aptproject.goaltracker.repository.postgres.GoalLoadingMode;
+import com.aptproject.goaltracker.repository.postgres.PostgresChangeStream;
 import com.aptproject.goaltracker.repository.postgres.PostgresModelRepository;
+import com.aptproject.goaltracker.repository.postgres.PostgresModelRepository.HabitEventConsumer;
+import com.aptproject.goaltracker.repository.postgres.SizedJCacheRegionFactory;
+import com.aptproject.goaltracker.repository.postgres.SqlMetricsBean;
+import com.aptproject.goaltracker.repository.postgres.SqlMetricsMXBean;
+import com.aptproject.goaltracker.repository.postgres.sql.InstrumentedConnectionProvider;
+import com.aptproject.goaltracker.repository.writebehind.WriteBehindModelRepository;
+import com.aptproject.goaltracker.stats.HabitStatisticsStore;
 import com.aptproject.goaltracker.view.swing.GoalSwingView;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
-@Command(mixinStandardHelpOptions = true)
+@Command(mixinStandardHelpOptions = true, subcommands = { ImportCommand.class, ExportCommand.class })
 public class GoalTrackerSwingApp implements Callable<Void> {
 
-	@Option(names = { "--persistence-unit" }, description = "The name of the persistence unit to use")
-	private static String persistenceUnit = "PersistenceUnit";
+	@Option(names = { "--repository" }, description = "Where goals are stored: ${COMPLETION-CANDIDATES}")
+	private static RepositoryType repositoryType = RepositoryType.POSTGRES;
+
+	@Option(names = { "--persistence-unit" }, description = "The name of the persistence unit to use, by default the one of the repository")
+	private static String persistenceUnit;
+
+	@Option(names = { "--database-file" }, description = "File of the embedded database, by default ~/.goaltracker/goaltracker, or of the file repository, by default ~/.goaltracker/goaltracker.log")
+	private static Path databaseFile;
+
+	@Option(names = { "--compaction-interval" }, description = "Milliseconds between the checks compacting the log of the file repository once it doubled, 0 disables them")
+	private static long compactionInterval = 60000;
+
+	@Option(names = { "--pool-size" }, description = "Maximum number of pooled database connections")
+	private static Integer poolSize;
+
+	@Option(names = { "--connection-timeout" }, description = "Milliseconds to wait for a pooled connection")
+	private static Long connectionTimeout;
+
+	@Option(names = { "--idle-timeout" }, description = "Milliseconds after which an idle connection is retired")
+	private static Long idleTimeout;
+
+	@Option(names = { "--second-level-cache-size" }, description = "Maximum number of entries in each region of the Hibernate second-level cache")
+	private static Long secondLevelCacheSize;
+
+	@Option(names = { "--sql-metrics" }, description = "Record latency histograms and row counts of the SQL statements, dumped on demand through JMX")
+	private static boolean sqlMetrics = false;
+
+	@Option(names = { "--sql-slow-threshold" }, description = "Milliseconds from which a SQL statement counts as slow")
+	private static Long sqlSlowThreshold;
+
+	@Option(names = { "--sql-slow-sample-rate" }, description = "Fraction of the slow SQL statements that is logged")
+	private static Double sqlSlowSampleRate;
+
+	@Option(names = { "--goal-loading" }, description = "How habits are loaded with their goals: ${COMPLETION-CANDIDATES}")
+	private static GoalLoadingMode goalLoadingMode = GoalLoadingMode.FETCH_JOIN;
+
+	@Option(names = { "--counter-flush-interval" }, description = "Milliseconds between writes of buffered counter taps, 0 writes every tap immediately")
+	private static long counterFlushInterval = 0;
+
+	@Option(names = { "--counter-flush-size" }, description = "Number of buffered counter taps that triggers an early write")
+	private static int counterFlushSize = 100;
+
+	@Option(names = { "--counter-snapshot-interval" }, description = "Milliseconds between the snapshots folding the counter event log into the counters, 0 disables them")
+	private static long counterSnapshotInterval = 60000;
+
+	@Option(names = { "--cache-size" }, description = "Maximum number of goals kept in the read cache, 0 disables it")
+	private static int cacheSize = 0;
+
+	@Option(names = { "--cache-ttl" }, description = "Milliseconds a cached goal stays valid, 0 keeps it until evicted")
+	private static long cacheTtl = 0;
+
+	@Option(names = { "--controller-threads" }, description = "Number of threads running the controller operations")
+	private static int controllerThreads = ControllerExecutor.DEFAULT_THREADS;
+
+	@Option(names = { "--controller-queue-size" }, description = "Maximum number of pending controller operations, further ones are rejected")
+	private static int controllerQueueSize = ControllerExecutor.DEFAULT_MAX_PENDING_TASKS;
+
+	@Option(names = { "--virtual-threads" }, description = "Run each controller operation on a virtual thread (JDK 21 or later)")
+	private static boolean virtualThreads = false;
+
+	@Option(names = { "--controller-metrics" }, description = "Record counters, latency histograms and in-flight gauges of the controller operations, available through JMX")
+	private static boolean controllerMetrics = false;
+
+	@Option(names = { "--controller-metrics-file" }, description = "File the controller metrics are periodically written to in the Prometheus text format, implies --controller-metrics")
+	private static Path controllerMetricsFile;
+
+	@Option(names = { "--controller-metrics-interval" }, description = "Milliseconds between writes of the controller metrics file")
+	private static long controllerMetricsInterval = 15000;
+
+	@Option(names = { "--change-notifications" }, description = "Show the goals and habits changed by other clients as they change, through PostgreSQL LISTEN/NOTIFY")
+	private static boolean changeNotifications = false;
+
+	@Option(names = { "--change-debounce" }, description = "Milliseconds the changes of other clients are collected for before being shown together")
+	private static long changeDebounce = CoalescingChangeStream.DEFAULT_DEBOUNCE_MILLIS;
+
+	/* tells the changes of this instance from the ones of other clients */
+	private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+	private static RepositoryChangeStream changeStream;
 
 	/**
-	 * Launch the application. The database must be started first. Docker command is
-	 * the following: docker run --name postgres-docker --rm -p 5455:5432 -e POSTGRES_USER=user -e POSTGRES_PASSWORD=password -e POSTGRES_DB=postgres -d postgres:15.3
+	 * Launch the application. Unless the repository is embedded, a file or in memory, the
+	 * database must be started first. Docker command is the following: docker
+	 * run --name postgres-docker --rm -p 5455:5432 -e POSTGRES_USER=user -e POSTGRES_PASSWORD=password -e POSTGRES_DB=postgres -d postgres:15.3
 	 */
 	public static void main(String[] args) {
-		new CommandLine(new GoalTrackerSwingApp()).execute(args);
+		CommandLine commandLine = new CommandLine(new GoalTrackerSwingApp()).setCaseInsensitiveEnumValuesAllowed(true);
+		int exitCode = commandLine.execute(args);
+		// the GUI keeps running on the event dispatch thread, while the headless commands are done
+		if (exitCode != 0 || commandLine.getParseResult().hasSubcommand()) {
+			System.exit(exitCode);
+		}
 	}
 
 	@Override
 	public Void call() throws Exception {
 		EventQueue.invokeLater(() -> {
 			try {
-				PostgresModelRepository modelRepository = new PostgresModelRepository(persistenceUnit);
+				HabitStatisticsStore habitStatistics = new HabitStatisticsStore(Clock.systemDefaultZone());
+				ModelRepository modelRepository = createModelRepository(habitStatistics);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					if (changeStream != null) {
+						changeStream.close();
+					}
+					modelRepository.close();
+				}));
 				GoalSwingView goalView = new GoalSwingView();
+				goalView.setControllerExecutor(createControllerExecutor());
+				goalView.setHabitStatistics(habitStatistics);
 				GoalController goalController = new GoalController(goalView, modelRepository);
+				goalController.setHabitStatistics(habitStatistics);
+				goalController.setMetrics(createControllerMetrics());
 				goalView.setGoalController(goalController);
+				if (changeStream != null) {
+					changeStream.addListener(goalController);
+				}
 				goalView.setVisible(true);
 				goalController.allGoals();
 			} catch (Exception e) {
@@ -42,4 +169,163 @@ public class GoalTrackerSwingApp implements Callable<Void> {
 		});
 		return null;
 	}
+
+	private static ControllerMetrics createControllerMetrics() {
+		if (!controllerMetrics && controllerMetricsFile == null) {
+			return ControllerMetrics.disabled();
+		}
+		ControllerMetrics metrics = new ControllerMetrics();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+					new ObjectName(ControllerMetricsMXBean.OBJECT_NAME));
+		} catch (JMException e) {
+			Logger.getLogger(GoalTrackerSwingApp.class.getName()).log(Level.WARNING, "Controller metrics not available through JMX", e);
+		}
+		if (controllerMetricsFile != null) {
+			metrics.scheduleDump(controllerMetricsFile, controllerMetricsInterval);
+			Runtime.getRuntime().addShutdownHook(new Thread(metrics::close));
+		}
+		return metrics;
+	}
+
+	private static ControllerExecutor createControllerExecutor() {
+		if (virtualThreads) {
+			try {
+				return ControllerExecutor.withVirtualThreads(controllerQueueSize);
+			} catch (UnsupportedOperationException e) {
+				Logger.getLogger(GoalTrackerSwingApp.class.getName()).warning(
+						() -> e.getMessage() + ", using " + controllerThreads + " platform threads instead");
+			}
+		}
+		return ControllerExecutor.withPlatformThreads(controllerThreads, controllerQueueSize);
+	}
+
+	static ModelRepository createModelRepository() {
+		return createModelRepository(null);
+	}
+
+	/**
+	 * @param habitStatistics if not null, filled with the counter changes of the
+	 *                        event log that are still within its buckets
+	 */
+	private static ModelRepository createModelRepository(HabitStatisticsStore habitStatistics) {
+		ModelRepository modelRepository;
+		if (repositoryType == RepositoryType.MEMORY) {
+			modelRepository = new InMemoryModelRepository();
+		} else if (repositoryType == RepositoryType.FILE) {
+			modelRepository = createMappedFileModelRepository();
+		} else {
+			PostgresModelRepository postgresModelRepository = new PostgresModelRepository(persistenceUnitName(),
+					persistenceProperties());
+			postgresModelRepository.setGoalLoadingMode(goalLoadingMode);
+			if (sqlMetrics) {
+				registerSqlMetrics(postgresModelRepository);
+			}
+			if (counterSnapshotInterval > 0) {
+				// the folded events the statistics no longer replay are pruned
+				postgresModelRepository.scheduleCounterSnapshots(counterSnapshotInterval,
+						habitStatistics == null ? null : habitStatistics::getRetentionStart);
+			}
+			if (habitStatistics != null) {
+				long start = System.nanoTime();
+				postgresModelRepository.replayHabitEvents(habitStatistics.getRetentionStart(), habitStatistics::record);
+				Logger.getLogger(GoalTrackerSwingApp.class.getName()).info(() -> "Habit statistics loaded in "
+						+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+			}
+			if (changeNotifications) {
+				// the taps of the other clients keep the statistics in step with theirs
+				openChangeStream(postgresModelRepository, habitStatistics == null ? null : habitStatistics::record);
+			}
+			modelRepository = postgresModelRepository;
+		}
+		if (cacheSize > 0) {
+			CachingModelRepository cachingModelRepository = new CachingModelRepository(modelRepository, cacheSize, cacheTtl);
+			if (changeStream != null) {
+				// added before the controller, which then reads the changed goals past the cache
+				changeStream.addListener(cachingModelRepository);
+			}
+			modelRepository = cachingModelRepository;
+		}
+		if (counterFlushInterval > 0) {
+			return new WriteBehindModelRepository(modelRepository, counterFlushInterval, counterFlushSize);
+		}
+		return modelRepository;
+	}
+
+	private static MappedFileModelRepository createMappedFileModelRepository() {
+		try {
+			MappedFileModelRepository repository = new MappedFileModelRepository(
+					databaseFile != null ? databaseFile : MappedFileModelRepository.defaultFile());
+			if (compactionInterval > 0) {
+				repository.scheduleCompactions(compactionInterval);
+			}
+			return repository;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void openChangeStream(PostgresModelRepository repository, HabitEventConsumer counterChanges) {
+		try {
+			changeStream = repository.openChangeStream(INSTANCE_ID, changeDebounce, counterChanges);
+		} catch (UnsupportedOperationException e) {
+			Logger.getLogger(GoalTrackerSwingApp.class.getName()).warning(
+					() -> e.getMessage() + ", changes of other clients are shown only after reloading");
+		}
+	}
+
+	private static void registerSqlMetrics(PostgresModelRepository repository) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new SqlMetricsBean(repository),
+					new ObjectName(SqlMetricsMXBean.OBJECT_NAME));
+		} catch (JMException e) {
+			Logger.getLogger(GoalTrackerSwingApp.class.getName()).log(Level.WARNING, "SQL metrics not available through JMX", e);
+		}
+	}
+
+	private static String persistenceUnitName() {
+		if (persistenceUnit != null) {
+			return persistenceUnit;
+		}
+		return repositoryType == RepositoryType.EMBEDDED ? EmbeddedDatabase.PERSISTENCE_UNIT : "PersistenceUnit";
+	}
+
+	/**
+	 * Only the options given on the command line override persistence.xml.
+	 */
+	private static Map<String, String> persistenceProperties() {
+		Map<String, String> properties = new HashMap<>();
+		if (repositoryType == RepositoryType.EMBEDDED) {
+			properties.put("javax.persistence.jdbc.url",
+					EmbeddedDatabase.fileUrl(databaseFile != null ? databaseFile : EmbeddedDatabase.defaultFile()));
+		}
+		if (poolSize != null) {
+			properties.put("hibernate.hikari.maximumPoolSize", poolSize.toString());
+		}
+		if (connectionTimeout != null) {
+			properties.put("hibernate.hikari.connectionTimeout", connectionTimeout.toString());
+		}
+		if (idleTimeout != null) {
+			properties.put("hibernate.hikari.idleTimeout", idleTimeout.toString());
+		}
+		if (sqlMetrics) {
+			properties.put("hibernate.connection.provider_class", InstrumentedConnectionProvider.class.getName());
+			properties.put("hibernate.generate_statistics", "true");
+			// otherwise every session logs its own statistics when closed
+			properties.put("hibernate.session.events.log", "false");
+		}
+		if (sqlSlowThreshold != null) {
+			properties.put(InstrumentedConnectionProvider.SLOW_THRESHOLD, sqlSlowThreshold.toString());
+		}
+		if (sqlSlowSampleRate != null) {
+			properties.put(InstrumentedConnectionProvider.SLOW_SAMPLE_RATE, sqlSlowSampleRate.toString());
+		}
+		if (secondLevelCacheSize != null) {
+			properties.put(SizedJCacheRegionFactory.DEFAULT_REGION_SIZE, secondLevelCacheSize.toString());
+		}
+		if (changeNotifications && repositoryType == RepositoryType.POSTGRES) {
+			properties.put("hibernate.hikari.connectionInitSql", PostgresChangeStream.instanceSettingSql(INSTANCE_ID));
+		}
+		return properties;
+	}
 }
@@ -0,0 +1,49 @@
+package com.aptproject.goaltracker.app.swing;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.transfer.GoalFormat;
+import com.aptproject.goaltracker.transfer.GoalImporter;
+import com.aptproject.goaltracker.transfer.GoalReader;
+import com.aptproject.goaltracker.transfer.TransferResult;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+import picocli.CommandLine.Model.CommandSpec;
+
+@Command(name = "import", mixinStandardHelpOptions = true, description = "Imports goals and habits from a file without starting the GUI, skipping the goals that already exist")
+public class ImportCommand implements Callable<Integer> {
+
+	@Parameters(index = "0", description = "The CSV or JSON file to import")
+	private File file;
+
+	@Option(names = { "--format" }, description = "The format of the file: ${COMPLETION-CANDIDATES}, by default from its extension")
+	private GoalFormat format;
+
+	@Option(names = { "--batch-size" }, description = "Number of goals added per transaction")
+	private int batchSize = GoalImporter.DEFAULT_BATCH_SIZE;
+
+	@Spec
+	private CommandSpec spec;
+
+	@Override
+	public Integer call() throws Exception {
+		GoalFormat fileFormat = format != null ? format : GoalFormat.fromFileName(file.getName());
+		ModelRepository modelRepository = GoalTrackerSwingApp.createModelRepository();
+		try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+				GoalReader reader = fileFormat.reader(in)) {
+			TransferResult result = new GoalImporter(modelRepository, batchSize).importGoals(reader,
+					(goals, habits) -> spec.commandLine().getErr()
+							.println("Imported " + goals + " goals, " + habits + " habits"));
+			spec.commandLine().getOut().println("Imported " + result);
+		} finally {
+			modelRepository.close();
+		}
+		return 0;
+	}
+}
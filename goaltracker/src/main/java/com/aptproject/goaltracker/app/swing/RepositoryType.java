@@ -0,0 +1,14 @@
+package com.aptproject.goaltracker.app.swing;
+
+/**
+ * The {@link com.aptproject.goaltracker.repository.ModelRepository}
+ * implementations selectable from the command line.
+ */
+public enum RepositoryType {
+	POSTGRES,
+	/** The JPA repository on a database file, no server needed. */
+	EMBEDDED,
+	/** An append-only log in a memory-mapped file, no database needed. */
+	FILE,
+	MEMORY
+}
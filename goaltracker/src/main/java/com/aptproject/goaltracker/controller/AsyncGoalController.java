@@ -0,0 +1,135 @@
+package com.aptproject.goaltracker.controller;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import com.aptproject.goaltracker.controller.metrics.ControllerOperation;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+/**
+ * Asynchronous front of a {@link GoalController}: every operation runs on a
+ * {@link ControllerExecutor}, serialized with the other operations on the
+ * same goal, and returns a future completed on the completion executor, e.g.
+ * a {@link BatchingExecutor} of the event dispatch thread. The results still
+ * reach the view through the {@link com.aptproject.goaltracker.view.GoalView}
+ * callbacks, the futures only tell when, and whether, the operation is done.
+ * <p>
+ * Reads of the goal list are superseded by a later {@link #allGoals()}: the
+ * ones that have not started yet are skipped and their futures cancelled. An
+ * operation rejected by the executor returns a future that has already failed
+ * with a {@link RejectedExecutionException}. An operation that fails with an
+ * exception, which the controller does not show, is counted as an error of
+ * the controller metrics and fails its future with that exception.
+ */
+public class AsyncGoalController {
+
+	private static final Object GOAL_LIST_KEY = new Object();
+
+	private final GoalController goalController;
+	private final ControllerExecutor controllerExecutor;
+	private final Executor completionExecutor;
+	private final AtomicLong goalListGeneration = new AtomicLong();
+
+	public AsyncGoalController(GoalController goalController, ControllerExecutor controllerExecutor,
+			Executor completionExecutor) {
+		this.goalController = goalController;
+		this.controllerExecutor = controllerExecutor;
+		this.completionExecutor = completionExecutor;
+	}
+
+	public CompletableFuture<Void> allGoals() {
+		return readGoalList(ControllerOperation.ALL_GOALS, goalListGeneration.incrementAndGet(),
+				goalController::allGoals);
+	}
+
+	public CompletableFuture<Void> moreGoals() {
+		return readGoalList(ControllerOperation.MORE_GOALS, goalListGeneration.get(), goalController::moreGoals);
+	}
+
+	public CompletableFuture<Void> loadGoals(List<String> names) {
+		return readGoalList(ControllerOperation.LOAD_GOALS, goalListGeneration.get(),
+				() -> goalController.loadGoals(names));
+	}
+
+	public CompletableFuture<Void> newGoal(Goal goal) {
+		return submit(ControllerOperation.NEW_GOAL, goal.getName(), () -> goalController.newGoal(goal));
+	}
+
+	public CompletableFuture<Void> deleteGoal(Goal goal) {
+		return submit(ControllerOperation.DELETE_GOAL, goal.getName(), () -> goalController.deleteGoal(goal));
+	}
+
+	public CompletableFuture<Void> addHabit(Goal goal, Habit habit) {
+		return submit(ControllerOperation.ADD_HABIT, goal.getName(), () -> goalController.addHabit(goal, habit));
+	}
+
+	public CompletableFuture<Void> removeHabit(Goal goal, Habit habit) {
+		return submit(ControllerOperation.REMOVE_HABIT, goal.getName(),
+				() -> goalController.removeHabit(goal, habit));
+	}
+
+	public CompletableFuture<Void> incrementCounter(Habit habit) {
+		return submit(ControllerOperation.INCREMENT_COUNTER, habit.getHabitId().getGoalName(),
+				() -> goalController.incrementCounter(habit));
+	}
+
+	public CompletableFuture<Void> decrementCounter(Habit habit) {
+		return submit(ControllerOperation.DECREMENT_COUNTER, habit.getHabitId().getGoalName(),
+				() -> goalController.decrementCounter(habit));
+	}
+
+	/**
+	 * Runs {@code read} unless the goal list has been reloaded since
+	 * {@code generation}, in which case its future is cancelled.
+	 */
+	private CompletableFuture<Void> readGoalList(ControllerOperation operation, long generation, Runnable read) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		return submit(operation, GOAL_LIST_KEY, result, () -> {
+			if (goalListGeneration.get() != generation) {
+				result.cancel(false);
+				return;
+			}
+			read.run();
+		});
+	}
+
+	private CompletableFuture<Void> submit(ControllerOperation operation, Object key, Runnable run) {
+		return submit(operation, key, new CompletableFuture<>(), run);
+	}
+
+	private CompletableFuture<Void> submit(ControllerOperation operation, Object key, CompletableFuture<Void> result,
+			Runnable run) {
+		CompletableFuture<Void> task;
+		try {
+			task = controllerExecutor.submit(key, run);
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		task.whenComplete((ignored, failure) -> {
+			if (failure != null) {
+				goalController.getMetrics().error(operation);
+			}
+			completionExecutor.execute(() -> {
+				if (failure == null) {
+					result.complete(null);
+				} else {
+					result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+				}
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * Stops accepting operations and waits up to {@code timeoutMillis} for the
+	 * pending ones.
+	 */
+	public void shutdown(long timeoutMillis) {
+		controllerExecutor.shutdown(timeoutMillis);
+	}
+}
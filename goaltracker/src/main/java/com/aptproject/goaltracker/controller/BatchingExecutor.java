@@ -0,0 +1,49 @@
+package com.aptproject.goaltracker.controller;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands tasks to a target executor in batches: tasks submitted before the
+ * target gets to the previous ones are run together, in submission order, by
+ * a single target task. Meant for the event dispatch thread, e.g. with
+ * {@code SwingUtilities::invokeLater} as target, so that a burst of
+ * completions costs a single event.
+ */
+public class BatchingExecutor implements Executor {
+
+	private static final Logger LOGGER = Logger.getLogger(BatchingExecutor.class.getName());
+
+	private final Executor target;
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	public BatchingExecutor(Executor target) {
+		this.target = target;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		pending.add(task);
+		if (scheduled.compareAndSet(false, true)) {
+			target.execute(this::runPending);
+		}
+	}
+
+	private void runPending() {
+		// tasks added from now on schedule another batch
+		scheduled.set(false);
+		Runnable task;
+		while ((task = pending.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Batched task failed", e);
+			}
+		}
+	}
+}
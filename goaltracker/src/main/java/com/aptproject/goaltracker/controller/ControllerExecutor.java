@@ -0,0 +1,135 @@
+package com.aptproject.goaltracker.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the controller operations requested by the view off the event
+ * dispatch thread. Operations submitted with the same key, e.g. the name of
+ * a goal, run one after the other in submission order, while operations on
+ * different keys run in parallel on the underlying executor. At most
+ * {@code maxPendingTasks} operations can be waiting or running: further
+ * submissions are rejected, so that the caller can tell the user instead of
+ * queueing work without limit.
+ */
+public class ControllerExecutor {
+
+	public static final int DEFAULT_THREADS = 4;
+	public static final int DEFAULT_MAX_PENDING_TASKS = 256;
+
+	private static final Logger LOGGER = Logger.getLogger(ControllerExecutor.class.getName());
+
+	private final ExecutorService executor;
+	private final Semaphore pendingTasks;
+	private final Map<Object, CompletableFuture<Void>> lastTasks = new HashMap<>();
+	private volatile boolean shutdown;
+
+	public ControllerExecutor(ExecutorService executor, int maxPendingTasks) {
+		this.executor = executor;
+		this.pendingTasks = new Semaphore(maxPendingTasks);
+	}
+
+	/**
+	 * A pool of {@code threads} daemon platform threads.
+	 */
+	public static ControllerExecutor withPlatformThreads(int threads, int maxPendingTasks) {
+		AtomicInteger created = new AtomicInteger();
+		return new ControllerExecutor(Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "controller-" + created.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}), maxPendingTasks);
+	}
+
+	/**
+	 * A virtual thread per operation.
+	 *
+	 * @throws UnsupportedOperationException if the JDK has no virtual threads,
+	 *                                       i.e. before JDK 21
+	 */
+	public static ControllerExecutor withVirtualThreads(int maxPendingTasks) {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			return new ControllerExecutor(executor, maxPendingTasks);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads need JDK 21 or later", e);
+		}
+	}
+
+	/**
+	 * Runs {@code task} after every task previously submitted with the same key
+	 * has completed, whether normally or not.
+	 *
+	 * @throws RejectedExecutionException if too many tasks are pending or the
+	 *                                    executor has been shut down
+	 */
+	public CompletableFuture<Void> submit(Object key, Runnable task) {
+		if (shutdown) {
+			throw new RejectedExecutionException("The controller executor has been shut down");
+		}
+		if (!pendingTasks.tryAcquire()) {
+			throw new RejectedExecutionException("Too many pending operations, please retry later");
+		}
+		CompletableFuture<Void> next;
+		synchronized (lastTasks) {
+			CompletableFuture<Void> previous = lastTasks.get(key);
+			try {
+				if (previous == null) {
+					next = CompletableFuture.runAsync(task, executor);
+				} else {
+					next = previous.handle((result, failure) -> null).thenRunAsync(task, executor);
+				}
+			} catch (RejectedExecutionException e) {
+				pendingTasks.release();
+				throw e;
+			}
+			lastTasks.put(key, next);
+		}
+		CompletableFuture<Void> submitted = next;
+		submitted.whenComplete((result, failure) -> {
+			pendingTasks.release();
+			synchronized (lastTasks) {
+				lastTasks.remove(key, submitted);
+			}
+			if (failure != null) {
+				LOGGER.log(Level.SEVERE, "Controller operation failed", failure);
+			}
+		});
+		return submitted;
+	}
+
+	/**
+	 * Stops accepting tasks and waits up to {@code timeoutMillis} for the
+	 * pending ones to complete.
+	 */
+	public void shutdown(long timeoutMillis) {
+		shutdown = true;
+		CompletableFuture<?>[] pending;
+		synchronized (lastTasks) {
+			pending = lastTasks.values().toArray(new CompletableFuture<?>[0]);
+		}
+		try {
+			// tasks queued behind others on the same key reach the executor only
+			// when their turn comes, so wait for them before shutting it down
+			CompletableFuture.allOf(pending).handle((result, failure) -> null).get(timeoutMillis,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			LOGGER.warning("Controller operations still running at shutdown");
+		}
+		executor.shutdown();
+	}
+}
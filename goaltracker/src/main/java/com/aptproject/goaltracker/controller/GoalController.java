@@ -1,78 +1,258 @@
 package com.aptproject.goaltracker.controller;
 
+import java.time.Clock;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.aptproject.goaltracker.controller.metrics.ControllerMetrics;
+import com.aptproject.goaltracker.controller.metrics.ControllerOperation;
+import com.aptproject.goaltracker.controller.metrics.OperationTimer;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
 import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.aptproject.goaltracker.repository.change.RepositoryChangeListener;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalConflictException;
 import com.aptproject.goaltracker.repository.exception.GoalExistsException;
 import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+import com.aptproject.goaltracker.stats.HabitStatisticsStore;
 import com.aptproject.goaltracker.view.GoalView;
 
-public class GoalController {
+public class GoalController implements RepositoryChangeListener {
+	static final int DEFAULT_GOALS_PAGE_SIZE = 100;
+
 	private GoalView goalView;
 	private ModelRepository modelRepository;
+	private int goalsPageSize = DEFAULT_GOALS_PAGE_SIZE;
+	private String lastLoadedGoalName;
+	private boolean allGoalsLoaded;
+	private HabitStatisticsStore habitStatistics = new HabitStatisticsStore(Clock.systemDefaultZone());
+	private ControllerMetrics metrics = ControllerMetrics.disabled();
 	
 	public GoalController(GoalView goalView, ModelRepository modelRepository) {
 		this.goalView = goalView;
 		this.modelRepository = modelRepository;
 	}
 	
-	public void allGoals() {
-		goalView.showAllGoals(modelRepository.findAllGoals());
+	/**
+	 * Replaces the statistics updated by every counter change, e.g. with one
+	 * the view reads from too.
+	 */
+	public void setHabitStatistics(HabitStatisticsStore habitStatistics) {
+		this.habitStatistics = habitStatistics;
 	}
 	
-	public void newGoal(Goal goal) {
-		try {
-			modelRepository.addGoal(goal);
-		} catch (GoalExistsException e) {
-			goalView.showError(e.getMessage());
+	/**
+	 * Measures every operation with {@code metrics}, which are disabled by
+	 * default.
+	 */
+	public void setMetrics(ControllerMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	public ControllerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	public void setGoalsPageSize(int goalsPageSize) {
+		this.goalsPageSize = goalsPageSize;
+	}
+	
+	/**
+	 * Shows the first page of goals; the following ones are loaded by
+	 * {@link #moreGoals()}.
+	 */
+	public synchronized void allGoals() {
+		try (OperationTimer timer = metrics.start(ControllerOperation.ALL_GOALS)) {
+			List<Goal> goals = modelRepository.findGoalsPage(null, goalsPageSize);
+			lastLoadedGoalName = null;
+			pageLoaded(goals);
+			goalView.showAllGoals(goals);
+		}
+	}
+	
+	public synchronized void moreGoals() {
+		if (allGoalsLoaded) {
 			return;
 		}
-		goalView.goalAdded(goal);
+		try (OperationTimer timer = metrics.start(ControllerOperation.MORE_GOALS)) {
+			List<Goal> goals = modelRepository.findGoalsPage(lastLoadedGoalName, goalsPageSize);
+			pageLoaded(goals);
+			if (!goals.isEmpty()) {
+				goalView.showMoreGoals(goals);
+			}
+		}
+	}
+	
+	/**
+	 * Loads the goals of rows the view shows only by name.
+	 */
+	public void loadGoals(List<String> names) {
+		try (OperationTimer timer = metrics.start(ControllerOperation.LOAD_GOALS)) {
+			goalView.goalsLoaded(modelRepository.findGoalsByNames(names));
+		}
+	}
+	
+	private void pageLoaded(List<Goal> goals) {
+		allGoalsLoaded = goals.size() < goalsPageSize;
+		if (!goals.isEmpty()) {
+			lastLoadedGoalName = goals.get(goals.size() - 1).getName();
+		}
+	}
+	
+	public void newGoal(Goal goal) {
+		try (OperationTimer timer = metrics.start(ControllerOperation.NEW_GOAL)) {
+			try {
+				modelRepository.addGoal(goal);
+			} catch (GoalExistsException e) {
+				timer.error();
+				goalView.showError(e.getMessage());
+				return;
+			}
+			goalView.goalAdded(goal);
+		}
 	}
 
 	public void deleteGoal(Goal goal) {
-		try {
-			modelRepository.deleteGoal(goal);
-		} catch (GoalNotExistsException e) {
-			goalView.showError(e.getMessage());
-			return;
+		try (OperationTimer timer = metrics.start(ControllerOperation.DELETE_GOAL)) {
+			try {
+				modelRepository.deleteGoal(goal);
+			} catch (GoalNotExistsException | GoalConflictException e) {
+				timer.error();
+				goalView.showError(e.getMessage());
+				return;
+			}
+			// goals listed by name only have no habits loaded
+			habitStatistics.removeGoal(goal.getName());
+			goalView.goalRemoved(goal);
 		}
-		goalView.goalRemoved(goal);
 	}
 
 	public void addHabit(Goal goal, Habit habit) {
-		try {
-			modelRepository.addHabitToGoal(goal, habit);
-		} catch (HabitExistsException e) {
-			goalView.showError(e.getMessage());
-			return;
+		try (OperationTimer timer = metrics.start(ControllerOperation.ADD_HABIT)) {
+			try {
+				modelRepository.addHabitToGoal(goal, habit);
+			} catch (HabitExistsException | GoalConflictException e) {
+				timer.error();
+				goalView.showError(e.getMessage());
+				return;
+			}
+			goalView.habitAdded(habit);
 		}
-		goalView.habitAdded(habit);
 	}
 
 	public void removeHabit(Goal goal, Habit habit) {
-		try {
-			modelRepository.removeHabitFromGoal(goal, habit);
-		} catch (HabitNotExistsException e) {
-			goalView.showError(e.getMessage());
-			return;
+		try (OperationTimer timer = metrics.start(ControllerOperation.REMOVE_HABIT)) {
+			try {
+				modelRepository.removeHabitFromGoal(goal, habit);
+			} catch (HabitNotExistsException | GoalConflictException e) {
+				timer.error();
+				goalView.showError(e.getMessage());
+				return;
+			}
+			habitStatistics.remove(HabitId.of(goal.getName(), habit.getName()));
+			goalView.habitRemoved(habit);
 		}
-		goalView.habitRemoved(habit);
 	}
 
 	public void incrementCounter(Habit habit) {
-		modelRepository.incrementCounter(habit);
-		goalView.counterUpdated(habit);
+		try (OperationTimer timer = metrics.start(ControllerOperation.INCREMENT_COUNTER)) {
+			habit.setCounter(modelRepository.incrementCounter(habit));
+			habitStatistics.record(habit.getHabitId(), 1);
+			goalView.counterUpdated(habit);
+		}
 	}
 
 	public void decrementCounter(Habit habit) {
-		if (habit.getCounter() == 0) {
-			goalView.showError("You can't decrement a counter equal to zero!");
-			return;
+		try (OperationTimer timer = metrics.start(ControllerOperation.DECREMENT_COUNTER)) {
+			if (habit.getCounter() == 0) {
+				timer.error();
+				goalView.showError("You can't decrement a counter equal to zero!");
+				return;
+			}
+			try {
+				habit.setCounter(modelRepository.decrementCounter(habit));
+			} catch (CounterAtZeroException e) {
+				// the habit was stale: another client took the counter to zero
+				timer.error();
+				habit.setCounter(0);
+				goalView.counterUpdated(habit);
+				goalView.showError("You can't decrement a counter equal to zero!");
+				return;
+			}
+			habitStatistics.record(habit.getHabitId(), -1);
+			goalView.counterUpdated(habit);
+		}
+	}
+
+	/**
+	 * Applies to the view the changes made by other clients, loading in a
+	 * single query the goals that were added or whose habits were added or
+	 * changed. Changes of goals or habits that no longer exist when loaded
+	 * are skipped, their removal follows.
+	 */
+	@Override
+	public void changed(List<RepositoryChange> changes) {
+		try (OperationTimer timer = metrics.start(ControllerOperation.REMOTE_CHANGES)) {
+			if (changes.contains(RepositoryChange.resync())) {
+				allGoals();
+				return;
+			}
+			Set<String> changedGoalNames = new LinkedHashSet<>();
+			for (RepositoryChange change : changes) {
+				if (change.getType() != RepositoryChange.Type.GOAL_REMOVED
+						&& change.getType() != RepositoryChange.Type.HABIT_REMOVED) {
+					changedGoalNames.add(change.getGoalName());
+				}
+			}
+			Map<String, Goal> changedGoals = modelRepository.findGoalsByNames(changedGoalNames).stream()
+					.collect(Collectors.toMap(Goal::getName, Function.identity()));
+			for (RepositoryChange change : changes) {
+				Goal goal = changedGoals.get(change.getGoalName());
+				switch (change.getType()) {
+				case GOAL_ADDED:
+					if (goal != null) {
+						goalView.goalAdded(goal);
+					}
+					break;
+				case GOAL_REMOVED:
+					habitStatistics.removeGoal(change.getGoalName());
+					goalView.goalRemoved(new Goal(change.getGoalName()));
+					break;
+				case HABIT_REMOVED:
+					Habit removed = new Habit(change.getHabitName());
+					removed.setGoal(new Goal(change.getGoalName()));
+					habitStatistics.remove(removed.getHabitId());
+					goalView.habitRemoved(removed);
+					break;
+				case HABIT_ADDED:
+					Habit added = findHabit(goal, change.getHabitName());
+					if (added != null) {
+						goalView.habitAdded(added);
+					}
+					break;
+				default:
+					Habit updated = findHabit(goal, change.getHabitName());
+					if (updated != null) {
+						goalView.counterUpdated(updated);
+					}
+				}
+			}
+		}
+	}
+
+	private static Habit findHabit(Goal goal, String habitName) {
+		if (goal == null) {
+			return null;
 		}
-		modelRepository.decrementCounter(habit);
-		goalView.counterUpdated(habit);
+		return goal.getHabits().stream().filter(habit -> habit.getName().equals(habitName)).findFirst().orElse(null);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,235 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.aptproject.goaltracker.metrics.LatencyHistogram;
+
+/**
+ * Call and error counters, latency histograms and in-flight gauges of the
+ * controller operations. A disabled instance, the default of the controller,
+ * hands out a shared timer that records nothing, so measuring costs a field
+ * read and a branch when metrics are off.
+ */
+public class ControllerMetrics implements ControllerMetricsMXBean, AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(ControllerMetrics.class.getName());
+
+	private static final ControllerMetrics DISABLED = new ControllerMetrics(false);
+
+	static final String PREFIX = "goaltracker_controller_";
+
+	/**
+	 * The powers of two of the microseconds used as Prometheus buckets, from
+	 * 128 microseconds to about 8 seconds: they are bucket boundaries of
+	 * {@link LatencyHistogram}, so the cumulative counts are exact.
+	 */
+	private static final int FIRST_BUCKET_EXPONENT = 7;
+	private static final int LAST_BUCKET_EXPONENT = 23;
+
+	private final Map<ControllerOperation, OperationMetrics> operations = new EnumMap<>(ControllerOperation.class);
+	private ScheduledExecutorService dumper;
+
+	public ControllerMetrics() {
+		this(true);
+	}
+
+	private ControllerMetrics(boolean enabled) {
+		if (enabled) {
+			for (ControllerOperation operation : ControllerOperation.values()) {
+				operations.put(operation, new OperationMetrics(operation));
+			}
+		}
+	}
+
+	/**
+	 * The shared instance that records nothing.
+	 */
+	public static ControllerMetrics disabled() {
+		return DISABLED;
+	}
+
+	public boolean isEnabled() {
+		return !operations.isEmpty();
+	}
+
+	/**
+	 * Starts measuring a run of {@code operation}, which ends when the returned
+	 * timer is closed.
+	 */
+	public OperationTimer start(ControllerOperation operation) {
+		OperationMetrics metrics = operations.get(operation);
+		return metrics == null ? OperationTimer.NONE : metrics.start();
+	}
+
+	/**
+	 * Counts an error of a run of {@code operation} that has already been
+	 * measured, e.g. one that threw an exception out of its timer.
+	 */
+	public void error(ControllerOperation operation) {
+		OperationMetrics metrics = operations.get(operation);
+		if (metrics != null) {
+			metrics.failed();
+		}
+	}
+
+	/**
+	 * The statistics of {@code operation}, or null when disabled.
+	 */
+	public OperationStatistics getStatistics(ControllerOperation operation) {
+		OperationMetrics metrics = operations.get(operation);
+		return metrics == null ? null : metrics.statistics();
+	}
+
+	@Override
+	public List<OperationStatistics> getOperations() {
+		List<OperationStatistics> statistics = new ArrayList<>();
+		for (OperationMetrics metrics : operations.values()) {
+			statistics.add(metrics.statistics());
+		}
+		return statistics;
+	}
+
+	@Override
+	public String dump() {
+		StringWriter dump = new StringWriter();
+		try (PrintWriter out = new PrintWriter(dump)) {
+			dump(out);
+		}
+		return dump.toString();
+	}
+
+	/**
+	 * Writes the metrics in the Prometheus text exposition format.
+	 */
+	public void dump(PrintWriter out) {
+		out.println("# HELP " + PREFIX + "operations_total Completed controller operations");
+		out.println("# TYPE " + PREFIX + "operations_total counter");
+		for (OperationMetrics metrics : operations.values()) {
+			sample(out, "operations_total", metrics, metrics.getLatencies().getCount());
+		}
+		out.println("# HELP " + PREFIX + "errors_total Controller operations that showed an error");
+		out.println("# TYPE " + PREFIX + "errors_total counter");
+		for (OperationMetrics metrics : operations.values()) {
+			sample(out, "errors_total", metrics, metrics.getErrors());
+		}
+		out.println("# HELP " + PREFIX + "in_flight Controller operations running");
+		out.println("# TYPE " + PREFIX + "in_flight gauge");
+		for (OperationMetrics metrics : operations.values()) {
+			sample(out, "in_flight", metrics, metrics.getInFlight());
+		}
+		out.println("# HELP " + PREFIX + "duration_seconds Duration of the controller operations");
+		out.println("# TYPE " + PREFIX + "duration_seconds histogram");
+		for (OperationMetrics metrics : operations.values()) {
+			durations(out, metrics);
+		}
+		out.flush();
+	}
+
+	private static void sample(PrintWriter out, String name, OperationMetrics metrics, long value) {
+		out.println(PREFIX + name + "{operation=\"" + metrics.getOperation().getMetricName() + "\"} " + value);
+	}
+
+	private static void durations(PrintWriter out, OperationMetrics metrics) {
+		String operation = metrics.getOperation().getMetricName();
+		long[] counts = metrics.getLatencies().getBucketCounts();
+		long cumulative = 0;
+		int bucket = 0;
+		for (int exponent = FIRST_BUCKET_EXPONENT; exponent <= LAST_BUCKET_EXPONENT; exponent++) {
+			long bound = 1L << exponent;
+			for (; bucket < counts.length && LatencyHistogram.upperBound(bucket) < bound; bucket++) {
+				cumulative += counts[bucket];
+			}
+			out.println(PREFIX + "duration_seconds_bucket{operation=\"" + operation + "\",le=\""
+					+ seconds(bound) + "\"} " + cumulative);
+		}
+		long count = 0;
+		for (long bucketCount : counts) {
+			count += bucketCount;
+		}
+		out.println(PREFIX + "duration_seconds_bucket{operation=\"" + operation + "\",le=\"+Inf\"} " + count);
+		out.println(PREFIX + "duration_seconds_sum{operation=\"" + operation + "\"} "
+				+ seconds(metrics.getLatencies().getTotalMicros()));
+		out.println(PREFIX + "duration_seconds_count{operation=\"" + operation + "\"} " + count);
+	}
+
+	private static String seconds(long micros) {
+		return String.format(Locale.ROOT, "%.6f", micros / 1e6);
+	}
+
+	/**
+	 * Writes the dump to {@code file} now and every {@code intervalMillis}
+	 * until closed, replacing the file atomically so that a scraper never reads
+	 * it half written.
+	 */
+	public synchronized void scheduleDump(Path file, long intervalMillis) {
+		if (dumper == null) {
+			dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "controller-metrics-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		dumper.scheduleWithFixedDelay(() -> {
+			try {
+				dumpTo(file);
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Controller metrics not written to " + file, e);
+			}
+		}, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes the dump to {@code file} through a temporary file next to it.
+	 */
+	public void dumpTo(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8);
+					PrintWriter out = new PrintWriter(writer)) {
+				dump(out);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Clears counters and histograms; the in-flight gauges keep the running
+	 * operations.
+	 */
+	@Override
+	public void reset() {
+		for (OperationMetrics metrics : operations.values()) {
+			metrics.reset();
+		}
+	}
+
+	/**
+	 * Stops the scheduled dumps.
+	 */
+	@Override
+	public synchronized void close() {
+		if (dumper != null) {
+			dumper.shutdownNow();
+			dumper = null;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link ControllerMetrics}.
+ */
+public interface ControllerMetricsMXBean {
+
+	public static final String OBJECT_NAME = "com.aptproject.goaltracker:type=ControllerMetrics";
+
+	public List<OperationStatistics> getOperations();
+
+	/**
+	 * The metrics in the Prometheus text format.
+	 */
+	public String dump();
+
+	public void reset();
+}
@@ -0,0 +1,19 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import java.util.Locale;
+
+/**
+ * The operations of {@link com.aptproject.goaltracker.controller.GoalController}
+ * that are measured.
+ */
+public enum ControllerOperation {
+	ALL_GOALS, MORE_GOALS, LOAD_GOALS, NEW_GOAL, DELETE_GOAL, ADD_HABIT, REMOVE_HABIT, INCREMENT_COUNTER,
+	DECREMENT_COUNTER, REMOTE_CHANGES;
+
+	/**
+	 * The name used in the metrics, e.g. {@code new_goal}.
+	 */
+	public String getMetricName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+}
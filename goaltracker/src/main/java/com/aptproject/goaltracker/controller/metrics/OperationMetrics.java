@@ -0,0 +1,65 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import com.aptproject.goaltracker.metrics.LatencyHistogram;
+
+/**
+ * The counters, latencies and in-flight gauge of one controller operation.
+ */
+class OperationMetrics {
+
+	private final ControllerOperation operation;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final LongAdder errors = new LongAdder();
+	private final AtomicLong inFlight = new AtomicLong();
+
+	OperationMetrics(ControllerOperation operation) {
+		this.operation = operation;
+	}
+
+	OperationTimer start() {
+		inFlight.incrementAndGet();
+		return new OperationTimer(this, System.nanoTime());
+	}
+
+	void finished(long nanos, boolean error) {
+		latencies.record(nanos, TimeUnit.NANOSECONDS);
+		if (error) {
+			errors.increment();
+		}
+		inFlight.decrementAndGet();
+	}
+
+	void failed() {
+		errors.increment();
+	}
+
+	ControllerOperation getOperation() {
+		return operation;
+	}
+
+	LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	long getErrors() {
+		return errors.sum();
+	}
+
+	long getInFlight() {
+		return inFlight.get();
+	}
+
+	void reset() {
+		latencies.reset();
+		errors.reset();
+	}
+
+	OperationStatistics statistics() {
+		return new OperationStatistics(operation.getMetricName(), latencies.getCount(), getErrors(), getInFlight(),
+				latencies.getMeanMicros(), latencies.getPercentileMicros(50), latencies.getPercentileMicros(99),
+				latencies.getMaxMicros());
+	}
+}
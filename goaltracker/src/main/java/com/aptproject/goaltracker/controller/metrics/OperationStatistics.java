@@ -0,0 +1,78 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the metrics of one controller operation, with latencies in
+ * microseconds.
+ */
+public class OperationStatistics {
+
+	private final String operation;
+	private final long calls;
+	private final long errors;
+	private final long inFlight;
+	private final double meanMicros;
+	private final long p50Micros;
+	private final long p99Micros;
+	private final long maxMicros;
+
+	@ConstructorProperties({ "operation", "calls", "errors", "inFlight", "meanMicros", "p50Micros", "p99Micros",
+			"maxMicros" })
+	public OperationStatistics(String operation, long calls, long errors, long inFlight, double meanMicros,
+			long p50Micros, long p99Micros, long maxMicros) {
+		this.operation = operation;
+		this.calls = calls;
+		this.errors = errors;
+		this.inFlight = inFlight;
+		this.meanMicros = meanMicros;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Completed runs, including the ones that ended with an error.
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getInFlight() {
+		return inFlight;
+	}
+
+	public double getMeanMicros() {
+		return meanMicros;
+	}
+
+	public long getP50Micros() {
+		return p50Micros;
+	}
+
+	public long getP99Micros() {
+		return p99Micros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	public double getErrorRate() {
+		return calls == 0 ? 0 : (double) errors / calls;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s calls=%d errors=%d inFlight=%d mean=%.0fus p50=%dus p99=%dus max=%dus", operation,
+				calls, errors, inFlight, meanMicros, p50Micros, p99Micros, maxMicros);
+	}
+}
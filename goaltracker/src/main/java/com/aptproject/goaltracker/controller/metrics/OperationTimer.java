@@ -0,0 +1,36 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+/**
+ * Measures one run of a controller operation, from its start to
+ * {@link #close()}, meant for a try-with-resources block.
+ */
+public class OperationTimer implements AutoCloseable {
+
+	/**
+	 * What a disabled {@link ControllerMetrics} returns: it records nothing.
+	 */
+	static final OperationTimer NONE = new OperationTimer(null, 0);
+
+	private final OperationMetrics metrics;
+	private final long start;
+	private boolean error;
+
+	OperationTimer(OperationMetrics metrics, long start) {
+		this.metrics = metrics;
+		this.start = start;
+	}
+
+	/**
+	 * Marks the run as failed with an error shown to the user.
+	 */
+	public void error() {
+		error = true;
+	}
+
+	@Override
+	public void close() {
+		if (metrics != null) {
+			metrics.finished(System.nanoTime() - start, error);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.aptproject.goaltracker.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in microseconds. Every power of two is
+ * split in {@value #SUB_BUCKETS} buckets, so percentiles are within 25% of
+ * the recorded values while the histogram stays a fixed array of counters,
+ * whatever the range of the durations. Thread safe; a reading concurrent with
+ * recordings may see some of them only partially.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 2;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+	public void record(long duration, TimeUnit unit) {
+		long micros = Math.max(0, unit.toMicros(duration));
+		buckets.incrementAndGet(bucketOf(micros));
+		count.increment();
+		totalMicros.add(micros);
+		maxMicros.accumulate(micros);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalMicros() {
+		return totalMicros.sum();
+	}
+
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	public double getMeanMicros() {
+		long recorded = count.sum();
+		return recorded == 0 ? 0 : (double) totalMicros.sum() / recorded;
+	}
+
+	/**
+	 * The upper bound of the bucket holding the recording at
+	 * {@code percentile}, between 0 and 100, never more than the maximum
+	 * recorded. 0 when nothing was recorded.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] counts = getBucketCounts();
+		long recorded = 0;
+		for (long bucketCount : counts) {
+			recorded += bucketCount;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(upperBound(bucket), getMaxMicros());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The number of recordings of every bucket, bucket {@code i} holding the
+	 * durations from {@link #lowerBound(int) lowerBound(i)} microseconds to
+	 * {@link #upperBound(int) upperBound(i)}.
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts[bucket] = buckets.get(bucket);
+		}
+		return counts;
+	}
+
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			buckets.set(bucket, 0);
+		}
+		count.reset();
+		totalMicros.reset();
+		maxMicros.reset();
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	public static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+	}
+
+	public static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+	}
+}
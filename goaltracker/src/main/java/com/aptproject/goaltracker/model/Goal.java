@@ -1,14 +1,24 @@
 package com.aptproject.goaltracker.model;
 
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * Versioned for optimistic locking: the repository increments the version of
+ * a goal whenever its habits are added or removed, so that concurrent changes
+ * of the same goal are detected instead of overwriting each other.
+ */
 @Entity
 @Table(name = "goal")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "goal")
 public class Goal implements Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -17,8 +27,14 @@ public class Goal implements Serializable {
     private String name;
 
     @OneToMany(mappedBy = "goal", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "goal.habits")
     private List<Habit> habits;
 
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
     public Goal() {
     }
     
@@ -35,6 +51,14 @@ public class Goal implements Serializable {
         this.name = name;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public List<Habit> getHabits() {
         return habits;
     }
@@ -49,6 +73,25 @@ public class Goal implements Serializable {
     	habit.setGoal(null);
     }
 
+    /**
+     * Returns a new goal with the same name and copies of the habits, ids
+     * and versions included.
+     */
+    public Goal copy() {
+    	Goal copy = new Goal(name);
+    	copy.setVersion(version);
+    	if (habits != null) {
+    		for (Habit habit : habits) {
+    			Habit habitCopy = new Habit(habit.getName());
+    			habitCopy.setId(habit.getId());
+    			habitCopy.setCounter(habit.getCounter());
+    			habitCopy.setVersion(habit.getVersion());
+    			copy.addHabit(habitCopy);
+    		}
+    	}
+    	return copy;
+    }
+
 	@Override
 	public String toString() {
 		return name;
@@ -1,24 +1,64 @@
 package com.aptproject.goaltracker.model;
 
 import java.io.Serializable;
-import java.util.Objects;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.Formula;
 
+/**
+ * Identified by a generated surrogate key, while the pair of goal and name,
+ * i.e. its {@link HabitId}, stays unique through a database constraint. The
+ * key replaces the former {@code @IdClass} on goal and name rather than being
+ * an alternative to it: the event log, the snapshots, the change
+ * notifications and the second-level cache evictions all refer to habits by
+ * this single number.
+ * The stored counter is a snapshot: counter changes are appended as
+ * {@link HabitEvent}s, which are added to it when the habit is loaded.
+ * Since the events are appended behind Hibernate's back, the repository
+ * evicts the habits they change from the second-level cache.
+ */
 @Entity
-@IdClass(HabitId.class)
-@Table(name = "habit")
+@Table(name = "habit", uniqueConstraints = @UniqueConstraint(name = "habit_goal_name_uk", columnNames = { "goal_id", "name" }))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "habit")
 public class Habit implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
+	static final int ALLOCATION_SIZE = 50;
 	
 	@Id
+	// the pooled optimizer takes ALLOCATION_SIZE ids from the sequence per round trip
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "habit_id_generator")
+	@SequenceGenerator(name = "habit_id_generator", sequenceName = "habit_id_seq", allocationSize = Habit.ALLOCATION_SIZE)
+	private Long id;
+	
+	@Column(nullable = false)
     private String name;
+    
+    // only written on insert and by the snapshots, never from the entity state
+    @Column(updatable = false)
     private int counter;
     
-    @Id
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "goal_id")
+    @Column(name = "snapshot_event_id", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long snapshotEventId;
+    
+    @Formula("(select coalesce(sum(e.delta), 0) from habit_event e where e.habit_id = id and e.id > snapshot_event_id)")
+    private int pendingDelta;
+    
+    // counter changes go to the event log and leave the version alone
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+    
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "goal_id", nullable = false)
     private Goal goal;
+    
+    private transient HabitId habitId;
 
     public Habit() {
     }
@@ -28,6 +68,14 @@ public class Habit implements Serializable {
         this.counter = 0;
     }
 
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -52,33 +100,64 @@ public class Habit implements Serializable {
 		this.counter--;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	public Goal getGoal() {
 		return goal;
 	}
+	
+	/**
+	 * The natural key of this habit, created again only when the goal or the
+	 * names change.
+	 */
+	public HabitId getHabitId() {
+		String goalName = goal == null ? null : goal.getName();
+		HabitId current = habitId;
+		// reference comparisons, cheaper than recomputing the hash
+		if (current == null || current.getGoalName() != goalName || current.getName() != name) {
+			current = HabitId.of(goalName, name);
+			habitId = current;
+		}
+		return current;
+	}
 
 	public void setGoal(Goal goal) {
 		this.goal = goal;
 	}
 	
+	@PostLoad
+	private void applyPendingDelta() {
+		counter += pendingDelta;
+		pendingDelta = 0;
+	}
+	
 	@Override
 	public String toString() {
 		return name + " - " + counter;
 	}
 
+	/**
+	 * Based on the natural key only: the counter changes all the time, while
+	 * the id is only assigned once the habit is stored.
+	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(counter, goal, name);
+		return getHabitId().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof Habit))
 			return false;
 		Habit other = (Habit) obj;
-		return counter == other.counter && Objects.equals(goal, other.goal) && Objects.equals(name, other.name);
+		return getHabitId().equals(other.getHabitId());
 	}    
 }
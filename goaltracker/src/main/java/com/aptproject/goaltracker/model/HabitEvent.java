@@ -0,0 +1,71 @@
+package com.aptproject.goaltracker.model;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+
+/**
+ * A counter change of a habit, appended to the {@code habit_event} log and
+ * never updated. The counter of a habit is its snapshot plus the events that
+ * follow the snapshot. Events are inserted with plain SQL that draws the id
+ * from the sequence, hence an allocation size of 1. The origin is the
+ * instance that appended the event, if its connections set one for the
+ * change notifications, so that it can tell the taps of the other clients
+ * from its own.
+ */
+@Entity
+@Table(name = "habit_event", indexes = @Index(name = "habit_event_habit_idx", columnList = "habit_id, id"))
+public class HabitEvent implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "habit_event_id_generator")
+	@SequenceGenerator(name = "habit_event_id_generator", sequenceName = "habit_event_id_seq", allocationSize = 1)
+	private Long id;
+
+	// no foreign key, so that appends never wait on the habit row
+	@Column(name = "habit_id", nullable = false)
+	private Long habitId;
+
+	private int delta;
+
+	@Column(name = "created_at", nullable = false)
+	private Instant createdAt;
+
+	private String origin;
+
+	public HabitEvent() {
+	}
+
+	public HabitEvent(Long habitId, int delta, Instant createdAt) {
+		this.habitId = habitId;
+		this.delta = delta;
+		this.createdAt = createdAt;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Long getHabitId() {
+		return habitId;
+	}
+
+	public int getDelta() {
+		return delta;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	@Override
+	public String toString() {
+		return habitId + " " + (delta >= 0 ? "+" : "") + delta + " at " + createdAt;
+	}
+}
@@ -3,35 +3,58 @@ package com.aptproject.goaltracker.model;
 import java.io.Serializable;
 import java.util.Objects;
 
-public class HabitId implements Serializable {
+/**
+ * Natural key of a habit, its name within its goal. Immutable and holding
+ * only the names, with the hash computed once, so it is cheap to use as a
+ * map key however many lookups go through it.
+ */
+public final class HabitId implements Serializable {
 	private static final long serialVersionUID = 1L;
 
-	private String name;
+	private final String goalName;
 	
-	private Goal goal;
+	private final String name;
 	
-	public HabitId() {
-	}
+	private final int hash;
 	
-	public HabitId(String name, Goal goal) {
+	private HabitId(String goalName, String name) {
+		this.goalName = goalName;
 		this.name = name;
-		this.goal = goal;
+		this.hash = 31 * Objects.hashCode(goalName) + Objects.hashCode(name);
+	}
+
+	/**
+	 * @param goalName the name of the goal of the habit, null while it has none
+	 */
+	public static HabitId of(String goalName, String name) {
+		return new HabitId(goalName, name);
+	}
+
+	public String getGoalName() {
+		return goalName;
+	}
+
+	public String getName() {
+		return name;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(goal, name);
+		return hash;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof HabitId))
 			return false;
 		HabitId other = (HabitId) obj;
-		return Objects.equals(goal, other.goal) && Objects.equals(name, other.name);
+		return hash == other.hash && Objects.equals(goalName, other.goalName) && Objects.equals(name, other.name);
+	}
+
+	@Override
+	public String toString() {
+		return goalName + "/" + name;
 	}
-}
\ No newline at end of file
+}
@@ -1,9 +1,15 @@
 package com.aptproject.goaltracker.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalConflictException;
 import com.aptproject.goaltracker.repository.exception.GoalExistsException;
 import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitExistsException;
@@ -12,17 +18,63 @@ import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
 public interface ModelRepository {
 	public List<Goal> findAllGoals();
 	
+	/**
+	 * Keyset pagination on the goal name: returns at most {@code pageSize} goals
+	 * whose name follows {@code afterName}, or the first page when it is null.
+	 */
+	public List<Goal> findGoalsPage(String afterName, int pageSize);
+	
+	/**
+	 * Streams every goal ordered by name without loading them all in memory. The
+	 * stream holds database resources and must be closed by the caller.
+	 */
+	public Stream<Goal> streamAllGoals();
+	
 	public Goal findGoalByName(String name);
 	
+	/**
+	 * Returns the goals with the given names ordered by name, names of goals
+	 * that do not exist are ignored.
+	 */
+	public List<Goal> findGoalsByNames(Collection<String> names);
+	
 	public void addGoal(Goal goal) throws GoalExistsException;
 	
-	public void deleteGoal(Goal goal) throws GoalNotExistsException;
+	/**
+	 * Adds the goals, with their habits, in a single transaction: if any of
+	 * them already exists, none is added.
+	 */
+	public void addGoals(List<Goal> goals) throws GoalExistsException;
+	
+	public void deleteGoal(Goal goal) throws GoalNotExistsException, GoalConflictException;
+	
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException, GoalConflictException;
+	
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException, GoalConflictException;
 	
-	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException;
+	/**
+	 * @return the counter of the habit once incremented
+	 * @throws IllegalStateException if the habit does not exist
+	 */
+	public int incrementCounter(Habit habit);
 	
-	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException;
+	/**
+	 * Decrements the stored counter, which never goes below zero even when
+	 * the counter of the given habit is stale.
+	 * 
+	 * @return the counter of the habit once decremented
+	 * @throws IllegalStateException if the habit does not exist
+	 * @throws CounterAtZeroException if the stored counter is already zero
+	 */
+	public int decrementCounter(Habit habit);
 	
-	public void incrementCounter(Habit habit);
+	/**
+	 * Adds each delta to the counter of the corresponding habit in a single
+	 * batch. Habits that no longer exist are ignored. Unlike
+	 * {@link #decrementCounter(Habit)}, negative deltas are not checked
+	 * against zero.
+	 */
+	public void updateCounters(Map<HabitId, Integer> deltas);
 	
-	public void decrementCounter(Habit habit);
+	public void close();
 }
\ No newline at end of file
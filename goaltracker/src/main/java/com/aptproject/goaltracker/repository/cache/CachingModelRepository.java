@@ -0,0 +1,435 @@
+package com.aptproject.goaltracker.repository.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.aptproject.goaltracker.repository.change.RepositoryChangeListener;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+/**
+ * Read-through cache in front of another repository for
+ * {@link #findGoalByName(String)}, {@link #findGoalsByNames(Collection)},
+ * {@link #findGoalsPage(String, int)} and {@link #findAllGoals()}. Goals are
+ * kept in an LRU map bounded to {@code maxGoals} entries, optionally expiring
+ * {@code ttlMillis} after being loaded. The pages and the list of all goals
+ * only keep the names of their goals, at most {@code maxGoals} in all, and
+ * are served while every one of their goals is still cached: lists longer
+ * than that are never cached. Goal and habit changes invalidate the affected
+ * entries and the lists, while counter updates are applied to the cached
+ * habits. Callers always receive copies of the cached goals.
+ */
+public class CachingModelRepository implements ModelRepository, RepositoryChangeListener {
+
+	private static final Logger LOGGER = Logger.getLogger(CachingModelRepository.class.getName());
+
+	private final ModelRepository delegate;
+	private final long ttlNanos;
+	private final LongSupplier nanoTime;
+	private final int maxGoals;
+	private final LinkedHashMap<String, CachedGoal> goals;
+	private final LinkedHashMap<PageKey, CachedNames> pages = new LinkedHashMap<>(16, 0.75f, true);
+	private int pagedNames;
+	private CachedNames allGoalNames;
+	/* bumped by every write, so that loads that raced with a write are not cached */
+	private long generation;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param ttlMillis how long a loaded goal stays valid, 0 to keep it until it
+	 *                  is evicted or invalidated
+	 */
+	public CachingModelRepository(ModelRepository delegate, int maxGoals, long ttlMillis) {
+		this(delegate, maxGoals, ttlMillis, System::nanoTime);
+	}
+
+	CachingModelRepository(ModelRepository delegate, int maxGoals, long ttlMillis, LongSupplier nanoTime) {
+		this.delegate = delegate;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.nanoTime = nanoTime;
+		this.maxGoals = maxGoals;
+		this.goals = new LinkedHashMap<String, CachedGoal>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedGoal> eldest) {
+				if (size() > maxGoals) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public CacheStatistics getStatistics() {
+		synchronized (this) {
+			return new CacheStatistics(hits.get(), misses.get(), evictions.get(), goals.size());
+		}
+	}
+
+	@Override
+	public List<Goal> findAllGoals() {
+		long loadGeneration;
+		synchronized (this) {
+			List<Goal> cached = cachedGoals(allGoalNames);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+			allGoalNames = null;
+			misses.incrementAndGet();
+			loadGeneration = generation;
+		}
+		List<Goal> loaded = delegate.findAllGoals();
+		synchronized (this) {
+			if (loadGeneration == generation && loaded.size() <= maxGoals) {
+				cacheGoals(loaded, loadGeneration);
+				allGoalNames = new CachedNames(loaded, nanoTime.getAsLong());
+			}
+		}
+		return loaded;
+	}
+
+	@Override
+	public List<Goal> findGoalsPage(String afterName, int pageSize) {
+		PageKey key = new PageKey(afterName, pageSize);
+		long loadGeneration;
+		synchronized (this) {
+			List<Goal> cached = cachedGoals(pages.get(key));
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+			removePage(key);
+			misses.incrementAndGet();
+			loadGeneration = generation;
+		}
+		List<Goal> loaded = delegate.findGoalsPage(afterName, pageSize);
+		synchronized (this) {
+			if (loadGeneration == generation && loaded.size() <= maxGoals) {
+				cacheGoals(loaded, loadGeneration);
+				pages.put(key, new CachedNames(loaded, nanoTime.getAsLong()));
+				pagedNames += loaded.size();
+				// the least recently used pages go first, as the goals
+				for (Iterator<CachedNames> eldest = pages.values().iterator(); pagedNames > maxGoals;) {
+					pagedNames -= eldest.next().names.size();
+					eldest.remove();
+				}
+			}
+		}
+		return loaded;
+	}
+
+	private void removePage(PageKey key) {
+		CachedNames removed = pages.remove(key);
+		if (removed != null) {
+			pagedNames -= removed.names.size();
+		}
+	}
+
+	/**
+	 * Streams the cached list of all goals when there is one, otherwise the
+	 * goals of the delegate, which are not cached.
+	 */
+	@Override
+	public Stream<Goal> streamAllGoals() {
+		synchronized (this) {
+			List<Goal> cached = cachedGoals(allGoalNames);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached.stream();
+			}
+		}
+		return delegate.streamAllGoals();
+	}
+
+	@Override
+	public Goal findGoalByName(String name) {
+		long loadGeneration;
+		synchronized (this) {
+			Goal cached = cachedGoal(name);
+			if (cached != null) {
+				return cached;
+			}
+			loadGeneration = generation;
+		}
+		Goal loaded = delegate.findGoalByName(name);
+		if (loaded != null) {
+			cacheGoals(Collections.singletonList(loaded), loadGeneration);
+		}
+		return loaded;
+	}
+
+	@Override
+	public List<Goal> findGoalsByNames(Collection<String> names) {
+		Map<String, Goal> found = new TreeMap<>();
+		List<String> missing = new ArrayList<>();
+		long loadGeneration;
+		synchronized (this) {
+			for (String name : new TreeSet<>(names)) {
+				Goal cached = cachedGoal(name);
+				if (cached != null) {
+					found.put(name, cached);
+				} else {
+					missing.add(name);
+				}
+			}
+			loadGeneration = generation;
+		}
+		if (!missing.isEmpty()) {
+			List<Goal> loaded = delegate.findGoalsByNames(missing);
+			cacheGoals(loaded, loadGeneration);
+			loaded.forEach(goal -> found.put(goal.getName(), goal));
+		}
+		return new ArrayList<>(found.values());
+	}
+
+	/**
+	 * Returns a copy of the cached goal, or null on a miss. Must be called
+	 * holding the lock.
+	 */
+	private Goal cachedGoal(String name) {
+		CachedGoal cached = goals.get(name);
+		if (cached != null && !isExpired(cached.loadedAt)) {
+			hits.incrementAndGet();
+			return cached.goal.copy();
+		}
+		if (cached != null) {
+			evictions.incrementAndGet();
+			goals.remove(name);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Returns copies of the goals of the list, or null unless the list and
+	 * every one of its goals are still cached. Must be called holding the lock.
+	 */
+	private List<Goal> cachedGoals(CachedNames list) {
+		if (list == null || isExpired(list.loadedAt)) {
+			return null;
+		}
+		List<Goal> cached = new ArrayList<>(list.names.size());
+		for (String name : list.names) {
+			CachedGoal goal = goals.get(name);
+			if (goal == null || isExpired(goal.loadedAt)) {
+				return null;
+			}
+			cached.add(goal.goal.copy());
+		}
+		return cached;
+	}
+
+	private synchronized void cacheGoals(List<Goal> loaded, long loadGeneration) {
+		if (loadGeneration == generation) {
+			long now = nanoTime.getAsLong();
+			loaded.forEach(goal -> goals.put(goal.getName(), new CachedGoal(goal.copy(), now)));
+		}
+	}
+
+	@Override
+	public void addGoal(Goal goal) throws GoalExistsException {
+		try {
+			delegate.addGoal(goal);
+		} finally {
+			invalidate(goal.getName());
+		}
+	}
+
+	@Override
+	public void addGoals(List<Goal> goals) throws GoalExistsException {
+		try {
+			delegate.addGoals(goals);
+		} finally {
+			invalidate(goals.stream().map(Goal::getName).collect(Collectors.toList()));
+		}
+	}
+
+	@Override
+	public void deleteGoal(Goal goal) throws GoalNotExistsException {
+		try {
+			delegate.deleteGoal(goal);
+		} finally {
+			invalidate(goal.getName());
+		}
+	}
+
+	@Override
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+		try {
+			delegate.addHabitToGoal(goal, habit);
+		} finally {
+			invalidate(goal.getName());
+		}
+	}
+
+	@Override
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
+		try {
+			delegate.removeHabitFromGoal(goal, habit);
+		} finally {
+			invalidate(goal.getName());
+		}
+	}
+
+	@Override
+	public int incrementCounter(Habit habit) {
+		int counter = delegate.incrementCounter(habit);
+		updateCachedCounter(habit.getGoal().getName(), habit.getName(), old -> counter);
+		return counter;
+	}
+
+	@Override
+	public int decrementCounter(Habit habit) {
+		int counter;
+		try {
+			counter = delegate.decrementCounter(habit);
+		} catch (CounterAtZeroException e) {
+			// the cached counter was as stale as the habit
+			updateCachedCounter(habit.getGoal().getName(), habit.getName(), old -> 0);
+			throw e;
+		}
+		updateCachedCounter(habit.getGoal().getName(), habit.getName(), old -> counter);
+		return counter;
+	}
+
+	@Override
+	public void updateCounters(Map<HabitId, Integer> deltas) {
+		delegate.updateCounters(deltas);
+		deltas.forEach((habitId, delta) -> updateCachedCounter(habitId.getGoalName(), habitId.getName(),
+				old -> old + delta));
+	}
+
+	/**
+	 * Invalidates the goals changed by other clients, or everything on a
+	 * resync.
+	 */
+	@Override
+	public void changed(List<RepositoryChange> changes) {
+		if (changes.contains(RepositoryChange.resync())) {
+			synchronized (this) {
+				generation++;
+				goals.clear();
+				clearLists();
+			}
+			return;
+		}
+		invalidate(changes.stream().map(RepositoryChange::getGoalName).collect(Collectors.toSet()));
+	}
+
+	@Override
+	public void close() {
+		LOGGER.info(() -> "Goal cache statistics: " + getStatistics());
+		delegate.close();
+	}
+
+	private void invalidate(String goalName) {
+		invalidate(Collections.singletonList(goalName));
+	}
+
+	private synchronized void invalidate(Collection<String> goalNames) {
+		generation++;
+		goalNames.forEach(goals::remove);
+		// goals added or deleted change the lists
+		clearLists();
+	}
+
+	private void clearLists() {
+		pages.clear();
+		pagedNames = 0;
+		allGoalNames = null;
+	}
+
+	private synchronized void updateCachedCounter(String goalName, String habitName, IntUnaryOperator update) {
+		// counter writes must not make a concurrent load cache a value from before them
+		generation++;
+		CachedGoal cached = goals.get(goalName);
+		if (cached != null) {
+			updateHabit(cached.goal, habitName, update);
+		}
+	}
+
+	private static void updateHabit(Goal goal, String habitName, IntUnaryOperator update) {
+		for (Habit habit : goal.getHabits()) {
+			if (habit.getName().equals(habitName)) {
+				habit.setCounter(update.applyAsInt(habit.getCounter()));
+				return;
+			}
+		}
+	}
+
+	private boolean isExpired(long loadedAt) {
+		return ttlNanos > 0 && nanoTime.getAsLong() - loadedAt >= ttlNanos;
+	}
+
+	private static class CachedGoal {
+		private final Goal goal;
+		private final long loadedAt;
+
+		CachedGoal(Goal goal, long loadedAt) {
+			this.goal = goal;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private static class CachedNames {
+		private final List<String> names;
+		private final long loadedAt;
+
+		CachedNames(List<Goal> goals, long loadedAt) {
+			this.names = goals.stream().map(Goal::getName).collect(Collectors.toList());
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private static class PageKey {
+		private final String afterName;
+		private final int pageSize;
+
+		PageKey(String afterName, int pageSize) {
+			this.afterName = afterName;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PageKey)) {
+				return false;
+			}
+			PageKey other = (PageKey) obj;
+			return Objects.equals(afterName, other.afterName) && pageSize == other.pageSize;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(afterName, pageSize);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package com.aptproject.goaltracker.repository.change;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.aptproject.goaltracker.repository.change.RepositoryChange.Type;
+
+/**
+ * Stream of the changes given to {@link #publish(RepositoryChange)}, e.g. by
+ * tests or by a subclass reading them from the database. The first change of
+ * a batch starts a window of {@code debounceMillis}, after which the listeners
+ * receive the batch at once, coalesced: a goal or habit is notified once,
+ * with only the changes that still matter, e.g. many counter changes of a
+ * habit become one, and the changes of the habits of a goal that was added or
+ * removed are dropped.
+ */
+public class CoalescingChangeStream implements RepositoryChangeStream {
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	private static final Logger LOGGER = Logger.getLogger(CoalescingChangeStream.class.getName());
+
+	private final long debounceMillis;
+	private final List<RepositoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "repository-changes");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/* guarded by this, like resync, flushScheduled and the writes of closed */
+	private Map<String, PendingGoal> pending = new LinkedHashMap<>();
+	private boolean resync;
+	private boolean flushScheduled;
+	private volatile boolean closed;
+
+	public CoalescingChangeStream(long debounceMillis) {
+		this.debounceMillis = debounceMillis;
+	}
+
+	@Override
+	public void addListener(RepositoryChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	public synchronized void publish(RepositoryChange change) {
+		if (closed) {
+			return;
+		}
+		coalesce(change);
+		if (!flushScheduled) {
+			flushScheduled = true;
+			publisher.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void coalesce(RepositoryChange change) {
+		if (change.getType() == Type.RESYNC) {
+			resync = true;
+			pending.clear();
+			return;
+		}
+		if (resync) {
+			return;
+		}
+		PendingGoal goal = pending.computeIfAbsent(change.getGoalName(), name -> new PendingGoal());
+		if (change.getHabitName() == null) {
+			goal.changes = merge(goal.changes, change.getType());
+			// the goal is reloaded, or gone, with all of its habits
+			goal.habitChanges.clear();
+		} else if (goal.changes.isEmpty()) {
+			goal.habitChanges.put(change.getHabitName(),
+					merge(goal.habitChanges.getOrDefault(change.getHabitName(), Collections.emptyList()),
+							change.getType()));
+		}
+	}
+
+	/**
+	 * A removal hides the previous changes, while a removal followed by an
+	 * addition must be notified as both, so that receivers drop what they hold
+	 * before loading the new state.
+	 */
+	private static List<Type> merge(List<Type> changes, Type change) {
+		switch (change) {
+		case GOAL_REMOVED:
+		case HABIT_REMOVED:
+			return Collections.singletonList(change);
+		case GOAL_ADDED:
+			return changes.contains(Type.GOAL_REMOVED) ? Arrays.asList(Type.GOAL_REMOVED, change)
+					: Collections.singletonList(change);
+		case HABIT_ADDED:
+			return changes.contains(Type.HABIT_REMOVED) ? Arrays.asList(Type.HABIT_REMOVED, change)
+					: Collections.singletonList(change);
+		default:
+			// an added habit is loaded with its current counter anyway
+			return changes.isEmpty() ? Collections.singletonList(change) : changes;
+		}
+	}
+
+	private void flush() {
+		List<RepositoryChange> changes = new ArrayList<>();
+		synchronized (this) {
+			flushScheduled = false;
+			if (resync) {
+				changes.add(RepositoryChange.resync());
+			}
+			pending.forEach((goalName, goal) -> {
+				goal.changes.forEach(type -> changes.add(goalChange(type, goalName)));
+				goal.habitChanges.forEach((habitName, types) -> types
+						.forEach(type -> changes.add(habitChange(type, goalName, habitName))));
+			});
+			pending = new LinkedHashMap<>();
+			resync = false;
+		}
+		for (RepositoryChangeListener listener : listeners) {
+			try {
+				listener.changed(changes);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Repository changes not applied by " + listener, e);
+			}
+		}
+	}
+
+	private static RepositoryChange goalChange(Type type, String goalName) {
+		return type == Type.GOAL_ADDED ? RepositoryChange.goalAdded(goalName) : RepositoryChange.goalRemoved(goalName);
+	}
+
+	private static RepositoryChange habitChange(Type type, String goalName, String habitName) {
+		switch (type) {
+		case HABIT_ADDED:
+			return RepositoryChange.habitAdded(goalName, habitName);
+		case HABIT_REMOVED:
+			return RepositoryChange.habitRemoved(goalName, habitName);
+		default:
+			return RepositoryChange.counterChanged(goalName, habitName);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Stops notifying; the changes not notified yet are dropped.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		publisher.shutdownNow();
+	}
+
+	private static final class PendingGoal {
+		private List<Type> changes = Collections.emptyList();
+		private final Map<String, List<Type>> habitChanges = new LinkedHashMap<>();
+	}
+}
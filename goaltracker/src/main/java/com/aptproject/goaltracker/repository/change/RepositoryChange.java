@@ -0,0 +1,90 @@
+package com.aptproject.goaltracker.repository.change;
+
+import java.util.Objects;
+
+/**
+ * A change of the stored goals made by another client, identified only by
+ * names: the receivers load whatever state they need.
+ */
+public final class RepositoryChange {
+
+	public enum Type {
+		GOAL_ADDED, GOAL_REMOVED, HABIT_ADDED, HABIT_REMOVED, COUNTER_CHANGED,
+		/** Changes may have been missed, e.g. while reconnecting: everything must be reloaded. */
+		RESYNC
+	}
+
+	private static final RepositoryChange RESYNC = new RepositoryChange(Type.RESYNC, null, null);
+
+	private final Type type;
+
+	private final String goalName;
+
+	private final String habitName;
+
+	private RepositoryChange(Type type, String goalName, String habitName) {
+		this.type = type;
+		this.goalName = goalName;
+		this.habitName = habitName;
+	}
+
+	public static RepositoryChange goalAdded(String goalName) {
+		return new RepositoryChange(Type.GOAL_ADDED, goalName, null);
+	}
+
+	public static RepositoryChange goalRemoved(String goalName) {
+		return new RepositoryChange(Type.GOAL_REMOVED, goalName, null);
+	}
+
+	public static RepositoryChange habitAdded(String goalName, String habitName) {
+		return new RepositoryChange(Type.HABIT_ADDED, goalName, habitName);
+	}
+
+	public static RepositoryChange habitRemoved(String goalName, String habitName) {
+		return new RepositoryChange(Type.HABIT_REMOVED, goalName, habitName);
+	}
+
+	public static RepositoryChange counterChanged(String goalName, String habitName) {
+		return new RepositoryChange(Type.COUNTER_CHANGED, goalName, habitName);
+	}
+
+	public static RepositoryChange resync() {
+		return RESYNC;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getGoalName() {
+		return goalName;
+	}
+
+	/**
+	 * The habit changed, null for changes of a whole goal.
+	 */
+	public String getHabitName() {
+		return habitName;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(type, goalName, habitName);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof RepositoryChange))
+			return false;
+		RepositoryChange other = (RepositoryChange) obj;
+		return type == other.type && Objects.equals(goalName, other.goalName)
+				&& Objects.equals(habitName, other.habitName);
+	}
+
+	@Override
+	public String toString() {
+		return habitName == null ? type + " " + goalName : type + " " + goalName + "/" + habitName;
+	}
+}
@@ -0,0 +1,12 @@
+package com.aptproject.goaltracker.repository.change;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface RepositoryChangeListener {
+	/**
+	 * Receives the changes published since the previous call, already
+	 * coalesced, in the order they were first published.
+	 */
+	public void changed(List<RepositoryChange> changes);
+}
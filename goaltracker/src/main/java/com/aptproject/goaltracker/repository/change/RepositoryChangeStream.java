@@ -0,0 +1,16 @@
+package com.aptproject.goaltracker.repository.change;
+
+/**
+ * Notifies the changes of the stored goals made by other clients, so that
+ * views can follow them without reloading everything.
+ */
+public interface RepositoryChangeStream extends AutoCloseable {
+	/**
+	 * Listeners are called one at a time, in the order they were added, on a
+	 * thread of the stream.
+	 */
+	public void addListener(RepositoryChangeListener listener);
+
+	@Override
+	public void close();
+}
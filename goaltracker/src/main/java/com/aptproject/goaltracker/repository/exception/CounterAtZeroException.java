@@ -0,0 +1,17 @@
+package com.aptproject.goaltracker.repository.exception;
+
+import com.aptproject.goaltracker.model.Habit;
+
+/**
+ * A decrement found the stored counter of a habit already equal to zero,
+ * whatever counter the habit it was given still showed. Unchecked, like
+ * {@link GoalConflictException}: nothing was changed.
+ */
+public class CounterAtZeroException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CounterAtZeroException(Habit habit) {
+		super("The counter of the habit " + habit.getName() + " is already zero");
+	}
+}
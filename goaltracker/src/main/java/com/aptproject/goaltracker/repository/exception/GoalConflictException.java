@@ -0,0 +1,18 @@
+package com.aptproject.goaltracker.repository.exception;
+
+import com.aptproject.goaltracker.model.Goal;
+
+/**
+ * A change of a goal, or of its habits, kept conflicting with concurrent
+ * changes of other clients and was given up after retrying it. Unchecked,
+ * like the optimistic locking failures it stands for: nothing was changed and
+ * the same operation can be tried again.
+ */
+public class GoalConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public GoalConflictException(Goal goal, Throwable cause) {
+		super("The goal " + goal.getName() + " was changed by someone else at the same time, try again", cause);
+	}
+}
@@ -0,0 +1,710 @@
+package com.aptproject.goaltracker.repository.file;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+/**
+ * Repository for deployments without a database: every change is appended as
+ * a record to a log in a memory-mapped file, while the goals are kept in
+ * memory, indexed like {@link com.aptproject.goaltracker.repository.memory.InMemoryModelRepository},
+ * and rebuilt by replaying the log when the repository is opened. A counter
+ * change is a fixed-size record of the habit id and the delta, written
+ * straight into the mapped file.
+ * <p>
+ * Each record starts with its length, written after the rest of the record:
+ * a record torn by a crash of the process reads as the end of the log and is
+ * dropped when the log is opened again. Records reach the disk when the
+ * operating system writes the mapped pages back, or at the latest on
+ * {@link #close()} and {@link #compact()}. Compacting rewrites the log with
+ * one record per goal, holding its habits and their counters. A lock file
+ * keeps other processes from opening the same log.
+ */
+public class MappedFileModelRepository implements ModelRepository {
+
+	static final int MAGIC = 0x47544c47;
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	private static final byte GOAL_ADDED = 1;
+	private static final byte GOAL_REMOVED = 2;
+	private static final byte HABIT_ADDED = 3;
+	private static final byte HABIT_REMOVED = 4;
+	private static final byte COUNTER_CHANGED = 5;
+	// type, habit id and delta
+	private static final int COUNTER_RECORD_LENGTH = 1 + 8 + 4;
+
+	private static final int MIN_MAPPED_SIZE = 1 << 20;
+
+	private static final Logger LOGGER = Logger.getLogger(MappedFileModelRepository.class.getName());
+
+	private final ConcurrentNavigableMap<String, Goal> goals = new ConcurrentSkipListMap<>();
+	private final ConcurrentMap<HabitId, Habit> habits = new ConcurrentHashMap<>();
+
+	private final Path file;
+	private final FileChannel lockChannel;
+	private final FileLock fileLock;
+	// guards the log and the changes of the indexes, which readers only see through the stored goals
+	private final Object writes = new Object();
+	private FileChannel channel;
+	private MappedByteBuffer log;
+	private int end;
+	private int compactedEnd;
+	private long nextHabitId = 1;
+	private boolean closed;
+	private ScheduledExecutorService compactor;
+
+	/**
+	 * Opens the log stored in {@code file}, creating it and its directories if
+	 * missing, and replays it.
+	 *
+	 * @throws IOException if the file cannot be read, is not a log or is
+	 *                     opened by another process
+	 */
+	public MappedFileModelRepository(Path file) throws IOException {
+		this.file = file.toAbsolutePath();
+		Path directory = this.file.getParent();
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		lockChannel = FileChannel.open(lockFile(this.file), CREATE, WRITE);
+		try {
+			fileLock = lockChannel.tryLock();
+			if (fileLock == null) {
+				throw new IOException("The log " + this.file + " is opened by another process");
+			}
+		} catch (OverlappingFileLockException e) {
+			lockChannel.close();
+			throw new IOException("The log " + this.file + " is already opened", e);
+		} catch (IOException e) {
+			lockChannel.close();
+			throw e;
+		}
+		try {
+			open();
+		} catch (IOException | RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	/**
+	 * {@code goaltracker.log} in the {@code .goaltracker} directory of the user
+	 * home.
+	 */
+	public static Path defaultFile() {
+		return Paths.get(System.getProperty("user.home"), ".goaltracker", "goaltracker.log");
+	}
+
+	private static Path lockFile(Path file) {
+		return file.resolveSibling(file.getFileName() + ".lock");
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(file, CREATE, READ, WRITE);
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("The log " + file + " is too large to be mapped");
+		}
+		log = channel.map(MapMode.READ_WRITE, 0, Math.max(MIN_MAPPED_SIZE, size));
+		if (size == 0) {
+			log.putInt(0, MAGIC);
+			log.putInt(4, FORMAT_VERSION);
+			end = HEADER_SIZE;
+		} else if (size < HEADER_SIZE || log.getInt(0) != MAGIC || log.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("The file " + file + " is not a goal tracker log");
+		} else {
+			replay();
+		}
+		compactedEnd = end;
+	}
+
+	private void replay() {
+		Map<Long, Habit> habitsById = new HashMap<>();
+		int position = HEADER_SIZE;
+		int records = 0;
+		while (position + 4 <= log.capacity()) {
+			int length = log.getInt(position);
+			if (length == 0) {
+				break;
+			}
+			if (length < 0 || length > log.capacity() - position - 4) {
+				LOGGER.warning("Invalid record at " + position + " of " + file + ", the log ends there");
+				break;
+			}
+			try {
+				replay(region(position + 4, length), habitsById);
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				LOGGER.log(Level.WARNING, "Invalid record at " + position + " of " + file + ", the log ends there", e);
+				break;
+			}
+			position += 4 + length;
+			records++;
+		}
+		end = position;
+		// what follows the end, e.g. a torn record, must not be read as part of the next records
+		ByteBuffer tail = region(end, log.capacity() - end);
+		while (tail.hasRemaining()) {
+			tail.put((byte) 0);
+		}
+		int replayed = records;
+		LOGGER.fine(() -> "Replayed " + replayed + " records of " + file);
+	}
+
+	private void replay(ByteBuffer record, Map<Long, Habit> habitsById) {
+		byte type = record.get();
+		switch (type) {
+		case GOAL_ADDED: {
+			Goal goal = new Goal(readString(record));
+			int habitCount = record.getInt();
+			for (int i = 0; i < habitCount; i++) {
+				Habit habit = new Habit();
+				habit.setId(record.getLong());
+				habit.setCounter(record.getInt());
+				habit.setName(readString(record));
+				goal.addHabit(habit);
+			}
+			Goal replaced = goals.put(goal.getName(), goal);
+			if (replaced != null) {
+				unregister(replaced, habitsById);
+			}
+			for (Habit habit : goal.getHabits()) {
+				register(habit, habitsById);
+			}
+			break;
+		}
+		case GOAL_REMOVED: {
+			Goal removed = goals.remove(readString(record));
+			if (removed != null) {
+				unregister(removed, habitsById);
+			}
+			break;
+		}
+		case HABIT_ADDED: {
+			Habit habit = new Habit();
+			habit.setId(record.getLong());
+			habit.setCounter(record.getInt());
+			String goalName = readString(record);
+			habit.setName(readString(record));
+			goals.computeIfAbsent(goalName, Goal::new).addHabit(habit);
+			register(habit, habitsById);
+			break;
+		}
+		case HABIT_REMOVED: {
+			Habit habit = habitsById.remove(record.getLong());
+			if (habit != null) {
+				habits.remove(habit.getHabitId());
+				habit.getGoal().removeHabit(habit);
+			}
+			break;
+		}
+		case COUNTER_CHANGED: {
+			Habit habit = habitsById.get(record.getLong());
+			int delta = record.getInt();
+			if (habit != null) {
+				habit.setCounter(habit.getCounter() + delta);
+			}
+			break;
+		}
+		default:
+			throw new IllegalArgumentException("Unknown record type " + type);
+		}
+	}
+
+	private void register(Habit habit, Map<Long, Habit> habitsById) {
+		habits.put(habit.getHabitId(), habit);
+		habitsById.put(habit.getId(), habit);
+		nextHabitId = Math.max(nextHabitId, habit.getId() + 1);
+	}
+
+	private void unregister(Goal goal, Map<Long, Habit> habitsById) {
+		for (Habit habit : goal.getHabits()) {
+			habits.remove(habit.getHabitId());
+			habitsById.remove(habit.getId());
+		}
+	}
+
+	@Override
+	public List<Goal> findAllGoals() {
+		return goals.values().stream().map(MappedFileModelRepository::copyOf).collect(Collectors.toList());
+	}
+
+	@Override
+	public List<Goal> findGoalsPage(String afterName, int pageSize) {
+		Map<String, Goal> page = afterName == null ? goals : goals.tailMap(afterName, false);
+		return page.values().stream().limit(pageSize).map(MappedFileModelRepository::copyOf)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<Goal> streamAllGoals() {
+		return goals.values().stream().map(MappedFileModelRepository::copyOf);
+	}
+
+	@Override
+	public Goal findGoalByName(String name) {
+		Goal goal = goals.get(name);
+		return goal == null ? null : copyOf(goal);
+	}
+
+	@Override
+	public List<Goal> findGoalsByNames(Collection<String> names) {
+		return new TreeSet<>(names).stream().map(goals::get).filter(Objects::nonNull)
+				.map(MappedFileModelRepository::copyOf).collect(Collectors.toList());
+	}
+
+	@Override
+	public void addGoal(Goal goal) throws GoalExistsException {
+		synchronized (writes) {
+			checkOpen();
+			if (goals.containsKey(goal.getName())) {
+				throw new GoalExistsException(goal);
+			}
+			Goal stored = storedCopyOf(goal);
+			append(goalAddedRecord(stored));
+			store(stored);
+		}
+	}
+
+	/**
+	 * The records of all the goals are appended together, after checking that
+	 * none of them exists.
+	 */
+	@Override
+	public void addGoals(List<Goal> goals) throws GoalExistsException {
+		synchronized (writes) {
+			checkOpen();
+			Set<String> names = new HashSet<>();
+			for (Goal goal : goals) {
+				if (this.goals.containsKey(goal.getName()) || !names.add(goal.getName())) {
+					throw new GoalExistsException(goal);
+				}
+			}
+			List<Goal> stored = new ArrayList<>();
+			List<ByteBuffer> records = new ArrayList<>();
+			int length = 0;
+			for (Goal goal : goals) {
+				Goal copy = storedCopyOf(goal);
+				ByteBuffer record = goalAddedRecord(copy);
+				stored.add(copy);
+				records.add(record);
+				length += record.remaining();
+			}
+			ensureCapacity(length);
+			records.forEach(this::append);
+			stored.forEach(this::store);
+		}
+	}
+
+	@Override
+	public void deleteGoal(Goal goal) throws GoalNotExistsException {
+		synchronized (writes) {
+			checkOpen();
+			Goal stored = goals.get(goal.getName());
+			if (stored == null) {
+				throw new GoalNotExistsException(goal);
+			}
+			append(goalRemovedRecord(goal.getName()));
+			synchronized (stored) {
+				goals.remove(goal.getName());
+				stored.getHabits().forEach(habit -> habits.remove(habit.getHabitId()));
+			}
+		}
+	}
+
+	@Override
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+		synchronized (writes) {
+			checkOpen();
+			if (habits.containsKey(HabitId.of(goal.getName(), habit.getName()))) {
+				throw new HabitExistsException(habit);
+			}
+			Habit storedHabit = new Habit(habit.getName());
+			storedHabit.setId(nextHabitId);
+			storedHabit.setCounter(habit.getCounter());
+			append(habitAddedRecord(goal.getName(), storedHabit));
+			nextHabitId++;
+			// like a JPA merge, adding a habit to a goal that is not stored yet stores the goal too
+			Goal stored = goals.computeIfAbsent(goal.getName(), Goal::new);
+			synchronized (stored) {
+				stored.addHabit(storedHabit);
+				habits.put(storedHabit.getHabitId(), storedHabit);
+			}
+		}
+		goal.addHabit(habit);
+	}
+
+	@Override
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
+		synchronized (writes) {
+			checkOpen();
+			Habit storedHabit = habits.get(HabitId.of(goal.getName(), habit.getName()));
+			if (storedHabit == null) {
+				throw new HabitNotExistsException(habit);
+			}
+			append(habitRemovedRecord(storedHabit.getId()));
+			Goal stored = storedHabit.getGoal();
+			synchronized (stored) {
+				habits.remove(storedHabit.getHabitId());
+				stored.removeHabit(storedHabit);
+			}
+		}
+		goal.removeHabit(habit);
+	}
+
+	@Override
+	public int incrementCounter(Habit habit) {
+		return updateCounter(habit.getHabitId(), 1, false);
+	}
+
+	@Override
+	public int decrementCounter(Habit habit) {
+		return updateCounter(habit.getHabitId(), -1, true);
+	}
+
+	@Override
+	public void updateCounters(Map<HabitId, Integer> deltas) {
+		synchronized (writes) {
+			checkOpen();
+			ensureCapacity(deltas.size() * (4 + COUNTER_RECORD_LENGTH));
+			deltas.forEach((habitId, delta) -> {
+				Habit stored = habits.get(habitId);
+				if (stored != null && delta != 0) {
+					appendCounterChange(stored, delta);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Counters only change while holding the write lock, so a floored delta
+	 * checks the counter it changes: if that would go below zero, nothing is
+	 * written.
+	 */
+	private int updateCounter(HabitId habitId, int delta, boolean floored) {
+		synchronized (writes) {
+			checkOpen();
+			Habit stored = habits.get(habitId);
+			if (stored == null) {
+				throw new IllegalStateException("The habit " + habitId.getName() + " does not exists");
+			}
+			if (floored && stored.getCounter() + delta < 0) {
+				throw new CounterAtZeroException(stored);
+			}
+			ensureCapacity(4 + COUNTER_RECORD_LENGTH);
+			return appendCounterChange(stored, delta);
+		}
+	}
+
+	/**
+	 * Writes the record in place, the capacity for it must have been ensured.
+	 */
+	private int appendCounterChange(Habit stored, int delta) {
+		int position = end;
+		log.put(position + 4, COUNTER_CHANGED);
+		log.putLong(position + 5, stored.getId());
+		log.putInt(position + 13, delta);
+		log.putInt(position, COUNTER_RECORD_LENGTH);
+		end = position + 4 + COUNTER_RECORD_LENGTH;
+		synchronized (stored.getGoal()) {
+			stored.setCounter(stored.getCounter() + delta);
+			return stored.getCounter();
+		}
+	}
+
+	/**
+	 * Rewrites the log with a record per goal into a new file, which then
+	 * replaces the log, so that the log is never left incomplete.
+	 *
+	 * @throws UncheckedIOException if the new log cannot be written, the
+	 *                              current one is kept
+	 */
+	public void compact() {
+		synchronized (writes) {
+			checkOpen();
+			Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+			try {
+				int size = HEADER_SIZE;
+				try (FileChannel out = FileChannel.open(compacted, CREATE, TRUNCATE_EXISTING, WRITE)) {
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+					((Buffer) header).flip();
+					writeFully(out, header);
+					for (Goal goal : goals.values()) {
+						ByteBuffer record;
+						synchronized (goal) {
+							record = goalAddedRecord(goal);
+						}
+						size += record.remaining();
+						writeFully(out, record);
+					}
+					out.force(true);
+				}
+				Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				FileChannel previous = channel;
+				channel = FileChannel.open(file, READ, WRITE);
+				log = channel.map(MapMode.READ_WRITE, 0, Math.max(MIN_MAPPED_SIZE, 2L * size));
+				previous.close();
+				int compactedSize = size;
+				LOGGER.fine(() -> "Log " + file + " compacted from " + end + " to " + compactedSize + " bytes");
+				end = size;
+				compactedEnd = size;
+			} catch (IOException e) {
+				throw new UncheckedIOException("The log " + file + " could not be compacted", e);
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * Every {@code intervalMillis} until the repository is closed, compacts the
+	 * log if it at least doubled since it was opened or last compacted.
+	 */
+	public synchronized void scheduleCompactions(long intervalMillis) {
+		if (compactor == null) {
+			compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "log-compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		compactor.scheduleWithFixedDelay(() -> {
+			try {
+				boolean grown;
+				synchronized (writes) {
+					grown = !closed && end >= 2L * compactedEnd;
+				}
+				if (grown) {
+					compact();
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Log compaction failed, it will be retried", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * The bytes of the log in use, header included.
+	 */
+	public int getLogSize() {
+		synchronized (writes) {
+			return end;
+		}
+	}
+
+	/**
+	 * Writes the log to the disk and releases the file, the repository is then
+	 * empty.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (compactor != null) {
+				compactor.shutdownNow();
+			}
+		}
+		synchronized (writes) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				log.force();
+			} catch (UncheckedIOException e) {
+				LOGGER.log(Level.WARNING, "The log " + file + " could not be written to the disk", e);
+			}
+			release();
+			goals.clear();
+			habits.clear();
+		}
+	}
+
+	private void release() {
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+			fileLock.release();
+			lockChannel.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "The log " + file + " was not released", e);
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("The repository is closed");
+		}
+	}
+
+	private Goal storedCopyOf(Goal goal) {
+		Goal copy = goal.copy();
+		long id = nextHabitId;
+		for (Habit habit : copy.getHabits()) {
+			habit.setId(id++);
+		}
+		return copy;
+	}
+
+	private void store(Goal stored) {
+		goals.put(stored.getName(), stored);
+		stored.getHabits().forEach(habit -> habits.put(habit.getHabitId(), habit));
+		nextHabitId += stored.getHabits().size();
+	}
+
+	private static Goal copyOf(Goal goal) {
+		synchronized (goal) {
+			return goal.copy();
+		}
+	}
+
+	/**
+	 * Grows the mapping, and the file, so that {@code length} more bytes fit.
+	 */
+	private void ensureCapacity(int length) {
+		if ((long) end + length <= log.capacity()) {
+			return;
+		}
+		long size = Math.max(2L * log.capacity(), (long) end + length);
+		if (size > Integer.MAX_VALUE) {
+			size = Integer.MAX_VALUE;
+			if ((long) end + length > size) {
+				throw new IllegalStateException("The log " + file + " is full and must be compacted");
+			}
+		}
+		try {
+			log = channel.map(MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException("The log " + file + " could not grow", e);
+		}
+	}
+
+	/**
+	 * Copies a record made by one of the {@code ...Record} methods to the end of
+	 * the log, its length last.
+	 */
+	private void append(ByteBuffer record) {
+		int length = record.remaining();
+		ensureCapacity(length);
+		ByteBuffer out = region(end + 4, length - 4);
+		((Buffer) record).position(4);
+		out.put(record);
+		log.putInt(end, length - 4);
+		end += length;
+	}
+
+	private ByteBuffer region(int position, int length) {
+		ByteBuffer region = log.duplicate();
+		((Buffer) region).position(position);
+		((Buffer) region).limit(position + length);
+		return region.slice();
+	}
+
+	private static ByteBuffer goalAddedRecord(Goal goal) {
+		byte[] name = goal.getName().getBytes(StandardCharsets.UTF_8);
+		List<byte[]> habitNames = new ArrayList<>();
+		int length = 1 + 4 + name.length + 4;
+		for (Habit habit : goal.getHabits()) {
+			byte[] habitName = habit.getName().getBytes(StandardCharsets.UTF_8);
+			habitNames.add(habitName);
+			length += 8 + 4 + 4 + habitName.length;
+		}
+		ByteBuffer record = newRecord(length).put(GOAL_ADDED);
+		putString(record, name).putInt(goal.getHabits().size());
+		for (int i = 0; i < habitNames.size(); i++) {
+			Habit habit = goal.getHabits().get(i);
+			record.putLong(habit.getId()).putInt(habit.getCounter());
+			putString(record, habitNames.get(i));
+		}
+		return flip(record);
+	}
+
+	private static ByteBuffer goalRemovedRecord(String goalName) {
+		byte[] name = goalName.getBytes(StandardCharsets.UTF_8);
+		return flip(putString(newRecord(1 + 4 + name.length).put(GOAL_REMOVED), name));
+	}
+
+	private static ByteBuffer habitAddedRecord(String goalName, Habit habit) {
+		byte[] goal = goalName.getBytes(StandardCharsets.UTF_8);
+		byte[] name = habit.getName().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = newRecord(1 + 8 + 4 + 4 + goal.length + 4 + name.length).put(HABIT_ADDED)
+				.putLong(habit.getId()).putInt(habit.getCounter());
+		return flip(putString(putString(record, goal), name));
+	}
+
+	private static ByteBuffer habitRemovedRecord(long habitId) {
+		return flip(newRecord(1 + 8).put(HABIT_REMOVED).putLong(habitId));
+	}
+
+	private static ByteBuffer newRecord(int length) {
+		return ByteBuffer.allocate(4 + length).putInt(length);
+	}
+
+	private static ByteBuffer flip(ByteBuffer record) {
+		((Buffer) record).flip();
+		return record;
+	}
+
+	private static ByteBuffer putString(ByteBuffer record, byte[] value) {
+		return record.putInt(value.length).put(value);
+	}
+
+	private static String readString(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0 || length > record.remaining()) {
+			throw new IllegalArgumentException("Invalid string length " + length);
+		}
+		byte[] value = new byte[length];
+		record.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,209 @@
+package com.aptproject.goaltracker.repository.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+/**
+ * Repository that keeps everything in memory, indexed by goal name and by
+ * {@link HabitId}. Like {@link com.aptproject.goaltracker.repository.postgres.PostgresModelRepository}
+ * it hands out copies of the stored entities, so callers never share state
+ * with the store or with each other. Changes to the habits of a goal, and
+ * to their counters, are serialized on the stored goal.
+ */
+public class InMemoryModelRepository implements ModelRepository {
+
+	private final ConcurrentNavigableMap<String, Goal> goals = new ConcurrentSkipListMap<>();
+	private final ConcurrentMap<HabitId, Habit> habits = new ConcurrentHashMap<>();
+
+	@Override
+	public List<Goal> findAllGoals() {
+		return goals.values().stream().map(InMemoryModelRepository::copyOf).collect(Collectors.toList());
+	}
+
+	@Override
+	public List<Goal> findGoalsPage(String afterName, int pageSize) {
+		Map<String, Goal> page = afterName == null ? goals : goals.tailMap(afterName, false);
+		return page.values().stream().limit(pageSize).map(InMemoryModelRepository::copyOf)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<Goal> streamAllGoals() {
+		return goals.values().stream().map(InMemoryModelRepository::copyOf);
+	}
+
+	@Override
+	public Goal findGoalByName(String name) {
+		Goal goal = goals.get(name);
+		return goal == null ? null : copyOf(goal);
+	}
+
+	@Override
+	public List<Goal> findGoalsByNames(Collection<String> names) {
+		return new TreeSet<>(names).stream().map(goals::get).filter(Objects::nonNull)
+				.map(InMemoryModelRepository::copyOf).collect(Collectors.toList());
+	}
+
+	@Override
+	public void addGoal(Goal goal) throws GoalExistsException {
+		Goal stored = copyOf(goal);
+		synchronized (stored) {
+			if (goals.putIfAbsent(goal.getName(), stored) != null) {
+				throw new GoalExistsException(goal);
+			}
+			stored.getHabits().forEach(habit -> habits.put(habit.getHabitId(), habit));
+		}
+	}
+
+	@Override
+	public void addGoals(List<Goal> goals) throws GoalExistsException {
+		List<Goal> added = new ArrayList<>();
+		try {
+			for (Goal goal : goals) {
+				addGoal(goal);
+				added.add(goal);
+			}
+		} catch (GoalExistsException e) {
+			for (Goal goal : added) {
+				try {
+					deleteGoal(goal);
+				} catch (GoalNotExistsException deleted) {
+					// already deleted by someone else
+				}
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteGoal(Goal goal) throws GoalNotExistsException {
+		Goal stored = goals.get(goal.getName());
+		if (stored == null) {
+			throw new GoalNotExistsException(goal);
+		}
+		synchronized (stored) {
+			if (!goals.remove(goal.getName(), stored)) {
+				throw new GoalNotExistsException(goal);
+			}
+			stored.getHabits().forEach(habit -> habits.remove(habit.getHabitId()));
+		}
+	}
+
+	@Override
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+		while (true) {
+			// like a JPA merge, adding a habit to a goal that is not stored yet stores the goal too
+			Goal stored = goals.computeIfAbsent(goal.getName(), Goal::new);
+			synchronized (stored) {
+				if (goals.get(goal.getName()) != stored) {
+					// deleted in the meantime
+					continue;
+				}
+				HabitId habitId = HabitId.of(stored.getName(), habit.getName());
+				if (habits.containsKey(habitId)) {
+					throw new HabitExistsException(habit);
+				}
+				Habit storedHabit = new Habit(habit.getName());
+				storedHabit.setCounter(habit.getCounter());
+				stored.addHabit(storedHabit);
+				habits.put(habitId, storedHabit);
+			}
+			goal.addHabit(habit);
+			return;
+		}
+	}
+
+	@Override
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
+		Goal stored = goals.get(goal.getName());
+		if (stored == null) {
+			throw new HabitNotExistsException(habit);
+		}
+		synchronized (stored) {
+			Habit storedHabit = habits.remove(HabitId.of(stored.getName(), habit.getName()));
+			if (storedHabit == null) {
+				throw new HabitNotExistsException(habit);
+			}
+			stored.removeHabit(storedHabit);
+		}
+		goal.removeHabit(habit);
+	}
+
+	@Override
+	public int incrementCounter(Habit habit) {
+		return updateCounter(habit.getHabitId(), 1, false);
+	}
+
+	@Override
+	public int decrementCounter(Habit habit) {
+		return updateCounter(habit.getHabitId(), -1, true);
+	}
+
+	@Override
+	public void updateCounters(Map<HabitId, Integer> deltas) {
+		deltas.forEach((habitId, delta) -> applyDelta(habitId, delta, false));
+	}
+
+	private int updateCounter(HabitId habitId, int delta, boolean floored) {
+		Integer counter = applyDelta(habitId, delta, floored);
+		if (counter == null) {
+			throw new IllegalStateException("The habit " + habitId.getName() + " does not exists");
+		}
+		return counter;
+	}
+
+	/**
+	 * Adds the delta to the stored habit under the lock of its goal and
+	 * returns the resulting counter, or null if the habit is not stored, e.g.
+	 * removed meanwhile, which also detaches it from its goal. A floored delta
+	 * that would take the counter below zero changes nothing and throws.
+	 */
+	private Integer applyDelta(HabitId habitId, int delta, boolean floored) {
+		Habit stored = habits.get(habitId);
+		Goal goal = stored == null ? null : stored.getGoal();
+		if (goal == null) {
+			return null;
+		}
+		synchronized (goal) {
+			if (habits.get(habitId) != stored) {
+				return null;
+			}
+			if (floored && stored.getCounter() + delta < 0) {
+				throw new CounterAtZeroException(stored);
+			}
+			stored.setCounter(stored.getCounter() + delta);
+			return stored.getCounter();
+		}
+	}
+
+	@Override
+	public void close() {
+		goals.clear();
+		habits.clear();
+	}
+
+	private static Goal copyOf(Goal goal) {
+		synchronized (goal) {
+			return goal.copy();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The H2 database of the {@value #PERSISTENCE_UNIT} persistence unit,
+ * embedded in the application and stored in a local file, to run without a
+ * PostgreSQL server. H2 runs in its PostgreSQL compatibility mode, so the
+ * schema and the statements of {@link PostgresModelRepository} are the same
+ * on both databases. A file database is locked by the process that opens it.
+ */
+public final class EmbeddedDatabase {
+
+	public static final String PERSISTENCE_UNIT = "EmbeddedPersistenceUnit";
+
+	private static final String SETTINGS = ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH"
+			+ ";LOCK_TIMEOUT=10000";
+
+	private EmbeddedDatabase() {
+	}
+
+	/**
+	 * {@code goaltracker} in the {@code .goaltracker} directory of the user
+	 * home.
+	 */
+	public static Path defaultFile() {
+		return Paths.get(System.getProperty("user.home"), ".goaltracker", "goaltracker");
+	}
+
+	/**
+	 * The database stored in {@code file}, plus the {@code .mv.db} extension
+	 * H2 adds; missing directories are created.
+	 */
+	public static String fileUrl(Path file) {
+		return "jdbc:h2:file:" + file.toAbsolutePath() + SETTINGS;
+	}
+
+	/**
+	 * A database kept in memory as long as a connection to it is open, e.g.
+	 * for tests.
+	 */
+	public static String memoryUrl(String name) {
+		return "jdbc:h2:mem:" + name + SETTINGS;
+	}
+}
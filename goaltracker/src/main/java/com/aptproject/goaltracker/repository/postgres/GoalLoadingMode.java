@@ -0,0 +1,15 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+/**
+ * How {@link PostgresModelRepository} loads the habits of the goals it returns.
+ */
+public enum GoalLoadingMode {
+	/**
+	 * One query for the goals, then one more query for the habits of each goal.
+	 */
+	SELECT,
+	/**
+	 * Goals and their habits are read together in a single fetch join query.
+	 */
+	FETCH_JOIN
+}
@@ -0,0 +1,394 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.postgres.PostgresModelRepository.HabitEventConsumer;
+import com.aptproject.goaltracker.repository.change.CoalescingChangeStream;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Changes made by other clients, received with PostgreSQL {@code LISTEN} on
+ * the channel the triggers of {@value #TRIGGERS_SCRIPT} notify. The script is
+ * run once, on the first connection of the stream, and only changes the
+ * schema unless the current version of the triggers is already installed. A
+ * notification is only sent once its transaction commits. Changes written through connections whose
+ * {@value #INSTANCE_SETTING} setting is the instance id of the stream, see
+ * {@link #instanceSettingSql(String)}, are this client's own and are skipped.
+ * The second-level cache entries of every received change are evicted right
+ * away, before the coalesced change is notified.
+ * <p>
+ * Counter taps are not notified one by one: every counter snapshot notifies
+ * the range of events it folded, see
+ * {@link PostgresModelRepository#snapshotCounters()}, and the stream reads the
+ * events of the other clients in that range from the event log. Their
+ * habits are notified as changed, and the events are handed to the counter
+ * change consumer, if any. Remote counters are thus shown once the next
+ * snapshot of any client folds them.
+ * <p>
+ * The stream holds one connection of the pool while it is open. If it is
+ * lost, the stream reconnects and notifies a
+ * {@link RepositoryChange#resync() resync}, since changes may have been
+ * missed meanwhile.
+ */
+public class PostgresChangeStream extends CoalescingChangeStream {
+
+	public static final String CHANNEL = "goaltracker_changes";
+	public static final String INSTANCE_SETTING = "goaltracker.instance";
+	static final String TRIGGERS_SCRIPT = "/db/change-notifications.sql";
+	static final String COUNTERS_FOLDED = "COUNTERS_FOLDED";
+	private static final String HABITS_ROLE = Goal.class.getName() + ".habits";
+	private static final int POLL_MILLIS = 500;
+	private static final long RECONNECT_MILLIS = 5000;
+	private static final long START_TIMEOUT_MILLIS = 10000;
+
+	private static final Logger LOGGER = Logger.getLogger(PostgresChangeStream.class.getName());
+
+	private final EntityManagerFactory emf;
+	private final String instanceId;
+	private final JsonFactory json = new JsonFactory();
+	private final HabitEventLog eventLog;
+	private final HabitEventConsumer counterChanges;
+	private final CountDownLatch listening = new CountDownLatch(1);
+	private Thread listener;
+	/* only read and written by the listening thread */
+	private boolean triggersInstalled;
+
+	PostgresChangeStream(EntityManagerFactory emf, String instanceId, long debounceMillis) {
+		this(emf, instanceId, debounceMillis, null, null);
+	}
+
+	/**
+	 * @param eventLog       if not null, reads the counter changes of the
+	 *                       snapshots notified, otherwise they are skipped
+	 * @param counterChanges if not null, gets every counter change of the other
+	 *                       clients that is read, e.g. for their statistics
+	 */
+	PostgresChangeStream(EntityManagerFactory emf, String instanceId, long debounceMillis, HabitEventLog eventLog,
+			HabitEventConsumer counterChanges) {
+		super(debounceMillis);
+		this.emf = emf;
+		this.instanceId = instanceId;
+		this.eventLog = eventLog;
+		this.counterChanges = counterChanges;
+	}
+
+	/**
+	 * The events of the log, see
+	 * {@link PostgresModelRepository#replayHabitEvents(long, long, String, HabitEventConsumer)}.
+	 */
+	@FunctionalInterface
+	interface HabitEventLog {
+		public void replay(long afterId, long lastId, String skippedOrigin, HabitEventConsumer consumer);
+	}
+
+	/**
+	 * The statement marking the changes of a connection as made by the
+	 * instance, e.g. for {@code hibernate.hikari.connectionInitSql}.
+	 */
+	public static String instanceSettingSql(String instanceId) {
+		return "SET " + INSTANCE_SETTING + " = '" + instanceId.replace("'", "''") + "'";
+	}
+
+	/**
+	 * Starts the listening thread and waits until it listens, so that the
+	 * changes committed from then on are notified, unless the database does
+	 * not answer in time: the thread then keeps trying to connect.
+	 */
+	void start() {
+		Thread thread = new Thread(this::listen, "repository-change-listener");
+		thread.setDaemon(true);
+		synchronized (this) {
+			listener = thread;
+		}
+		thread.start();
+		try {
+			if (!listening.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				LOGGER.warning("Not listening to changes yet, still connecting");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void listen() {
+		ConnectionProvider connections = emf.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		boolean reconnecting = false;
+		while (!isClosed()) {
+			Connection connection = null;
+			try {
+				connection = connections.getConnection();
+				if (!triggersInstalled) {
+					installTriggers(connection);
+					triggersInstalled = true;
+				}
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LISTEN " + CHANNEL);
+				}
+				listening.countDown();
+				if (reconnecting) {
+					publish(RepositoryChange.resync());
+				}
+				PGConnection pgConnection = connection.unwrap(PGConnection.class);
+				while (!isClosed()) {
+					PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+					if (notifications != null) {
+						for (PGNotification notification : notifications) {
+							received(notification.getParameter());
+						}
+					}
+				}
+			} catch (SQLException | RuntimeException e) {
+				if (isClosed()) {
+					return;
+				}
+				LOGGER.log(Level.WARNING, "Change notifications interrupted, reconnecting in " + RECONNECT_MILLIS + " ms", e);
+				reconnecting = true;
+				sleepBeforeReconnecting();
+			} finally {
+				release(connections, connection);
+			}
+		}
+	}
+
+	/**
+	 * Runs the triggers script, which does nothing once they are installed. A
+	 * failure, e.g. for lack of rights on the tables, is logged and the stream
+	 * listens anyway, since the triggers may have been installed by hand.
+	 */
+	private static void installTriggers(Connection connection) throws SQLException {
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(readTriggersScript());
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			LOGGER.log(Level.WARNING, "Change notification triggers not installed, run " + TRIGGERS_SCRIPT
+					+ " as the owner of the tables unless they already are", e);
+		} catch (RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	private static String readTriggersScript() {
+		try (InputStream in = PostgresChangeStream.class.getResourceAsStream(TRIGGERS_SCRIPT);
+				Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name())) {
+			return scanner.useDelimiter("\\A").next();
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read " + TRIGGERS_SCRIPT, e);
+		}
+	}
+
+	private void sleepBeforeReconnecting() {
+		try {
+			TimeUnit.MILLISECONDS.sleep(RECONNECT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+		}
+	}
+
+	private static void release(ConnectionProvider connections, Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			// the pooled connection must not keep collecting notifications
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("UNLISTEN *");
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "UNLISTEN failed", e);
+		}
+		try {
+			connections.closeConnection(connection);
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Listening connection not released", e);
+		}
+	}
+
+	/**
+	 * Evicts and publishes the change of a notification payload, unless it was
+	 * made by this instance. Payloads that cannot be read are logged and
+	 * skipped.
+	 */
+	void received(String payload) {
+		String origin = null;
+		String type = null;
+		String goalName = null;
+		String habitName = null;
+		Long habitId = null;
+		Long fromEventId = null;
+		Long toEventId = null;
+		try (JsonParser parser = json.createParser(payload)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Not an object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (value == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				switch (field) {
+				case "origin":
+					origin = parser.getText();
+					break;
+				case "change":
+					type = parser.getText();
+					break;
+				case "goal":
+					goalName = parser.getText();
+					break;
+				case "habit":
+					habitName = parser.getText();
+					break;
+				case "habit_id":
+					habitId = parser.getLongValue();
+					break;
+				case "from":
+					fromEventId = parser.getLongValue();
+					break;
+				case "to":
+					toEventId = parser.getLongValue();
+					break;
+				default:
+					parser.skipChildren();
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Change notification not understood: " + payload);
+			return;
+		}
+		if (COUNTERS_FOLDED.equals(type) && fromEventId != null && toEventId != null) {
+			countersFolded(fromEventId, toEventId);
+			return;
+		}
+		if (instanceId.equals(origin) || type == null || goalName == null) {
+			// e.g. counter changes of habits deleted meanwhile have no goal
+			return;
+		}
+		RepositoryChange change;
+		try {
+			change = change(RepositoryChange.Type.valueOf(type), goalName, habitName);
+		} catch (IllegalArgumentException e) {
+			LOGGER.warning(() -> "Change notification not understood: " + payload);
+			return;
+		}
+		evict(change, habitId);
+		publish(change);
+	}
+
+	/**
+	 * Publishes the habits whose counters the other clients changed with the
+	 * events in {@code (fromEventId, toEventId]}, which a snapshot has just
+	 * folded. If the events cannot be read, everything is reloaded.
+	 */
+	private void countersFolded(long fromEventId, long toEventId) {
+		if (eventLog == null) {
+			return;
+		}
+		Set<HabitId> changed = new LinkedHashSet<>();
+		try {
+			eventLog.replay(fromEventId, toEventId, instanceId, (habitId, delta, createdAt) -> {
+				changed.add(habitId);
+				if (counterChanges != null) {
+					counterChanges.accept(habitId, delta, createdAt);
+				}
+			});
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Counter changes not read, reloading", e);
+			publish(RepositoryChange.resync());
+			return;
+		}
+		if (!changed.isEmpty() && emf != null && emf.isOpen()) {
+			// the ids of the habits are not read
+			emf.unwrap(SessionFactory.class).getCache().evictEntityData(Habit.class);
+		}
+		// a flush in between would split the folded range across batches
+		synchronized (this) {
+			for (HabitId habitId : changed) {
+				publish(RepositoryChange.counterChanged(habitId.getGoalName(), habitId.getName()));
+			}
+		}
+	}
+
+	private static RepositoryChange change(RepositoryChange.Type type, String goalName, String habitName) {
+		switch (type) {
+		case GOAL_ADDED:
+			return RepositoryChange.goalAdded(goalName);
+		case GOAL_REMOVED:
+			return RepositoryChange.goalRemoved(goalName);
+		case HABIT_ADDED:
+			return RepositoryChange.habitAdded(goalName, habitName);
+		case HABIT_REMOVED:
+			return RepositoryChange.habitRemoved(goalName, habitName);
+		case COUNTER_CHANGED:
+			return RepositoryChange.counterChanged(goalName, habitName);
+		default:
+			throw new IllegalArgumentException(type.name());
+		}
+	}
+
+	private void evict(RepositoryChange change, Long habitId) {
+		if (emf == null || !emf.isOpen()) {
+			return;
+		}
+		Cache cache = emf.unwrap(SessionFactory.class).getCache();
+		if (habitId != null) {
+			cache.evictEntityData(Habit.class, habitId);
+		}
+		if (change.getType() == RepositoryChange.Type.COUNTER_CHANGED) {
+			return;
+		}
+		// goal versions change with their habits
+		cache.evictEntityData(Goal.class, change.getGoalName());
+		cache.evictCollectionData(HABITS_ROLE, change.getGoalName());
+		if (change.getHabitName() == null) {
+			cache.evictQueryRegion(PostgresModelRepository.GOAL_LIST_CACHE_REGION);
+		}
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		Thread thread;
+		synchronized (this) {
+			thread = listener;
+		}
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join(2L * POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -1,110 +1,944 @@
 package com.aptproject.goaltracker.repository.postgres;
 
+import java.io.PrintWriter;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.CacheRetrieveMode;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.Persistence;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.lock.OptimisticEntityLockException;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
 import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalConflictException;
 import com.aptproject.goaltracker.repository.exception.GoalExistsException;
 import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+import com.aptproject.goaltracker.repository.postgres.sql.InstrumentedConnectionProvider;
+import com.aptproject.goaltracker.repository.postgres.sql.SqlMetrics;
 import com.aptproject.goaltracker.model.HabitId;
 
+/**
+ * JPA based repository. The {@link EntityManagerFactory} is thread safe and
+ * backed by the connection pool configured in persistence.xml, while every
+ * operation uses its own short-lived {@link EntityManager}, so the repository
+ * can be used by several threads at once. Returned entities are detached.
+ * Goals and habits go through the second-level cache when persistence.xml
+ * enables it, and so does the query of {@link #findAllGoals()}. Besides
+ * PostgreSQL, it runs on the {@link EmbeddedDatabase embedded database}.
+ */
 public class PostgresModelRepository implements ModelRepository {
 
-	private EntityManager entityManager;
+	private static final int STREAM_FETCH_SIZE = 500;
+	private static final String EVENT_ID_SEQUENCE = "habit_event_id_seq";
+	private static final long SNAPSHOT_WAIT_MILLIS = 1000;
+	private static final long SNAPSHOT_POLL_MILLIS = 10;
+	private static final String SNAPSHOT_LOCK = "goaltracker_counter_snapshot";
+	static final String GOAL_LIST_CACHE_REGION = "goal-list";
+	static final int DEFAULT_MAX_CONFLICT_ATTEMPTS = 5;
+
+	private static final Logger LOGGER = Logger.getLogger(PostgresModelRepository.class.getName());
+
 	private EntityManagerFactory emf;
+	private GoalLoadingMode goalLoadingMode = GoalLoadingMode.FETCH_JOIN;
+	private ScheduledExecutorService snapshotter;
+	private int maxConflictAttempts = DEFAULT_MAX_CONFLICT_ATTEMPTS;
+	/* appends of this repository share it, snapshots on the embedded database take it exclusively to read the last id */
+	private final ReadWriteLock eventLogLock = new ReentrantReadWriteLock();
 
 	public PostgresModelRepository(String persistenceUnitName) {
-		emf = Persistence.createEntityManagerFactory(persistenceUnitName);
-		entityManager = emf.createEntityManager();
+		this(persistenceUnitName, Collections.emptyMap());
+	}
+
+	/**
+	 * @param properties overrides of the persistence unit properties, e.g. the
+	 *                   connection pool size and timeouts
+	 */
+	public PostgresModelRepository(String persistenceUnitName, Map<String, ?> properties) {
+		this(Persistence.createEntityManagerFactory(persistenceUnitName, properties));
+	}
+
+	public PostgresModelRepository(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	public void setGoalLoadingMode(GoalLoadingMode goalLoadingMode) {
+		this.goalLoadingMode = goalLoadingMode;
 	}
 
 	@Override
 	public List<Goal> findAllGoals() {
-		String jpql = "SELECT g FROM Goal g";
-		TypedQuery<Goal> query = entityManager.createQuery(jpql, Goal.class);
-		return query.getResultList();
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			if (goalLoadingMode == GoalLoadingMode.FETCH_JOIN) {
+				String jpql = "SELECT DISTINCT g FROM Goal g LEFT JOIN FETCH g.habits ORDER BY g.name";
+				TypedQuery<Goal> query = entityManager.createQuery(jpql, Goal.class)
+						.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+				// a cached result only holds the goal ids, whose habits are then
+				// resolved from the cache, or loaded, on first access
+				List<Goal> goals = cacheable(query).getResultList();
+				goals.forEach(goal -> Hibernate.initialize(goal.getHabits()));
+				return goals;
+			}
+			String jpql = "SELECT g FROM Goal g ORDER BY g.name";
+			TypedQuery<Goal> query = entityManager.createQuery(jpql, Goal.class);
+			List<Goal> goals = cacheable(query).getResultList();
+			goals.forEach(goal -> Hibernate.initialize(goal.getHabits()));
+			return goals;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private static <T> TypedQuery<T> cacheable(TypedQuery<T> query) {
+		return query.setHint(QueryHints.HINT_CACHEABLE, true).setHint(QueryHints.HINT_CACHE_REGION,
+				GOAL_LIST_CACHE_REGION);
+	}
+
+	@Override
+	public List<Goal> findGoalsPage(String afterName, int pageSize) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			String keyset = afterName == null ? "" : " WHERE g.name > :after";
+			if (goalLoadingMode == GoalLoadingMode.FETCH_JOIN) {
+				// a fetch join cannot be limited in SQL, so the keys of the page are read first
+				TypedQuery<String> keys = entityManager
+						.createQuery("SELECT g.name FROM Goal g" + keyset + " ORDER BY g.name", String.class)
+						.setMaxResults(pageSize);
+				if (afterName != null) {
+					keys.setParameter("after", afterName);
+				}
+				return findGoalsByNames(entityManager, keys.getResultList());
+			}
+			TypedQuery<Goal> query = entityManager
+					.createQuery("SELECT g FROM Goal g" + keyset + " ORDER BY g.name", Goal.class)
+					.setMaxResults(pageSize);
+			if (afterName != null) {
+				query.setParameter("after", afterName);
+			}
+			List<Goal> goals = query.getResultList();
+			goals.forEach(goal -> Hibernate.initialize(goal.getHabits()));
+			return goals;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Override
+	public Stream<Goal> streamAllGoals() {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			// PostgreSQL only honours the fetch size with a server side cursor inside a transaction
+			entityManager.getTransaction().begin();
+			String jpql = goalLoadingMode == GoalLoadingMode.FETCH_JOIN
+					? "SELECT g FROM Goal g LEFT JOIN FETCH g.habits ORDER BY g.name"
+					: "SELECT g FROM Goal g ORDER BY g.name";
+			return entityManager.createQuery(jpql, Goal.class)
+					.setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+					.setHint(QueryHints.HINT_READONLY, true)
+					.getResultStream()
+					.peek(goal -> {
+						Hibernate.initialize(goal.getHabits());
+						entityManager.detach(goal);
+					})
+					.onClose(() -> {
+						rollback(entityManager);
+						entityManager.close();
+					});
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			entityManager.close();
+			throw e;
+		}
 	}
 
 	@Override
 	public Goal findGoalByName(String name) {
-		return entityManager.find(Goal.class, name);
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			if (goalLoadingMode == GoalLoadingMode.FETCH_JOIN) {
+				String jpql = "SELECT g FROM Goal g LEFT JOIN FETCH g.habits WHERE g.name = :name";
+				List<Goal> goals = entityManager.createQuery(jpql, Goal.class)
+						.setParameter("name", name)
+						.getResultList();
+				return goals.isEmpty() ? null : goals.get(0);
+			}
+			Goal goal = entityManager.find(Goal.class, name);
+			if (goal != null) {
+				Hibernate.initialize(goal.getHabits());
+			}
+			return goal;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Override
+	public List<Goal> findGoalsByNames(Collection<String> names) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			return findGoalsByNames(entityManager, names);
+		} finally {
+			entityManager.close();
+		}
 	}
 
+	private List<Goal> findGoalsByNames(EntityManager entityManager, Collection<String> names) {
+		if (names.isEmpty()) {
+			return new ArrayList<>();
+		}
+		if (goalLoadingMode == GoalLoadingMode.FETCH_JOIN) {
+			String jpql = "SELECT DISTINCT g FROM Goal g LEFT JOIN FETCH g.habits WHERE g.name IN :names ORDER BY g.name";
+			return entityManager.createQuery(jpql, Goal.class)
+					.setParameter("names", names)
+					.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+					.getResultList();
+		}
+		String jpql = "SELECT g FROM Goal g WHERE g.name IN :names ORDER BY g.name";
+		List<Goal> goals = entityManager.createQuery(jpql, Goal.class)
+				.setParameter("names", names)
+				.getResultList();
+		goals.forEach(goal -> Hibernate.initialize(goal.getHabits()));
+		return goals;
+	}
+
+	/**
+	 * Only a goal with the same name, found before the insert or, when another
+	 * client inserted it meanwhile, after the insert failed on the key, is
+	 * reported as existing: other failures are thrown as they are.
+	 */
 	@Override
 	public void addGoal(Goal goal) throws GoalExistsException {
+		addGoals(Collections.singletonList(goal));
+	}
+
+	/**
+	 * Inserts are sent in JDBC batches of {@code hibernate.jdbc.batch_size}
+	 * statements, ordered by entity thanks to {@code hibernate.order_inserts}.
+	 */
+	@Override
+	public void addGoals(List<Goal> goals) throws GoalExistsException {
+		if (goals.isEmpty()) {
+			return;
+		}
+		Set<String> names = new HashSet<>();
+		for (Goal goal : goals) {
+			if (!names.add(goal.getName())) {
+				throw new GoalExistsException(goal);
+			}
+		}
+		EntityManager entityManager = emf.createEntityManager();
 		try {
 			entityManager.getTransaction().begin();
-			entityManager.persist(goal);
+			String existing = findExistingGoalName(entityManager, names);
+			if (existing != null) {
+				rollback(entityManager);
+				throw new GoalExistsException(new Goal(existing));
+			}
+			goals.forEach(entityManager::persist);
 			entityManager.getTransaction().commit();
-		} catch (Exception e) {
-			entityManager.getTransaction().rollback();
-			throw new GoalExistsException(goal);
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			// the ids were generated for rows that were rolled back, and would make
+			// persisting the same habits again fail
+			goals.forEach(goal -> goal.getHabits().forEach(habit -> habit.setId(null)));
+			if (isConstraintViolation(e)) {
+				String inserted = findExistingGoalName(names);
+				if (inserted != null) {
+					throw new GoalExistsException(new Goal(inserted));
+				}
+			}
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private String findExistingGoalName(Collection<String> names) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			return findExistingGoalName(entityManager, names);
+		} finally {
+			entityManager.close();
 		}
+	}
 
+	private static String findExistingGoalName(EntityManager entityManager, Collection<String> names) {
+		List<String> existing = entityManager
+				.createQuery("SELECT g.name FROM Goal g WHERE g.name IN :names", String.class)
+				.setParameter("names", names)
+				.setMaxResults(1)
+				.getResultList();
+		return existing.isEmpty() ? null : existing.get(0);
 	}
 
+	private static boolean isConstraintViolation(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConstraintViolationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the goal as stored when the transaction runs, with the habits
+	 * added in the meantime by other clients too.
+	 */
 	@Override
 	public void deleteGoal(Goal goal) throws GoalNotExistsException {
-		Goal existing = entityManager.find(Goal.class, goal.getName());
+		inGoalTransaction(goal, entityManager -> {
+			Goal existing = findGoalForUpdate(entityManager, goal.getName());
+			if (existing == null) {
+				throw new GoalNotExistsException(goal);
+			}
+			entityManager.createQuery("DELETE FROM HabitEvent e WHERE e.habitId IN (SELECT h.id FROM Habit h WHERE h.goal.name = :goal)")
+					.setParameter("goal", goal.getName())
+					.executeUpdate();
+			entityManager.remove(existing);
+		});
+	}
+
+	/**
+	 * Adds the habit to the goal as stored when the transaction runs, rather
+	 * than merging the given goal, whose habits may be stale: the version of
+	 * the goal is incremented, so a concurrent change of its habits makes one
+	 * of the two transactions fail and be retried on the new state.
+	 */
+	@Override
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+		// read once committed, the flush may increment the version again
+		Goal[] stored = new Goal[1];
+		try {
+			inGoalTransaction(goal, entityManager -> {
+				// persisting the habit of a failed attempt left its generated id behind
+				habit.setId(null);
+				habit.setVersion(0);
+				Goal existing = findGoalForUpdate(entityManager, goal.getName());
+				if (existing == null) {
+					// like the merge of a new goal, adding a habit to it stores the goal too
+					existing = new Goal(goal.getName());
+					entityManager.persist(existing);
+				}
+				if (existing.getHabits().stream().anyMatch(other -> other.getName().equals(habit.getName()))) {
+					throw new HabitExistsException(habit);
+				}
+				existing.addHabit(habit);
+				entityManager.persist(habit);
+				stored[0] = existing;
+			});
+		} catch (HabitExistsException | RuntimeException e) {
+			habit.setId(null);
+			habit.setGoal(null);
+			throw e;
+		}
+		goal.addHabit(habit);
+		goal.setVersion(stored[0].getVersion());
+	}
+
+	@Override
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
+		// read once committed, the flush may increment the version again
+		Goal[] stored = new Goal[1];
+		inGoalTransaction(goal, entityManager -> {
+			Goal existingGoal = findGoalForUpdate(entityManager, goal.getName());
+			List<Habit> existingHabits = entityManager
+					.createQuery("SELECT h FROM Habit h WHERE h.goal.name = :goal AND h.name = :name", Habit.class)
+					.setParameter("goal", goal.getName())
+					.setParameter("name", habit.getName())
+					.getResultList();
+			if (existingGoal == null || existingHabits.isEmpty()) {
+				throw new HabitNotExistsException(habit);
+			}
+			Habit existingHabit = existingHabits.get(0);
+			entityManager.createQuery("DELETE FROM HabitEvent e WHERE e.habitId = :habit")
+					.setParameter("habit", existingHabit.getId())
+					.executeUpdate();
+			existingGoal.removeHabit(existingHabit);
+			stored[0] = existingGoal;
+		});
+		goal.removeHabit(habit);
+		goal.setVersion(stored[0].getVersion());
+	}
+
+	/**
+	 * Reads the goal from the database, bypassing the second-level cache, and
+	 * increments its version right away: the row lock taken by the update makes
+	 * a concurrent change of the same goal wait for this transaction and then
+	 * fail on the version check, before it touches any habit.
+	 */
+	private static Goal findGoalForUpdate(EntityManager entityManager, String name) {
+		Goal goal = entityManager.find(Goal.class, name,
+				Collections.singletonMap(AvailableSettings.JPA_SHARED_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS));
+		if (goal != null) {
+			entityManager.lock(goal, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+		}
+		return goal;
+	}
+
+	/**
+	 * Sets the number of times a change of a goal is tried before giving up
+	 * with a {@link GoalConflictException}.
+	 */
+	public void setMaxConflictAttempts(int maxConflictAttempts) {
+		this.maxConflictAttempts = maxConflictAttempts;
+	}
+
+	@FunctionalInterface
+	private interface GoalChange<E extends Exception> {
+		public void apply(EntityManager entityManager) throws E;
+	}
+
+	/**
+	 * Runs {@code change} in a transaction of its own, running it again in a
+	 * new one when it fails because of a concurrent change of the goal, up to
+	 * {@link #setMaxConflictAttempts(int) the maximum attempts}. Every attempt
+	 * must read the state it changes again. Other failures are thrown as they
+	 * are, never as a missing or existing goal or habit.
+	 */
+	private <E extends Exception> void inGoalTransaction(Goal goal, GoalChange<E> change) throws E {
+		for (int attempt = 1;; attempt++) {
+			EntityManager entityManager = emf.createEntityManager();
+			try {
+				entityManager.getTransaction().begin();
+				change.apply(entityManager);
+				entityManager.getTransaction().commit();
+				emf.getCache().evict(Goal.class, goal.getName());
+				return;
+			} catch (RuntimeException e) {
+				rollback(entityManager);
+				if (!isOptimisticLockFailure(e)) {
+					throw e;
+				}
+				if (attempt >= maxConflictAttempts) {
+					throw new GoalConflictException(goal, e);
+				}
+				int failed = attempt;
+				LOGGER.fine(() -> "Concurrent change of the goal " + goal.getName() + ", attempt " + failed + " retried");
+			} catch (Exception e) {
+				rollback(entityManager);
+				throw e;
+			} finally {
+				entityManager.close();
+			}
+		}
+	}
+
+	private static boolean isOptimisticLockFailure(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockException || cause instanceof StaleStateException
+					|| cause instanceof OptimisticEntityLockException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int incrementCounter(Habit habit) {
+		return updateCounter(habit, 1);
+	}
+
+	@Override
+	public int decrementCounter(Habit habit) {
+		return updateCounter(habit, -1);
+	}
+
+	/**
+	 * Appends the delta to the event log and returns the resulting counter.
+	 * Appends never update the habit row, so concurrent taps on the same habit
+	 * neither wait for each other nor get lost. Decrements lock the habit row
+	 * first and append nothing if the counter is already zero: they take
+	 * turns, and the increments meanwhile can only raise the counter they
+	 * read. A habit that does not exist appends nothing and throws an
+	 * IllegalStateException, like in the other repositories.
+	 */
+	private int updateCounter(Habit habit, int delta) {
+		EntityManager entityManager = emf.createEntityManager();
+		eventLogLock.readLock().lock();
 		try {
 			entityManager.getTransaction().begin();
-			entityManager.remove(existing);
+			if (delta < 0) {
+				entityManager.createNativeQuery("SELECT h.id FROM habit h WHERE h.goal_id = :goal AND h.name = :name FOR UPDATE")
+						.setParameter("goal", habit.getGoal().getName())
+						.setParameter("name", habit.getName())
+						.getResultList();
+				if (counter(entityManager, habit) + delta < 0) {
+					throw new CounterAtZeroException(habit);
+				}
+			}
+			appendEvents(entityManager, Collections.singletonMap(habit.getHabitId(), delta));
+			int counter = counter(entityManager, habit);
 			entityManager.getTransaction().commit();
-		} catch (Exception e) {
-			entityManager.getTransaction().rollback();
-			throw new GoalNotExistsException(goal);
+			if (habit.getId() != null) {
+				emf.getCache().evict(Habit.class, habit.getId());
+			} else {
+				emf.getCache().evict(Habit.class);
+			}
+			return counter;
+		} catch (NoResultException e) {
+			rollback(entityManager);
+			throw new IllegalStateException("The habit " + habit.getName() + " does not exists", e);
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			eventLogLock.readLock().unlock();
+			entityManager.close();
 		}
 	}
 
+	private int counter(EntityManager entityManager, Habit habit) {
+		return entityManager
+				.createQuery("SELECT h.counter + h.pendingDelta FROM Habit h WHERE h.name = :name AND h.goal.name = :goal",
+						Integer.class)
+				.setParameter("name", habit.getName())
+				.setParameter("goal", habit.getGoal().getName())
+				.getSingleResult();
+	}
+
 	@Override
-	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+	public void updateCounters(Map<HabitId, Integer> deltas) {
+		EntityManager entityManager = emf.createEntityManager();
+		eventLogLock.readLock().lock();
 		try {
 			entityManager.getTransaction().begin();
-			goal.addHabit(habit);
-			entityManager.merge(goal);
+			appendEvents(entityManager, deltas);
 			entityManager.getTransaction().commit();
-		} catch (Exception e) {
-			goal.removeHabit(habit);
-			entityManager.getTransaction().rollback();
-			throw new HabitExistsException(habit);
+			// only the natural keys are known, and looking the ids up would cost a query
+			emf.getCache().evict(Habit.class);
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			eventLogLock.readLock().unlock();
+			entityManager.close();
 		}
 	}
 
-	@Override
-	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
-		Goal existingGoal = entityManager.find(Goal.class, goal.getName());
-		HabitId habitId = new HabitId(habit.getName(), habit.getGoal());
-		Habit existingHabit = entityManager.find(Habit.class, habitId);
+	/**
+	 * Inserts an event per delta in a single JDBC batch, looking the habit id up
+	 * in the same statement. Deltas of habits that do not exist insert nothing.
+	 * Hibernate does not see these inserts: the callers must evict the changed
+	 * habits from the second-level cache once they are committed. On
+	 * PostgreSQL, the events record the instance setting of the connection as
+	 * their origin, like the change notifications.
+	 */
+	private void appendEvents(EntityManager entityManager, Map<HabitId, Integer> deltas) {
+		Session session = entityManager.unwrap(Session.class);
+		String nextId = session.getSessionFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices()
+				.getDialect().getSelectSequenceNextValString(EVENT_ID_SEQUENCE);
+		String origin = isPostgreSQL(entityManager)
+				? "current_setting('" + PostgresChangeStream.INSTANCE_SETTING + "', true)"
+				: "NULL";
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement("INSERT INTO habit_event (id, habit_id, delta, created_at, origin) SELECT "
+					+ nextId + ", h.id, ?, CURRENT_TIMESTAMP, " + origin + " FROM habit h WHERE h.goal_id = ? AND h.name = ?")) {
+				for (Map.Entry<HabitId, Integer> delta : deltas.entrySet()) {
+					statement.setInt(1, delta.getValue());
+					statement.setString(2, delta.getKey().getGoalName());
+					statement.setString(3, delta.getKey().getName());
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+		});
+	}
+
+	/**
+	 * Folds the events appended since the previous snapshot into the counters
+	 * of their habits, so that loading a habit only adds the few events that
+	 * follow its snapshot. Appends go on meanwhile: the snapshot folds the
+	 * events up to the last id appended when it starts, once no event with a
+	 * lower id can commit any more, since the habits would then ignore it.
+	 * On PostgreSQL, these events can only belong to the transactions in
+	 * progress when the last id is read, which the snapshot waits for up to
+	 * {@code SNAPSHOT_WAIT_MILLIS}, folding nothing if they last longer. The
+	 * embedded database, which only this process opens, reads the last id
+	 * between the appends of this repository.
+	 * <p>
+	 * On PostgreSQL, the snapshots of all the clients take turns, and each
+	 * one notifies the range of events it folded on the channel of
+	 * {@link PostgresChangeStream}, whose listeners read the counter changes of
+	 * the other clients from it. A single notification per snapshot keeps the
+	 * taps themselves from notifying, whose commits would then be serialized.
+	 *
+	 * @return the number of habits whose snapshot moved
+	 */
+	public int snapshotCounters() {
+		Long last = lastCommittedEventId();
+		if (last == null) {
+			return 0;
+		}
+		EntityManager entityManager = emf.createEntityManager();
 		try {
 			entityManager.getTransaction().begin();
-			existingGoal.removeHabit(existingHabit);
-			entityManager.merge(existingGoal);
+			boolean notifying = isPostgreSQL(entityManager);
+			long[] previous = new long[1];
+			if (notifying) {
+				entityManager.unwrap(Session.class).doWork(connection -> {
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("SELECT pg_advisory_xact_lock(hashtext('" + SNAPSHOT_LOCK + "'))");
+						try (ResultSet result = statement
+								.executeQuery("SELECT COALESCE(MAX(snapshot_event_id), 0) FROM habit")) {
+							result.next();
+							previous[0] = result.getLong(1);
+						}
+					}
+				});
+			}
+			// every snapshot folds all the events up to its last one, so only the
+			// events after the highest snapshot can be pending
+			int updated = onEventLog(entityManager.createNativeQuery("UPDATE habit h SET counter = h.counter + "
+					+ "(SELECT SUM(e.delta) FROM habit_event e WHERE e.habit_id = h.id AND e.id > h.snapshot_event_id AND e.id <= :last), "
+					+ "snapshot_event_id = :last "
+					+ "WHERE h.id IN (SELECT e.habit_id FROM habit_event e "
+					+ "WHERE e.id > (SELECT COALESCE(MAX(s.snapshot_event_id), 0) FROM habit s) AND e.id <= :last)"))
+					.setParameter("last", last)
+					.executeUpdate();
+			if (notifying && updated > 0) {
+				entityManager.unwrap(Session.class).doWork(connection -> {
+					try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, "
+							+ "json_build_object('change', ?, 'from', ?::bigint, 'to', ?::bigint)::text)")) {
+						statement.setString(1, PostgresChangeStream.CHANNEL);
+						statement.setString(2, PostgresChangeStream.COUNTERS_FOLDED);
+						statement.setLong(3, previous[0]);
+						statement.setLong(4, last);
+						statement.executeQuery().close();
+					}
+				});
+			}
 			entityManager.getTransaction().commit();
-		} catch (Exception e) {
-			entityManager.getTransaction().rollback();
-			throw new HabitNotExistsException(habit);
+			return updated;
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
 		}
 	}
 
-	@Override
-	public void incrementCounter(Habit habit) {
-		entityManager.getTransaction().begin();
-		habit.incrementCounter();
-		entityManager.merge(habit);
-		entityManager.getTransaction().commit();
+	/**
+	 * The last event id such that every event up to it is committed, or
+	 * rolled back, or null if there is none yet or the appends in progress
+	 * did not end in time.
+	 */
+	private Long lastCommittedEventId() {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			if (!isPostgreSQL(entityManager)) {
+				// the appends of this repository hold the read lock until they commit
+				eventLogLock.writeLock().lock();
+				try {
+					return entityManager.createQuery("SELECT MAX(e.id) FROM HabitEvent e", Long.class).getSingleResult();
+				} finally {
+					eventLogLock.writeLock().unlock();
+				}
+			}
+			// ids are taken by the inserts, so an event with a lower id that is not
+			// visible yet belongs to a transaction started before xmax
+			Object[] last = (Object[]) entityManager
+					.createNativeQuery("SELECT MAX(e.id), txid_snapshot_xmax(txid_current_snapshot()) FROM habit_event e")
+					.getSingleResult();
+			if (last[0] == null) {
+				return null;
+			}
+			long xmax = ((Number) last[1]).longValue();
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_WAIT_MILLIS);
+			while (((Number) entityManager.createNativeQuery("SELECT txid_snapshot_xmin(txid_current_snapshot())")
+					.getSingleResult()).longValue() < xmax) {
+				if (System.nanoTime() > deadline) {
+					LOGGER.fine("Counter snapshot skipped, transactions started before it are still running");
+					return null;
+				}
+				TimeUnit.MILLISECONDS.sleep(SNAPSHOT_POLL_MILLIS);
+			}
+			return ((Number) last[0]).longValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Deletes the events created before {@code before} that a snapshot has
+	 * already folded into the counters, e.g. the ones older than the
+	 * statistics that {@link #replayHabitEvents(Instant, HabitEventConsumer)}
+	 * rebuilds. The counters are unchanged.
+	 *
+	 * @return the number of deleted events
+	 */
+	public int pruneHabitEvents(Instant before) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			// the events up to the highest snapshot are all folded, see snapshotCounters
+			int deleted = entityManager.createQuery("DELETE FROM HabitEvent e WHERE e.createdAt < :before "
+					+ "AND e.id <= (SELECT MAX(h.snapshotEventId) FROM Habit h)")
+					.setParameter("before", before)
+					.executeUpdate();
+			entityManager.getTransaction().commit();
+			return deleted;
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Native statements invalidate the whole second-level cache unless they
+	 * declare the tables they change. Snapshots move counts from the event log
+	 * to the counters, leaving every counter as loaded unchanged, so they only
+	 * declare the event log, which is not cached.
+	 */
+	private static Query onEventLog(Query query) {
+		return query.unwrap(NativeQuery.class).addSynchronizedQuerySpace("habit_event");
+	}
+
+	/**
+	 * Hands every event appended since {@code since} to the consumer, oldest
+	 * first, e.g. to rebuild statistics at startup. Events are streamed, not
+	 * loaded all at once.
+	 */
+	public void replayHabitEvents(Instant since, HabitEventConsumer consumer) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			try (Stream<Object[]> events = entityManager.createQuery(
+					"SELECT h.goal.name, h.name, e.delta, e.createdAt FROM HabitEvent e, Habit h "
+							+ "WHERE e.habitId = h.id AND e.createdAt >= :since ORDER BY e.id", Object[].class)
+					.setParameter("since", since)
+					.setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+					.setHint(QueryHints.HINT_READONLY, true)
+					.getResultStream()) {
+				events.forEach(event -> consumer.accept(HabitId.of((String) event[0], (String) event[1]),
+						(Integer) event[2], (Instant) event[3]));
+			}
+			entityManager.getTransaction().commit();
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Hands the events with an id in {@code (afterId, lastId]} to the consumer,
+	 * oldest first, except the ones appended by {@code skippedOrigin}, e.g.
+	 * the instance of a change stream.
+	 */
+	void replayHabitEvents(long afterId, long lastId, String skippedOrigin, HabitEventConsumer consumer) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			List<Object[]> events = entityManager.createQuery(
+					"SELECT h.goal.name, h.name, e.delta, e.createdAt FROM HabitEvent e, Habit h "
+							+ "WHERE e.habitId = h.id AND e.id > :afterId AND e.id <= :lastId "
+							+ "AND (e.origin IS NULL OR e.origin <> :origin) ORDER BY e.id", Object[].class)
+					.setParameter("afterId", afterId)
+					.setParameter("lastId", lastId)
+					.setParameter("origin", skippedOrigin)
+					.setHint(QueryHints.HINT_READONLY, true)
+					.getResultList();
+			entityManager.getTransaction().commit();
+			events.forEach(event -> consumer.accept(HabitId.of((String) event[0], (String) event[1]),
+					(Integer) event[2], (Instant) event[3]));
+		} catch (RuntimeException e) {
+			rollback(entityManager);
+			throw e;
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@FunctionalInterface
+	public interface HabitEventConsumer {
+		public void accept(HabitId habitId, int delta, Instant createdAt);
+	}
+
+	/**
+	 * Takes a counter snapshot every {@code intervalMillis} until the
+	 * repository is closed.
+	 */
+	public void scheduleCounterSnapshots(long intervalMillis) {
+		scheduleCounterSnapshots(intervalMillis, null);
+	}
+
+	/**
+	 * Like {@link #scheduleCounterSnapshots(long)}, also pruning after each
+	 * snapshot the events created before the instant {@code pruneBefore}
+	 * returns then, unless it is null.
+	 */
+	public synchronized void scheduleCounterSnapshots(long intervalMillis, Supplier<Instant> pruneBefore) {
+		if (snapshotter == null) {
+			snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "counter-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		snapshotter.scheduleWithFixedDelay(() -> {
+			try {
+				int habits = snapshotCounters();
+				LOGGER.fine(() -> "Counter snapshot of " + habits + " habits");
+				if (pruneBefore != null) {
+					int events = pruneHabitEvents(pruneBefore.get());
+					LOGGER.fine(() -> events + " habit events pruned");
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Counter snapshot failed, it will be retried", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts listening to the changes made by other clients, installing the
+	 * triggers that notify them unless they already are. The connections of
+	 * the persistence unit should run
+	 * {@link PostgresChangeStream#instanceSettingSql(String)} with the same
+	 * {@code instanceId}, otherwise the changes of this repository are
+	 * notified too. The stream must be closed before the repository.
+	 * 
+	 * @throws UnsupportedOperationException if the database is not PostgreSQL
+	 */
+	public PostgresChangeStream openChangeStream(String instanceId, long debounceMillis) {
+		return openChangeStream(instanceId, debounceMillis, null);
+	}
+
+	/**
+	 * Like {@link #openChangeStream(String, long)}, also handing the counter
+	 * changes of the other clients to {@code counterChanges} as the snapshots
+	 * that fold them are notified, e.g. to keep on recording in the statistics
+	 * that {@link #replayHabitEvents(Instant, HabitEventConsumer)} filled.
+	 */
+	public PostgresChangeStream openChangeStream(String instanceId, long debounceMillis,
+			HabitEventConsumer counterChanges) {
+		EntityManager entityManager = emf.createEntityManager();
+		try {
+			if (!isPostgreSQL(entityManager)) {
+				throw new UnsupportedOperationException("Change notifications need PostgreSQL");
+			}
+		} finally {
+			entityManager.close();
+		}
+		PostgresChangeStream stream = new PostgresChangeStream(emf, instanceId, debounceMillis,
+				this::replayHabitEvents, counterChanges);
+		stream.start();
+		return stream;
+	}
+
+	/**
+	 * The statement metrics of the connections, or null unless the persistence
+	 * unit uses an {@link InstrumentedConnectionProvider}.
+	 */
+	public SqlMetrics getSqlMetrics() {
+		ConnectionProvider provider = emf.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		return provider instanceof InstrumentedConnectionProvider
+				? ((InstrumentedConnectionProvider) provider).getMetrics()
+				: null;
+	}
+
+	/**
+	 * Writes the statement metrics, if the connections are instrumented, and
+	 * the Hibernate statistics, if {@code hibernate.generate_statistics} is
+	 * enabled.
+	 */
+	public void dumpSqlMetrics(PrintWriter out) {
+		SqlMetrics sqlMetrics = getSqlMetrics();
+		if (sqlMetrics != null) {
+			sqlMetrics.dump(out);
+		}
+		Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+		if (!statistics.isStatisticsEnabled()) {
+			return;
+		}
+		out.printf("Hibernate: statements_prepared=%d entities_loaded=%d collections_loaded=%d queries_executed=%d "
+				+ "second_level_cache_hits=%d second_level_cache_misses=%d query_cache_hits=%d query_cache_misses=%d "
+				+ "transactions=%d%n", statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(),
+				statistics.getCollectionLoadCount(), statistics.getQueryExecutionCount(),
+				statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+				statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+				statistics.getTransactionCount());
+		for (String query : statistics.getQueries()) {
+			QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+			out.printf("count=%d mean_ms=%d max_ms=%d rows=%d query=\"%s\"%n", queryStatistics.getExecutionCount(),
+					queryStatistics.getExecutionAvgTime(), queryStatistics.getExecutionMaxTime(),
+					queryStatistics.getExecutionRowCount(), query);
+		}
+	}
+
+	public void resetSqlMetrics() {
+		SqlMetrics sqlMetrics = getSqlMetrics();
+		if (sqlMetrics != null) {
+			sqlMetrics.reset();
+		}
+		emf.unwrap(SessionFactory.class).getStatistics().clear();
+	}
+
+	private static boolean isPostgreSQL(EntityManager entityManager) {
+		return entityManager.unwrap(Session.class).getSessionFactory().unwrap(SessionFactoryImplementor.class)
+				.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
 	}
 
 	@Override
-	public void decrementCounter(Habit habit) {
-		entityManager.getTransaction().begin();
-		habit.decrementCounter();
-		entityManager.merge(habit);
-		entityManager.getTransaction().commit();
+	public void close() {
+		synchronized (this) {
+			if (snapshotter != null) {
+				snapshotter.shutdownNow();
+			}
+		}
+		emf.close();
+	}
+
+	private void rollback(EntityManager entityManager) {
+		if (entityManager.getTransaction().isActive()) {
+			entityManager.getTransaction().rollback();
+		}
 	}
 }
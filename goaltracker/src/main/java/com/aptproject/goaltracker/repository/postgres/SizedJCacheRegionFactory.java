@@ -0,0 +1,65 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+/**
+ * Second-level cache regions kept on the heap by Ehcache, each bounded to a
+ * number of entries read from the persistence unit properties:
+ * {@value #REGION_SIZE_PREFIX}{@code <region>} for a single region, falling
+ * back to {@value #DEFAULT_REGION_SIZE} for every other one, or to
+ * {@value #DEFAULT_SIZE} entries. Every session factory gets a cache manager
+ * of its own, so that two of them, e.g. on different databases, never share
+ * cached entities.
+ */
+public class SizedJCacheRegionFactory extends JCacheRegionFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String DEFAULT_REGION_SIZE = "goaltracker.cache.size";
+	public static final String REGION_SIZE_PREFIX = "goaltracker.cache.size.";
+	static final long DEFAULT_SIZE = 10000;
+
+	private transient Map<?, ?> properties;
+
+	@Override
+	protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+		properties = configValues;
+		super.prepareForUse(settings, configValues);
+	}
+
+	@Override
+	protected CacheManager resolveCacheManager(SessionFactoryOptions settings,
+			@SuppressWarnings("rawtypes") Map configValues) {
+		EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+				.getCachingProvider(EhcacheCachingProvider.class.getName());
+		return provider.getCacheManager(URI.create("goaltracker:" + UUID.randomUUID()),
+				ConfigurationBuilder.newConfigurationBuilder().build());
+	}
+
+	@Override
+	protected Cache<Object, Object> createCache(String regionName) {
+		CacheConfigurationBuilder<Object, Object> configuration = CacheConfigurationBuilder
+				.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(regionSize(regionName)));
+		return getCacheManager().createCache(regionName, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+	}
+
+	long regionSize(String regionName) {
+		Object size = properties.get(REGION_SIZE_PREFIX + regionName);
+		if (size == null) {
+			size = properties.get(DEFAULT_REGION_SIZE);
+		}
+		return size == null ? DEFAULT_SIZE : Long.parseLong(size.toString());
+	}
+}
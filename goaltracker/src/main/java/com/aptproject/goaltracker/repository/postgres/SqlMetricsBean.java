@@ -0,0 +1,34 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import com.aptproject.goaltracker.repository.postgres.sql.SqlMetrics;
+
+public class SqlMetricsBean implements SqlMetricsMXBean {
+
+	private final PostgresModelRepository repository;
+
+	public SqlMetricsBean(PostgresModelRepository repository) {
+		this.repository = repository;
+	}
+
+	@Override
+	public String dump() {
+		StringWriter dump = new StringWriter();
+		try (PrintWriter out = new PrintWriter(dump)) {
+			repository.dumpSqlMetrics(out);
+		}
+		return dump.toString();
+	}
+
+	@Override
+	public void reset() {
+		repository.resetSqlMetrics();
+	}
+
+	@Override
+	public long getSlowExecutions() {
+		SqlMetrics sqlMetrics = repository.getSqlMetrics();
+		return sqlMetrics == null ? 0 : sqlMetrics.getSlowExecutions();
+	}
+}
@@ -0,0 +1,19 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+/**
+ * JMX view of the SQL metrics of a {@link PostgresModelRepository}, so that
+ * they can be dumped on demand, e.g. from JConsole.
+ */
+public interface SqlMetricsMXBean {
+
+	public static final String OBJECT_NAME = "com.aptproject.goaltracker:type=SqlMetrics";
+
+	/**
+	 * The same text as {@link PostgresModelRepository#dumpSqlMetrics(java.io.PrintWriter)}.
+	 */
+	public String dump();
+
+	public void reset();
+
+	public long getSlowExecutions();
+}
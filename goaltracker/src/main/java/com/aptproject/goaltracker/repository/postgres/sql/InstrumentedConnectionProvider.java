@@ -0,0 +1,44 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import org.hibernate.HibernateException;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+
+/**
+ * HikariCP connection provider whose connections record the latency and the
+ * rows of every statement in a {@link SqlMetrics}. Enabled by setting
+ * {@code hibernate.connection.provider_class} to this class; the slow
+ * statements are configured with {@value #SLOW_THRESHOLD} milliseconds and
+ * {@value #SLOW_SAMPLE_RATE}, the fraction of them that is logged.
+ */
+public class InstrumentedConnectionProvider extends HikariCPConnectionProvider {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String SLOW_THRESHOLD = "goaltracker.sql.slow_threshold";
+	public static final String SLOW_SAMPLE_RATE = "goaltracker.sql.slow_sample_rate";
+	static final long DEFAULT_SLOW_THRESHOLD = 100;
+	static final double DEFAULT_SLOW_SAMPLE_RATE = 0.1;
+
+	private transient SqlMetrics metrics;
+
+	@Override
+	public void configure(@SuppressWarnings("rawtypes") Map props) throws HibernateException {
+		Object threshold = props.get(SLOW_THRESHOLD);
+		Object sampleRate = props.get(SLOW_SAMPLE_RATE);
+		metrics = new SqlMetrics(threshold == null ? DEFAULT_SLOW_THRESHOLD : Long.parseLong(threshold.toString()),
+				sampleRate == null ? DEFAULT_SLOW_SAMPLE_RATE : Double.parseDouble(sampleRate.toString()));
+		super.configure(props);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return InstrumentedJdbc.wrap(super.getConnection(), metrics);
+	}
+
+	public SqlMetrics getMetrics() {
+		return metrics;
+	}
+}
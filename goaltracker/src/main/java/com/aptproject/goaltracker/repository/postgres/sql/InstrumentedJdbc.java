@@ -0,0 +1,179 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Dynamic proxies of the JDBC interfaces that time every statement execution
+ * and count the rows it reads or changes into a {@link SqlMetrics}. Calls
+ * that execute nothing go straight to the wrapped objects.
+ */
+final class InstrumentedJdbc {
+
+	private InstrumentedJdbc() {
+	}
+
+	static Connection wrap(Connection connection, SqlMetrics metrics) {
+		return proxy(Connection.class, new ConnectionHandler(connection, metrics));
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	private abstract static class Handler implements InvocationHandler {
+		private final Object target;
+
+		Handler(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				return handle(method, args);
+			}
+		}
+
+		abstract Object handle(Method method, Object[] args) throws Throwable;
+
+		Object delegate(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	private static class ConnectionHandler extends Handler {
+		private final SqlMetrics metrics;
+
+		ConnectionHandler(Connection connection, SqlMetrics metrics) {
+			super(connection);
+			this.metrics = metrics;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws Throwable {
+			Object result = delegate(method, args);
+			switch (method.getName()) {
+			case "prepareStatement":
+			case "prepareCall":
+				return wrapStatement(method, result, metrics.statement((String) args[0]));
+			case "createStatement":
+				return wrapStatement(method, result, null);
+			default:
+				return result;
+			}
+		}
+
+		private Object wrapStatement(Method method, Object statement, StatementMetrics prepared) {
+			return proxy(method.getReturnType(), new StatementHandler((Statement) statement, prepared, metrics));
+		}
+	}
+
+	private static class StatementHandler extends Handler {
+		private final StatementMetrics prepared;
+		private final SqlMetrics metrics;
+		/* the first statement added to a batch of a plain statement */
+		private String batch;
+		private StatementMetrics lastExecuted;
+
+		StatementHandler(Statement statement, StatementMetrics prepared, SqlMetrics metrics) {
+			super(statement);
+			this.prepared = prepared;
+			this.metrics = metrics;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("addBatch") && args != null && batch == null) {
+				batch = (String) args[0];
+			} else if (name.equals("clearBatch")) {
+				batch = null;
+			}
+			if (name.equals("getResultSet") && lastExecuted != null) {
+				return wrapResultSet(delegate(method, args), lastExecuted);
+			}
+			if (!name.startsWith("execute")) {
+				return delegate(method, args);
+			}
+			StatementMetrics executed = executedStatement(name, args);
+			long start = System.nanoTime();
+			Object result = delegate(method, args);
+			long nanos = System.nanoTime() - start;
+			metrics.executed(executed, nanos, updatedRows(result));
+			lastExecuted = executed;
+			if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+				batch = null;
+			}
+			return name.equals("executeQuery") ? wrapResultSet(result, executed) : result;
+		}
+
+		private StatementMetrics executedStatement(String name, Object[] args) {
+			if (args != null && args.length > 0 && args[0] instanceof String) {
+				return metrics.statement((String) args[0]);
+			}
+			if (prepared != null) {
+				return prepared;
+			}
+			return metrics.statement(name.endsWith("Batch") && batch != null ? batch : "<unknown>");
+		}
+
+		private static long updatedRows(Object result) {
+			if (result instanceof Integer || result instanceof Long) {
+				return ((Number) result).longValue();
+			}
+			long updated = -1;
+			if (result instanceof int[]) {
+				for (int count : (int[]) result) {
+					// Statement.SUCCESS_NO_INFO and EXECUTE_FAILED are negative
+					updated = Math.max(updated, 0) + Math.max(count, 0);
+				}
+			} else if (result instanceof long[]) {
+				for (long count : (long[]) result) {
+					updated = Math.max(updated, 0) + Math.max(count, 0);
+				}
+			}
+			return updated;
+		}
+
+		private static Object wrapResultSet(Object resultSet, StatementMetrics executed) {
+			if (resultSet == null) {
+				return null;
+			}
+			return proxy(ResultSet.class, new ResultSetHandler((ResultSet) resultSet, executed));
+		}
+	}
+
+	private static class ResultSetHandler extends Handler {
+		private final StatementMetrics executed;
+
+		ResultSetHandler(ResultSet resultSet, StatementMetrics executed) {
+			super(resultSet);
+			this.executed = executed;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws Throwable {
+			Object result = delegate(method, args);
+			if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+				executed.rowRead();
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.aptproject.goaltracker.metrics.LatencyHistogram;
+
+/**
+ * Latency histograms and row counts per SQL statement, filled by the
+ * connections of an {@link InstrumentedConnectionProvider}. Executions
+ * taking at least {@code slowThresholdMillis} are counted as slow, and a
+ * {@code slowSampleRate} fraction of them is logged. At most
+ * {@value #MAX_STATEMENTS} distinct statements are tracked, the executions
+ * of any further one being added to {@value #OTHER_STATEMENTS}.
+ */
+public class SqlMetrics {
+
+	static final int MAX_STATEMENTS = 500;
+	static final String OTHER_STATEMENTS = "<other statements>";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SqlMetrics.class);
+
+	private final ConcurrentMap<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+	private final long slowThresholdNanos;
+	private final double slowSampleRate;
+	private final DoubleSupplier random;
+	private final LongAdder slowExecutions = new LongAdder();
+
+	public SqlMetrics(long slowThresholdMillis, double slowSampleRate) {
+		this(slowThresholdMillis, slowSampleRate, () -> ThreadLocalRandom.current().nextDouble());
+	}
+
+	SqlMetrics(long slowThresholdMillis, double slowSampleRate, DoubleSupplier random) {
+		this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+		this.slowSampleRate = slowSampleRate;
+		this.random = random;
+	}
+
+	StatementMetrics statement(String sql) {
+		StatementMetrics metrics = statements.get(sql);
+		if (metrics != null) {
+			return metrics;
+		}
+		// the bound is checked loosely, a few statements more make no harm
+		String key = statements.size() < MAX_STATEMENTS ? sql : OTHER_STATEMENTS;
+		return statements.computeIfAbsent(key, StatementMetrics::new);
+	}
+
+	/**
+	 * @param updated the rows changed by the execution, or a negative value
+	 *                when unknown or when it is a query
+	 * @return whether the execution was logged as slow
+	 */
+	boolean executed(StatementMetrics metrics, long nanos, long updated) {
+		metrics.executed(nanos, updated);
+		if (nanos < slowThresholdNanos) {
+			return false;
+		}
+		slowExecutions.increment();
+		if (random.getAsDouble() >= slowSampleRate) {
+			return false;
+		}
+		if (updated >= 0) {
+			LOGGER.warn("slow_sql duration_ms={} rows_updated={} sql=\"{}\"", TimeUnit.NANOSECONDS.toMillis(nanos),
+					updated, metrics.getSql());
+		} else {
+			LOGGER.warn("slow_sql duration_ms={} sql=\"{}\"", TimeUnit.NANOSECONDS.toMillis(nanos), metrics.getSql());
+		}
+		return true;
+	}
+
+	public long getSlowExecutions() {
+		return slowExecutions.sum();
+	}
+
+	/**
+	 * The tracked statements, the ones that took the longest in total first.
+	 */
+	public List<StatementMetrics> getStatements() {
+		List<StatementMetrics> sorted = new ArrayList<>(statements.values());
+		sorted.sort(Comparator.comparingLong((StatementMetrics metrics) -> metrics.getLatencies().getTotalMicros())
+				.reversed());
+		return sorted;
+	}
+
+	public void reset() {
+		statements.values().forEach(StatementMetrics::reset);
+		slowExecutions.reset();
+	}
+
+	/**
+	 * Writes a line per statement, with its latencies in microseconds.
+	 */
+	public void dump(PrintWriter out) {
+		out.printf("SQL statements: slow_executions=%d%n", getSlowExecutions());
+		for (StatementMetrics metrics : getStatements()) {
+			LatencyHistogram latencies = metrics.getLatencies();
+			out.printf("count=%d total_us=%d mean_us=%.0f p50_us=%d p99_us=%d max_us=%d rows_read=%d rows_updated=%d sql=\"%s\"%n",
+					latencies.getCount(), latencies.getTotalMicros(), latencies.getMeanMicros(),
+					latencies.getPercentileMicros(50), latencies.getPercentileMicros(99), latencies.getMaxMicros(),
+					metrics.getRowsRead(), metrics.getRowsUpdated(), metrics.getSql());
+		}
+	}
+}
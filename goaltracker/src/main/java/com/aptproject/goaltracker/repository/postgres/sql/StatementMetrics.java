@@ -0,0 +1,54 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.aptproject.goaltracker.metrics.LatencyHistogram;
+
+/**
+ * Executions of a single SQL statement: their latencies, and the rows they
+ * read or changed.
+ */
+public class StatementMetrics {
+
+	private final String sql;
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final LongAdder rowsRead = new LongAdder();
+	private final LongAdder rowsUpdated = new LongAdder();
+
+	StatementMetrics(String sql) {
+		this.sql = sql;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	public long getRowsRead() {
+		return rowsRead.sum();
+	}
+
+	public long getRowsUpdated() {
+		return rowsUpdated.sum();
+	}
+
+	void executed(long nanos, long updated) {
+		latencies.record(nanos, TimeUnit.NANOSECONDS);
+		if (updated > 0) {
+			rowsUpdated.add(updated);
+		}
+	}
+
+	void rowRead() {
+		rowsRead.increment();
+	}
+
+	void reset() {
+		latencies.reset();
+		rowsRead.reset();
+		rowsUpdated.reset();
+	}
+}
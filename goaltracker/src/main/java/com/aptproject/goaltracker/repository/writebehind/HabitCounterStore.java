@@ -0,0 +1,139 @@
+package com.aptproject.goaltracker.repository.writebehind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import com.aptproject.goaltracker.model.HabitId;
+
+/**
+ * Pending counter deltas kept in primitive arrays. Every habit is interned
+ * once to an int index, its slot in chunks of {@link AtomicLongArray}s, so a
+ * tap is a lookup in a map keyed by the {@link HabitId}, whose hash is
+ * computed once, and an atomic add to the slot: nothing is allocated and taps
+ * on different habits never contend for a lock. Callers that keep the index
+ * of a habit skip the lookup too. Chunks are added as habits are interned, so
+ * existing slots never move.
+ * <p>
+ * Habits stay interned once their deltas are drained; their number only
+ * grows with the habits ever tapped.
+ */
+public class HabitCounterStore {
+
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final ConcurrentMap<HabitId, Integer> indexes = new ConcurrentHashMap<>();
+	// replaced, never changed, when a chunk is added; published before the indexes of the new slots
+	private volatile AtomicLongArray[] deltas = new AtomicLongArray[0];
+	private volatile HabitId[][] habitIds = new HabitId[0][];
+	private volatile int size;
+
+	/**
+	 * The index of the habit, interned on its first use.
+	 */
+	public int indexOf(HabitId habitId) {
+		Integer index = indexes.get(habitId);
+		return index != null ? index : intern(habitId);
+	}
+
+	private synchronized int intern(HabitId habitId) {
+		Integer existing = indexes.get(habitId);
+		if (existing != null) {
+			return existing;
+		}
+		int index = size;
+		int chunk = index >>> CHUNK_BITS;
+		if (chunk == deltas.length) {
+			HabitId[][] grownHabitIds = Arrays.copyOf(habitIds, chunk + 1);
+			grownHabitIds[chunk] = new HabitId[CHUNK_SIZE];
+			AtomicLongArray[] grownDeltas = Arrays.copyOf(deltas, chunk + 1);
+			grownDeltas[chunk] = new AtomicLongArray(CHUNK_SIZE);
+			habitIds = grownHabitIds;
+			deltas = grownDeltas;
+		}
+		habitIds[chunk][index & CHUNK_MASK] = habitId;
+		size = index + 1;
+		indexes.put(habitId, index);
+		return index;
+	}
+
+	public void add(HabitId habitId, long delta) {
+		add(indexOf(habitId), delta);
+	}
+
+	/**
+	 * @param index as returned by {@link #indexOf(HabitId)}
+	 */
+	public void add(int index, long delta) {
+		deltas[index >>> CHUNK_BITS].addAndGet(index & CHUNK_MASK, delta);
+	}
+
+	/**
+	 * Takes one off the pending delta of the habit if it is positive, as a
+	 * single atomic step.
+	 *
+	 * @return whether the delta was positive and was decremented
+	 */
+	public boolean decrementIfPositive(HabitId habitId) {
+		Integer index = indexes.get(habitId);
+		if (index == null) {
+			return false;
+		}
+		AtomicLongArray chunk = deltas[index >>> CHUNK_BITS];
+		int slot = index & CHUNK_MASK;
+		for (long delta = chunk.get(slot); delta > 0; delta = chunk.get(slot)) {
+			if (chunk.compareAndSet(slot, delta, delta - 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The delta added to the habit since it was last drained.
+	 */
+	public long pending(HabitId habitId) {
+		Integer index = indexes.get(habitId);
+		return index == null ? 0 : deltas[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+	}
+
+	/**
+	 * Takes the pending deltas that are not zero, resetting them, e.g. for
+	 * {@link com.aptproject.goaltracker.repository.ModelRepository#updateCounters(Map)}.
+	 * Deltas added meanwhile are either taken or left for the next drain, and
+	 * the part of a delta beyond the int range is left too.
+	 */
+	public Map<HabitId, Integer> drain() {
+		int drained = size;
+		AtomicLongArray[] currentDeltas = deltas;
+		HabitId[][] currentHabitIds = habitIds;
+		Map<HabitId, Integer> batch = new HashMap<>();
+		for (int index = 0; index < drained; index++) {
+			AtomicLongArray chunk = currentDeltas[index >>> CHUNK_BITS];
+			int slot = index & CHUNK_MASK;
+			if (chunk.get(slot) == 0) {
+				continue;
+			}
+			long delta = chunk.getAndSet(slot, 0);
+			int taken = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, delta));
+			if (taken != delta) {
+				chunk.addAndGet(slot, delta - taken);
+			}
+			if (taken != 0) {
+				batch.put(currentHabitIds[index >>> CHUNK_BITS][slot], taken);
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * The number of interned habits.
+	 */
+	public int size() {
+		return size;
+	}
+}
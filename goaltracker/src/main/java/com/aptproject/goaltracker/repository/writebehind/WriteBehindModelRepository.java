@@ -0,0 +1,183 @@
+package com.aptproject.goaltracker.repository.writebehind;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+/**
+ * Decorator that buffers counter taps instead of writing each of them in its
+ * own transaction. Pending deltas are added up per habit in a
+ * {@link HabitCounterStore}, without allocating per tap, and written with a
+ * single {@link ModelRepository#updateCounters(Map)} call when the flush
+ * interval elapses, when too many taps are pending, before reads and on
+ * {@link #close()}. Counter updates return the expected value right away, so
+ * the view can be updated optimistically, except for the decrements that
+ * must be checked against zero.
+ */
+public class WriteBehindModelRepository implements ModelRepository {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteBehindModelRepository.class.getName());
+
+	private final ModelRepository delegate;
+	private final int maxPendingTaps;
+	private final HabitCounterStore pendingDeltas = new HabitCounterStore();
+	private final AtomicInteger pendingTaps = new AtomicInteger();
+	private final ScheduledExecutorService flusher;
+
+	public WriteBehindModelRepository(ModelRepository delegate, long flushIntervalMillis, int maxPendingTaps) {
+		this.delegate = delegate;
+		this.maxPendingTaps = maxPendingTaps;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "counter-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public List<Goal> findAllGoals() {
+		flushQuietly();
+		return delegate.findAllGoals();
+	}
+
+	@Override
+	public List<Goal> findGoalsPage(String afterName, int pageSize) {
+		flushQuietly();
+		return delegate.findGoalsPage(afterName, pageSize);
+	}
+
+	@Override
+	public Stream<Goal> streamAllGoals() {
+		flushQuietly();
+		return delegate.streamAllGoals();
+	}
+
+	@Override
+	public Goal findGoalByName(String name) {
+		flushQuietly();
+		return delegate.findGoalByName(name);
+	}
+
+	@Override
+	public List<Goal> findGoalsByNames(Collection<String> names) {
+		flushQuietly();
+		return delegate.findGoalsByNames(names);
+	}
+
+	@Override
+	public void addGoal(Goal goal) throws GoalExistsException {
+		delegate.addGoal(goal);
+	}
+
+	@Override
+	public void addGoals(List<Goal> goals) throws GoalExistsException {
+		delegate.addGoals(goals);
+	}
+
+	@Override
+	public void deleteGoal(Goal goal) throws GoalNotExistsException {
+		flushQuietly();
+		delegate.deleteGoal(goal);
+	}
+
+	@Override
+	public void addHabitToGoal(Goal goal, Habit habit) throws HabitExistsException {
+		delegate.addHabitToGoal(goal, habit);
+	}
+
+	@Override
+	public void removeHabitFromGoal(Goal goal, Habit habit) throws HabitNotExistsException {
+		flushQuietly();
+		delegate.removeHabitFromGoal(goal, habit);
+	}
+
+	@Override
+	public int incrementCounter(Habit habit) {
+		return bufferTap(habit, 1);
+	}
+
+	/**
+	 * A decrement is only buffered when it cancels a pending increment of the
+	 * habit, which keeps the written counter at least zero. Otherwise it is
+	 * written through, so that the delegate checks it against the stored
+	 * counter, whatever the counter of the given habit.
+	 */
+	@Override
+	public int decrementCounter(Habit habit) {
+		if (pendingDeltas.decrementIfPositive(habit.getHabitId())) {
+			return habit.getCounter() - 1;
+		}
+		return delegate.decrementCounter(habit);
+	}
+
+	@Override
+	public void updateCounters(Map<HabitId, Integer> deltas) {
+		deltas.forEach(pendingDeltas::add);
+	}
+
+	private int bufferTap(Habit habit, int delta) {
+		pendingDeltas.add(habit.getHabitId(), delta);
+		if (pendingTaps.incrementAndGet() >= maxPendingTaps) {
+			flusher.execute(this::flushQuietly);
+		}
+		return habit.getCounter() + delta;
+	}
+
+	/**
+	 * Writes every pending delta with a single batch. If the batch fails the
+	 * deltas are kept for the next flush.
+	 */
+	public synchronized void flush() {
+		pendingTaps.set(0);
+		Map<HabitId, Integer> batch = pendingDeltas.drain();
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			delegate.updateCounters(batch);
+		} catch (RuntimeException e) {
+			batch.forEach(pendingDeltas::add);
+			throw e;
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Flushing the pending counter updates failed, they will be retried", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			flush();
+		} finally {
+			delegate.close();
+		}
+	}
+}
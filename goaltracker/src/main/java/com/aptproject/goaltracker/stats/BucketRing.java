@@ -0,0 +1,53 @@
+package com.aptproject.goaltracker.stats;
+
+import java.util.Arrays;
+
+/**
+ * Counts of the most recent {@code counts.length} consecutive buckets, kept in
+ * a ring indexed by bucket number. Moving to a newer bucket only clears the
+ * slots of the buckets skipped, so every operation takes constant time per
+ * bucket. Not thread safe.
+ */
+class BucketRing {
+
+	private final int[] counts;
+	private long newest = Long.MIN_VALUE;
+
+	BucketRing(int capacity) {
+		counts = new int[capacity];
+	}
+
+	/**
+	 * Adds {@code delta} to the bucket, dropping it if the bucket is older
+	 * than the retained ones.
+	 */
+	void add(long bucket, int delta) {
+		if (newest == Long.MIN_VALUE || bucket - newest >= counts.length) {
+			Arrays.fill(counts, 0);
+			newest = bucket;
+		} else if (bucket > newest) {
+			for (long skipped = newest + 1; skipped <= bucket; skipped++) {
+				counts[slot(skipped)] = 0;
+			}
+			newest = bucket;
+		} else if (newest - bucket >= counts.length) {
+			return;
+		}
+		counts[slot(bucket)] += delta;
+	}
+
+	/**
+	 * @return the count of the bucket, 0 if nothing was added to it or if it is
+	 *         no longer retained
+	 */
+	int get(long bucket) {
+		if (newest == Long.MIN_VALUE || bucket > newest || newest - bucket >= counts.length) {
+			return 0;
+		}
+		return counts[slot(bucket)];
+	}
+
+	private int slot(long bucket) {
+		return (int) Math.floorMod(bucket, (long) counts.length);
+	}
+}
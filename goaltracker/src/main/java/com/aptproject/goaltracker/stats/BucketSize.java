@@ -0,0 +1,56 @@
+package com.aptproject.goaltracker.stats;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The time buckets habit statistics are kept in, each with the number of
+ * most recent buckets that are retained.
+ */
+public enum BucketSize {
+	DAY(120), WEEK(53), MONTH(24);
+
+	private final int retainedBuckets;
+
+	BucketSize(int retainedBuckets) {
+		this.retainedBuckets = retainedBuckets;
+	}
+
+	public int getRetainedBuckets() {
+		return retainedBuckets;
+	}
+
+	/**
+	 * The number of the bucket holding {@code date}, consecutive buckets having
+	 * consecutive numbers. Weeks start on Monday.
+	 */
+	long bucketOf(LocalDate date) {
+		switch (this) {
+		case DAY:
+			return date.toEpochDay();
+		case WEEK:
+			// 1970-01-01 was a Thursday, so count from the Monday before it
+			return Math.floorDiv(date.toEpochDay() + 3, 7);
+		default:
+			return date.getYear() * 12L + date.getMonthValue() - 1;
+		}
+	}
+
+	/**
+	 * The first day of the oldest bucket retained when {@code today} is in the
+	 * newest one.
+	 */
+	LocalDate retentionStart(LocalDate today) {
+		switch (this) {
+		case DAY:
+			return today.minusDays(retainedBuckets - 1L);
+		case WEEK:
+			return today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).minus(retainedBuckets - 1L,
+					ChronoUnit.WEEKS);
+		default:
+			return today.withDayOfMonth(1).minusMonths(retainedBuckets - 1L);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.aptproject.goaltracker.stats;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.aptproject.goaltracker.model.HabitId;
+
+/**
+ * Daily, weekly and monthly counts of the counter changes of every habit,
+ * rolled up as they are recorded into fixed-size rings of buckets, so that
+ * queries never go back to the raw changes. Days follow the time zone of the
+ * clock. Thread safe: each habit has its own lock.
+ */
+public class HabitStatisticsStore {
+
+	private final Clock clock;
+	private final Map<HabitId, HabitBuckets> habits = new ConcurrentHashMap<>();
+
+	public HabitStatisticsStore(Clock clock) {
+		this.clock = clock;
+	}
+
+	public void record(HabitId habitId, int delta) {
+		record(habitId, delta, clock.instant());
+	}
+
+	/**
+	 * Records a change that happened at {@code at}, e.g. one replayed from the
+	 * event log. Changes older than the retained buckets are ignored.
+	 */
+	public void record(HabitId habitId, int delta, Instant at) {
+		LocalDate date = at.atZone(clock.getZone()).toLocalDate();
+		HabitBuckets buckets = habits.computeIfAbsent(habitId, key -> new HabitBuckets());
+		synchronized (buckets) {
+			for (BucketSize size : BucketSize.values()) {
+				buckets.ring(size).add(size.bucketOf(date), delta);
+			}
+		}
+	}
+
+	/**
+	 * Returns the counts of the last {@code count} buckets, oldest first and
+	 * ending with the current one.
+	 *
+	 * @throws IllegalArgumentException if more buckets than the retained ones
+	 *                                  are asked for
+	 */
+	public int[] lastBuckets(HabitId habitId, BucketSize size, int count) {
+		if (count < 0 || count > size.getRetainedBuckets()) {
+			throw new IllegalArgumentException(
+					"Between 0 and " + size.getRetainedBuckets() + " " + size + " buckets can be asked for");
+		}
+		int[] counts = new int[count];
+		HabitBuckets buckets = habits.get(habitId);
+		if (buckets == null) {
+			return counts;
+		}
+		long current = size.bucketOf(today());
+		synchronized (buckets) {
+			BucketRing ring = buckets.ring(size);
+			for (int i = 0; i < count; i++) {
+				counts[i] = ring.get(current - count + 1 + i);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * The count of the current bucket.
+	 */
+	public int current(HabitId habitId, BucketSize size) {
+		return lastBuckets(habitId, size, 1)[0];
+	}
+
+	/**
+	 * The number of consecutive days with a positive count, ending today, or
+	 * yesterday while today has none yet. Longer streaks than the retained
+	 * days are capped.
+	 */
+	public int currentStreak(HabitId habitId) {
+		HabitBuckets buckets = habits.get(habitId);
+		if (buckets == null) {
+			return 0;
+		}
+		long day = BucketSize.DAY.bucketOf(today());
+		synchronized (buckets) {
+			BucketRing days = buckets.ring(BucketSize.DAY);
+			if (days.get(day) <= 0) {
+				day--;
+			}
+			int streak = 0;
+			while (streak < BucketSize.DAY.getRetainedBuckets() && days.get(day - streak) > 0) {
+				streak++;
+			}
+			return streak;
+		}
+	}
+
+	/**
+	 * Forgets the statistics of a habit, e.g. once it has been removed.
+	 */
+	public void remove(HabitId habitId) {
+		habits.remove(habitId);
+	}
+
+	/**
+	 * Forgets the statistics of every habit of a goal, e.g. once it has been
+	 * deleted, whether or not the habits are known to the caller.
+	 */
+	public void removeGoal(String goalName) {
+		habits.keySet().removeIf(habitId -> habitId.getGoalName().equals(goalName));
+	}
+
+	/**
+	 * Changes before this instant fall outside every retained bucket.
+	 */
+	public Instant getRetentionStart() {
+		LocalDate today = today();
+		LocalDate start = today;
+		for (BucketSize size : BucketSize.values()) {
+			LocalDate sizeStart = size.retentionStart(today);
+			if (sizeStart.isBefore(start)) {
+				start = sizeStart;
+			}
+		}
+		return start.atStartOfDay(clock.getZone()).toInstant();
+	}
+
+	private LocalDate today() {
+		return LocalDate.now(clock);
+	}
+
+	private static class HabitBuckets {
+		private final BucketRing[] rings = new BucketRing[BucketSize.values().length];
+
+		HabitBuckets() {
+			for (BucketSize size : BucketSize.values()) {
+				rings[size.ordinal()] = new BucketRing(size.getRetainedBuckets());
+			}
+		}
+
+		BucketRing ring(BucketSize size) {
+			return rings[size.ordinal()];
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+/**
+ * RFC 4180 reader: fields may be quoted, with doubled quotes inside, and
+ * quoted fields may span lines.
+ */
+class CsvGoalReader implements GoalReader {
+
+	private final BufferedReader in;
+	private int line;
+	/* the first row of the next goal, already read while looking for the end of the current one */
+	private List<String> pending;
+
+	CsvGoalReader(Reader in) throws IOException {
+		this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		pending = readRecord();
+		if (pending != null && String.join(",", pending).equals(CsvGoalWriter.HEADER)) {
+			pending = readRecord();
+		}
+	}
+
+	@Override
+	public Goal read() throws IOException {
+		if (pending == null) {
+			return null;
+		}
+		Goal goal = new Goal(pending.get(0));
+		while (pending != null && pending.get(0).equals(goal.getName())) {
+			if (!pending.get(1).isEmpty()) {
+				Habit habit = new Habit(pending.get(1));
+				habit.setCounter(parseCounter(pending.get(2)));
+				goal.addHabit(habit);
+			}
+			pending = readRecord();
+		}
+		return goal;
+	}
+
+	private int parseCounter(String counter) throws IOException {
+		try {
+			return counter.isEmpty() ? 0 : Integer.parseInt(counter.trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Line " + line + ": invalid counter " + counter, e);
+		}
+	}
+
+	/**
+	 * @return the three fields of the next record, null at the end of the file
+	 */
+	private List<String> readRecord() throws IOException {
+		int c = in.read();
+		while (c == '\n' || c == '\r') {
+			// blank lines
+			line += c == '\n' ? 1 : 0;
+			c = in.read();
+		}
+		if (c == -1) {
+			return null;
+		}
+		line++;
+		int recordLine = line;
+		List<String> fields = new ArrayList<>(3);
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new IOException("Line " + recordLine + ": unterminated quoted field");
+				}
+				if (c == '"') {
+					c = in.read();
+					if (c != '"') {
+						quoted = false;
+						continue;
+					}
+				} else if (c == '\n') {
+					line++;
+				}
+				field.append((char) c);
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\n' || c == '\r' || c == -1) {
+				if (c == '\r') {
+					in.mark(1);
+					if (in.read() != '\n') {
+						in.reset();
+					}
+				}
+				fields.add(field.toString());
+				break;
+			} else {
+				field.append((char) c);
+			}
+			c = in.read();
+		}
+		if (fields.size() != 3) {
+			throw new IOException("Line " + recordLine + ": expected 3 fields but found " + fields.size());
+		}
+		return fields;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,52 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.io.Writer;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+class CsvGoalWriter implements GoalWriter {
+
+	static final String HEADER = "goal,habit,counter";
+
+	private final Writer out;
+
+	CsvGoalWriter(Writer out) throws IOException {
+		this.out = out;
+		out.write(HEADER);
+		out.write('\n');
+	}
+
+	@Override
+	public void write(Goal goal) throws IOException {
+		if (goal.getHabits().isEmpty()) {
+			writeField(goal.getName());
+			out.write(",,\n");
+			return;
+		}
+		for (Habit habit : goal.getHabits()) {
+			writeField(goal.getName());
+			out.write(',');
+			writeField(habit.getName());
+			out.write(',');
+			out.write(Integer.toString(habit.getCounter()));
+			out.write('\n');
+		}
+	}
+
+	private void writeField(String value) throws IOException {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		out.write(value.replace("\"", "\"\""));
+		out.write('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
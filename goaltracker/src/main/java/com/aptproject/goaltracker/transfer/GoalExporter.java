@@ -0,0 +1,46 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.repository.ModelRepository;
+
+/**
+ * Streams every goal of a repository, ordered by name, to a
+ * {@link GoalWriter}, telling the listener every {@code batchSize} goals.
+ */
+public class GoalExporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private final ModelRepository repository;
+	private final int batchSize;
+
+	public GoalExporter(ModelRepository repository, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.repository = repository;
+		this.batchSize = batchSize;
+	}
+
+	public TransferResult exportGoals(GoalWriter writer, TransferListener listener) throws IOException {
+		TransferResult result = new TransferResult();
+		try (Stream<Goal> goals = repository.streamAllGoals()) {
+			Iterator<Goal> iterator = goals.iterator();
+			while (iterator.hasNext()) {
+				Goal goal = iterator.next();
+				writer.write(goal);
+				result.added(goal);
+				if (result.getGoals() % batchSize == 0) {
+					listener.progress(result.getGoals(), result.getHabits());
+				}
+			}
+		}
+		if (result.getGoals() % batchSize != 0) {
+			listener.progress(result.getGoals(), result.getHabits());
+		}
+		return result;
+	}
+}
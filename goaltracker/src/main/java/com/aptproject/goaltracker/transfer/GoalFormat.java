@@ -0,0 +1,36 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * The file formats goals can be imported from and exported to.
+ * <ul>
+ * <li>CSV: a {@code goal,habit,counter} header, then a row per habit, or a
+ * row with empty habit and counter for a goal without habits. The rows of a
+ * goal must be next to each other.</li>
+ * <li>JSON: an array of {@code {"name":..., "habits":[{"name":...,
+ * "counter":...}]}} objects.</li>
+ * </ul>
+ * Both are read and written as a stream, never holding more than one goal.
+ */
+public enum GoalFormat {
+	CSV, JSON;
+
+	public GoalReader reader(Reader in) throws IOException {
+		return this == CSV ? new CsvGoalReader(in) : new JsonGoalReader(in);
+	}
+
+	public GoalWriter writer(Writer out) throws IOException {
+		return this == CSV ? new CsvGoalWriter(out) : new JsonGoalWriter(out);
+	}
+
+	/**
+	 * The format matching the extension of the file, CSV when unknown.
+	 */
+	public static GoalFormat fromFileName(String fileName) {
+		return fileName.toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+	}
+}
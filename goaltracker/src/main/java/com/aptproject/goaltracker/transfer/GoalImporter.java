@@ -0,0 +1,70 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+
+/**
+ * Streams goals from a {@link GoalReader} into a repository, adding
+ * {@code batchSize} goals per transaction. When a batch contains a goal that
+ * already exists, its goals are added one at a time instead and the existing
+ * ones are skipped, so an import can be run again after a failure. Any other
+ * failure of the repository stops the import and is thrown, the batches
+ * already added are kept.
+ */
+public class GoalImporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private static final Logger LOGGER = Logger.getLogger(GoalImporter.class.getName());
+
+	private final ModelRepository repository;
+	private final int batchSize;
+
+	public GoalImporter(ModelRepository repository, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.repository = repository;
+		this.batchSize = batchSize;
+	}
+
+	public TransferResult importGoals(GoalReader reader, TransferListener listener) throws IOException {
+		TransferResult result = new TransferResult();
+		List<Goal> batch = new ArrayList<>(batchSize);
+		Goal goal;
+		while ((goal = reader.read()) != null) {
+			batch.add(goal);
+			if (batch.size() == batchSize) {
+				addBatch(batch, result, listener);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			addBatch(batch, result, listener);
+		}
+		return result;
+	}
+
+	private void addBatch(List<Goal> batch, TransferResult result, TransferListener listener) {
+		try {
+			repository.addGoals(batch);
+			batch.forEach(result::added);
+		} catch (GoalExistsException e) {
+			for (Goal goal : batch) {
+				try {
+					repository.addGoal(goal);
+					result.added(goal);
+				} catch (GoalExistsException exists) {
+					LOGGER.fine(exists::getMessage);
+					result.skipped(goal);
+				}
+			}
+		}
+		listener.progress(result.getGoals(), result.getHabits());
+	}
+}
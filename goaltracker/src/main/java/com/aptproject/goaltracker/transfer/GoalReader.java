@@ -0,0 +1,16 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import com.aptproject.goaltracker.model.Goal;
+
+/**
+ * Reads goals, with their habits, one at a time from a file.
+ */
+public interface GoalReader extends Closeable {
+	/**
+	 * @return the next goal, or null at the end of the file
+	 * @throws IOException also when the file is malformed
+	 */
+	public Goal read() throws IOException;
+}
@@ -0,0 +1,13 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import com.aptproject.goaltracker.model.Goal;
+
+/**
+ * Writes goals, with their habits, one at a time to a file. Closing the
+ * writer completes the file.
+ */
+public interface GoalWriter extends Closeable {
+	public void write(Goal goal) throws IOException;
+}
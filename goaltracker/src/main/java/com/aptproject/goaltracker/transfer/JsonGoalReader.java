@@ -0,0 +1,96 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Pulls one goal at a time from the array, ignoring unknown fields.
+ */
+class JsonGoalReader implements GoalReader {
+
+	private final JsonParser parser;
+
+	JsonGoalReader(Reader in) throws IOException {
+		parser = new JsonFactory().createParser(in);
+		JsonToken first = parser.nextToken();
+		if (first != null) {
+			expect(first, JsonToken.START_ARRAY);
+		}
+	}
+
+	@Override
+	public Goal read() throws IOException {
+		JsonToken token = parser.nextToken();
+		if (token == null || token == JsonToken.END_ARRAY) {
+			return null;
+		}
+		expect(token, JsonToken.START_OBJECT);
+		String name = null;
+		List<Habit> habits = new ArrayList<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (field.equals("name")) {
+				expect(value, JsonToken.VALUE_STRING);
+				name = parser.getText();
+			} else if (field.equals("habits")) {
+				expect(value, JsonToken.START_ARRAY);
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					habits.add(readHabit());
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (name == null) {
+			throw new JsonParseException(parser, "Goal without name");
+		}
+		Goal goal = new Goal(name);
+		habits.forEach(goal::addHabit);
+		return goal;
+	}
+
+	private Habit readHabit() throws IOException {
+		expect(parser.currentToken(), JsonToken.START_OBJECT);
+		String name = null;
+		int counter = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (field.equals("name")) {
+				expect(value, JsonToken.VALUE_STRING);
+				name = parser.getText();
+			} else if (field.equals("counter")) {
+				expect(value, JsonToken.VALUE_NUMBER_INT);
+				counter = parser.getIntValue();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (name == null) {
+			throw new JsonParseException(parser, "Habit without name");
+		}
+		Habit habit = new Habit(name);
+		habit.setCounter(counter);
+		return habit;
+	}
+
+	private void expect(JsonToken actual, JsonToken expected) throws JsonParseException {
+		if (actual != expected) {
+			throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+}
@@ -0,0 +1,39 @@
+package com.aptproject.goaltracker.transfer;
+
+import java.io.IOException;
+import java.io.Writer;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+class JsonGoalWriter implements GoalWriter {
+
+	private final JsonGenerator generator;
+
+	JsonGoalWriter(Writer out) throws IOException {
+		generator = new JsonFactory().createGenerator(out);
+		generator.writeStartArray();
+	}
+
+	@Override
+	public void write(Goal goal) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("name", goal.getName());
+		generator.writeArrayFieldStart("habits");
+		for (Habit habit : goal.getHabits()) {
+			generator.writeStartObject();
+			generator.writeStringField("name", habit.getName());
+			generator.writeNumberField("counter", habit.getCounter());
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	@Override
+	public void close() throws IOException {
+		generator.writeEndArray();
+		generator.close();
+	}
+}
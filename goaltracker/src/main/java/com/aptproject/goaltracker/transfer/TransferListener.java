@@ -0,0 +1,9 @@
+package com.aptproject.goaltracker.transfer;
+
+/**
+ * Told about the progress of an import or an export after every batch.
+ */
+@FunctionalInterface
+public interface TransferListener {
+	public void progress(long goals, long habits);
+}
@@ -0,0 +1,42 @@
+package com.aptproject.goaltracker.transfer;
+
+import com.aptproject.goaltracker.model.Goal;
+
+/**
+ * How many goals and habits an import or an export went through.
+ */
+public class TransferResult {
+
+	private long goals;
+	private long habits;
+	private long skippedGoals;
+
+	void added(Goal goal) {
+		goals++;
+		habits += goal.getHabits().size();
+	}
+
+	void skipped(Goal goal) {
+		skippedGoals++;
+	}
+
+	public long getGoals() {
+		return goals;
+	}
+
+	public long getHabits() {
+		return habits;
+	}
+
+	/**
+	 * Goals not imported because they already existed.
+	 */
+	public long getSkippedGoals() {
+		return skippedGoals;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d goals, %d habits, %d existing goals skipped", goals, habits, skippedGoals);
+	}
+}
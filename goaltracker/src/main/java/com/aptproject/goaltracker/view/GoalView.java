@@ -8,6 +8,14 @@ import com.aptproject.goaltracker.model.Habit;
 public interface GoalView {
 	void showAllGoals(List<Goal> goals);
 	
+	void showMoreGoals(List<Goal> goals);
+	
+	/**
+	 * Provides goals requested by name, e.g. for rows that are about to be
+	 * shown, without changing the list of goals.
+	 */
+	void goalsLoaded(List<Goal> goals);
+	
 	void showError(String message);
 	
 	void goalAdded(Goal goal);
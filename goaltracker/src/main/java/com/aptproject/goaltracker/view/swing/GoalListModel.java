@@ -0,0 +1,270 @@
+package com.aptproject.goaltracker.view.swing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import javax.swing.AbstractListModel;
+import com.aptproject.goaltracker.model.Goal;
+
+/**
+ * List model of the goals that keeps only the name of every row, plus an LRU
+ * of at most {@code maxLoadedGoals} loaded goals. Rows whose goal is not
+ * loaded return a placeholder goal with just the name; {@link #ensureLoaded(int)},
+ * called for the visible rows, asks the row loader for the block of rows
+ * around them, and the answer is handed back to {@link #goalsLoaded(List)}.
+ * Once the request completes, its rows can be requested again if it failed,
+ * and the rows it did not load are removed, since their goals are gone.
+ * Rows are found by name through a map, rebuilt after rows are inserted or
+ * removed before the last one. Mutators mirror the ones of
+ * {@link javax.swing.DefaultListModel}, keeping the names sorted like the
+ * pages of goals and each name once. Like every Swing model it must only be
+ * used on the event dispatch thread.
+ */
+class GoalListModel extends AbstractListModel<Goal> {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int DEFAULT_MAX_LOADED_GOALS = 1000;
+	static final int LOAD_BLOCK_SIZE = 50;
+
+	private final ArrayList<String> names = new ArrayList<>();
+	/* row of each name, null until rebuilt */
+	private transient Map<String, Integer> rows = new HashMap<>();
+	private final LinkedHashMap<String, Goal> loadedGoals;
+	/* the request loading each name */
+	private final HashMap<String, List<String>> loadingNames = new HashMap<>();
+	private transient Function<List<String>, CompletionStage<?>> rowLoader = requested -> CompletableFuture
+			.completedFuture(null);
+
+	GoalListModel() {
+		this(DEFAULT_MAX_LOADED_GOALS);
+	}
+
+	GoalListModel(int maxLoadedGoals) {
+		loadedGoals = new LinkedHashMap<String, Goal>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Goal> eldest) {
+				return size() > maxLoadedGoals;
+			}
+		};
+	}
+
+	/**
+	 * @param rowLoader requests the goals with the given names, returning the
+	 *                  request, completed on the event dispatch thread once
+	 *                  the loaded goals have been handed to
+	 *                  {@link #goalsLoaded(List)}
+	 */
+	void setRowLoader(Function<List<String>, CompletionStage<?>> rowLoader) {
+		this.rowLoader = rowLoader;
+	}
+
+	@Override
+	public int getSize() {
+		return names.size();
+	}
+
+	@Override
+	public Goal getElementAt(int index) {
+		String name = names.get(index);
+		Goal goal = loadedGoals.get(name);
+		return goal != null ? goal : new Goal(name);
+	}
+
+	Goal get(int index) {
+		return getElementAt(index);
+	}
+
+	Goal elementAt(int index) {
+		return getElementAt(index);
+	}
+
+	int size() {
+		return names.size();
+	}
+
+	int indexOf(String name) {
+		Integer row = rows().get(name);
+		return row != null ? row : -1;
+	}
+
+	private Map<String, Integer> rows() {
+		if (rows == null) {
+			rows = new HashMap<>();
+			for (int row = 0; row < names.size(); row++) {
+				rows.put(names.get(row), row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * The goal with that name if it is loaded, null otherwise.
+	 */
+	Goal loadedGoal(String name) {
+		return loadedGoals.get(name);
+	}
+
+	boolean isLoaded(int index) {
+		return loadedGoals.containsKey(names.get(index));
+	}
+
+	/**
+	 * Requests the block of rows around {@code index} unless its goal is
+	 * already loaded or being loaded.
+	 */
+	void ensureLoaded(int index) {
+		if (index < 0 || index >= names.size() || isLoaded(index)) {
+			return;
+		}
+		int from = index - index % LOAD_BLOCK_SIZE;
+		int to = Math.min(from + LOAD_BLOCK_SIZE, names.size());
+		List<String> requested = new ArrayList<>();
+		for (String name : names.subList(from, to)) {
+			if (!loadedGoals.containsKey(name) && !loadingNames.containsKey(name)) {
+				requested.add(name);
+			}
+		}
+		if (requested.isEmpty()) {
+			return;
+		}
+		requested.forEach(name -> loadingNames.put(name, requested));
+		rowLoader.apply(requested).whenComplete((result, failure) -> loadEnded(requested, failure == null));
+	}
+
+	/**
+	 * Releases the names of the request that it did not load, unless they have
+	 * been requested again since, e.g. after {@link #clear()}. If the request
+	 * succeeded, their goals are no longer stored.
+	 */
+	private void loadEnded(List<String> requested, boolean succeeded) {
+		for (String name : requested) {
+			if (loadingNames.get(name) != requested) {
+				continue;
+			}
+			loadingNames.remove(name);
+			if (succeeded) {
+				removeElement(new Goal(name));
+			}
+		}
+	}
+
+	/**
+	 * Stores the loaded goals and notifies the interval of their rows, which
+	 * is a single block for the goals requested by {@link #ensureLoaded(int)}.
+	 * The names of its request that are not loaded stay requested until it
+	 * completes.
+	 */
+	void goalsLoaded(List<Goal> goals) {
+		int firstLoaded = Integer.MAX_VALUE;
+		int lastLoaded = -1;
+		for (Goal goal : goals) {
+			loadingNames.remove(goal.getName());
+			loadedGoals.put(goal.getName(), goal);
+			int index = indexOf(goal.getName());
+			if (index != -1) {
+				firstLoaded = Math.min(firstLoaded, index);
+				lastLoaded = Math.max(lastLoaded, index);
+			}
+		}
+		if (lastLoaded != -1) {
+			fireContentsChanged(this, firstLoaded, lastLoaded);
+		}
+	}
+
+	/**
+	 * Inserts the goal at its place in name order, unless it is already
+	 * listed: e.g. a goal added locally past the last page loaded so far is
+	 * listed before that page, which then leaves it out.
+	 */
+	void addElement(Goal goal) {
+		addAll(Collections.singletonList(goal));
+	}
+
+	/**
+	 * Inserts the goals at their place in name order, the pages of goals
+	 * following the loaded ones go at the end. Goals already listed are only
+	 * refreshed. The goals are inserted in name order, so that every run of
+	 * adjacent rows is notified once, before the rows after it are inserted.
+	 */
+	void addAll(Collection<Goal> goals) {
+		List<Goal> sorted = new ArrayList<>(goals);
+		sorted.sort(Comparator.comparing(Goal::getName));
+		// only tells which names are listed once rows are inserted before the last one
+		Map<String, Integer> listed = rows();
+		int firstAdded = -1;
+		int lastAdded = -1;
+		for (Goal goal : sorted) {
+			loadedGoals.put(goal.getName(), goal);
+			if (listed.containsKey(goal.getName())) {
+				continue;
+			}
+			int index = insertionIndex(goal.getName());
+			if (firstAdded != -1 && index != lastAdded + 1) {
+				fireIntervalAdded(this, firstAdded, lastAdded);
+				firstAdded = -1;
+			}
+			names.add(index, goal.getName());
+			listed.put(goal.getName(), index);
+			if (rows != null && index == names.size() - 1) {
+				rows.put(goal.getName(), index);
+			} else {
+				// rebuilt once, when a row is next looked up
+				rows = null;
+			}
+			if (firstAdded == -1) {
+				firstAdded = index;
+			}
+			lastAdded = index;
+		}
+		if (firstAdded != -1) {
+			fireIntervalAdded(this, firstAdded, lastAdded);
+		}
+	}
+
+	private int insertionIndex(String name) {
+		int last = names.size() - 1;
+		if (last == -1 || names.get(last).compareTo(name) < 0) {
+			return names.size();
+		}
+		int index = Collections.binarySearch(names, name);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	boolean removeElement(Goal goal) {
+		int index = indexOf(goal.getName());
+		if (index == -1) {
+			return false;
+		}
+		names.remove(index);
+		if (index == names.size()) {
+			rows.remove(goal.getName());
+		} else {
+			rows = null;
+		}
+		loadedGoals.remove(goal.getName());
+		fireIntervalRemoved(this, index, index);
+		return true;
+	}
+
+	void clear() {
+		int size = names.size();
+		names.clear();
+		rows = new HashMap<>();
+		loadedGoals.clear();
+		loadingNames.clear();
+		if (size > 0) {
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+	}
+}
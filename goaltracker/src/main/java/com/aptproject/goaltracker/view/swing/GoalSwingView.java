@@ -1,48 +1,103 @@
 package com.aptproject.goaltracker.view.swing;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import javax.swing.event.ListSelectionListener;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.stats.BucketSize;
+import com.aptproject.goaltracker.stats.HabitStatisticsStore;
 import com.aptproject.goaltracker.view.GoalView;
+import com.aptproject.goaltracker.controller.AsyncGoalController;
+import com.aptproject.goaltracker.controller.BatchingExecutor;
+import com.aptproject.goaltracker.controller.ControllerExecutor;
 import com.aptproject.goaltracker.controller.GoalController;
 
 public class GoalSwingView extends JFrame implements GoalView {
 
 	private static final long serialVersionUID = 1L;
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+	private static final int TOOLTIP_DAYS = 7;
 	private JPanel contentPane;
 	private JTextField txtGoal;
 	private JTextField txtHabit;
 	private JLabel lblError;
+	private JLabel lblHabitStatistics;
 	private JList<Goal> listGoals;
-	private DefaultListModel<Goal> listGoalsModel;
+	private GoalListModel listGoalsModel;
 	private JList<Habit> listHabits;
 	private DefaultListModel<Habit> listHabitsModel;
 
 	private transient GoalController goalController;
+	/* the default one is created on first use, unless one is set before */
+	private transient ControllerExecutor controllerExecutor;
+	/* built on first use from the controller and the executor */
+	private transient AsyncGoalController asyncGoalController;
+	private final transient BatchingExecutor eventDispatchThread = new BatchingExecutor(SwingUtilities::invokeLater);
+	private final AtomicBoolean loadingMoreGoals = new AtomicBoolean();
+	/* row of each habit in listHabitsModel, rebuilt after rows are added or removed */
+	private transient Map<String, Integer> habitRows;
+	private final transient Map<HabitId, Habit> pendingCounterUpdates = new ConcurrentHashMap<>();
+	private final AtomicBoolean counterUpdatesScheduled = new AtomicBoolean();
+	private transient HabitStatisticsStore habitStatistics = new HabitStatisticsStore(Clock.systemDefaultZone());
 
 	public void setGoalController(GoalController goalController) {
 		this.goalController = goalController;
+		this.asyncGoalController = null;
 	}
 
-	DefaultListModel<Goal> getListGoalModel() {
+	/**
+	 * Replaces the executor that runs the controller operations, which is shut
+	 * down when the frame is closed.
+	 */
+	public void setControllerExecutor(ControllerExecutor controllerExecutor) {
+		this.controllerExecutor = controllerExecutor;
+		this.asyncGoalController = null;
+	}
+
+	/**
+	 * Replaces the statistics shown for the habits, which should be the ones
+	 * the controller records the counter changes in.
+	 */
+	public void setHabitStatistics(HabitStatisticsStore habitStatistics) {
+		this.habitStatistics = habitStatistics;
+	}
+
+	GoalListModel getListGoalModel() {
 		return listGoalsModel;
 	}
 
@@ -55,8 +110,15 @@ public class GoalSwingView extends JFrame implements GoalView {
 	 */
 	public GoalSwingView() {
 		setTitle("Goal View");
-		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		// exits once the controller operations are done, see exitInBackground
+		setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 		setBounds(100, 100, 450, 300);
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				exitInBackground();
+			}
+		});
 		contentPane = new JPanel();
 		contentPane.setBorder(new EmptyBorder(5, 5, 5, 5));
 
@@ -86,6 +148,15 @@ public class GoalSwingView extends JFrame implements GoalView {
 		gbc_habitScrollPane.gridy = 1;
 		contentPane.add(habitScrollPane, gbc_habitScrollPane);
 
+		lblHabitStatistics = new JLabel(" ");
+		GridBagConstraints gbc_lblHabitStatistics = new GridBagConstraints();
+		gbc_lblHabitStatistics.gridwidth = 2;
+		gbc_lblHabitStatistics.insets = new Insets(0, 0, 5, 5);
+		gbc_lblHabitStatistics.gridx = 2;
+		gbc_lblHabitStatistics.gridy = 0;
+		contentPane.add(lblHabitStatistics, gbc_lblHabitStatistics);
+		lblHabitStatistics.setName("habitStatisticsLabel");
+
 		JLabel lblGoal = new JLabel("Goal:");
 		GridBagConstraints gbc_lblGoal = new GridBagConstraints();
 		gbc_lblGoal.insets = new Insets(0, 0, 5, 5);
@@ -104,8 +175,10 @@ public class GoalSwingView extends JFrame implements GoalView {
 		txtGoal.setName("goalTextBox");
 
 		JButton btnAddGoal = new JButton("Add goal");
-		btnAddGoal
-				.addActionListener(e -> new Thread(() -> goalController.newGoal(new Goal(txtGoal.getText()))).start());
+		btnAddGoal.addActionListener(e -> {
+			Goal goal = new Goal(txtGoal.getText());
+			runInBackground(asyncGoalController().newGoal(goal));
+		});
 		btnAddGoal.setEnabled(false);
 		GridBagConstraints gbc_btnAddGoal = new GridBagConstraints();
 		gbc_btnAddGoal.insets = new Insets(0, 0, 5, 5);
@@ -114,9 +187,10 @@ public class GoalSwingView extends JFrame implements GoalView {
 		contentPane.add(btnAddGoal, gbc_btnAddGoal);
 
 		JButton btnRemoveGoal = new JButton("Remove goal");
-		btnRemoveGoal.addActionListener(
-				e -> new Thread(() -> goalController.deleteGoal(listGoalsModel.elementAt(listGoals.getSelectedIndex())))
-						.start());
+		btnRemoveGoal.addActionListener(e -> {
+			Goal goal = listGoalsModel.elementAt(listGoals.getSelectedIndex());
+			runInBackground(asyncGoalController().deleteGoal(goal));
+		});
 		btnRemoveGoal.setEnabled(false);
 		GridBagConstraints gbc_btnRemoveGoal = new GridBagConstraints();
 		gbc_btnRemoveGoal.insets = new Insets(0, 0, 5, 0);
@@ -142,9 +216,13 @@ public class GoalSwingView extends JFrame implements GoalView {
 		txtHabit.setName("habitTextBox");
 
 		JButton btnAddHabit = new JButton("Add habit");
-		btnAddHabit.addActionListener(
-				e -> new Thread(() -> goalController.addHabit(listGoalsModel.elementAt(listGoals.getSelectedIndex()),
-						new Habit(txtHabit.getText()))).start());
+		btnAddHabit.addActionListener(e -> {
+			Goal goal = loadedSelectedGoal();
+			if (goal != null) {
+				Habit habit = new Habit(txtHabit.getText());
+				runInBackground(asyncGoalController().addHabit(goal, habit));
+			}
+		});
 		btnAddHabit.setEnabled(false);
 		GridBagConstraints gbc_btnAddHabit = new GridBagConstraints();
 		gbc_btnAddHabit.insets = new Insets(0, 0, 5, 5);
@@ -153,9 +231,11 @@ public class GoalSwingView extends JFrame implements GoalView {
 		contentPane.add(btnAddHabit, gbc_btnAddHabit);
 
 		JButton btnRemoveHabit = new JButton("Remove habit");
-		btnRemoveHabit.addActionListener(
-				e -> new Thread(() -> goalController.removeHabit(listGoalsModel.elementAt(listGoals.getSelectedIndex()),
-						listHabitsModel.elementAt(listHabits.getSelectedIndex()))).start());
+		btnRemoveHabit.addActionListener(e -> {
+			Goal goal = listGoalsModel.elementAt(listGoals.getSelectedIndex());
+			Habit habit = listHabitsModel.elementAt(listHabits.getSelectedIndex());
+			runInBackground(asyncGoalController().removeHabit(goal, habit));
+		});
 		btnRemoveHabit.setEnabled(false);
 		GridBagConstraints gbc_btnRemoveHabit = new GridBagConstraints();
 		gbc_btnRemoveHabit.insets = new Insets(0, 0, 5, 0);
@@ -172,9 +252,10 @@ public class GoalSwingView extends JFrame implements GoalView {
 		contentPane.add(lblCounter, gbc_lblCounter);
 
 		JButton btnIncreaseCounter = new JButton("Incr. counter");
-		btnIncreaseCounter.addActionListener(e -> new Thread(
-				() -> goalController.incrementCounter(listHabitsModel.getElementAt(listHabits.getSelectedIndex())))
-				.start());
+		btnIncreaseCounter.addActionListener(e -> {
+			Habit habit = listHabitsModel.getElementAt(listHabits.getSelectedIndex());
+			runInBackground(asyncGoalController().incrementCounter(habit));
+		});
 		btnIncreaseCounter.setEnabled(false);
 		GridBagConstraints gbc_btnIncreaseCounter = new GridBagConstraints();
 		gbc_btnIncreaseCounter.insets = new Insets(0, 0, 5, 5);
@@ -183,9 +264,10 @@ public class GoalSwingView extends JFrame implements GoalView {
 		contentPane.add(btnIncreaseCounter, gbc_btnIncreaseCounter);
 
 		JButton btnDecreaseCounter = new JButton("Decr. counter");
-		btnDecreaseCounter.addActionListener(e -> new Thread(
-				() -> goalController.decrementCounter(listHabitsModel.getElementAt(listHabits.getSelectedIndex())))
-				.start());
+		btnDecreaseCounter.addActionListener(e -> {
+			Habit habit = listHabitsModel.getElementAt(listHabits.getSelectedIndex());
+			runInBackground(asyncGoalController().decrementCounter(habit));
+		});
 		btnDecreaseCounter.setEnabled(false);
 		GridBagConstraints gbc_btnDecreaseCounter = new GridBagConstraints();
 		gbc_btnDecreaseCounter.insets = new Insets(0, 0, 5, 5);
@@ -219,8 +301,11 @@ public class GoalSwingView extends JFrame implements GoalView {
 		};
 		txtHabit.addKeyListener(addHabitButtonEnabler);
 
-		listGoalsModel = new DefaultListModel<>();
+		listGoalsModel = new GoalListModel();
+		listGoalsModel.setRowLoader(this::loadGoals);
 		listGoals = new JList<>(listGoalsModel);
+		// fixed cell sizes keep the list from measuring every row
+		listGoals.setPrototypeCellValue(new Goal("Goal name"));
 		ListSelectionListener listGoalSelectionListener = e -> {
 			int selectedIndex = listGoals.getSelectedIndex();
 			btnRemoveGoal.setEnabled(listGoals.getSelectedIndex() != -1);
@@ -235,23 +320,184 @@ public class GoalSwingView extends JFrame implements GoalView {
 		listGoals.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		listGoals.setName("goalList");
 		goalScrollPane.setViewportView(listGoals);
+		// the viewport changes when the list is scrolled, resized or gets rows
+		goalScrollPane.getViewport().addChangeListener(e -> loadVisibleGoals());
+		goalScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+			JScrollBar scrollBar = goalScrollPane.getVerticalScrollBar();
+			boolean nearBottom = scrollBar.getValue() + 2 * scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+			if (!e.getValueIsAdjusting() && nearBottom && goalController != null
+					&& loadingMoreGoals.compareAndSet(false, true)) {
+				// also when no page was left to show, or the load was rejected or superseded
+				runInBackground(asyncGoalController().moreGoals())
+					.whenComplete((result, failure) -> loadingMoreGoals.set(false));
+			}
+		});
 
 		listHabitsModel = new DefaultListModel<>();
+		listHabitsModel.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				habitRows = null;
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				habitRows = null;
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				// rows are replaced in place, their indexes do not change
+			}
+		});
 		listHabits = new JList<>(listHabitsModel);
 		ListSelectionListener listHabitSelectionListener = e -> {
 			btnRemoveHabit.setEnabled(listHabits.getSelectedIndex() != -1);
 			btnIncreaseCounter.setEnabled(listHabits.getSelectedIndex() != -1);
 			btnDecreaseCounter.setEnabled(listHabits.getSelectedIndex() != -1);
+			showSelectedHabitStatistics();
 		};
 		listHabits.addListSelectionListener(listHabitSelectionListener);
 		listHabits.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		listHabits.setName("habitList");
+		listHabits.setCellRenderer(new DefaultListCellRenderer() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+				int[] days = habitStatistics.lastBuckets(((Habit) value).getHabitId(), BucketSize.DAY,
+						TOOLTIP_DAYS);
+				setToolTipText("Last " + TOOLTIP_DAYS + " days: " + Arrays.toString(days));
+				return this;
+			}
+		});
 		habitScrollPane.setViewportView(listHabits);
 	}
 
+	/**
+	 * Returns the selected goal, or null if there is no selection or if the goal
+	 * is only known by name yet, in which case the user is told to retry.
+	 */
+	private Goal loadedSelectedGoal() {
+		int selectedIndex = listGoals.getSelectedIndex();
+		if (selectedIndex == -1) {
+			return null;
+		}
+		if (!listGoalsModel.isLoaded(selectedIndex)) {
+			listGoalsModel.ensureLoaded(selectedIndex);
+			lblError.setText("The goal is still loading, please retry");
+			return null;
+		}
+		return listGoalsModel.get(selectedIndex);
+	}
+
+	/**
+	 * Shows the reason of an operation rejected by the controller executor, or
+	 * failed with an exception, as an error; superseded reads are cancelled
+	 * and show nothing. Futures of the operations complete on the event
+	 * dispatch thread, and so does a rejected one, which has already failed.
+	 * Must be called on the event dispatch thread.
+	 */
+	private CompletableFuture<Void> runInBackground(CompletableFuture<Void> operation) {
+		operation.whenComplete((result, failure) -> {
+			if (failure instanceof RejectedExecutionException) {
+				lblError.setText(failure.getMessage());
+			} else if (failure != null && !(failure instanceof CancellationException)) {
+				lblError.setText("The operation failed: "
+						+ (failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName()));
+			}
+		});
+		return operation;
+	}
+
+	/**
+	 * Loads the goals of rows shown by name only. The controller hands the
+	 * loaded goals to the view, which lists them on a later event, before the
+	 * load completes: the request only completes on the event after that.
+	 */
+	private CompletionStage<?> loadGoals(List<String> names) {
+		CompletableFuture<Void> request = new CompletableFuture<>();
+		runInBackground(asyncGoalController().loadGoals(names))
+			.whenComplete((result, failure) -> SwingUtilities.invokeLater(() -> {
+				if (failure == null) {
+					request.complete(null);
+				} else {
+					request.completeExceptionally(failure);
+				}
+			}));
+		return request;
+	}
+
+	/**
+	 * Requests the goals of the visible rows that are not loaded yet.
+	 */
+	private void loadVisibleGoals() {
+		int first = listGoals.getFirstVisibleIndex();
+		int last = listGoals.getLastVisibleIndex();
+		if (first == -1) {
+			return;
+		}
+		for (int index = first; index <= last; index++) {
+			listGoalsModel.ensureLoaded(index);
+		}
+	}
+
+	private AsyncGoalController asyncGoalController() {
+		if (asyncGoalController == null) {
+			if (controllerExecutor == null) {
+				controllerExecutor = ControllerExecutor.withPlatformThreads(ControllerExecutor.DEFAULT_THREADS,
+						ControllerExecutor.DEFAULT_MAX_PENDING_TASKS);
+			}
+			asyncGoalController = new AsyncGoalController(goalController, controllerExecutor, eventDispatchThread);
+		}
+		return asyncGoalController;
+	}
+
+	/**
+	 * Hides the frame at once, then waits up to {@code SHUTDOWN_TIMEOUT_MILLIS}
+	 * for the pending controller operations on a thread of its own before
+	 * exiting, so that the event dispatch thread never blocks on them.
+	 */
+	private void exitInBackground() {
+		setVisible(false);
+		ControllerExecutor executor = controllerExecutor;
+		new Thread(() -> {
+			if (executor != null) {
+				executor.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+			}
+			System.exit(0);
+		}, "controller-shutdown").start();
+	}
+
 	@Override
 	public void showAllGoals(List<Goal> goals) {
-		SwingUtilities.invokeLater(() -> goals.stream().forEach(listGoalsModel::addElement));
+		SwingUtilities.invokeLater(() -> {
+			listGoalsModel.clear();
+			listGoalsModel.addAll(goals);
+			loadingMoreGoals.set(false);
+		});
+	}
+
+	@Override
+	public void showMoreGoals(List<Goal> goals) {
+		SwingUtilities.invokeLater(() -> {
+			listGoalsModel.addAll(goals);
+			loadingMoreGoals.set(false);
+		});
+	}
+
+	@Override
+	public void goalsLoaded(List<Goal> goals) {
+		SwingUtilities.invokeLater(() -> {
+			listGoalsModel.goalsLoaded(goals);
+			int selectedIndex = listGoals.getSelectedIndex();
+			if (selectedIndex != -1 && goals.contains(listGoalsModel.get(selectedIndex))) {
+				listHabitsModel.clear();
+				listHabitsModel.addAll(listGoalsModel.get(selectedIndex).getHabits());
+			}
+		});
 	}
 
 	@Override
@@ -259,6 +505,11 @@ public class GoalSwingView extends JFrame implements GoalView {
 		SwingUtilities.invokeLater(() -> lblError.setText(message));
 	}
 
+	/**
+	 * The goal is listed at its place in name order. Goals already listed,
+	 * e.g. added by another client and loaded meanwhile, are not listed twice,
+	 * and neither are goals that a page loaded later holds again.
+	 */
 	@Override
 	public void goalAdded(Goal goal) {
 		SwingUtilities.invokeLater(() -> {
@@ -270,8 +521,11 @@ public class GoalSwingView extends JFrame implements GoalView {
 	@Override
 	public void goalRemoved(Goal goal) {
 		SwingUtilities.invokeLater(() -> {
+			boolean selected = goal.equals(selectedGoal());
 			listGoalsModel.removeElement(goal);
-			listHabitsModel.clear();
+			if (selected) {
+				listHabitsModel.clear();
+			}
 			resetErrorLabel();
 		});
 	}
@@ -280,10 +534,33 @@ public class GoalSwingView extends JFrame implements GoalView {
 		lblError.setText(" ");
 	}
 
+	private Goal selectedGoal() {
+		int selectedIndex = listGoals.getSelectedIndex();
+		return selectedIndex == -1 ? null : listGoalsModel.get(selectedIndex);
+	}
+
+	/**
+	 * Whether the habit belongs to the goal whose habits are shown; habits
+	 * without goal are taken as belonging to it.
+	 */
+	private boolean isShown(Habit habit) {
+		return habit.getGoal() == null || habit.getGoal().equals(selectedGoal());
+	}
+
+	/**
+	 * Habits added by another client are also added to their goal, if it is
+	 * loaded, so that they are shown when it is selected again.
+	 */
 	@Override
 	public void habitAdded(Habit habit) {
 		SwingUtilities.invokeLater(() -> {
-			listHabitsModel.addElement(habit);
+			Goal listed = habit.getGoal() == null ? null : listGoalsModel.loadedGoal(habit.getGoal().getName());
+			if (listed != null && !listed.getHabits().contains(habit)) {
+				listed.getHabits().add(habit);
+			}
+			if (isShown(habit) && !listHabitsModel.contains(habit)) {
+				listHabitsModel.addElement(habit);
+			}
 			resetErrorLabel();
 		});
 	}
@@ -291,19 +568,79 @@ public class GoalSwingView extends JFrame implements GoalView {
 	@Override
 	public void habitRemoved(Habit habit) {
 		SwingUtilities.invokeLater(() -> {
-			listHabitsModel.removeElement(habit);
+			Goal listed = habit.getGoal() == null ? null : listGoalsModel.loadedGoal(habit.getGoal().getName());
+			if (listed != null) {
+				listed.getHabits().remove(habit);
+			}
+			if (isShown(habit)) {
+				listHabitsModel.removeElement(habit);
+			}
 			resetErrorLabel();
 		});
 	}
 
+	/**
+	 * Only the row of the updated habit is replaced. Updates arriving before
+	 * the event dispatch thread gets to them are coalesced, so a burst of taps
+	 * costs a single pass on the EDT.
+	 */
 	@Override
 	public void counterUpdated(Habit habit) {
-		SwingUtilities.invokeLater(() -> {
-			listHabitsModel.clear();
-			Goal selectedGoal = listGoalsModel.get(listGoals.getSelectedIndex());
-			listHabitsModel.addAll(selectedGoal.getHabits());
-			resetErrorLabel();
-		});
+		pendingCounterUpdates.put(habit.getHabitId(), habit);
+		if (counterUpdatesScheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::applyCounterUpdates);
+		}
+	}
+
+	private void applyCounterUpdates() {
+		counterUpdatesScheduled.set(false);
+		Goal selectedGoal = selectedGoal();
+		for (HabitId habitId : pendingCounterUpdates.keySet()) {
+			Habit habit = pendingCounterUpdates.remove(habitId);
+			updateListedCounter(habit);
+			if (selectedGoal != null && (habit.getGoal() == null || habit.getGoal().equals(selectedGoal))) {
+				Integer row = habitRows().get(habit.getName());
+				if (row != null) {
+					listHabitsModel.set(row, habit);
+				}
+			}
+		}
+		showSelectedHabitStatistics();
+		resetErrorLabel();
+	}
+
+	/**
+	 * Habits reloaded after a change of another client are other instances
+	 * than the ones of the listed goal, which must not keep the old counter.
+	 */
+	private void updateListedCounter(Habit habit) {
+		Goal listed = habit.getGoal() == null ? null : listGoalsModel.loadedGoal(habit.getGoal().getName());
+		if (listed != null) {
+			listed.getHabits().stream().filter(other -> other != habit && other.equals(habit))
+					.forEach(other -> other.setCounter(habit.getCounter()));
+		}
+	}
+
+	private void showSelectedHabitStatistics() {
+		int selectedIndex = listHabits.getSelectedIndex();
+		if (selectedIndex == -1) {
+			lblHabitStatistics.setText(" ");
+			return;
+		}
+		HabitId habitId = listHabitsModel.get(selectedIndex).getHabitId();
+		lblHabitStatistics.setText(String.format("Today %d, week %d, month %d, streak %d days",
+				habitStatistics.current(habitId, BucketSize.DAY), habitStatistics.current(habitId, BucketSize.WEEK),
+				habitStatistics.current(habitId, BucketSize.MONTH), habitStatistics.currentStreak(habitId)));
+	}
+
+	private Map<String, Integer> habitRows() {
+		if (habitRows == null) {
+			habitRows = new HashMap<>();
+			for (int i = 0; i < listHabitsModel.size(); i++) {
+				habitRows.put(listHabitsModel.get(i).getName(), i);
+			}
+		}
+		return habitRows;
 	}
 
 }
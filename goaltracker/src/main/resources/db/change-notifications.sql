@@ -0,0 +1,72 @@
+-- Notifies every committed insertion or deletion of goals and habits on the
+-- goaltracker_changes channel, as a JSON payload
+-- {"origin": ..., "change": ..., "goal": ..., "habit": ..., "habit_id": ...}
+-- where origin is the goaltracker.instance setting of the writing session, so
+-- that every instance can skip its own changes. Counter taps fire no trigger:
+-- a notifying transaction commits under a lock global to the database, which
+-- would serialize every tap of every client. The counter snapshots notify the
+-- ranges of events they fold instead, see PostgresModelRepository.
+-- The application installs it the first time it listens with
+-- --change-notifications. Once the current version is installed, running it
+-- again changes nothing: it takes no lock on the tables and needs no right to
+-- change them, so a database owner may also install it by hand beforehand, in
+-- a single transaction:
+--   psql -h localhost -p 5455 -U user -d postgres -1 -f change-notifications.sql
+
+DO $install$
+BEGIN
+	IF obj_description(to_regprocedure('goaltracker_notify_change()'), 'pg_proc') = 'goaltracker change notifications 3' THEN
+		RETURN;
+	END IF;
+	-- serializes the installation of instances starting together
+	PERFORM pg_advisory_xact_lock(hashtext('goaltracker_change_notifications'));
+	IF obj_description(to_regprocedure('goaltracker_notify_change()'), 'pg_proc') = 'goaltracker change notifications 3' THEN
+		RETURN;
+	END IF;
+
+	-- replacing the function keeps the triggers of the previous versions, which call it
+	CREATE OR REPLACE FUNCTION goaltracker_notify_change() RETURNS trigger AS $notify$
+	DECLARE
+		change text;
+		goal_name text;
+		habit_name text;
+		changed_habit_id bigint;
+	BEGIN
+		IF TG_TABLE_NAME = 'goal' AND TG_OP = 'INSERT' THEN
+			change := 'GOAL_ADDED';
+			goal_name := NEW.name;
+		ELSIF TG_TABLE_NAME = 'goal' THEN
+			change := 'GOAL_REMOVED';
+			goal_name := OLD.name;
+		ELSIF TG_OP = 'INSERT' THEN
+			change := 'HABIT_ADDED';
+			goal_name := NEW.goal_id;
+			habit_name := NEW.name;
+			changed_habit_id := NEW.id;
+		ELSE
+			change := 'HABIT_REMOVED';
+			goal_name := OLD.goal_id;
+			habit_name := OLD.name;
+			changed_habit_id := OLD.id;
+		END IF;
+		PERFORM pg_notify('goaltracker_changes', json_build_object('origin', current_setting('goaltracker.instance', true),
+			'change', change, 'goal', goal_name, 'habit', habit_name, 'habit_id', changed_habit_id)::text);
+		RETURN NULL;
+	END;
+	$notify$ LANGUAGE plpgsql;
+	COMMENT ON FUNCTION goaltracker_notify_change() IS 'goaltracker change notifications 3';
+
+	IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'goaltracker_goal_change' AND tgrelid = 'goal'::regclass) THEN
+		CREATE TRIGGER goaltracker_goal_change AFTER INSERT OR DELETE ON goal
+			FOR EACH ROW EXECUTE PROCEDURE goaltracker_notify_change();
+	END IF;
+	IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'goaltracker_habit_change' AND tgrelid = 'habit'::regclass) THEN
+		CREATE TRIGGER goaltracker_habit_change AFTER INSERT OR DELETE ON habit
+			FOR EACH ROW EXECUTE PROCEDURE goaltracker_notify_change();
+	END IF;
+	-- installed by the previous version
+	IF to_regclass('habit_event') IS NOT NULL THEN
+		DROP TRIGGER IF EXISTS goaltracker_habit_event_change ON habit_event;
+	END IF;
+END
+$install$;
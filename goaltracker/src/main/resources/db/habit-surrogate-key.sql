@@ -0,0 +1,29 @@
+-- Moves an existing habit table from the composite (goal_id, name) primary key
+-- to the generated id of the current mapping, keeping (goal_id, name) unique.
+-- hibernate.hbm2ddl.auto=update does not change primary keys, so this must be
+-- run once, with the application stopped, on databases created before it:
+--   psql -h localhost -p 5455 -U user -d postgres -f habit-surrogate-key.sql
+
+BEGIN;
+
+-- the increment must match the allocationSize of the habit id generator
+CREATE SEQUENCE IF NOT EXISTS habit_id_seq START WITH 1 INCREMENT BY 50;
+
+ALTER TABLE habit ADD COLUMN id BIGINT;
+
+UPDATE habit
+SET id = numbered.row_number
+FROM (SELECT goal_id, name, row_number() OVER (ORDER BY goal_id, name) AS row_number FROM habit) AS numbered
+WHERE habit.goal_id = numbered.goal_id AND habit.name = numbered.name;
+
+-- the pooled optimizer hands out the block of ids ending at the returned value,
+-- so the next block must start after the numbers assigned above
+SELECT setval('habit_id_seq', (SELECT COALESCE(MAX(id), 0) FROM habit) + 50);
+
+ALTER TABLE habit ALTER COLUMN id SET NOT NULL;
+ALTER TABLE habit ALTER COLUMN goal_id SET NOT NULL;
+ALTER TABLE habit DROP CONSTRAINT habit_pkey;
+ALTER TABLE habit ADD CONSTRAINT habit_pkey PRIMARY KEY (id);
+ALTER TABLE habit ADD CONSTRAINT habit_goal_name_uk UNIQUE (goal_id, name);
+
+COMMIT;
@@ -0,0 +1,217 @@
+package com.aptproject.goaltracker.controller;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.aptproject.goaltracker.controller.metrics.ControllerMetrics;
+import com.aptproject.goaltracker.controller.metrics.ControllerOperation;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+public class AsyncGoalControllerTest {
+
+	private static final int TIMEOUT = 5000;
+
+	@Mock
+	private GoalController goalController;
+
+	private AutoCloseable closeable;
+
+	private ControllerExecutor controllerExecutor;
+
+	private final List<Thread> completionThreads = new CopyOnWriteArrayList<>();
+
+	private final Executor completionExecutor = task -> {
+		completionThreads.add(Thread.currentThread());
+		task.run();
+	};
+
+	private AsyncGoalController asyncGoalController;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final ControllerMetrics metrics = new ControllerMetrics();
+
+	@Before
+	public void setup() {
+		closeable = MockitoAnnotations.openMocks(this);
+		when(goalController.getMetrics()).thenReturn(metrics);
+		controllerExecutor = ControllerExecutor.withPlatformThreads(4, 10);
+		asyncGoalController = new AsyncGoalController(goalController, controllerExecutor, completionExecutor);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		release.countDown();
+		controllerExecutor.shutdown(TIMEOUT);
+		closeable.close();
+	}
+
+	@Test
+	public void testOperationsCompleteOnTheCompletionExecutor() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+
+		CompletableFuture.allOf(asyncGoalController.newGoal(goal), asyncGoalController.addHabit(goal, habit),
+				asyncGoalController.incrementCounter(habit), asyncGoalController.decrementCounter(habit),
+				asyncGoalController.removeHabit(goal, habit), asyncGoalController.deleteGoal(goal))
+			.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		verify(goalController).newGoal(goal);
+		verify(goalController).addHabit(goal, habit);
+		verify(goalController).incrementCounter(habit);
+		verify(goalController).decrementCounter(habit);
+		verify(goalController).removeHabit(goal, habit);
+		verify(goalController).deleteGoal(goal);
+		assertThat(completionThreads).hasSize(6);
+	}
+
+	@Test
+	public void testOperationsOnTheSameGoalRunInSubmissionOrder() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		List<String> executed = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> {
+			release.await();
+			executed.add("add");
+			return null;
+		}).when(goalController).addHabit(goal, habit);
+		doAnswer(invocation -> executed.add("increment")).when(goalController).incrementCounter(habit);
+
+		asyncGoalController.addHabit(goal, habit);
+		CompletableFuture<Void> increment = asyncGoalController.incrementCounter(habit);
+		release.countDown();
+		increment.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertThat(executed).containsExactly("add", "increment");
+	}
+
+	@Test
+	public void testOperationsOnAGoalNamedLikeTheGoalListDoNotWaitForItsReads() throws Exception {
+		doAnswer(invocation -> {
+			release.await();
+			return null;
+		}).when(goalController).allGoals();
+		Goal goal = new Goal("goal list");
+		asyncGoalController.allGoals();
+
+		asyncGoalController.newGoal(goal).get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		verify(goalController).newGoal(goal);
+	}
+
+	@Test
+	public void testAllGoalsSupersedesThePendingReadsOfTheGoalList() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return null;
+		}).doNothing().when(goalController).allGoals();
+		CompletableFuture<Void> running = asyncGoalController.allGoals();
+		started.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		CompletableFuture<Void> more = asyncGoalController.moreGoals();
+		CompletableFuture<Void> load = asyncGoalController.loadGoals(asList("Goal"));
+		CompletableFuture<Void> superseded = asyncGoalController.allGoals();
+		CompletableFuture<Void> latest = asyncGoalController.allGoals();
+
+		release.countDown();
+		running.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		latest.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertThat(more).isCancelled();
+		assertThat(load).isCancelled();
+		assertThat(superseded).isCancelled();
+		verify(goalController, times(2)).allGoals();
+		verify(goalController, never()).moreGoals();
+		verify(goalController, never()).loadGoals(asList("Goal"));
+	}
+
+	@Test
+	public void testReadsAfterTheLatestAllGoalsAreNotSuperseded() throws Exception {
+		asyncGoalController.allGoals();
+
+		asyncGoalController.moreGoals().get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		verify(goalController).moreGoals();
+	}
+
+	@Test
+	public void testFailuresOfTheOperationFailTheFuture() {
+		Goal goal = new Goal("Goal");
+		IllegalStateException failure = new IllegalStateException("database down");
+		doThrow(failure).when(goalController).newGoal(goal);
+
+		CompletableFuture<Void> future = asyncGoalController.newGoal(goal);
+
+		assertThatThrownBy(() -> future.get(TIMEOUT, TimeUnit.MILLISECONDS))
+			.isInstanceOf(ExecutionException.class)
+			.hasCause(failure);
+	}
+
+	@Test
+	public void testFailuresOfTheOperationAreCountedAsErrors() {
+		Habit habit = new Habit("Habit");
+		new Goal("Goal").addHabit(habit);
+		doThrow(new IllegalStateException("database down")).when(goalController).incrementCounter(habit);
+
+		CompletableFuture<Void> future = asyncGoalController.incrementCounter(habit);
+
+		assertThatThrownBy(() -> future.get(TIMEOUT, TimeUnit.MILLISECONDS)).isInstanceOf(ExecutionException.class);
+		assertThat(metrics.getStatistics(ControllerOperation.INCREMENT_COUNTER).getErrors()).isEqualTo(1);
+		assertThat(metrics.getStatistics(ControllerOperation.NEW_GOAL).getErrors()).isZero();
+	}
+
+	@Test
+	public void testRejectedOperationsReturnAFailedFuture() {
+		asyncGoalController = new AsyncGoalController(goalController,
+				new ControllerExecutor(Executors.newSingleThreadExecutor(), 0), completionExecutor);
+
+		CompletableFuture<Void> future = asyncGoalController.newGoal(new Goal("Goal"));
+
+		assertThat(future).isCompletedExceptionally();
+		assertThatThrownBy(future::join).hasCauseInstanceOf(RejectedExecutionException.class);
+		assertThat(completionThreads).isEmpty();
+		verifyNoInteractions(goalController);
+	}
+
+	@Test
+	public void testCancelledFuturesAreNotReportedAsFailures() {
+		doAnswer(invocation -> {
+			release.await();
+			return null;
+		}).when(goalController).allGoals();
+		asyncGoalController.allGoals();
+		// whether the first load started or not, the next one is superseded
+		CompletableFuture<Void> superseded = asyncGoalController.moreGoals();
+		asyncGoalController.allGoals();
+		release.countDown();
+
+		assertThatThrownBy(() -> superseded.get(TIMEOUT, TimeUnit.MILLISECONDS))
+			.isInstanceOf(CancellationException.class);
+	}
+}
@@ -0,0 +1,53 @@
+package com.aptproject.goaltracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchingExecutorTest {
+
+	private final List<Runnable> targetTasks = new ArrayList<>();
+
+	private final BatchingExecutor executor = new BatchingExecutor(targetTasks::add);
+
+	@Test
+	public void testTasksSubmittedBeforeTheBatchRunsShareIt() {
+		List<Integer> executed = new ArrayList<>();
+
+		executor.execute(() -> executed.add(1));
+		executor.execute(() -> executed.add(2));
+		executor.execute(() -> executed.add(3));
+
+		assertThat(targetTasks).hasSize(1);
+		assertThat(executed).isEmpty();
+		targetTasks.get(0).run();
+		assertThat(executed).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void testTasksSubmittedAfterTheBatchStartedScheduleAnotherOne() {
+		List<Integer> executed = new ArrayList<>();
+		executor.execute(() -> executed.add(1));
+		targetTasks.remove(0).run();
+
+		executor.execute(() -> executed.add(2));
+
+		assertThat(targetTasks).hasSize(1);
+		targetTasks.get(0).run();
+		assertThat(executed).containsExactly(1, 2);
+	}
+
+	@Test
+	public void testAFailingTaskDoesNotStopTheBatch() {
+		List<Integer> executed = new ArrayList<>();
+		executor.execute(() -> {
+			throw new IllegalStateException("failure");
+		});
+		executor.execute(() -> executed.add(2));
+
+		targetTasks.get(0).run();
+
+		assertThat(executed).containsExactly(2);
+	}
+}
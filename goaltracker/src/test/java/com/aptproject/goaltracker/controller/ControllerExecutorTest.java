@@ -0,0 +1,148 @@
+package com.aptproject.goaltracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ControllerExecutorTest {
+
+	private static final int TIMEOUT = 5000;
+
+	private ControllerExecutor controllerExecutor;
+
+	private CountDownLatch release;
+
+	@Before
+	public void setup() {
+		controllerExecutor = ControllerExecutor.withPlatformThreads(4, 3);
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		controllerExecutor.shutdown(TIMEOUT);
+	}
+
+	@Test
+	public void testTasksWithTheSameKeyRunInSubmissionOrder() throws Exception {
+		List<Integer> executed = new CopyOnWriteArrayList<>();
+		controllerExecutor.submit("goal", () -> {
+			awaitRelease();
+			executed.add(1);
+		});
+		controllerExecutor.submit("goal", () -> executed.add(2));
+		CompletableFuture<Void> last = controllerExecutor.submit("goal", () -> executed.add(3));
+
+		release.countDown();
+		last.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertThat(executed).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void testTasksWithDifferentKeysRunInParallel() throws Exception {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		Runnable task = () -> {
+			bothStarted.countDown();
+			await(bothStarted);
+		};
+
+		CompletableFuture<Void> first = controllerExecutor.submit("goal1", task);
+		CompletableFuture<Void> second = controllerExecutor.submit("goal2", task);
+
+		CompletableFuture.allOf(first, second).get(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertThat(bothStarted.getCount()).isZero();
+	}
+
+	@Test
+	public void testAFailingTaskDoesNotStopTheFollowingOnes() throws Exception {
+		List<Integer> executed = new CopyOnWriteArrayList<>();
+		controllerExecutor.submit("goal", () -> {
+			throw new IllegalStateException("failure");
+		});
+
+		controllerExecutor.submit("goal", () -> executed.add(2)).get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertThat(executed).containsExactly(2);
+	}
+
+	@Test
+	public void testSubmissionsAreRejectedWhenTooManyTasksArePending() {
+		controllerExecutor.submit("goal1", this::awaitRelease);
+		controllerExecutor.submit("goal1", this::awaitRelease);
+		controllerExecutor.submit("goal2", this::awaitRelease);
+
+		assertThatThrownBy(() -> controllerExecutor.submit("goal3", () -> {
+		})).isInstanceOf(RejectedExecutionException.class).hasMessage("Too many pending operations, please retry later");
+	}
+
+	@Test
+	public void testSubmissionsAreAcceptedAgainWhenPendingTasksComplete() throws Exception {
+		CompletableFuture<Void> blocked = controllerExecutor.submit("goal1", this::awaitRelease);
+		controllerExecutor.submit("goal2", this::awaitRelease);
+		controllerExecutor.submit("goal3", this::awaitRelease);
+		release.countDown();
+		CompletableFuture.allOf(blocked).get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+		CompletableFuture<Void> accepted = awaitAccepted("goal4");
+
+		accepted.get(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public void testShutdownRunsTheQueuedTasksAndRejectsNewOnes() {
+		List<Integer> executed = new CopyOnWriteArrayList<>();
+		controllerExecutor.submit("goal", () -> {
+			awaitRelease();
+			executed.add(1);
+		});
+		controllerExecutor.submit("goal", () -> executed.add(2));
+		release.countDown();
+
+		controllerExecutor.shutdown(TIMEOUT);
+
+		assertThat(executed).containsExactly(1, 2);
+		assertThatThrownBy(() -> controllerExecutor.submit("goal", () -> {
+		})).isInstanceOf(RejectedExecutionException.class).hasMessage("The controller executor has been shut down");
+	}
+
+	/**
+	 * Permits are given back right after a task completes, retry until the
+	 * completion of the blocked tasks has been observed.
+	 */
+	private CompletableFuture<Void> awaitAccepted(String key) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (true) {
+			try {
+				return controllerExecutor.submit(key, () -> {
+				});
+			} catch (RejectedExecutionException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private void awaitRelease() {
+		await(release);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,12 +1,19 @@
 package com.aptproject.goaltracker.controller;
 
 import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import org.junit.After;
 import org.junit.Before;
@@ -15,13 +22,21 @@ import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import com.aptproject.goaltracker.controller.metrics.ControllerMetrics;
+import com.aptproject.goaltracker.controller.metrics.ControllerOperation;
+import com.aptproject.goaltracker.controller.metrics.OperationStatistics;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
 import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalConflictException;
 import com.aptproject.goaltracker.repository.exception.GoalExistsException;
 import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+import com.aptproject.goaltracker.stats.HabitStatisticsStore;
 import com.aptproject.goaltracker.view.GoalView;
 
 public class GoalControllerTest {
@@ -32,6 +47,9 @@ public class GoalControllerTest {
 	@Mock
 	private GoalView goalView;
 	
+	@Mock
+	private HabitStatisticsStore habitStatistics;
+	
 	@InjectMocks
 	private GoalController goalController;
 	
@@ -40,6 +58,7 @@ public class GoalControllerTest {
 	@Before
 	public void setup() {
 		closeable = MockitoAnnotations.openMocks(this);
+		goalController.setHabitStatistics(habitStatistics);
 	}
 
 	@After
@@ -50,12 +69,71 @@ public class GoalControllerTest {
 	@Test
 	public void testAllGoals() {
 		List<Goal> goals = asList(new Goal("first"));
-		when(modelRepository.findAllGoals())
+		when(modelRepository.findGoalsPage(null, GoalController.DEFAULT_GOALS_PAGE_SIZE))
 			.thenReturn(goals);
 		goalController.allGoals();
 		verify(goalView).showAllGoals(goals);
 	}
 	
+	@Test
+	public void testMoreGoalsLoadsThePageAfterTheLastLoadedGoal() {
+		goalController.setGoalsPageSize(2);
+		List<Goal> firstPage = asList(new Goal("a"), new Goal("b"));
+		List<Goal> secondPage = asList(new Goal("c"));
+		when(modelRepository.findGoalsPage(null, 2)).thenReturn(firstPage);
+		when(modelRepository.findGoalsPage("b", 2)).thenReturn(secondPage);
+		goalController.allGoals();
+		goalController.moreGoals();
+		InOrder inOrder = inOrder(goalView);
+		inOrder.verify(goalView).showAllGoals(firstPage);
+		inOrder.verify(goalView).showMoreGoals(secondPage);
+	}
+	
+	@Test
+	public void testMoreGoalsAfterTheLastPageDoesNotQueryTheRepository() {
+		goalController.setGoalsPageSize(2);
+		List<Goal> firstPage = asList(new Goal("a"));
+		when(modelRepository.findGoalsPage(null, 2)).thenReturn(firstPage);
+		goalController.allGoals();
+		goalController.moreGoals();
+		verify(modelRepository).findGoalsPage(null, 2);
+		verifyNoMoreInteractions(modelRepository);
+		verify(goalView, never()).showMoreGoals(anyList());
+	}
+	
+	@Test
+	public void testMoreGoalsWithEmptyPageDoesNotNotifyTheView() {
+		goalController.setGoalsPageSize(1);
+		when(modelRepository.findGoalsPage(null, 1)).thenReturn(asList(new Goal("a")));
+		when(modelRepository.findGoalsPage("a", 1)).thenReturn(new ArrayList<>());
+		goalController.allGoals();
+		goalController.moreGoals();
+		goalController.moreGoals();
+		verify(modelRepository).findGoalsPage("a", 1);
+		verify(goalView, never()).showMoreGoals(anyList());
+	}
+	
+	@Test
+	public void testAllGoalsRestartsThePagination() {
+		goalController.setGoalsPageSize(1);
+		when(modelRepository.findGoalsPage(null, 1)).thenReturn(asList(new Goal("a")));
+		when(modelRepository.findGoalsPage("a", 1)).thenReturn(asList(new Goal("b")));
+		goalController.allGoals();
+		goalController.moreGoals();
+		goalController.allGoals();
+		goalController.moreGoals();
+		verify(modelRepository, times(2)).findGoalsPage(null, 1);
+		verify(modelRepository, times(2)).findGoalsPage("a", 1);
+	}
+	
+	@Test
+	public void testLoadGoalsHandsTheGoalsToTheView() {
+		List<Goal> goals = asList(new Goal("a"), new Goal("b"));
+		when(modelRepository.findGoalsByNames(asList("a", "b"))).thenReturn(goals);
+		goalController.loadGoals(asList("a", "b"));
+		verify(goalView).goalsLoaded(goals);
+	}
+	
 	@Test
 	public void testNewGoal() throws GoalExistsException {
 		Goal goal = new Goal("toAdd");
@@ -98,20 +176,33 @@ public class GoalControllerTest {
 	@Test
 	public void testIncrementHabitCounter() {
 		Habit habit = new Habit("habit");
+		when(modelRepository.incrementCounter(habit)).thenReturn(1);
 		goalController.incrementCounter(habit);
 		InOrder inOrder = inOrder(modelRepository, goalView);
 		inOrder.verify(modelRepository).incrementCounter(habit);
 		inOrder.verify(goalView).counterUpdated(habit);
+		assertThat(habit.getCounter()).isEqualTo(1);
+	}
+	
+	@Test
+	public void testIncrementHabitCounterShowsTheValueStoredByTheRepository() {
+		Habit habit = new Habit("habit");
+		when(modelRepository.incrementCounter(habit)).thenReturn(7);
+		goalController.incrementCounter(habit);
+		verify(goalView).counterUpdated(habit);
+		assertThat(habit.getCounter()).isEqualTo(7);
 	}
 	
 	@Test
 	public void testDecrementHabitCounterWhenCounterIsGreaterThanZero() {
 		Habit habit = new Habit("habit");
 		habit.setCounter(5);
+		when(modelRepository.decrementCounter(habit)).thenReturn(4);
 		goalController.decrementCounter(habit);
 		InOrder inOrder = inOrder(modelRepository, goalView);
 		inOrder.verify(modelRepository).decrementCounter(habit);
 		inOrder.verify(goalView).counterUpdated(habit);
+		assertThat(habit.getCounter()).isEqualTo(4);
 	}
 	
 	@Test
@@ -122,6 +213,64 @@ public class GoalControllerTest {
 		verifyNoMoreInteractions(modelRepository);
 	}
 	
+	@Test
+	public void testDecrementOfAStaleHabitRefusedByTheRepositoryShowsTheCounterAtZero() {
+		Habit habit = new Habit("habit");
+		habit.setCounter(1);
+		when(modelRepository.decrementCounter(habit)).thenThrow(new CounterAtZeroException(habit));
+		goalController.decrementCounter(habit);
+		InOrder inOrder = inOrder(goalView);
+		inOrder.verify(goalView).counterUpdated(habit);
+		inOrder.verify(goalView).showError("You can't decrement a counter equal to zero!");
+		assertThat(habit.getCounter()).isZero();
+		verifyNoMoreInteractions(habitStatistics);
+	}
+	
+	@Test
+	public void testCounterChangesAreRecordedInTheStatistics() {
+		Goal goal = new Goal("goal");
+		Habit habit = new Habit("habit");
+		goal.addHabit(habit);
+		when(modelRepository.incrementCounter(habit)).thenReturn(1);
+		when(modelRepository.decrementCounter(habit)).thenReturn(0);
+		goalController.incrementCounter(habit);
+		goalController.decrementCounter(habit);
+		InOrder inOrder = inOrder(habitStatistics);
+		inOrder.verify(habitStatistics).record(HabitId.of(goal.getName(), "habit"), 1);
+		inOrder.verify(habitStatistics).record(HabitId.of(goal.getName(), "habit"), -1);
+	}
+	
+	@Test
+	public void testRejectedDecrementIsNotRecordedInTheStatistics() {
+		goalController.decrementCounter(new Habit("habit"));
+		verifyNoMoreInteractions(habitStatistics);
+	}
+	
+	@Test
+	public void testRemovingHabitsForgetsTheirStatistics() throws Exception {
+		Goal goal1 = new Goal("goal 1");
+		Habit habit = new Habit("habit");
+		goal1.addHabit(habit);
+		// listed by name only, its habits are not loaded
+		Goal goal2 = new Goal("goal 2");
+		goalController.removeHabit(goal1, habit);
+		goalController.deleteGoal(goal2);
+		verify(habitStatistics).remove(HabitId.of(goal1.getName(), "habit"));
+		verify(habitStatistics).removeGoal(goal2.getName());
+	}
+	
+	@Test
+	public void testFailedRemovalsKeepTheStatistics() throws Exception {
+		Goal goal = new Goal("goal");
+		Habit habit = new Habit("habit");
+		goal.addHabit(habit);
+		doThrow(new HabitNotExistsException(habit)).when(modelRepository).removeHabitFromGoal(goal, habit);
+		doThrow(new GoalNotExistsException(goal)).when(modelRepository).deleteGoal(goal);
+		goalController.removeHabit(goal, habit);
+		goalController.deleteGoal(goal);
+		verifyNoMoreInteractions(habitStatistics);
+	}
+	
 	@Test
 	public void testNewDuplicateGoalShouldShowAnErrorAndNotAddToToTheView() throws GoalExistsException {
 		Goal goal = new Goal("Goal");
@@ -163,4 +312,97 @@ public class GoalControllerTest {
 		verify(goalView).showError(exception.getMessage());
 		verify(goalView, never()).habitRemoved(habit);
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testConcurrentChangesOfAGoalShowTheConflict() throws HabitExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		GoalConflictException exception = new GoalConflictException(goal, null);
+		doThrow(exception).when(modelRepository).addHabitToGoal(goal, habit);
+		goalController.addHabit(goal, habit);
+		verify(goalView).showError("The goal Goal was changed by someone else at the same time, try again");
+		verify(goalView, never()).habitAdded(habit);
+	}
+	
+	@Test
+	public void testConflictingGoalDeletionShowsTheConflict() throws GoalNotExistsException {
+		Goal goal = new Goal("Goal");
+		GoalConflictException exception = new GoalConflictException(goal, null);
+		doThrow(exception).when(modelRepository).deleteGoal(goal);
+		goalController.deleteGoal(goal);
+		verify(goalView).showError(exception.getMessage());
+		verify(goalView, never()).goalRemoved(goal);
+	}
+	
+	@Test
+	public void testOperationsAreMeasuredWhenMetricsAreSet() throws GoalExistsException {
+		ControllerMetrics metrics = new ControllerMetrics();
+		goalController.setMetrics(metrics);
+		Goal goal = new Goal("Goal");
+		goalController.newGoal(goal);
+		doThrow(new GoalExistsException(goal)).when(modelRepository).addGoal(goal);
+		goalController.newGoal(goal);
+		goalController.decrementCounter(new Habit("Habit"));
+		OperationStatistics newGoal = metrics.getStatistics(ControllerOperation.NEW_GOAL);
+		assertThat(newGoal.getCalls()).isEqualTo(2);
+		assertThat(newGoal.getErrors()).isEqualTo(1);
+		assertThat(newGoal.getInFlight()).isZero();
+		assertThat(metrics.getStatistics(ControllerOperation.DECREMENT_COUNTER).getErrors()).isEqualTo(1);
+		assertThat(metrics.getStatistics(ControllerOperation.INCREMENT_COUNTER).getCalls()).isZero();
+	}
+	
+	@Test
+	public void testFailingOperationsLeaveNothingInFlight() {
+		ControllerMetrics metrics = new ControllerMetrics();
+		goalController.setMetrics(metrics);
+		when(modelRepository.findGoalsPage(null, GoalController.DEFAULT_GOALS_PAGE_SIZE))
+			.thenThrow(new IllegalStateException("database down"));
+		assertThatThrownBy(() -> goalController.allGoals()).isInstanceOf(IllegalStateException.class);
+		OperationStatistics allGoals = metrics.getStatistics(ControllerOperation.ALL_GOALS);
+		assertThat(allGoals.getCalls()).isEqualTo(1);
+		assertThat(allGoals.getInFlight()).isZero();
+	}
+
+	@Test
+	public void testRemoteChangesLoadTheChangedGoalsAtOnceAndUpdateTheView() {
+		Goal added = new Goal("Added");
+		Goal changed = new Goal("Changed");
+		Habit addedHabit = new Habit("New habit");
+		Habit tappedHabit = new Habit("Tapped habit");
+		changed.addHabit(addedHabit);
+		changed.addHabit(tappedHabit);
+		when(modelRepository.findGoalsByNames(new HashSet<>(asList("Added", "Changed")))).thenReturn(asList(added, changed));
+		goalController.changed(asList(RepositoryChange.goalAdded("Added"), RepositoryChange.goalRemoved("Removed"),
+				RepositoryChange.habitAdded("Changed", "New habit"), RepositoryChange.habitRemoved("Changed", "Old habit"),
+				RepositoryChange.counterChanged("Changed", "Tapped habit")));
+		Habit removedHabit = new Habit("Old habit");
+		removedHabit.setGoal(changed);
+		InOrder inOrder = inOrder(goalView);
+		inOrder.verify(goalView).goalAdded(added);
+		inOrder.verify(goalView).goalRemoved(new Goal("Removed"));
+		inOrder.verify(goalView).habitAdded(addedHabit);
+		inOrder.verify(goalView).habitRemoved(removedHabit);
+		inOrder.verify(goalView).counterUpdated(tappedHabit);
+		verify(habitStatistics).removeGoal("Removed");
+		verify(habitStatistics).remove(HabitId.of("Changed", "Old habit"));
+		verify(modelRepository).findGoalsByNames(any());
+	}
+	
+	@Test
+	public void testRemoteChangesOfGoalsThatNoLongerExistAreSkipped() {
+		Goal goal = new Goal("Goal");
+		when(modelRepository.findGoalsByNames(new HashSet<>(asList("Goal", "Gone")))).thenReturn(asList(goal));
+		goalController.changed(asList(RepositoryChange.habitAdded("Goal", "Gone habit"),
+				RepositoryChange.goalAdded("Gone")));
+		verifyNoMoreInteractions(goalView);
+	}
+	
+	@Test
+	public void testRemoteResyncReloadsAllGoals() {
+		List<Goal> goals = asList(new Goal("first"));
+		when(modelRepository.findGoalsPage(null, GoalController.DEFAULT_GOALS_PAGE_SIZE)).thenReturn(goals);
+		goalController.changed(asList(RepositoryChange.resync()));
+		verify(goalView).showAllGoals(goals);
+		verify(modelRepository, never()).findGoalsByNames(any());
+	}
+}
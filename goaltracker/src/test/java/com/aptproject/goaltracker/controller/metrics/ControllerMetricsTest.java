@@ -0,0 +1,153 @@
+package com.aptproject.goaltracker.controller.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ControllerMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ControllerMetrics metrics = new ControllerMetrics();
+
+	@Test
+	public void testCallsErrorsAndInFlightAreCountedPerOperation() {
+		OperationTimer running = metrics.start(ControllerOperation.ALL_GOALS);
+		try (OperationTimer timer = metrics.start(ControllerOperation.NEW_GOAL)) {
+			// succeeded
+		}
+		try (OperationTimer timer = metrics.start(ControllerOperation.NEW_GOAL)) {
+			timer.error();
+		}
+
+		OperationStatistics newGoal = metrics.getStatistics(ControllerOperation.NEW_GOAL);
+		assertThat(newGoal.getCalls()).isEqualTo(2);
+		assertThat(newGoal.getErrors()).isEqualTo(1);
+		assertThat(newGoal.getErrorRate()).isEqualTo(0.5);
+		assertThat(newGoal.getInFlight()).isZero();
+		assertThat(metrics.getStatistics(ControllerOperation.ALL_GOALS).getInFlight()).isEqualTo(1);
+		assertThat(metrics.getStatistics(ControllerOperation.ALL_GOALS).getCalls()).isZero();
+
+		running.close();
+		assertThat(metrics.getStatistics(ControllerOperation.ALL_GOALS).getInFlight()).isZero();
+		assertThat(metrics.getStatistics(ControllerOperation.ALL_GOALS).getCalls()).isEqualTo(1);
+	}
+
+	@Test
+	public void testResetKeepsTheRunningOperations() {
+		OperationTimer running = metrics.start(ControllerOperation.ADD_HABIT);
+		metrics.start(ControllerOperation.ADD_HABIT).close();
+
+		metrics.reset();
+
+		OperationStatistics addHabit = metrics.getStatistics(ControllerOperation.ADD_HABIT);
+		assertThat(addHabit.getCalls()).isZero();
+		assertThat(addHabit.getInFlight()).isEqualTo(1);
+		running.close();
+	}
+
+	@Test
+	public void testDisabledMetricsRecordNothing() {
+		ControllerMetrics disabled = ControllerMetrics.disabled();
+
+		try (OperationTimer timer = disabled.start(ControllerOperation.DELETE_GOAL)) {
+			timer.error();
+		}
+
+		assertThat(disabled.isEnabled()).isFalse();
+		assertThat(disabled.start(ControllerOperation.DELETE_GOAL)).isSameAs(OperationTimer.NONE);
+		assertThat(disabled.getStatistics(ControllerOperation.DELETE_GOAL)).isNull();
+		assertThat(disabled.getOperations()).isEmpty();
+		assertThat(disabled.dump()).doesNotContain("operation=");
+	}
+
+	@Test
+	public void testDumpIsInThePrometheusTextFormat() {
+		metrics.start(ControllerOperation.INCREMENT_COUNTER).close();
+		try (OperationTimer timer = metrics.start(ControllerOperation.INCREMENT_COUNTER)) {
+			timer.error();
+		}
+
+		String dump = metrics.dump();
+
+		assertThat(dump)
+			.contains("# TYPE goaltracker_controller_operations_total counter")
+			.contains("goaltracker_controller_operations_total{operation=\"increment_counter\"} 2")
+			.contains("goaltracker_controller_errors_total{operation=\"increment_counter\"} 1")
+			.contains("# TYPE goaltracker_controller_in_flight gauge")
+			.contains("goaltracker_controller_in_flight{operation=\"decrement_counter\"} 0")
+			.contains("# TYPE goaltracker_controller_duration_seconds histogram")
+			.contains("goaltracker_controller_duration_seconds_bucket{operation=\"increment_counter\",le=\"+Inf\"} 2")
+			.contains("goaltracker_controller_duration_seconds_count{operation=\"increment_counter\"} 2");
+		assertThat(bucketCounts(dump, "increment_counter")).isSorted().last().isEqualTo(2L);
+	}
+
+	@Test
+	public void testDumpToReplacesTheFile() throws IOException {
+		File file = folder.newFile("controller.prom");
+		Files.write(file.toPath(), "stale".getBytes(StandardCharsets.UTF_8));
+		metrics.start(ControllerOperation.LOAD_GOALS).close();
+
+		metrics.dumpTo(file.toPath());
+
+		String dump = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		assertThat(dump).isEqualTo(metrics.dump()).doesNotContain("stale");
+		assertThat(folder.getRoot().list()).containsExactly("controller.prom");
+	}
+
+	@Test
+	public void testScheduledDumpWritesTheFileUntilClosed() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("controller.prom");
+
+		metrics.scheduleDump(file, 10);
+		for (int i = 0; i < 500 && !Files.exists(file); i++) {
+			Thread.sleep(10);
+		}
+		metrics.close();
+
+		assertThat(file).exists();
+		assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+			.contains("goaltracker_controller_operations_total");
+	}
+
+	@Test
+	public void testOperationsAreAvailableThroughJmx() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(ControllerMetricsMXBean.OBJECT_NAME);
+		metrics.start(ControllerOperation.MORE_GOALS).close();
+		server.registerMBean(metrics, name);
+		try {
+			CompositeData[] operations = (CompositeData[]) server.getAttribute(name, "Operations");
+
+			assertThat(operations).hasSize(ControllerOperation.values().length);
+			assertThat(operations[1].get("operation")).isEqualTo("more_goals");
+			assertThat(operations[1].get("calls")).isEqualTo(1L);
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+
+	private static List<Long> bucketCounts(String dump, String operation) {
+		List<Long> counts = new ArrayList<>();
+		String prefix = "goaltracker_controller_duration_seconds_bucket{operation=\"" + operation + "\",";
+		for (String line : dump.split("\n")) {
+			if (line.startsWith(prefix)) {
+				counts.add(Long.parseLong(line.substring(line.lastIndexOf(' ') + 1).trim()));
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,64 @@
+package com.aptproject.goaltracker.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	@Test
+	public void testEmptyHistogram() {
+		assertThat(histogram.getCount()).isZero();
+		assertThat(histogram.getMeanMicros()).isZero();
+		assertThat(histogram.getPercentileMicros(99)).isZero();
+	}
+
+	@Test
+	public void testCountTotalMeanAndMax() {
+		histogram.record(1, TimeUnit.MILLISECONDS);
+		histogram.record(3000, TimeUnit.MICROSECONDS);
+		histogram.record(5_000_000, TimeUnit.NANOSECONDS);
+
+		assertThat(histogram.getCount()).isEqualTo(3);
+		assertThat(histogram.getTotalMicros()).isEqualTo(9000);
+		assertThat(histogram.getMeanMicros()).isEqualTo(3000, within(0.001));
+		assertThat(histogram.getMaxMicros()).isEqualTo(5000);
+	}
+
+	@Test
+	public void testBucketsCoverEveryValueWithoutGaps() {
+		for (long value : new long[] { 0, 1, 3, 4, 5, 7, 8, 15, 16, 1000, 123_456_789, Long.MAX_VALUE }) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertThat(LatencyHistogram.lowerBound(bucket)).isLessThanOrEqualTo(value);
+			assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThanOrEqualTo(value);
+		}
+		for (int bucket = 0; bucket < histogram.getBucketCounts().length - 1; bucket++) {
+			assertThat(LatencyHistogram.lowerBound(bucket + 1)).isEqualTo(LatencyHistogram.upperBound(bucket) + 1);
+		}
+	}
+
+	@Test
+	public void testPercentilesAreWithinTheBucketPrecision() {
+		for (int micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros, TimeUnit.MICROSECONDS);
+		}
+
+		assertThat(histogram.getPercentileMicros(50)).isBetween(500L, 625L);
+		assertThat(histogram.getPercentileMicros(99)).isBetween(990L, 1000L);
+		assertThat(histogram.getPercentileMicros(100)).isEqualTo(1000);
+	}
+
+	@Test
+	public void testReset() {
+		histogram.record(10, TimeUnit.MILLISECONDS);
+
+		histogram.reset();
+
+		assertThat(histogram.getCount()).isZero();
+		assertThat(histogram.getMaxMicros()).isZero();
+		assertThat(histogram.getBucketCounts()).containsOnly(0L);
+	}
+}
@@ -0,0 +1,112 @@
+package com.aptproject.goaltracker.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.DefaultListModel;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HabitTest {
+
+	private Goal goal;
+
+	private Habit habit;
+
+	@Before
+	public void setup() {
+		goal = new Goal("Goal");
+		habit = new Habit("Habit");
+		goal.addHabit(habit);
+	}
+
+	@Test
+	public void testEqualityIgnoresTheCounterAndTheId() {
+		Habit other = new Habit("Habit");
+		other.setCounter(7);
+		other.setId(3L);
+		new Goal("Goal").addHabit(other);
+
+		assertThat(habit).isEqualTo(other).hasSameHashCodeAs(other);
+	}
+
+	@Test
+	public void testHabitsWithTheSameNameInDifferentGoalsAreDifferent() {
+		Habit other = new Habit("Habit");
+		new Goal("Other goal").addHabit(other);
+
+		assertThat(habit).isNotEqualTo(other);
+	}
+
+	@Test
+	public void testHashSetStillFindsAndRemovesTheHabitAfterCounterChanges() {
+		Set<Habit> habits = new HashSet<>();
+		habits.add(habit);
+
+		habit.incrementCounter();
+		habit.setCounter(42);
+
+		assertThat(habits).contains(habit);
+		assertThat(habits.remove(habit)).isTrue();
+		assertThat(habits).isEmpty();
+	}
+
+	@Test
+	public void testHashMapLookupByHabitOrHabitIdAfterCounterChanges() {
+		Map<Habit, String> byHabit = new HashMap<>();
+		Map<HabitId, Habit> byHabitId = new HashMap<>();
+		byHabit.put(habit, "value");
+		byHabitId.put(habit.getHabitId(), habit);
+
+		habit.incrementCounter();
+
+		assertThat(byHabit).containsEntry(habit, "value");
+		assertThat(byHabitId.get(HabitId.of("Goal", "Habit"))).isSameAs(habit);
+	}
+
+	@Test
+	public void testListModelRemovesTheHabitAfterCounterChanges() {
+		DefaultListModel<Habit> model = new DefaultListModel<>();
+		model.addElement(new Habit("Another habit"));
+		model.addElement(habit);
+		Habit copy = new Habit("Habit");
+		copy.setCounter(1);
+		goal.copy().addHabit(copy);
+
+		habit.incrementCounter();
+
+		assertThat(model.removeElement(copy)).isTrue();
+		assertThat(model.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testHabitIdIsReusedUntilTheKeyChanges() {
+		HabitId habitId = habit.getHabitId();
+		habit.incrementCounter();
+
+		assertThat(habit.getHabitId()).isSameAs(habitId);
+
+		habit.setName("Renamed");
+
+		assertThat(habit.getHabitId()).isEqualTo(HabitId.of("Goal", "Renamed"));
+		assertThat(habits(habit)).doesNotContain(new Habit("Habit"));
+	}
+
+	@Test
+	public void testHabitIdIsTheGoalNameThenTheHabitName() {
+		assertThat(habit.getHabitId()).isEqualTo(HabitId.of("Goal", "Habit"))
+				.hasSameHashCodeAs(HabitId.of("Goal", "Habit"))
+				.isNotEqualTo(HabitId.of("Habit", "Goal"));
+		assertThat(HabitId.of(null, "Habit")).isEqualTo(new Habit("Habit").getHabitId());
+	}
+
+	private static Set<Habit> habits(Habit... habits) {
+		Set<Habit> set = new HashSet<>();
+		for (Habit habit : habits) {
+			set.add(habit);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,309 @@
+package com.aptproject.goaltracker.repository;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+
+/**
+ * The behaviour every {@link ModelRepository} shares, tested on the
+ * repository made by {@link #createRepository()}.
+ */
+public abstract class ModelRepositoryContractTest {
+
+	protected ModelRepository goalRepository;
+
+	protected abstract ModelRepository createRepository() throws Exception;
+
+	@Before
+	public void setup() throws Exception {
+		goalRepository = createRepository();
+	}
+
+	@Test
+	public void testFindAllWhenRepositoryIsEmpty() {
+		assertThat(goalRepository.findAllGoals()).isEmpty();
+	}
+
+	@Test
+	public void testFindAllWhenRepositoryIsNotEmpty() throws GoalExistsException {
+		Goal goal1 = new Goal("Test 1");
+		Goal goal2 = new Goal("Test 2");
+		goalRepository.addGoal(goal2);
+		goalRepository.addGoal(goal1);
+
+		assertThat(goalRepository.findAllGoals()).containsExactly(goal1, goal2);
+	}
+
+	@Test
+	public void testFindAllReturnsCopiesOfTheStoredGoals() throws GoalExistsException {
+		Goal goal = new Goal("Goal");
+		goal.addHabit(new Habit("Habit"));
+		goalRepository.addGoal(goal);
+
+		Goal retrieved = goalRepository.findAllGoals().get(0);
+		retrieved.getHabits().clear();
+
+		assertThat(retrieved).isNotSameAs(goal);
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).hasSize(1);
+	}
+
+	@Test
+	public void testFindByNameNotFound() throws GoalExistsException {
+		goalRepository.addGoal(new Goal("Test 1"));
+
+		assertThat(goalRepository.findGoalByName("Test")).isNull();
+	}
+
+	@Test
+	public void testFindByNameFound() throws GoalExistsException {
+		Goal goal = new Goal("Test");
+		goal.addHabit(new Habit("Habit"));
+		goalRepository.addGoal(goal);
+
+		Goal retrieved = goalRepository.findGoalByName("Test");
+
+		assertThat(retrieved).isEqualTo(goal);
+		assertThat(retrieved.getHabits()).extracting(Habit::getName).containsExactly("Habit");
+	}
+
+	@Test
+	public void testFindGoalsPage() throws GoalExistsException {
+		for (int i = 0; i < 5; i++) {
+			goalRepository.addGoal(new Goal("Goal " + i));
+		}
+
+		assertThat(goalRepository.findGoalsPage(null, 2)).containsExactly(new Goal("Goal 0"), new Goal("Goal 1"));
+		assertThat(goalRepository.findGoalsPage("Goal 1", 2)).containsExactly(new Goal("Goal 2"), new Goal("Goal 3"));
+		assertThat(goalRepository.findGoalsPage("Goal 4", 2)).isEmpty();
+	}
+
+	@Test
+	public void testFindGoalsByNames() throws GoalExistsException {
+		for (int i = 0; i < 5; i++) {
+			goalRepository.addGoal(new Goal("Goal " + i));
+		}
+
+		assertThat(goalRepository.findGoalsByNames(asList("Goal 3", "Goal 1", "Missing")))
+			.containsExactly(new Goal("Goal 1"), new Goal("Goal 3"));
+	}
+
+	@Test
+	public void testStreamAllGoals() throws GoalExistsException {
+		goalRepository.addGoal(new Goal("Goal 1"));
+		goalRepository.addGoal(new Goal("Goal 0"));
+
+		try (Stream<Goal> goals = goalRepository.streamAllGoals()) {
+			assertThat(goals.collect(Collectors.toList())).containsExactly(new Goal("Goal 0"), new Goal("Goal 1"));
+		}
+	}
+
+	@Test
+	public void testCreatingDuplicateGoalShouldThrow() throws GoalExistsException {
+		goalRepository.addGoal(new Goal("Goal"));
+
+		assertThatThrownBy(() -> goalRepository.addGoal(new Goal("Goal")))
+			.isInstanceOf(GoalExistsException.class)
+			.hasMessage("The goal Goal already exists");
+		assertThat(goalRepository.findAllGoals()).hasSize(1);
+	}
+
+	@Test
+	public void testAddGoalsAddsEveryGoalWithItsHabits() throws GoalExistsException {
+		Goal goal1 = new Goal("Goal 1");
+		Habit habit = new Habit("Habit");
+		goal1.addHabit(habit);
+
+		goalRepository.addGoals(asList(goal1, new Goal("Goal 2")));
+
+		assertThat(goalRepository.findAllGoals()).extracting(Goal::getName).containsExactly("Goal 1", "Goal 2");
+		assertThat(goalRepository.incrementCounter(habit)).isEqualTo(1);
+	}
+
+	@Test
+	public void testAddGoalsWithAnExistingGoalAddsNone() throws GoalExistsException {
+		goalRepository.addGoal(new Goal("Goal 2"));
+		Goal goal1 = new Goal("Goal 1");
+		Habit habit = new Habit("Habit");
+		goal1.addHabit(habit);
+
+		assertThatThrownBy(() -> goalRepository.addGoals(asList(goal1, new Goal("Goal 2"))))
+			.isInstanceOf(GoalExistsException.class)
+			.hasMessage("The goal Goal 2 already exists");
+		assertThat(goalRepository.findAllGoals()).extracting(Goal::getName).containsExactly("Goal 2");
+		assertThatThrownBy(() -> goalRepository.incrementCounter(habit)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void testDeleteGoal() throws GoalExistsException, GoalNotExistsException {
+		Goal goal = new Goal("Test");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		goalRepository.addGoal(goal);
+
+		goalRepository.deleteGoal(goal);
+
+		assertThat(goalRepository.findAllGoals()).isEmpty();
+		assertThatThrownBy(() -> goalRepository.incrementCounter(habit)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void testDeleteGoalWhenNotExistingThrowException() {
+		assertThatThrownBy(() -> goalRepository.deleteGoal(new Goal("Test")))
+			.isInstanceOf(GoalNotExistsException.class)
+			.hasMessage("The goal Test does not exists");
+	}
+
+	@Test
+	public void testAddHabitToGoalAddHabitAndSetTheLinks() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goalRepository.addGoal(goal);
+
+		goalRepository.addHabitToGoal(goal, habit);
+
+		assertThat(goal.getHabits()).containsExactly(habit);
+		assertThat(habit.getGoal()).isEqualTo(goal);
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).containsExactly(habit);
+	}
+
+	@Test
+	public void testHabitWithSameNameButDifferentGoalAreSaved() throws Exception {
+		Goal goal1 = new Goal("Goal 1");
+		Goal goal2 = new Goal("Goal 2");
+		goal1.addHabit(new Habit("Habit"));
+		goalRepository.addGoal(goal1);
+		goalRepository.addGoal(goal2);
+
+		goalRepository.addHabitToGoal(goal2, new Habit("Habit"));
+
+		assertThat(goalRepository.findAllGoals())
+			.allSatisfy(goal -> assertThat(goal.getHabits()).extracting(Habit::getName).containsExactly("Habit"));
+	}
+
+	@Test
+	public void testHabitWithSameNameAndSameGoalShouldThrow() throws Exception {
+		Goal goal = new Goal("Goal");
+		goal.addHabit(new Habit("Habit"));
+		goalRepository.addGoal(goal);
+		Goal otherClientGoal = new Goal("Goal");
+		Habit duplicate = new Habit("Habit");
+
+		assertThatThrownBy(() -> goalRepository.addHabitToGoal(otherClientGoal, duplicate))
+			.isInstanceOf(HabitExistsException.class)
+			.hasMessage("The habit Habit already exists for the current goal");
+		assertThat(otherClientGoal.getHabits()).isEmpty();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).hasSize(1);
+	}
+
+	@Test
+	public void testRemoveHabitFromGoalRemoveHabit() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		goalRepository.addGoal(goal);
+
+		goalRepository.removeHabitFromGoal(goal, habit);
+
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).isEmpty();
+		assertThat(goal.getHabits()).isEmpty();
+		assertThat(habit.getGoal()).isNull();
+	}
+
+	@Test
+	public void testRemoveHabitWhenNotExistingThrowException() throws GoalExistsException {
+		Goal goal = new Goal("Test");
+		goalRepository.addGoal(goal);
+
+		assertThatThrownBy(() -> goalRepository.removeHabitFromGoal(goal, new Habit("Habit")))
+			.isInstanceOf(HabitNotExistsException.class)
+			.hasMessage("The habit Habit does not exists");
+	}
+
+	@Test
+	public void testIncrementAndDecrementCounter() throws GoalExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		habit.setCounter(5);
+		goalRepository.addGoal(goal);
+
+		assertThat(goalRepository.incrementCounter(habit)).isEqualTo(6);
+		assertThat(goalRepository.decrementCounter(habit)).isEqualTo(5);
+		assertThat(goalRepository.decrementCounter(habit)).isEqualTo(4);
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(4);
+	}
+
+	@Test
+	public void testDecrementingAStaleHabitNeverTakesTheCounterBelowZero() throws GoalExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		habit.setCounter(1);
+		goalRepository.addGoal(goal);
+		Habit stale = new Habit("Habit");
+		new Goal("Goal").addHabit(stale);
+		stale.setCounter(1);
+
+		assertThat(goalRepository.decrementCounter(habit)).isZero();
+		assertThatThrownBy(() -> goalRepository.decrementCounter(stale))
+			.isInstanceOf(CounterAtZeroException.class)
+			.hasMessage("The counter of the habit Habit is already zero");
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter()).isZero();
+	}
+
+	@Test
+	public void testUpdateCountersAppliesEveryDelta() throws GoalExistsException {
+		Goal goal = new Goal("Goal");
+		goal.addHabit(new Habit("Habit 1"));
+		goal.addHabit(new Habit("Habit 2"));
+		goalRepository.addGoal(goal);
+		Map<HabitId, Integer> deltas = new HashMap<>();
+		deltas.put(HabitId.of(goal.getName(), "Habit 1"), 3);
+		deltas.put(HabitId.of(goal.getName(), "Habit 2"), -2);
+		deltas.put(HabitId.of(goal.getName(), "Missing"), 1);
+
+		goalRepository.updateCounters(deltas);
+
+		assertThat(goalRepository.findGoalByName("Goal").getHabits())
+			.extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit 1", 3), tuple("Habit 2", -2));
+	}
+
+	@Test
+	public void testConcurrentIncrementsFromSeveralThreadsAreAllApplied() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		goalRepository.addGoal(goal);
+		int taps = 10_000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < taps; i++) {
+			executor.execute(() -> goalRepository.incrementCounter(habit));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+		List<Habit> habits = goalRepository.findGoalByName("Goal").getHabits();
+		assertThat(habits.get(0).getCounter()).isEqualTo(taps);
+	}
+}
@@ -0,0 +1,328 @@
+package com.aptproject.goaltracker.repository.cache;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.aptproject.goaltracker.repository.exception.HabitExistsException;
+
+public class CachingModelRepositoryTest {
+
+	private static final long TTL_MILLIS = 1000;
+
+	@Mock
+	private ModelRepository delegate;
+
+	private CachingModelRepository repository;
+
+	private AtomicLong now = new AtomicLong();
+
+	private AutoCloseable closeable;
+
+	@Before
+	public void setup() {
+		closeable = MockitoAnnotations.openMocks(this);
+		repository = new CachingModelRepository(delegate, 2, TTL_MILLIS, now::get);
+	}
+
+	@After
+	public void releaseMocks() throws Exception {
+		closeable.close();
+	}
+
+	@Test
+	public void testFindGoalByNameIsReadThrough() {
+		when(delegate.findGoalByName("goal")).thenReturn(goalWithHabit("goal", "habit", 1));
+
+		assertThat(repository.findGoalByName("goal")).isEqualTo(new Goal("goal"));
+		assertThat(repository.findGoalByName("goal").getHabits()).extracting(Habit::getCounter).containsExactly(1);
+
+		verify(delegate, times(1)).findGoalByName("goal");
+		assertThat(repository.getStatistics().getHits()).isEqualTo(1);
+		assertThat(repository.getStatistics().getMisses()).isEqualTo(1);
+	}
+
+	@Test
+	public void testMissingGoalsAreNotCached() {
+		repository.findGoalByName("missing");
+		repository.findGoalByName("missing");
+
+		verify(delegate, times(2)).findGoalByName("missing");
+	}
+
+	@Test
+	public void testCallersReceiveCopies() {
+		when(delegate.findGoalByName("goal")).thenReturn(goalWithHabit("goal", "habit", 1));
+		repository.findGoalByName("goal").getHabits().clear();
+
+		assertThat(repository.findGoalByName("goal").getHabits()).hasSize(1);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedGoalIsEvictedWhenFull() {
+		when(delegate.findGoalByName("a")).thenReturn(new Goal("a"));
+		when(delegate.findGoalByName("b")).thenReturn(new Goal("b"));
+		when(delegate.findGoalByName("c")).thenReturn(new Goal("c"));
+		repository.findGoalByName("a");
+		repository.findGoalByName("b");
+		repository.findGoalByName("a");
+
+		repository.findGoalByName("c");
+		repository.findGoalByName("a");
+		repository.findGoalByName("b");
+
+		verify(delegate, times(1)).findGoalByName("a");
+		verify(delegate, times(2)).findGoalByName("b");
+		assertThat(repository.getStatistics().getEvictions()).isEqualTo(2);
+		assertThat(repository.getStatistics().getSize()).isEqualTo(2);
+	}
+
+	@Test
+	public void testEntriesExpireAfterTheTtl() {
+		when(delegate.findGoalByName("goal")).thenReturn(new Goal("goal"));
+		repository.findGoalByName("goal");
+		now.addAndGet(TTL_MILLIS * 1_000_000 - 1);
+		repository.findGoalByName("goal");
+		now.incrementAndGet();
+
+		repository.findGoalByName("goal");
+
+		verify(delegate, times(2)).findGoalByName("goal");
+		assertThat(repository.getStatistics().getEvictions()).isEqualTo(1);
+	}
+
+	@Test
+	public void testNoTtlKeepsEntriesForever() {
+		repository = new CachingModelRepository(delegate, 2, 0, now::get);
+		when(delegate.findGoalByName("goal")).thenReturn(new Goal("goal"));
+		repository.findGoalByName("goal");
+		now.addAndGet(Long.MAX_VALUE / 2);
+
+		repository.findGoalByName("goal");
+
+		verify(delegate, times(1)).findGoalByName("goal");
+	}
+
+	@Test
+	public void testFindAllGoalsIsReadThrough() {
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("a"), new Goal("b")));
+
+		repository.findAllGoals();
+
+		assertThat(repository.findAllGoals()).containsExactly(new Goal("a"), new Goal("b"));
+		verify(delegate, times(1)).findAllGoals();
+	}
+
+	@Test
+	public void testAllGoalsAreNotCachedWhenMoreThanTheCacheHolds() {
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("a"), new Goal("b"), new Goal("c")));
+
+		repository.findAllGoals();
+
+		assertThat(repository.findAllGoals()).containsExactly(new Goal("a"), new Goal("b"), new Goal("c"));
+		verify(delegate, times(2)).findAllGoals();
+		assertThat(repository.getStatistics().getSize()).isZero();
+	}
+
+	@Test
+	public void testAllGoalsAreLoadedAgainOnceOneOfThemIsEvicted() {
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("a"), new Goal("b")));
+		when(delegate.findGoalByName("c")).thenReturn(new Goal("c"));
+		repository.findAllGoals();
+
+		repository.findGoalByName("c");
+		repository.findAllGoals();
+
+		verify(delegate, times(2)).findAllGoals();
+	}
+
+	@Test
+	public void testStreamAllGoalsUsesTheCachedGoals() {
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("a"), new Goal("b")));
+		when(delegate.streamAllGoals()).thenReturn(Stream.of(new Goal("a"), new Goal("b")));
+		assertThat(repository.streamAllGoals()).containsExactly(new Goal("a"), new Goal("b"));
+		repository.findAllGoals();
+
+		assertThat(repository.streamAllGoals()).containsExactly(new Goal("a"), new Goal("b"));
+		verify(delegate, times(1)).streamAllGoals();
+	}
+
+	@Test
+	public void testFindGoalsPageIsReadThrough() {
+		when(delegate.findGoalsPage("a", 2)).thenReturn(asList(new Goal("b"), new Goal("c")));
+
+		repository.findGoalsPage("a", 2);
+
+		assertThat(repository.findGoalsPage("a", 2)).containsExactly(new Goal("b"), new Goal("c"));
+		assertThat(repository.findGoalByName("b")).isEqualTo(new Goal("b"));
+		verify(delegate, times(1)).findGoalsPage("a", 2);
+		verify(delegate, never()).findGoalByName("b");
+	}
+
+	@Test
+	public void testPagesBeyondTheCacheSizeEvictTheLeastRecentlyUsedOnes() {
+		when(delegate.findGoalsPage(null, 1)).thenReturn(asList(new Goal("a")));
+		when(delegate.findGoalsPage("a", 1)).thenReturn(asList(new Goal("b")));
+		when(delegate.findGoalsPage("b", 1)).thenReturn(asList(new Goal("c")));
+		repository.findGoalsPage(null, 1);
+		repository.findGoalsPage("a", 1);
+		repository.findGoalsPage("b", 1);
+
+		repository.findGoalsPage("a", 1);
+		repository.findGoalsPage(null, 1);
+
+		verify(delegate, times(1)).findGoalsPage("a", 1);
+		verify(delegate, times(2)).findGoalsPage(null, 1);
+	}
+
+	@Test
+	public void testAddedGoalsInvalidateThePages() throws Exception {
+		when(delegate.findGoalsPage(null, 2)).thenReturn(asList(new Goal("b")));
+		repository.findGoalsPage(null, 2);
+
+		repository.addGoal(new Goal("a"));
+		repository.findGoalsPage(null, 2);
+
+		verify(delegate, times(2)).findGoalsPage(null, 2);
+	}
+
+	@Test
+	public void testGoalChangesInvalidateTheCache() throws Exception {
+		Goal goal = new Goal("goal");
+		when(delegate.findGoalByName("goal")).thenReturn(new Goal("goal"));
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("goal")));
+		repository.findGoalByName("goal");
+		repository.findAllGoals();
+
+		repository.addHabitToGoal(goal, new Habit("habit"));
+		repository.findGoalByName("goal");
+		repository.findAllGoals();
+
+		verify(delegate, times(2)).findGoalByName("goal");
+		verify(delegate, times(2)).findAllGoals();
+	}
+
+	@Test
+	public void testAddGoalsInvalidatesEveryAddedGoal() throws Exception {
+		when(delegate.findGoalsByNames(asList("a", "b"))).thenReturn(asList(new Goal("a"), new Goal("b")));
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("a"), new Goal("b")));
+		repository.findGoalsByNames(asList("a", "b"));
+		repository.findAllGoals();
+
+		repository.addGoals(asList(new Goal("a"), new Goal("b")));
+		repository.findGoalsByNames(asList("a", "b"));
+		repository.findAllGoals();
+
+		verify(delegate).addGoals(asList(new Goal("a"), new Goal("b")));
+		verify(delegate, times(2)).findGoalsByNames(asList("a", "b"));
+		verify(delegate, times(2)).findAllGoals();
+	}
+
+	@Test
+	public void testFailedChangesInvalidateTheCacheToo() throws Exception {
+		Goal goal = new Goal("goal");
+		Habit habit = new Habit("habit");
+		when(delegate.findGoalByName("goal")).thenReturn(new Goal("goal"));
+		doThrow(new HabitExistsException(habit)).when(delegate).addHabitToGoal(goal, habit);
+		repository.findGoalByName("goal");
+
+		assertThatThrownBy(() -> repository.addHabitToGoal(goal, habit)).isInstanceOf(HabitExistsException.class);
+		repository.findGoalByName("goal");
+
+		verify(delegate, times(2)).findGoalByName("goal");
+	}
+
+	@Test
+	public void testCounterUpdatesAreAppliedToTheCachedHabits() {
+		Goal goal = goalWithHabit("goal", "habit", 1);
+		Habit habit = goal.getHabits().get(0);
+		when(delegate.findGoalByName("goal")).thenReturn(goalWithHabit("goal", "habit", 1));
+		when(delegate.findAllGoals()).thenReturn(asList(goalWithHabit("goal", "habit", 1)));
+		when(delegate.incrementCounter(habit)).thenReturn(5);
+		repository.findGoalByName("goal");
+		repository.findAllGoals();
+
+		assertThat(repository.incrementCounter(habit)).isEqualTo(5);
+		repository.updateCounters(Collections.singletonMap(HabitId.of(goal.getName(), "habit"), 2));
+
+		assertThat(repository.findGoalByName("goal").getHabits()).extracting(Habit::getCounter).containsExactly(7);
+		assertThat(repository.findAllGoals().get(0).getHabits()).extracting(Habit::getCounter).containsExactly(7);
+		verify(delegate, times(1)).findGoalByName("goal");
+		verify(delegate, times(1)).findAllGoals();
+	}
+
+	@Test
+	public void testFindGoalsByNamesLoadsOnlyTheMissingGoals() {
+		when(delegate.findGoalByName("a")).thenReturn(new Goal("a"));
+		when(delegate.findGoalsByNames(asList("b", "c"))).thenReturn(asList(new Goal("b")));
+		repository.findGoalByName("a");
+
+		assertThat(repository.findGoalsByNames(asList("c", "b", "a")))
+			.containsExactly(new Goal("a"), new Goal("b"));
+		assertThat(repository.findGoalsByNames(asList("b"))).containsExactly(new Goal("b"));
+
+		verify(delegate, times(1)).findGoalsByNames(asList("b", "c"));
+	}
+
+	@Test
+	public void testCloseClosesTheDelegate() {
+		repository.close();
+
+		verify(delegate).close();
+	}
+
+	@Test
+	public void testRemoteChangesInvalidateTheChangedGoals() {
+		when(delegate.findGoalByName("changed")).thenReturn(new Goal("changed"));
+		when(delegate.findGoalByName("other")).thenReturn(new Goal("other"));
+		repository.findGoalByName("changed");
+		repository.findGoalByName("other");
+
+		repository.changed(asList(RepositoryChange.counterChanged("changed", "habit")));
+		repository.findGoalByName("changed");
+		repository.findGoalByName("other");
+
+		verify(delegate, times(2)).findGoalByName("changed");
+		verify(delegate, times(1)).findGoalByName("other");
+	}
+
+	@Test
+	public void testRemoteResyncInvalidatesEverything() {
+		when(delegate.findGoalByName("goal")).thenReturn(new Goal("goal"));
+		when(delegate.findAllGoals()).thenReturn(asList(new Goal("goal")));
+		repository.findGoalByName("goal");
+		repository.findAllGoals();
+
+		repository.changed(asList(RepositoryChange.resync()));
+		repository.findGoalByName("goal");
+		repository.findAllGoals();
+
+		verify(delegate, times(2)).findGoalByName("goal");
+		verify(delegate, times(2)).findAllGoals();
+	}
+
+	private static Goal goalWithHabit(String goalName, String habitName, int counter) {
+		Goal goal = new Goal(goalName);
+		Habit habit = new Habit(habitName);
+		habit.setCounter(counter);
+		goal.addHabit(habit);
+		return goal;
+	}
+}
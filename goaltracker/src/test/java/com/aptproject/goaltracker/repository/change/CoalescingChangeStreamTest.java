@@ -0,0 +1,143 @@
+package com.aptproject.goaltracker.repository.change;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoalescingChangeStreamTest {
+
+	private static final long DEBOUNCE_MILLIS = 200;
+	private static final long TIMEOUT = 5;
+
+	private CoalescingChangeStream stream;
+
+	private BlockingQueue<List<RepositoryChange>> batches;
+
+	@Before
+	public void setup() {
+		stream = new CoalescingChangeStream(DEBOUNCE_MILLIS);
+		batches = new LinkedBlockingQueue<>();
+		stream.addListener(batches::add);
+	}
+
+	@After
+	public void tearDown() {
+		stream.close();
+	}
+
+	@Test
+	public void testChangesWithinTheWindowAreNotifiedTogetherInOrder() throws InterruptedException {
+		stream.publish(RepositoryChange.goalAdded("goal1"));
+		stream.publish(RepositoryChange.habitAdded("goal2", "habit"));
+		stream.publish(RepositoryChange.counterChanged("goal2", "other"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("goal1"),
+				RepositoryChange.habitAdded("goal2", "habit"), RepositoryChange.counterChanged("goal2", "other"));
+		assertThat(batches.poll(2 * DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)).isNull();
+	}
+
+	@Test
+	public void testChangesAfterTheWindowAreNotifiedInTheNextBatch() throws InterruptedException {
+		stream.publish(RepositoryChange.goalAdded("goal1"));
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("goal1"));
+
+		stream.publish(RepositoryChange.goalAdded("goal2"));
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("goal2"));
+	}
+
+	@Test
+	public void testCounterChangesOfAHabitAreNotifiedOnce() throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			stream.publish(RepositoryChange.counterChanged("goal", "habit"));
+		}
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.counterChanged("goal", "habit"));
+	}
+
+	@Test
+	public void testCounterChangesOfAnAddedHabitAreDropped() throws InterruptedException {
+		stream.publish(RepositoryChange.habitAdded("goal", "habit"));
+		stream.publish(RepositoryChange.counterChanged("goal", "habit"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.habitAdded("goal", "habit"));
+	}
+
+	@Test
+	public void testARemovalHidesThePreviousChangesOfTheHabit() throws InterruptedException {
+		stream.publish(RepositoryChange.habitAdded("goal", "habit"));
+		stream.publish(RepositoryChange.counterChanged("goal", "habit"));
+		stream.publish(RepositoryChange.habitRemoved("goal", "habit"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.habitRemoved("goal", "habit"));
+	}
+
+	@Test
+	public void testARemovalFollowedByAnAdditionIsNotifiedAsBoth() throws InterruptedException {
+		stream.publish(RepositoryChange.habitRemoved("goal", "habit"));
+		stream.publish(RepositoryChange.habitAdded("goal", "habit"));
+		stream.publish(RepositoryChange.goalRemoved("other"));
+		stream.publish(RepositoryChange.goalAdded("other"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.habitRemoved("goal", "habit"),
+				RepositoryChange.habitAdded("goal", "habit"), RepositoryChange.goalRemoved("other"),
+				RepositoryChange.goalAdded("other"));
+	}
+
+	@Test
+	public void testHabitChangesOfAnAddedOrRemovedGoalAreDropped() throws InterruptedException {
+		stream.publish(RepositoryChange.goalAdded("added"));
+		stream.publish(RepositoryChange.habitAdded("added", "habit"));
+		stream.publish(RepositoryChange.habitRemoved("removed", "habit"));
+		stream.publish(RepositoryChange.goalRemoved("removed"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("added"),
+				RepositoryChange.goalRemoved("removed"));
+	}
+
+	@Test
+	public void testResyncReplacesEveryOtherChange() throws InterruptedException {
+		stream.publish(RepositoryChange.goalAdded("goal1"));
+		stream.publish(RepositoryChange.resync());
+		stream.publish(RepositoryChange.goalAdded("goal2"));
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.resync());
+	}
+
+	@Test
+	public void testAFailingListenerDoesNotStopTheOthers() throws InterruptedException {
+		CoalescingChangeStream failing = new CoalescingChangeStream(0);
+		try {
+			failing.addListener(changes -> {
+				throw new IllegalStateException("failure");
+			});
+			failing.addListener(batches::add);
+
+			failing.publish(RepositoryChange.goalAdded("goal"));
+
+			assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("goal"));
+		} finally {
+			failing.close();
+		}
+	}
+
+	@Test
+	public void testNothingIsNotifiedAfterClosing() throws InterruptedException {
+		stream.publish(RepositoryChange.goalAdded("pending"));
+		stream.close();
+		stream.publish(RepositoryChange.goalAdded("goal"));
+
+		assertThat(batches.poll(2 * DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)).isNull();
+		assertThat(stream.isClosed()).isTrue();
+	}
+
+	private List<RepositoryChange> nextBatch() throws InterruptedException {
+		List<RepositoryChange> batch = batches.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertThat(batch).as("notified changes").isNotNull();
+		return batch;
+	}
+}
@@ -0,0 +1,191 @@
+package com.aptproject.goaltracker.repository.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.ModelRepositoryContractTest;
+
+public class MappedFileModelRepositoryTest extends ModelRepositoryContractTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	private MappedFileModelRepository repository;
+
+	@Override
+	protected ModelRepository createRepository() throws IOException {
+		file = folder.getRoot().toPath().resolve("goals").resolve("goaltracker.log");
+		repository = new MappedFileModelRepository(file);
+		return repository;
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void testChangesAreReplayedWhenOpenedAgain() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		habit.setCounter(2);
+		goal.addHabit(habit);
+		goal.addHabit(new Habit("Removed"));
+		repository.addGoal(goal);
+		repository.addGoal(new Goal("Deleted"));
+		repository.addHabitToGoal(goal, new Habit("Added"));
+		repository.removeHabitFromGoal(goal, new Habit("Removed"));
+		repository.deleteGoal(new Goal("Deleted"));
+		repository.incrementCounter(habit);
+		repository.incrementCounter(habit);
+		repository.decrementCounter(habit);
+
+		reopen();
+
+		assertThat(repository.findAllGoals()).containsExactly(new Goal("Goal"));
+		assertThat(repository.findGoalByName("Goal").getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit", 3), tuple("Added", 0));
+		assertThat(repository.incrementCounter(habit)).isEqualTo(4);
+	}
+
+	@Test
+	public void testHabitsAddedAgainAfterTheirRemovalStartFromTheirOwnCounter() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		repository.addGoal(goal);
+		repository.incrementCounter(habit);
+		repository.removeHabitFromGoal(goal, habit);
+		repository.addHabitToGoal(goal, new Habit("Habit"));
+		repository.deleteGoal(goal);
+		repository.addGoal(new Goal("Goal"));
+		repository.addHabitToGoal(new Goal("Goal"), new Habit("Habit"));
+
+		reopen();
+
+		assertThat(repository.findGoalByName("Goal").getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit", 0));
+	}
+
+	@Test
+	public void testCounterChangesAppendFixedSizeRecords() throws Exception {
+		Goal goal = new Goal("A goal with a rather long name");
+		Habit habit = new Habit("A habit with a rather long name");
+		goal.addHabit(habit);
+		repository.addGoal(goal);
+		int size = repository.getLogSize();
+
+		repository.incrementCounter(habit);
+		repository.decrementCounter(habit);
+
+		assertThat(repository.getLogSize() - size).isEqualTo(2 * 17);
+	}
+
+	@Test
+	public void testTheLogGrowsBeyondItsInitialMapping() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		repository.addGoal(goal);
+		int taps = 100_000;
+
+		for (int i = 0; i < taps; i++) {
+			repository.incrementCounter(habit);
+		}
+		reopen();
+
+		assertThat(repository.getLogSize()).isGreaterThan(1 << 20);
+		assertThat(repository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(taps);
+	}
+
+	@Test
+	public void testCompactionKeepsTheGoalsInASmallerLog() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		repository.addGoal(goal);
+		repository.addGoal(new Goal("Deleted"));
+		repository.deleteGoal(new Goal("Deleted"));
+		for (int i = 0; i < 100; i++) {
+			repository.incrementCounter(habit);
+		}
+		int size = repository.getLogSize();
+
+		repository.compact();
+
+		assertThat(repository.getLogSize()).isLessThan(size);
+		assertThat(Files.exists(file.resolveSibling("goaltracker.log.compact"))).isFalse();
+		assertThat(repository.incrementCounter(habit)).isEqualTo(101);
+		reopen();
+		assertThat(repository.findAllGoals()).containsExactly(new Goal("Goal"));
+		assertThat(repository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(101);
+	}
+
+	@Test
+	public void testATornRecordIsDroppedWhenOpenedAgain() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		repository.addGoal(goal);
+		repository.incrementCounter(habit);
+		int size = repository.getLogSize();
+		repository.close();
+		// the payload of a record is written before its length
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap("torn record".getBytes(StandardCharsets.UTF_8)), size + 4);
+		}
+
+		repository = new MappedFileModelRepository(file);
+		repository.addGoal(new Goal("Other"));
+		reopen();
+
+		assertThat(repository.findAllGoals()).containsExactly(new Goal("Goal"), new Goal("Other"));
+		assertThat(repository.incrementCounter(habit)).isEqualTo(2);
+	}
+
+	@Test
+	public void testALogCanOnlyBeOpenedOnce() {
+		assertThatThrownBy(() -> new MappedFileModelRepository(file))
+			.isInstanceOf(IOException.class)
+			.hasMessageContaining("already opened");
+	}
+
+	@Test
+	public void testOtherFilesAreNotOpened() throws IOException {
+		Path other = folder.newFile("other.txt").toPath();
+		Files.write(other, "not a log".getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> new MappedFileModelRepository(other))
+			.isInstanceOf(IOException.class)
+			.hasMessageContaining("is not a goal tracker log");
+	}
+
+	@Test
+	public void testChangesAfterClosingAreRejected() {
+		repository.close();
+
+		assertThatThrownBy(() -> repository.addGoal(new Goal("Goal")))
+			.isInstanceOf(IllegalStateException.class);
+	}
+
+	private void reopen() throws IOException {
+		repository.close();
+		repository = new MappedFileModelRepository(file);
+	}
+}
@@ -0,0 +1,57 @@
+package com.aptproject.goaltracker.repository.memory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.ModelRepositoryContractTest;
+
+public class InMemoryModelRepositoryTest extends ModelRepositoryContractTest {
+
+	@Override
+	protected ModelRepository createRepository() {
+		return new InMemoryModelRepository();
+	}
+
+	@Test
+	public void testIncrementsRacingTheRemovalOfTheirHabitOnlyFindItMissing() throws Exception {
+		Goal goal = new Goal("Goal");
+		goalRepository.addGoal(goal);
+		List<Throwable> failures = new CopyOnWriteArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int round = 0; round < 1000; round++) {
+			Habit habit = new Habit("Habit " + round);
+			goalRepository.addHabitToGoal(goal, habit);
+			CountDownLatch start = new CountDownLatch(1);
+			for (int thread = 0; thread < 3; thread++) {
+				executor.execute(() -> {
+					try {
+						start.await();
+						while (true) {
+							goalRepository.incrementCounter(habit);
+						}
+					} catch (IllegalStateException e) {
+						// removed
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				});
+			}
+			start.countDown();
+			Thread.yield();
+			goalRepository.removeHabitFromGoal(new Goal("Goal"), new Habit("Habit " + round));
+		}
+		executor.shutdown();
+
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(failures).isEmpty();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).isEmpty();
+	}
+}
@@ -0,0 +1,43 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The databases the JPA repository is tested on: PostgreSQL in a
+ * Testcontainers container, and the embedded database, in memory.
+ */
+enum PersistenceBackend {
+	POSTGRES("PersistenceUnit") {
+		@Override
+		Map<String, Object> properties() {
+			return new HashMap<>();
+		}
+	},
+	EMBEDDED(EmbeddedDatabase.PERSISTENCE_UNIT) {
+		@Override
+		Map<String, Object> properties() {
+			Map<String, Object> properties = new HashMap<>();
+			properties.put("javax.persistence.jdbc.url", EmbeddedDatabase.memoryUrl("test" + DATABASES.incrementAndGet()));
+			return properties;
+		}
+	};
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private final String persistenceUnit;
+
+	private PersistenceBackend(String persistenceUnit) {
+		this.persistenceUnit = persistenceUnit;
+	}
+
+	String getPersistenceUnit() {
+		return persistenceUnit;
+	}
+
+	/**
+	 * The overrides of the persistence unit for a new, empty, database.
+	 */
+	abstract Map<String, Object> properties();
+}
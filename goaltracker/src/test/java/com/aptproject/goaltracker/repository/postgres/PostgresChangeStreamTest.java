@@ -0,0 +1,114 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+
+public class PostgresChangeStreamTest {
+
+	private static final long TIMEOUT = 5;
+
+	private PostgresChangeStream stream;
+
+	private BlockingQueue<List<RepositoryChange>> batches;
+
+	@Before
+	public void setup() {
+		// never started, the payloads are handed over as the listener thread would
+		stream = new PostgresChangeStream(null, "this", 0);
+		batches = new LinkedBlockingQueue<>();
+		stream.addListener(batches::add);
+	}
+
+	@After
+	public void tearDown() {
+		stream.close();
+	}
+
+	@Test
+	public void testPayloadsOfOtherClientsArePublished() throws InterruptedException {
+		stream.received("{\"origin\": \"other\", \"change\": \"HABIT_ADDED\", \"goal\": \"goal\", \"habit\": \"habit\", \"habit_id\": 1}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.habitAdded("goal", "habit"));
+	}
+
+	@Test
+	public void testPayloadsWithoutOriginArePublished() throws InterruptedException {
+		stream.received("{\"origin\": null, \"change\": \"GOAL_REMOVED\", \"goal\": \"goal\", \"habit\": null, \"habit_id\": null}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalRemoved("goal"));
+	}
+
+	@Test
+	public void testOwnPayloadsAreSkipped() throws InterruptedException {
+		stream.received("{\"origin\": \"this\", \"change\": \"GOAL_ADDED\", \"goal\": \"own\"}");
+		stream.received("{\"origin\": \"other\", \"change\": \"GOAL_ADDED\", \"goal\": \"other\"}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.goalAdded("other"));
+	}
+
+	@Test
+	public void testPayloadsThatCannotBeReadAreSkipped() throws InterruptedException {
+		stream.received("not json");
+		stream.received("{\"change\": \"RENAMED\", \"goal\": \"goal\"}");
+		stream.received("{\"change\": \"COUNTER_CHANGED\", \"goal\": null, \"habit\": null, \"habit_id\": 1}");
+		stream.received("{\"change\": \"COUNTER_CHANGED\", \"goal\": \"goal\", \"habit\": \"habit\", \"extra\": [1, 2]}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.counterChanged("goal", "habit"));
+	}
+
+	@Test
+	public void testCounterChangesOfOtherClientsAreReadFromTheFoldedEvents() throws InterruptedException {
+		List<String> reads = new ArrayList<>();
+		List<String> counterChanges = new ArrayList<>();
+		stream.close();
+		stream = new PostgresChangeStream(null, "this", 0, (afterId, lastId, skippedOrigin, consumer) -> {
+			reads.add(afterId + "-" + lastId + " " + skippedOrigin);
+			consumer.accept(HabitId.of("goal", "habit"), 1, Instant.EPOCH);
+			consumer.accept(HabitId.of("goal", "habit"), -1, Instant.EPOCH);
+			consumer.accept(HabitId.of("goal", "other"), 1, Instant.EPOCH);
+		}, (habitId, delta, createdAt) -> counterChanges.add(habitId + " " + delta));
+		stream.addListener(batches::add);
+
+		stream.received("{\"origin\": null, \"change\": \"COUNTERS_FOLDED\", \"from\": 3, \"to\": 7}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.counterChanged("goal", "habit"),
+				RepositoryChange.counterChanged("goal", "other"));
+		assertThat(reads).containsExactly("3-7 this");
+		assertThat(counterChanges).containsExactly("goal/habit 1", "goal/habit -1", "goal/other 1");
+	}
+
+	@Test
+	public void testFoldedEventsThatCannotBeReadReloadEverything() throws InterruptedException {
+		stream.close();
+		stream = new PostgresChangeStream(null, "this", 0, (afterId, lastId, skippedOrigin, consumer) -> {
+			throw new IllegalStateException("connection lost");
+		}, null);
+		stream.addListener(batches::add);
+
+		stream.received("{\"change\": \"COUNTERS_FOLDED\", \"from\": 3, \"to\": 7}");
+
+		assertThat(nextBatch()).containsExactly(RepositoryChange.resync());
+	}
+
+	@Test
+	public void testInstanceSettingSqlQuotesTheInstanceId() {
+		assertThat(PostgresChangeStream.instanceSettingSql("it's"))
+			.isEqualTo("SET goaltracker.instance = 'it''s'");
+	}
+
+	private List<RepositoryChange> nextBatch() throws InterruptedException {
+		List<RepositoryChange> batch = batches.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertThat(batch).as("notified changes").isNotNull();
+		return batch;
+	}
+}
@@ -0,0 +1,34 @@
+package com.aptproject.goaltracker.repository.postgres;
+
+import org.junit.After;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.ModelRepositoryContractTest;
+
+@RunWith(Parameterized.class)
+public class PostgresModelRepositoryContractTest extends ModelRepositoryContractTest {
+
+	@Parameters(name = "{0}")
+	public static PersistenceBackend[] backends() {
+		return PersistenceBackend.values();
+	}
+
+	@Parameter
+	public PersistenceBackend backend;
+
+	private PostgresModelRepository repository;
+
+	@Override
+	protected ModelRepository createRepository() {
+		repository = new PostgresModelRepository(backend.getPersistenceUnit(), backend.properties());
+		return repository;
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+}
@@ -1,31 +1,86 @@
 package com.aptproject.goaltracker.repository.postgres;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.Assume.assumeTrue;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitEvent;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.change.RepositoryChange;
+import com.aptproject.goaltracker.repository.exception.GoalConflictException;
 import com.aptproject.goaltracker.repository.exception.GoalExistsException;
 import com.aptproject.goaltracker.repository.exception.GoalNotExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitExistsException;
 import com.aptproject.goaltracker.repository.exception.HabitNotExistsException;
+import com.aptproject.goaltracker.repository.postgres.sql.InstrumentedConnectionProvider;
 
+@RunWith(Parameterized.class)
 public class PostgresModelRepositoryTest {
 	
+	@Parameters(name = "{0}")
+	public static PersistenceBackend[] backends() {
+		return PersistenceBackend.values();
+	}
+	
+	@Parameter
+	public PersistenceBackend backend;
+	
+	private EntityManagerFactory entityManagerFactory;
+	
 	private EntityManager entityManager;
+	
+	private Statistics statistics;
 
 	private PostgresModelRepository goalRepository;
 	
 	@Before
 	public void setup() throws SQLException {
-		goalRepository = new PostgresModelRepository("PersistenceUnit");
-		entityManager = Persistence.createEntityManagerFactory("PersistenceUnit").createEntityManager();
+		Map<String, Object> properties = backend.properties();
+		properties.put("hibernate.generate_statistics", "true");
+		entityManagerFactory = Persistence.createEntityManagerFactory(backend.getPersistenceUnit(), properties);
+		goalRepository = new PostgresModelRepository(entityManagerFactory);
+		entityManager = entityManagerFactory.createEntityManager();
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+	
+	@After
+	public void tearDown() {
+		entityManager.close();
+		goalRepository.close();
 	}
 	
 	@Test
@@ -44,6 +99,127 @@ public class PostgresModelRepositoryTest {
 			.containsExactly(goal1, goal2);			
 	}
 	
+	@Test
+	public void testFindAllWithFetchJoinLoadsGoalsAndHabitsWithASingleQuery() {
+		addGoalsWithHabitsToDb(3, 2);
+		statistics.clear();
+		
+		List<Goal> goals = goalRepository.findAllGoals();
+		
+		assertThat(goals).hasSize(3);
+		assertThat(goals).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void testFindAllWithSelectLoadingRunsOneQueryPerGoal() {
+		goalRepository.setGoalLoadingMode(GoalLoadingMode.SELECT);
+		addGoalsWithHabitsToDb(3, 2);
+		statistics.clear();
+		
+		List<Goal> goals = goalRepository.findAllGoals();
+		
+		assertThat(goals).hasSize(3);
+		assertThat(goals).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+	}
+	
+	@Test
+	public void testFindByNameWithFetchJoinLoadsTheHabitsWithASingleQuery() {
+		addGoalsWithHabitsToDb(1, 2);
+		statistics.clear();
+		
+		Goal goal = goalRepository.findGoalByName("Goal 0");
+		
+		assertThat(goal.getHabits()).hasSize(2);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void testFindGoalsPageReturnsTheFirstPageOrderedByName() {
+		addGoalsWithHabitsToDb(5, 1);
+		
+		assertThat(goalRepository.findGoalsPage(null, 2))
+			.containsExactly(new Goal("Goal 0"), new Goal("Goal 1"));
+	}
+	
+	@Test
+	public void testFindGoalsPageReturnsTheGoalsAfterTheGivenName() {
+		addGoalsWithHabitsToDb(5, 1);
+		
+		List<Goal> page = goalRepository.findGoalsPage("Goal 1", 2);
+		
+		assertThat(page).containsExactly(new Goal("Goal 2"), new Goal("Goal 3"));
+		assertThat(page).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(1));
+	}
+	
+	@Test
+	public void testFindGoalsPageAfterTheLastGoalIsEmpty() {
+		addGoalsWithHabitsToDb(2, 1);
+		
+		assertThat(goalRepository.findGoalsPage("Goal 1", 2)).isEmpty();
+	}
+	
+	@Test
+	public void testFindGoalsPageWithSelectLoading() {
+		goalRepository.setGoalLoadingMode(GoalLoadingMode.SELECT);
+		addGoalsWithHabitsToDb(5, 1);
+		
+		List<Goal> page = goalRepository.findGoalsPage("Goal 1", 2);
+		
+		assertThat(page).containsExactly(new Goal("Goal 2"), new Goal("Goal 3"));
+		assertThat(page).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(1));
+	}
+	
+	@Test
+	public void testFindGoalsByNamesReturnsTheExistingOnesOrderedByName() {
+		addGoalsWithHabitsToDb(5, 2);
+		statistics.clear();
+		
+		List<Goal> goals = goalRepository.findGoalsByNames(asList("Goal 3", "Goal 1", "Missing"));
+		
+		assertThat(goals).containsExactly(new Goal("Goal 1"), new Goal("Goal 3"));
+		assertThat(goals).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void testFindGoalsByNamesWithSelectLoading() {
+		goalRepository.setGoalLoadingMode(GoalLoadingMode.SELECT);
+		addGoalsWithHabitsToDb(3, 2);
+		
+		List<Goal> goals = goalRepository.findGoalsByNames(asList("Goal 2", "Goal 0"));
+		
+		assertThat(goals).containsExactly(new Goal("Goal 0"), new Goal("Goal 2"));
+		assertThat(goals).allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+	}
+	
+	@Test
+	public void testFindGoalsByNamesWithNoNamesIsEmpty() {
+		assertThat(goalRepository.findGoalsByNames(Collections.emptyList())).isEmpty();
+	}
+	
+	@Test
+	public void testStreamAllGoalsReturnsEveryGoalWithItsHabits() {
+		addGoalsWithHabitsToDb(3, 2);
+		
+		try (Stream<Goal> goals = goalRepository.streamAllGoals()) {
+			assertThat(goals.collect(Collectors.toList()))
+				.containsExactly(new Goal("Goal 0"), new Goal("Goal 1"), new Goal("Goal 2"))
+				.allSatisfy(goal -> assertThat(goal.getHabits()).hasSize(2));
+		}
+	}
+	
+	private void addGoalsWithHabitsToDb(int goals, int habitsPerGoal) {
+		for (int i = 0; i < goals; i++) {
+			Goal goal = new Goal("Goal " + i);
+			for (int j = 0; j < habitsPerGoal; j++) {
+				goal.addHabit(new Habit("Habit " + j));
+			}
+			addGoalToDb(goal);
+		}
+	}
+	
 	@Test
 	public void testFindByNameNotFound() {
 		Goal goal1 = new Goal("Test 1");
@@ -82,6 +258,51 @@ public class PostgresModelRepositoryTest {
 			.contains(goal);			
 	}
 	
+	@Test
+	public void testAddGoalsStoresEveryGoalWithItsHabits() throws GoalExistsException {
+		Goal goal1 = new Goal("Test 1");
+		goal1.addHabit(new Habit("Habit 1"));
+		goal1.addHabit(new Habit("Habit 2"));
+		Goal goal2 = new Goal("Test 2");
+		
+		goalRepository.addGoals(asList(goal1, goal2));
+		
+		assertThat(findAllDatabaseSavedGoals())
+			.containsExactlyInAnyOrder(goal1, goal2);
+		assertThat(findAllDatabaseSavedHabits())
+			.extracting(Habit::getName)
+			.containsExactlyInAnyOrder("Habit 1", "Habit 2");
+	}
+	
+	@Test
+	public void testAddGoalsWithAnExistingGoalStoresNone() {
+		addGoalToDb(new Goal("Test 2"));
+		Goal goal1 = new Goal("Test 1");
+		goal1.addHabit(new Habit("Habit"));
+		
+		assertThatThrownBy(() -> goalRepository.addGoals(asList(goal1, new Goal("Test 2"))))
+			.isInstanceOf(GoalExistsException.class)
+			.hasMessage("The goal Test 2 already exists");
+		assertThat(findAllDatabaseSavedGoals())
+			.containsExactly(new Goal("Test 2"));
+		assertThat(findAllDatabaseSavedHabits())
+			.isEmpty();
+	}
+	
+	@Test
+	public void testAddGoalsWithADuplicateInTheBatchStoresNoneAndClearsTheIds() {
+		Goal goal1 = new Goal("Test");
+		Habit habit = new Habit("Habit");
+		goal1.addHabit(habit);
+		
+		assertThatThrownBy(() -> goalRepository.addGoals(asList(goal1, new Goal("Test"))))
+			.isInstanceOf(GoalExistsException.class);
+		assertThat(findAllDatabaseSavedGoals())
+			.isEmpty();
+		assertThat(habit.getId())
+			.isNull();
+	}
+	
 	@Test
 	public void testDeleteGoal() throws GoalNotExistsException {
 		Goal goal = new Goal("Test");
@@ -119,6 +340,22 @@ public class PostgresModelRepositoryTest {
 		assertThat(findAllDatabaseSavedHabits().get(0).getGoal()).isEqualTo(goal);
 	}
 	
+	@Test
+	public void testAddHabitToGoalHandsTheGeneratedIdToTheHabit() throws HabitExistsException {
+		Goal goal = new Goal("Goal");
+		addGoalToDb(goal);
+		Habit habit1 = new Habit("Habit 1");
+		Habit habit2 = new Habit("Habit 2");
+		
+		goalRepository.addHabitToGoal(goal, habit1);
+		goalRepository.addHabitToGoal(goal, habit2);
+		
+		assertThat(habit1.getId()).isNotNull();
+		assertThat(habit2.getId()).isNotNull().isNotEqualTo(habit1.getId());
+		assertThat(goalRepository.findGoalByName("Goal").getHabits())
+			.extracting(Habit::getName).containsExactlyInAnyOrder("Habit 1", "Habit 2");
+	}
+	
 	@Test
 	public void testRemoveHabitFromGoalRemoveHabit() throws HabitNotExistsException {
 		Goal goal = new Goal("Goal");
@@ -131,6 +368,19 @@ public class PostgresModelRepositoryTest {
 		assertThat(findAllDatabaseSavedHabits()).isEmpty();
 	}
 	
+	@Test
+	public void testRemoveHabitFromGoalUnlinksTheGivenInstances() throws HabitNotExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		
+		goalRepository.removeHabitFromGoal(goal, habit);
+		
+		assertThat(goal.getHabits()).isEmpty();
+		assertThat(habit.getGoal()).isNull();
+	}
+	
 	@Test
 	public void testRemoveHabitWhenNotExistingThrowException() {
 		Goal goal = new Goal("Test");		
@@ -152,24 +402,269 @@ public class PostgresModelRepositoryTest {
 		goal.addHabit(habit);
 		addGoalToDb(goal);
 		
-		goalRepository.incrementCounter(habit);
+		int counter = goalRepository.incrementCounter(habit);
 		
+		// the habit stored by the test is still managed, with the counter it was stored with
+		entityManager.clear();
 		Habit retrievedHabit = findAllDatabaseSavedHabits().get(0);
 		assertThat(retrievedHabit.getCounter()).isEqualTo(1);
+		assertThat(counter).isEqualTo(1);
 	}
 	
 	@Test
-	public void testDecrementCounter() {
+	public void testIncrementCounterFromStaleCopiesDoesNotLoseUpdates() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		Goal otherClientGoal = new Goal("Goal");
+		Habit otherClientHabit = new Habit("Habit");
+		otherClientGoal.addHabit(otherClientHabit);
+		
+		goalRepository.incrementCounter(habit);
+		int counter = goalRepository.incrementCounter(otherClientHabit);
+		
+		// the habit stored by the test is still managed, with the counter it was stored with
+		entityManager.clear();
+		Habit retrievedHabit = findAllDatabaseSavedHabits().get(0);
+		assertThat(retrievedHabit.getCounter()).isEqualTo(2);
+		assertThat(counter).isEqualTo(2);
+	}
+	
+	@Test
+	public void testConcurrentIncrementsFromSeveralThreadsAreAllApplied() throws InterruptedException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		int taps = 50;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		for (int i = 0; i < taps; i++) {
+			executor.execute(() -> goalRepository.incrementCounter(habit));
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		
+		// the habit stored by the test is still managed, with the counter it was stored with
+		entityManager.clear();
+		Habit retrievedHabit = findAllDatabaseSavedHabits().get(0);
+		assertThat(retrievedHabit.getCounter()).isEqualTo(taps);
+	}
+	
+	@Test
+	public void testUpdateCountersAppliesEveryDelta() {
+		Goal goal = new Goal("Goal");
+		Habit habit1 = new Habit("Habit 1");
+		Habit habit2 = new Habit("Habit 2");
+		goal.addHabit(habit1);
+		goal.addHabit(habit2);
+		habit2.setCounter(5);
+		addGoalToDb(goal);
+		Map<HabitId, Integer> deltas = new HashMap<>();
+		deltas.put(HabitId.of(goal.getName(), "Habit 1"), 3);
+		deltas.put(HabitId.of(goal.getName(), "Habit 2"), -2);
+		deltas.put(HabitId.of(goal.getName(), "Missing"), 1);
+		
+		goalRepository.updateCounters(deltas);
+		
+		entityManager.clear();
+		assertThat(findAllDatabaseSavedHabits())
+			.extracting(Habit::getName, Habit::getCounter)
+			.containsExactlyInAnyOrder(tuple("Habit 1", 3), tuple("Habit 2", 3));
+	}
+	
+	@Test
+	public void testCounterUpdatesAreAppendedToTheEventLog() {
 		Goal goal = new Goal("Goal");
 		Habit habit = new Habit("Habit");
 		goal.addHabit(habit);
 		habit.setCounter(5);
 		addGoalToDb(goal);
 		
+		goalRepository.incrementCounter(habit);
+		goalRepository.decrementCounter(habit);
+		goalRepository.updateCounters(Collections.singletonMap(habit.getHabitId(), 3));
+		
+		assertThat(entityManager.createQuery("SELECT e FROM HabitEvent e ORDER BY e.id", HabitEvent.class).getResultList())
+			.extracting(HabitEvent::getHabitId, HabitEvent::getDelta)
+			.containsExactly(tuple(habit.getId(), 1), tuple(habit.getId(), -1), tuple(habit.getId(), 3));
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter())
+			.isEqualTo(8);
+	}
+	
+	@Test
+	public void testSnapshotCountersFoldsTheEventsWithoutChangingTheCounters() {
+		Goal goal = new Goal("Goal");
+		Habit habit1 = new Habit("Habit 1");
+		Habit habit2 = new Habit("Habit 2");
+		goal.addHabit(habit1);
+		goal.addHabit(habit2);
+		habit1.setCounter(5);
+		addGoalToDb(goal);
+		goalRepository.incrementCounter(habit1);
+		goalRepository.incrementCounter(habit1);
+		
+		assertThat(goalRepository.snapshotCounters()).isEqualTo(1);
+		assertThat(goalRepository.snapshotCounters()).isZero();
+		goalRepository.incrementCounter(habit2);
+		
+		entityManager.clear();
+		assertThat(findAllDatabaseSavedHabits())
+			.extracting(Habit::getName, Habit::getCounter)
+			.containsExactlyInAnyOrder(tuple("Habit 1", 7), tuple("Habit 2", 1));
+		assertThat(entityManager.createNativeQuery("SELECT counter FROM habit WHERE name = 'Habit 1'").getSingleResult())
+			.isEqualTo(7);
+	}
+	
+	@Test
+	public void testSnapshotsTakenWhileCountersChangeLoseNoTap() throws Exception {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		int taps = 100;
+		
+		List<Throwable> failures = runConcurrently(5, thread -> {
+			if (thread == 0) {
+				for (int i = 0; i < 20; i++) {
+					goalRepository.snapshotCounters();
+				}
+			} else {
+				for (int i = 0; i < taps / 4; i++) {
+					goalRepository.incrementCounter(habit);
+				}
+			}
+		});
+		goalRepository.snapshotCounters();
+		
+		assertThat(failures).isEmpty();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(taps);
+		assertThat(entityManager.createNativeQuery("SELECT counter FROM habit WHERE name = 'Habit'").getSingleResult())
+			.isEqualTo(taps);
+	}
+	
+	@Test
+	public void testPruneHabitEventsDeletesOnlyTheOldFoldedEvents() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		goalRepository.incrementCounter(habit);
+		goalRepository.incrementCounter(habit);
+		goalRepository.snapshotCounters();
+		goalRepository.incrementCounter(habit);
+		
+		assertThat(goalRepository.pruneHabitEvents(Instant.EPOCH)).isZero();
+		assertThat(goalRepository.pruneHabitEvents(Instant.now().plusSeconds(60))).isEqualTo(2);
+		
+		assertThat(entityManager.createQuery("SELECT e.delta FROM HabitEvent e", Integer.class).getResultList())
+			.containsExactly(1);
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(3);
+		goalRepository.snapshotCounters();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits().get(0).getCounter()).isEqualTo(3);
+	}
+	
+	@Test
+	public void testMergingStaleHabitsDoesNotOverwriteTheCounters() throws HabitExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		Goal staleGoal = goalRepository.findGoalByName("Goal");
+		goalRepository.incrementCounter(habit);
+		goalRepository.snapshotCounters();
+		
+		goalRepository.addHabitToGoal(staleGoal, new Habit("Other habit"));
+		
+		assertThat(goalRepository.findGoalByName("Goal").getHabits())
+			.extracting(Habit::getName, Habit::getCounter)
+			.containsExactlyInAnyOrder(tuple("Habit", 1), tuple("Other habit", 0));
+	}
+	
+	@Test
+	public void testRemovingAHabitDeletesItsEvents() throws HabitNotExistsException {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		goalRepository.incrementCounter(habit);
+		
+		goalRepository.removeHabitFromGoal(goal, habit);
+		
+		assertThat(entityManager.createQuery("SELECT COUNT(e) FROM HabitEvent e", Long.class).getSingleResult())
+			.isZero();
+	}
+	
+	@Test
+	public void testReplayHabitEventsInOrderSinceTheGivenInstant() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		goalRepository.incrementCounter(habit);
 		goalRepository.decrementCounter(habit);
+		goalRepository.snapshotCounters();
+		
+		List<Integer> deltas = new ArrayList<>();
+		goalRepository.replayHabitEvents(Instant.EPOCH, (habitId, delta, at) -> {
+			assertThat(habitId).isEqualTo(HabitId.of("Goal", "Habit"));
+			deltas.add(delta);
+		});
+		assertThat(deltas).containsExactly(1, -1);
+		
+		deltas.clear();
+		goalRepository.replayHabitEvents(Instant.now().plusSeconds(60), (habitId, delta, at) -> deltas.add(delta));
+		assertThat(deltas).isEmpty();
+	}
+	
+	@Test
+	public void testInstrumentedConnectionsRecordEveryStatement() throws GoalExistsException {
+		Map<String, Object> properties = backend.properties();
+		properties.put("hibernate.connection.provider_class", InstrumentedConnectionProvider.class.getName());
+		properties.put("hibernate.generate_statistics", "true");
+		PostgresModelRepository instrumented = new PostgresModelRepository(backend.getPersistenceUnit(), properties);
+		try {
+			instrumented.addGoal(new Goal("Goal"));
+			instrumented.findGoalsByNames(asList("Goal"));
+			
+			assertThat(instrumented.getSqlMetrics().getStatements())
+				.anySatisfy(statement -> {
+					assertThat(statement.getSql()).startsWith("insert into goal");
+					assertThat(statement.getRowsUpdated()).isEqualTo(1);
+				})
+				.anySatisfy(statement -> {
+					assertThat(statement.getSql()).startsWith("select");
+					assertThat(statement.getRowsRead()).isEqualTo(1);
+				});
+			StringWriter dump = new StringWriter();
+			instrumented.dumpSqlMetrics(new PrintWriter(dump));
+			assertThat(dump.toString()).contains("insert into goal").contains("Hibernate: statements_prepared=");
+		} finally {
+			instrumented.close();
+		}
+	}
+	
+	@Test
+	public void testConnectionsAreNotInstrumentedByDefault() {
+		assertThat(goalRepository.getSqlMetrics()).isNull();
+	}
+	
+	@Test
+	public void testDecrementCounter() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		habit.setCounter(5);
+		addGoalToDb(goal);
 		
+		int counter = goalRepository.decrementCounter(habit);
+		
+		// the habit stored by the test is still managed, with the counter it was stored with
+		entityManager.clear();
 		Habit retrievedHabit = findAllDatabaseSavedHabits().get(0);
 		assertThat(retrievedHabit.getCounter()).isEqualTo(4);
+		assertThat(counter).isEqualTo(4);
 	}
 	
 	@Test
@@ -185,6 +680,34 @@ public class PostgresModelRepositoryTest {
 		assertThat(findAllDatabaseSavedGoals()).containsExactly(goal1);
 	}
 	
+	@Test
+	public void testAddGoalFailingForAnotherReasonIsNotReportedAsExisting() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit(null);
+		goal.addHabit(habit);
+		
+		assertThatThrownBy(() -> goalRepository.addGoal(goal))
+			.isInstanceOf(PersistenceException.class);
+		assertThat(findAllDatabaseSavedGoals()).isEmpty();
+		assertThat(habit.getId()).isNull();
+	}
+	
+	@Test
+	public void testGoalChangesFailingForAnotherReasonAreNotReportedAsMissingOrExisting() {
+		PostgresModelRepository closed = new PostgresModelRepository(backend.getPersistenceUnit(), backend.properties());
+		closed.close();
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		
+		assertThatThrownBy(() -> closed.deleteGoal(goal))
+			.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> closed.addHabitToGoal(goal, habit))
+			.isInstanceOf(IllegalStateException.class);
+		assertThat(habit.getGoal()).isNull();
+		assertThatThrownBy(() -> closed.removeHabitFromGoal(goal, habit))
+			.isInstanceOf(IllegalStateException.class);
+	}
+	
 	@Test
 	public void testHabitWithSameNameButDifferentGoalAreSaved() throws HabitExistsException {
 		Goal goal1 = new Goal("Goal 1");
@@ -218,6 +741,185 @@ public class PostgresModelRepositoryTest {
 		assertThat(findAllDatabaseSavedHabits()).size().isEqualTo(1);
 	}
 	
+	@Test
+	public void testChangingTheHabitsIncrementsTheGoalVersion() throws Exception {
+		Goal goal = new Goal("Goal");
+		addGoalToDb(goal);
+		Habit habit = new Habit("Habit");
+		
+		goalRepository.addHabitToGoal(goal, habit);
+		long added = goal.getVersion();
+		goalRepository.removeHabitFromGoal(goal, habit);
+		
+		assertThat(added).isPositive();
+		assertThat(goal.getVersion()).isGreaterThan(added)
+			.isEqualTo(goalRepository.findGoalByName("Goal").getVersion());
+	}
+	
+	@Test
+	public void testConcurrentHabitAdditionsToTheSameGoalAreNotLost() throws Exception {
+		addGoalToDb(new Goal("Goal"));
+		int threads = 8;
+		int habitsPerThread = 10;
+		goalRepository.setMaxConflictAttempts(Integer.MAX_VALUE);
+		
+		List<Throwable> failures = runConcurrently(threads, thread -> {
+			// every client has its own, soon stale, copy of the goal
+			Goal goal = goalRepository.findGoalByName("Goal");
+			for (int i = 0; i < habitsPerThread; i++) {
+				goalRepository.addHabitToGoal(goal, new Habit("Habit " + thread + "-" + i));
+			}
+		});
+		
+		assertThat(failures).isEmpty();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).hasSize(threads * habitsPerThread);
+	}
+	
+	@Test
+	public void testConflictsOutlastingTheRetriesAreReportedAsConflicts() throws Exception {
+		addGoalToDb(new Goal("Goal"));
+		goalRepository.setMaxConflictAttempts(1);
+		List<Habit> added = Collections.synchronizedList(new ArrayList<>());
+		
+		List<Throwable> failures = runConcurrently(8, thread -> {
+			for (int i = 0; i < 10; i++) {
+				Habit habit = new Habit("Habit " + thread + "-" + i);
+				try {
+					goalRepository.addHabitToGoal(new Goal("Goal"), habit);
+					added.add(habit);
+				} catch (GoalConflictException e) {
+					assertThat(habit.getId()).isNull();
+				}
+			}
+		});
+		
+		assertThat(failures).isEmpty();
+		assertThat(goalRepository.findGoalByName("Goal").getHabits()).containsExactlyInAnyOrderElementsOf(added);
+	}
+	
+	@Test
+	public void testDeletingAGoalWhileHabitsAreAddedLeavesNothingBehind() throws Exception {
+		addGoalToDb(new Goal("Goal"));
+		goalRepository.setMaxConflictAttempts(Integer.MAX_VALUE);
+		
+		List<Throwable> failures = runConcurrently(2, thread -> {
+			if (thread == 0) {
+				for (int i = 0; i < 20; i++) {
+					goalRepository.addHabitToGoal(new Goal("Goal"), new Habit("Habit " + i));
+				}
+			} else {
+				goalRepository.deleteGoal(new Goal("Goal"));
+			}
+		});
+		
+		assertThat(failures).isEmpty();
+		// the additions after the deletion store the goal again, with their habits only
+		Goal goal = goalRepository.findGoalByName("Goal");
+		List<Habit> habits = findAllDatabaseSavedHabits();
+		if (goal == null) {
+			assertThat(habits).isEmpty();
+		} else {
+			assertThat(habits).containsExactlyInAnyOrderElementsOf(goal.getHabits());
+		}
+	}
+	
+	@Test
+	public void testChangeStreamNotifiesTheCommittedChangesCoalesced() throws Exception {
+		// LISTEN/NOTIFY is PostgreSQL only
+		assumeTrue(backend == PersistenceBackend.POSTGRES);
+		BlockingQueue<List<RepositoryChange>> batches = new LinkedBlockingQueue<>();
+		try (PostgresChangeStream stream = goalRepository.openChangeStream("listener", 500)) {
+			stream.addListener(batches::add);
+			
+			Goal goal = new Goal("Goal");
+			goal.addHabit(new Habit("Habit"));
+			goalRepository.addGoal(goal);
+			assertThat(batches.poll(10, TimeUnit.SECONDS)).containsExactly(RepositoryChange.goalAdded("Goal"));
+			
+			goalRepository.addHabitToGoal(goal, new Habit("Added"));
+			assertThat(batches.poll(10, TimeUnit.SECONDS)).containsExactly(RepositoryChange.habitAdded("Goal", "Added"));
+			
+			// counter changes are notified by the snapshot that folds them
+			goalRepository.incrementCounter(goal.getHabits().get(0));
+			goalRepository.incrementCounter(goal.getHabits().get(0));
+			assertThat(batches.poll(1, TimeUnit.SECONDS)).isNull();
+			goalRepository.snapshotCounters();
+			assertThat(batches.poll(10, TimeUnit.SECONDS)).containsExactly(RepositoryChange.counterChanged("Goal", "Habit"));
+			
+			goalRepository.deleteGoal(goal);
+			assertThat(batches.poll(10, TimeUnit.SECONDS)).containsExactly(RepositoryChange.goalRemoved("Goal"));
+		}
+	}
+	
+	@Test
+	public void testChangeStreamSkipsTheChangesOfItsOwnInstance() throws Exception {
+		// LISTEN/NOTIFY is PostgreSQL only
+		assumeTrue(backend == PersistenceBackend.POSTGRES);
+		PostgresModelRepository ownRepository = new PostgresModelRepository("PersistenceUnit", Collections
+				.singletonMap("hibernate.hikari.connectionInitSql", PostgresChangeStream.instanceSettingSql("own")));
+		BlockingQueue<List<RepositoryChange>> batches = new LinkedBlockingQueue<>();
+		try (PostgresChangeStream stream = ownRepository.openChangeStream("own", 100)) {
+			stream.addListener(batches::add);
+			
+			ownRepository.addGoal(new Goal("Own"));
+			goalRepository.addGoal(new Goal("Other"));
+			
+			assertThat(batches.poll(10, TimeUnit.SECONDS)).containsExactly(RepositoryChange.goalAdded("Other"));
+		} finally {
+			ownRepository.close();
+		}
+	}
+	
+	@Test
+	public void testReplayHabitEventsOfAnIdRange() {
+		Goal goal = new Goal("Goal");
+		Habit habit = new Habit("Habit");
+		goal.addHabit(habit);
+		addGoalToDb(goal);
+		goalRepository.incrementCounter(habit);
+		goalRepository.incrementCounter(habit);
+		goalRepository.decrementCounter(habit);
+		List<Long> ids = entityManager.createQuery("SELECT e.id FROM HabitEvent e ORDER BY e.id", Long.class)
+				.getResultList();
+		
+		List<Integer> deltas = new ArrayList<>();
+		goalRepository.replayHabitEvents(ids.get(0), ids.get(2), "other", (habitId, delta, at) -> {
+			assertThat(habitId).isEqualTo(HabitId.of("Goal", "Habit"));
+			deltas.add(delta);
+		});
+		
+		assertThat(deltas).containsExactly(1, -1);
+	}
+	
+	@FunctionalInterface
+	private interface ClientThread {
+		void run(int thread) throws Exception;
+	}
+	
+	/**
+	 * Starts the threads at once and returns their failures.
+	 */
+	private List<Throwable> runConcurrently(int threads, ClientThread client) throws InterruptedException {
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			int thread = i;
+			executor.execute(() -> {
+				try {
+					start.await();
+					client.run(thread);
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+		return failures;
+	}
+	
 	
 	
 	private List<Goal> findAllDatabaseSavedGoals() {
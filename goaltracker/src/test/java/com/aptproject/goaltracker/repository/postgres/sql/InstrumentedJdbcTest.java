@@ -0,0 +1,96 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstrumentedJdbcTest {
+
+	private Connection connection;
+	private SqlMetrics metrics;
+	private Connection instrumented;
+
+	@Before
+	public void setup() {
+		connection = mock(Connection.class);
+		metrics = new SqlMetrics(100, 0);
+		instrumented = InstrumentedJdbc.wrap(connection, metrics);
+	}
+
+	@Test
+	public void testQueriesRecordTheirExecutionAndTheRowsRead() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		ResultSet resultSet = mock(ResultSet.class);
+		when(connection.prepareStatement("select * from goal")).thenReturn(statement);
+		when(statement.executeQuery()).thenReturn(resultSet);
+		when(resultSet.next()).thenReturn(true, true, false);
+
+		try (ResultSet rows = instrumented.prepareStatement("select * from goal").executeQuery()) {
+			while (rows.next()) {
+				// reading every row
+			}
+		}
+
+		StatementMetrics select = metrics.statement("select * from goal");
+		assertThat(select.getLatencies().getCount()).isEqualTo(1);
+		assertThat(select.getRowsRead()).isEqualTo(2);
+		verify(resultSet).close();
+	}
+
+	@Test
+	public void testBatchesRecordTheRowsUpdated() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(connection.prepareStatement("insert into habit")).thenReturn(statement);
+		when(statement.executeBatch()).thenReturn(new int[] { 1, 1, Statement.SUCCESS_NO_INFO });
+
+		PreparedStatement batch = instrumented.prepareStatement("insert into habit");
+		batch.addBatch();
+		batch.addBatch();
+		batch.executeBatch();
+
+		StatementMetrics insert = metrics.statement("insert into habit");
+		assertThat(insert.getLatencies().getCount()).isEqualTo(1);
+		assertThat(insert.getRowsUpdated()).isEqualTo(2);
+	}
+
+	@Test
+	public void testPlainStatementsRecordTheirSql() throws SQLException {
+		Statement statement = mock(Statement.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeUpdate("delete from goal")).thenReturn(4);
+
+		instrumented.createStatement().executeUpdate("delete from goal");
+
+		assertThat(metrics.statement("delete from goal").getRowsUpdated()).isEqualTo(4);
+	}
+
+	@Test
+	public void testFailedExecutionsAreRethrownUnwrapped() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(connection.prepareStatement("update habit")).thenReturn(statement);
+		when(statement.executeUpdate()).thenThrow(new SQLException("broken"));
+
+		PreparedStatement update = instrumented.prepareStatement("update habit");
+
+		assertThatThrownBy(update::executeUpdate).isInstanceOf(SQLException.class).hasMessage("broken");
+	}
+
+	@Test
+	public void testOtherCallsGoToTheWrappedConnection() throws SQLException {
+		instrumented.setAutoCommit(false);
+		instrumented.close();
+
+		verify(connection).setAutoCommit(false);
+		verify(connection).close();
+		assertThat(instrumented).isEqualTo(instrumented).isNotEqualTo(connection);
+	}
+}
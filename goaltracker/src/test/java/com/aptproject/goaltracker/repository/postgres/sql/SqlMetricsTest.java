@@ -0,0 +1,74 @@
+package com.aptproject.goaltracker.repository.postgres.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SqlMetricsTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+	@Test
+	public void testExecutionsAreRecordedPerStatement() {
+		SqlMetrics metrics = new SqlMetrics(100, 1);
+		StatementMetrics select = metrics.statement("select 1");
+
+		metrics.executed(select, FAST, -1);
+		metrics.executed(metrics.statement("select 1"), SLOW, -1);
+		metrics.executed(metrics.statement("update habit"), FAST, 3);
+
+		assertThat(metrics.getStatements()).extracting(StatementMetrics::getSql)
+			.containsExactly("select 1", "update habit");
+		assertThat(select.getLatencies().getCount()).isEqualTo(2);
+		assertThat(metrics.statement("update habit").getRowsUpdated()).isEqualTo(3);
+	}
+
+	@Test
+	public void testSlowExecutionsAreCountedButOnlySampledOnesLogged() {
+		double[] random = { 0.05 };
+		SqlMetrics metrics = new SqlMetrics(100, 0.1, () -> random[0]);
+		StatementMetrics statement = metrics.statement("select 1");
+
+		assertThat(metrics.executed(statement, FAST, -1)).isFalse();
+		assertThat(metrics.executed(statement, SLOW, -1)).isTrue();
+		random[0] = 0.5;
+		assertThat(metrics.executed(statement, SLOW, 1)).isFalse();
+
+		assertThat(metrics.getSlowExecutions()).isEqualTo(2);
+	}
+
+	@Test
+	public void testStatementsBeyondTheLimitAreAddedTogether() {
+		SqlMetrics metrics = new SqlMetrics(100, 0);
+		for (int i = 0; i < SqlMetrics.MAX_STATEMENTS; i++) {
+			metrics.statement("select " + i);
+		}
+
+		assertThat(metrics.statement("select 0").getSql()).isEqualTo("select 0");
+		assertThat(metrics.statement("select more").getSql()).isEqualTo(SqlMetrics.OTHER_STATEMENTS);
+		assertThat(metrics.statement("select even more")).isSameAs(metrics.statement("select more"));
+	}
+
+	@Test
+	public void testDumpAndReset() {
+		SqlMetrics metrics = new SqlMetrics(100, 0);
+		StatementMetrics statement = metrics.statement("select 1");
+		metrics.executed(statement, SLOW, -1);
+		statement.rowRead();
+		StringWriter dump = new StringWriter();
+
+		metrics.dump(new PrintWriter(dump));
+
+		assertThat(dump.toString())
+			.contains("slow_executions=1")
+			.contains("count=1 total_us=200000")
+			.contains("rows_read=1 rows_updated=0 sql=\"select 1\"");
+		metrics.reset();
+		assertThat(metrics.getSlowExecutions()).isZero();
+		assertThat(statement.getLatencies().getCount()).isZero();
+		assertThat(statement.getRowsRead()).isZero();
+	}
+}
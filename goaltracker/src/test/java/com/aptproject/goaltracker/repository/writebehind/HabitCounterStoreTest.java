@@ -0,0 +1,115 @@
+package com.aptproject.goaltracker.repository.writebehind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.HabitId;
+
+public class HabitCounterStoreTest {
+
+	private HabitCounterStore store;
+
+	@Before
+	public void setup() {
+		store = new HabitCounterStore();
+	}
+
+	@Test
+	public void testHabitsAreInternedOnce() {
+		int index = store.indexOf(HabitId.of("goal", "habit"));
+
+		assertThat(store.indexOf(HabitId.of("goal", "habit"))).isEqualTo(index);
+		assertThat(store.indexOf(HabitId.of("goal", "other"))).isNotEqualTo(index);
+		assertThat(store.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void testDeltasAreAddedUpPerHabit() {
+		HabitId habit = HabitId.of("goal", "habit");
+		store.add(habit, 1);
+		store.add(store.indexOf(habit), 2);
+		store.add(HabitId.of("goal", "other"), -1);
+
+		assertThat(store.pending(habit)).isEqualTo(3);
+		assertThat(store.pending(HabitId.of("goal", "missing"))).isZero();
+		assertThat(store.drain()).containsOnly(entry(habit, 3), entry(HabitId.of("goal", "other"), -1));
+	}
+
+	@Test
+	public void testOnlyPositiveDeltasAreDecremented() {
+		HabitId habit = HabitId.of("goal", "habit");
+		store.add(habit, 1);
+		store.add(HabitId.of("goal", "other"), -1);
+
+		assertThat(store.decrementIfPositive(habit)).isTrue();
+		assertThat(store.decrementIfPositive(habit)).isFalse();
+		assertThat(store.decrementIfPositive(HabitId.of("goal", "other"))).isFalse();
+		assertThat(store.decrementIfPositive(HabitId.of("goal", "missing"))).isFalse();
+		assertThat(store.drain()).containsOnly(entry(HabitId.of("goal", "other"), -1));
+	}
+
+	@Test
+	public void testDrainingResetsTheDeltasAndSkipsTheZeroOnes() {
+		HabitId habit = HabitId.of("goal", "habit");
+		store.add(habit, 1);
+		store.add(habit, -1);
+		store.add(HabitId.of("goal", "other"), 1);
+		store.drain();
+
+		assertThat(store.drain()).isEmpty();
+		assertThat(store.pending(HabitId.of("goal", "other"))).isZero();
+	}
+
+	@Test
+	public void testDeltasBeyondTheIntRangeAreDrainedInParts() {
+		HabitId habit = HabitId.of("goal", "habit");
+		store.add(habit, Integer.MAX_VALUE + 5L);
+
+		assertThat(store.drain()).containsOnly(entry(habit, Integer.MAX_VALUE));
+		assertThat(store.drain()).containsOnly(entry(habit, 5));
+	}
+
+	@Test
+	public void testSlotsKeepTheirDeltasWhenMoreHabitsAreInterned() {
+		HabitId first = HabitId.of("goal", "habit 0");
+		store.add(first, 7);
+		for (int i = 1; i < 5000; i++) {
+			store.add(HabitId.of("goal", "habit " + i), i);
+		}
+
+		assertThat(store.pending(first)).isEqualTo(7);
+		assertThat(store.drain()).hasSize(5000).contains(entry(HabitId.of("goal", "habit 4999"), 4999));
+	}
+
+	@Test
+	public void testConcurrentTapsAndDrainsLoseNothing() throws Exception {
+		int threads = 8;
+		int taps = 100_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			int thread = i;
+			executor.execute(() -> {
+				for (int tap = 0; tap < taps; tap++) {
+					store.add(HabitId.of("goal", "habit " + (tap + thread) % 16), 1);
+				}
+			});
+		}
+		executor.shutdown();
+		long drained = 0;
+		while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+			drained += drainedTaps();
+		}
+		drained += drainedTaps();
+
+		assertThat(drained).isEqualTo((long) threads * taps);
+		assertThat(store.size()).isEqualTo(16);
+	}
+
+	private long drainedTaps() {
+		return store.drain().values().stream().mapToLong(Integer::longValue).sum();
+	}
+}
@@ -0,0 +1,229 @@
+package com.aptproject.goaltracker.repository.writebehind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.model.HabitId;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.CounterAtZeroException;
+
+public class WriteBehindModelRepositoryTest {
+
+	private static final long NEVER_ELAPSING_INTERVAL = 3_600_000;
+	private static final int TIMEOUT = 5000;
+
+	@Mock
+	private ModelRepository delegate;
+
+	private WriteBehindModelRepository repository;
+
+	private AutoCloseable closeable;
+
+	private Goal goal;
+	private Habit habit1;
+	private Habit habit2;
+
+	@Before
+	public void setup() {
+		closeable = MockitoAnnotations.openMocks(this);
+		repository = new WriteBehindModelRepository(delegate, NEVER_ELAPSING_INTERVAL, 100);
+		goal = new Goal("goal");
+		habit1 = new Habit("habit1");
+		habit2 = new Habit("habit2");
+		goal.addHabit(habit1);
+		goal.addHabit(habit2);
+	}
+
+	@After
+	public void releaseMocks() throws Exception {
+		closeable.close();
+	}
+
+	@Test
+	public void testCounterTapsReturnTheOptimisticValueWithoutWriting() {
+		habit1.setCounter(3);
+
+		assertThat(repository.incrementCounter(habit1)).isEqualTo(4);
+		assertThat(repository.decrementCounter(habit1)).isEqualTo(2);
+		verify(delegate, never()).incrementCounter(habit1);
+		verify(delegate, never()).decrementCounter(habit1);
+		verify(delegate, never()).updateCounters(any());
+	}
+
+	@Test
+	public void testDecrementsWithoutPendingIncrementsAreWrittenThrough() {
+		habit1.setCounter(3);
+		when(delegate.decrementCounter(habit1)).thenReturn(0);
+		repository.incrementCounter(habit2);
+
+		assertThat(repository.decrementCounter(habit1)).isZero();
+		repository.flush();
+		verify(delegate).updateCounters(deltas(habit2, 1));
+	}
+
+	@Test
+	public void testDecrementsRefusedByTheDelegateAreNotBuffered() {
+		doThrow(new CounterAtZeroException(habit1)).when(delegate).decrementCounter(habit1);
+
+		assertThatThrownBy(() -> repository.decrementCounter(habit1)).isInstanceOf(CounterAtZeroException.class);
+		repository.flush();
+		verify(delegate, never()).updateCounters(any());
+	}
+
+	@Test
+	public void testFlushWritesTheDeltasMergedPerHabitInOneBatch() {
+		repository.incrementCounter(habit1);
+		repository.incrementCounter(habit1);
+		repository.incrementCounter(habit1);
+		repository.decrementCounter(habit1);
+		repository.incrementCounter(habit2);
+
+		repository.flush();
+
+		verify(delegate).updateCounters(deltas(habit1, 2, habit2, 1));
+	}
+
+	@Test
+	public void testTapsThatCancelOutAreNotWritten() {
+		repository.incrementCounter(habit1);
+		repository.decrementCounter(habit1);
+
+		repository.flush();
+
+		verify(delegate, never()).updateCounters(any());
+	}
+
+	@Test
+	public void testFlushedDeltasAreNotWrittenAgain() {
+		repository.incrementCounter(habit1);
+		repository.flush();
+		repository.incrementCounter(habit2);
+		repository.flush();
+
+		InOrder inOrder = inOrder(delegate);
+		inOrder.verify(delegate).updateCounters(deltas(habit1, 1));
+		inOrder.verify(delegate).updateCounters(deltas(habit2, 1));
+	}
+
+	@Test
+	public void testFailedFlushKeepsTheDeltasForTheNextOne() {
+		repository.incrementCounter(habit1);
+		doThrow(new IllegalStateException("db down")).when(delegate).updateCounters(deltas(habit1, 1));
+
+		assertThatThrownBy(() -> repository.flush()).isInstanceOf(IllegalStateException.class);
+		repository.incrementCounter(habit1);
+		repository.flush();
+
+		verify(delegate).updateCounters(deltas(habit1, 2));
+	}
+
+	@Test
+	public void testReachingTheMaxPendingTapsTriggersAFlush() {
+		repository = new WriteBehindModelRepository(delegate, NEVER_ELAPSING_INTERVAL, 3);
+
+		repository.incrementCounter(habit1);
+		repository.incrementCounter(habit1);
+		repository.incrementCounter(habit2);
+
+		verify(delegate, timeout(TIMEOUT)).updateCounters(deltas(habit1, 2, habit2, 1));
+	}
+
+	@Test
+	public void testElapsedIntervalTriggersAFlush() {
+		repository = new WriteBehindModelRepository(delegate, 10, 100);
+
+		repository.incrementCounter(habit1);
+
+		verify(delegate, timeout(TIMEOUT)).updateCounters(deltas(habit1, 1));
+	}
+
+	@Test
+	public void testReadsFlushThePendingDeltasFirst() {
+		repository.incrementCounter(habit1);
+
+		repository.findAllGoals();
+
+		InOrder inOrder = inOrder(delegate);
+		inOrder.verify(delegate).updateCounters(deltas(habit1, 1));
+		inOrder.verify(delegate).findAllGoals();
+	}
+
+	@Test
+	public void testFindGoalsByNamesFlushesThePendingDeltasFirst() {
+		repository.incrementCounter(habit1);
+
+		repository.findGoalsByNames(Collections.singletonList("goal"));
+
+		InOrder inOrder = inOrder(delegate);
+		inOrder.verify(delegate).updateCounters(deltas(habit1, 1));
+		inOrder.verify(delegate).findGoalsByNames(Collections.singletonList("goal"));
+	}
+
+	@Test
+	public void testRemovingAHabitFlushesThePendingDeltasFirst() throws Exception {
+		repository.incrementCounter(habit1);
+
+		repository.removeHabitFromGoal(goal, habit1);
+
+		InOrder inOrder = inOrder(delegate);
+		inOrder.verify(delegate).updateCounters(deltas(habit1, 1));
+		inOrder.verify(delegate).removeHabitFromGoal(goal, habit1);
+	}
+
+	@Test
+	public void testReadsAreServedEvenIfTheFlushFails() {
+		repository.incrementCounter(habit1);
+		doThrow(new IllegalStateException("db down")).when(delegate).updateCounters(any());
+
+		repository.findGoalByName("goal");
+
+		verify(delegate).findGoalByName("goal");
+	}
+
+	@Test
+	public void testCloseFlushesAndClosesTheDelegate() {
+		repository.incrementCounter(habit1);
+
+		repository.close();
+
+		InOrder inOrder = inOrder(delegate);
+		inOrder.verify(delegate).updateCounters(deltas(habit1, 1));
+		inOrder.verify(delegate).close();
+	}
+
+	@Test
+	public void testUpdateCountersIsBufferedToo() {
+		repository.incrementCounter(habit1);
+		repository.updateCounters(deltas(habit1, 4, habit2, 2));
+
+		repository.flush();
+
+		verify(delegate).updateCounters(deltas(habit1, 5, habit2, 2));
+	}
+
+	private static Map<HabitId, Integer> deltas(Object... habitsAndDeltas) {
+		Map<HabitId, Integer> deltas = new HashMap<>();
+		for (int i = 0; i < habitsAndDeltas.length; i += 2) {
+			Habit habit = (Habit) habitsAndDeltas[i];
+			deltas.put(HabitId.of(habit.getGoal().getName(), habit.getName()), (Integer) habitsAndDeltas[i + 1]);
+		}
+		return deltas;
+	}
+}
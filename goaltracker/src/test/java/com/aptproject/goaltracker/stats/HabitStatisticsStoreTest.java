@@ -0,0 +1,187 @@
+package com.aptproject.goaltracker.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.HabitId;
+
+public class HabitStatisticsStoreTest {
+
+	private static final HabitId HABIT = HabitId.of("goal", "habit");
+
+	private MutableClock clock;
+	private HabitStatisticsStore store;
+
+	@Before
+	public void setup() {
+		// a Wednesday
+		clock = new MutableClock(LocalDate.of(2024, 3, 6));
+		store = new HabitStatisticsStore(clock);
+	}
+
+	@Test
+	public void testUnknownHabitHasNoCounts() {
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, 3)).containsExactly(0, 0, 0);
+		assertThat(store.current(HABIT, BucketSize.MONTH)).isZero();
+		assertThat(store.currentStreak(HABIT)).isZero();
+	}
+
+	@Test
+	public void testChangesAreRolledUpIntoEveryBucketSize() {
+		store.record(HABIT, 1);
+		store.record(HABIT, 1);
+		store.record(HABIT, -1);
+		store.record(HABIT, 1);
+		assertThat(store.current(HABIT, BucketSize.DAY)).isEqualTo(2);
+		assertThat(store.current(HABIT, BucketSize.WEEK)).isEqualTo(2);
+		assertThat(store.current(HABIT, BucketSize.MONTH)).isEqualTo(2);
+		assertThat(store.current(HabitId.of("goal", "other"), BucketSize.DAY)).isZero();
+	}
+
+	@Test
+	public void testLastBucketsAreOldestFirstAndEndWithTheCurrentOne() {
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 4)));
+		store.record(HABIT, 2, at(LocalDate.of(2024, 3, 5)));
+		store.record(HABIT, 3, at(LocalDate.of(2024, 3, 6)));
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, 4)).containsExactly(0, 1, 2, 3);
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, 0)).isEmpty();
+	}
+
+	@Test
+	public void testWeeksStartOnMonday() {
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 3)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 4)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 6)));
+		assertThat(store.lastBuckets(HABIT, BucketSize.WEEK, 2)).containsExactly(1, 2);
+	}
+
+	@Test
+	public void testMonthsFollowTheCalendar() {
+		store.record(HABIT, 1, at(LocalDate.of(2023, 12, 31)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 2, 29)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 1)));
+		assertThat(store.lastBuckets(HABIT, BucketSize.MONTH, 4)).containsExactly(1, 0, 1, 1);
+	}
+
+	@Test
+	public void testCountsMoveToOlderBucketsAsTimePasses() {
+		store.record(HABIT, 5);
+		clock.set(LocalDate.of(2024, 3, 8));
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, 3)).containsExactly(5, 0, 0);
+		store.record(HABIT, 1);
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, 3)).containsExactly(5, 0, 1);
+	}
+
+	@Test
+	public void testBucketsOlderThanTheRetainedOnesAreDropped() {
+		int retained = BucketSize.DAY.getRetainedBuckets();
+		store.record(HABIT, 1);
+		clock.set(LocalDate.of(2024, 3, 6).plusDays(retained - 1L));
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, retained)[0]).isEqualTo(1);
+		// reusing the slot of the oldest day must clear it first
+		clock.set(LocalDate.of(2024, 3, 6).plusDays(retained));
+		store.record(HABIT, 2);
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, retained)).containsOnly(0, 2);
+		assertThat(store.current(HABIT, BucketSize.DAY)).isEqualTo(2);
+		// and changes older than the retained buckets are ignored
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 6)));
+		assertThat(store.lastBuckets(HABIT, BucketSize.DAY, retained)).containsOnly(0, 2);
+	}
+
+	@Test
+	public void testAskingForMoreThanTheRetainedBucketsIsRejected() {
+		assertThatThrownBy(() -> store.lastBuckets(HABIT, BucketSize.WEEK, BucketSize.WEEK.getRetainedBuckets() + 1))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> store.lastBuckets(HABIT, BucketSize.WEEK, -1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testStreakCountsConsecutiveDaysEndingToday() {
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 2)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 4)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 5)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 6)));
+		assertThat(store.currentStreak(HABIT)).isEqualTo(3);
+	}
+
+	@Test
+	public void testStreakStillCountsWhileTodayHasNoChangesYet() {
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 4)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 5)));
+		assertThat(store.currentStreak(HABIT)).isEqualTo(2);
+		clock.set(LocalDate.of(2024, 3, 7));
+		assertThat(store.currentStreak(HABIT)).isZero();
+	}
+
+	@Test
+	public void testStreakIsBrokenByDaysWithoutPositiveCount() {
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 5)));
+		store.record(HABIT, 1, at(LocalDate.of(2024, 3, 6)));
+		store.record(HABIT, -1, at(LocalDate.of(2024, 3, 6)));
+		assertThat(store.currentStreak(HABIT)).isEqualTo(1);
+	}
+
+	@Test
+	public void testRemoveForgetsTheHabit() {
+		store.record(HABIT, 1);
+		store.remove(HABIT);
+		assertThat(store.current(HABIT, BucketSize.DAY)).isZero();
+	}
+
+	@Test
+	public void testRemoveGoalForgetsEveryHabitOfTheGoal() {
+		HabitId other = HabitId.of(HABIT.getGoalName(), "other");
+		HabitId otherGoal = HabitId.of("other goal", HABIT.getName());
+		store.record(HABIT, 1);
+		store.record(other, 1);
+		store.record(otherGoal, 1);
+		store.removeGoal(HABIT.getGoalName());
+		assertThat(store.current(HABIT, BucketSize.DAY)).isZero();
+		assertThat(store.current(other, BucketSize.DAY)).isZero();
+		assertThat(store.current(otherGoal, BucketSize.DAY)).isEqualTo(1);
+	}
+
+	@Test
+	public void testRetentionStartIsTheFirstDayOfTheOldestMonth() {
+		assertThat(store.getRetentionStart())
+				.isEqualTo(LocalDate.of(2022, 4, 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+	}
+
+	private static Instant at(LocalDate date) {
+		return date.atTime(12, 0).toInstant(ZoneOffset.UTC);
+	}
+
+	private static class MutableClock extends Clock {
+		private Instant instant;
+
+		MutableClock(LocalDate today) {
+			set(today);
+		}
+
+		void set(LocalDate today) {
+			instant = at(today);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.aptproject.goaltracker.transfer;
+
+import static com.aptproject.goaltracker.transfer.GoalFormatTest.goal;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.memory.InMemoryModelRepository;
+
+public class GoalExporterTest {
+
+	private List<String> progress;
+
+	@Before
+	public void setup() {
+		progress = new ArrayList<>();
+	}
+
+	@Test
+	public void testExportWritesEveryGoalAndReportsProgressEveryBatch() throws IOException {
+		ModelRepository repository = mock(ModelRepository.class);
+		AtomicBoolean closed = new AtomicBoolean();
+		when(repository.streamAllGoals()).thenReturn(
+				Stream.of(goal("a", "h", 1), goal("b"), goal("c", "h1", 1, "h2", 2)).onClose(() -> closed.set(true)));
+
+		StringWriter out = new StringWriter();
+		TransferResult result = export(new GoalExporter(repository, 2), GoalFormat.CSV, out);
+
+		assertThat(out.toString()).isEqualTo("goal,habit,counter\na,h,1\nb,,\nc,h1,1\nc,h2,2\n");
+		assertThat(result.getGoals()).isEqualTo(3);
+		assertThat(result.getHabits()).isEqualTo(3);
+		assertThat(progress).containsExactly("2/1", "3/3");
+		assertThat(closed).isTrue();
+	}
+
+	@Test
+	public void testExportedFileImportsBackTheSameGoals() throws Exception {
+		ModelRepository source = new InMemoryModelRepository();
+		source.addGoal(goal("Goal 1", "Habit 1", 4, "Habit 2", 0));
+		source.addGoal(goal("Goal 2"));
+		StringWriter out = new StringWriter();
+		export(new GoalExporter(source, 10), GoalFormat.JSON, out);
+
+		ModelRepository target = new InMemoryModelRepository();
+		try (GoalReader reader = GoalFormat.JSON.reader(new StringReader(out.toString()))) {
+			new GoalImporter(target, 10).importGoals(reader, (goals, habits) -> {
+			});
+		}
+
+		assertThat(target.findAllGoals()).containsExactly(new Goal("Goal 1"), new Goal("Goal 2"));
+		assertThat(target.findGoalByName("Goal 1").getHabits()).extracting(habit -> habit.getCounter())
+			.containsExactly(4, 0);
+	}
+
+	@Test
+	public void testExportOfAnEmptyRepository() throws IOException {
+		StringWriter out = new StringWriter();
+
+		TransferResult result = export(new GoalExporter(new InMemoryModelRepository(), 10), GoalFormat.JSON, out);
+
+		assertThat(out.toString()).isEqualTo("[]");
+		assertThat(result.getGoals()).isZero();
+		assertThat(progress).isEmpty();
+	}
+
+	private TransferResult export(GoalExporter exporter, GoalFormat format, StringWriter out) throws IOException {
+		try (GoalWriter writer = format.writer(out)) {
+			return exporter.exportGoals(writer, (goals, habits) -> progress.add(goals + "/" + habits));
+		}
+	}
+}
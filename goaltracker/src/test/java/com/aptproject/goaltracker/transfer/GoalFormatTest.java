@@ -0,0 +1,155 @@
+package com.aptproject.goaltracker.transfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+public class GoalFormatTest {
+
+	@Test
+	public void testCsvWritesARowPerHabitAndOneForGoalsWithoutHabits() throws IOException {
+		assertThat(write(GoalFormat.CSV, goal("Goal 1", "Habit 1", 3, "Habit 2", 0), goal("Goal 2")))
+			.isEqualTo("goal,habit,counter\nGoal 1,Habit 1,3\nGoal 1,Habit 2,0\nGoal 2,,\n");
+	}
+
+	@Test
+	public void testCsvQuotesFieldsWithSeparatorsQuotesAndNewLines() throws IOException {
+		assertThat(write(GoalFormat.CSV, goal("Read, write", "Say \"hi\"", 1, "Two\nlines", 2)))
+			.isEqualTo("goal,habit,counter\n\"Read, write\",\"Say \"\"hi\"\"\",1\n\"Read, write\",\"Two\nlines\",2\n");
+	}
+
+	@Test
+	public void testCsvRoundTrip() throws IOException {
+		Goal goal1 = goal("Read, write", "Say \"hi\"", 1, "Two\r\nlines", 2);
+		Goal goal2 = goal("Empty");
+		Goal goal3 = goal("Last", "Habit", 5);
+
+		List<Goal> read = read(GoalFormat.CSV, write(GoalFormat.CSV, goal1, goal2, goal3));
+
+		assertThat(read).containsExactly(goal1, goal2, goal3);
+		assertThat(read.get(0).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Say \"hi\"", 1), tuple("Two\r\nlines", 2));
+		assertThat(read.get(1).getHabits()).isEmpty();
+		assertThat(read.get(2).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit", 5));
+	}
+
+	@Test
+	public void testCsvWithoutHeaderAndWithWindowsLineEndingsAndBlankLines() throws IOException {
+		List<Goal> read = read(GoalFormat.CSV, "Goal,Habit 1,1\r\n\r\nGoal,Habit 2,\r\nOther,,\r\n");
+
+		assertThat(read).containsExactly(new Goal("Goal"), new Goal("Other"));
+		assertThat(read.get(0).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit 1", 1), tuple("Habit 2", 0));
+	}
+
+	@Test
+	public void testCsvWithWrongNumberOfFieldsFailsWithTheLine() {
+		assertThatThrownBy(() -> read(GoalFormat.CSV, "goal,habit,counter\nGoal,Habit,1\nGoal,Habit\n"))
+			.isInstanceOf(IOException.class)
+			.hasMessage("Line 3: expected 3 fields but found 2");
+	}
+
+	@Test
+	public void testCsvWithInvalidCounterFailsWithTheLine() {
+		assertThatThrownBy(() -> read(GoalFormat.CSV, "Goal,Habit,many\n"))
+			.isInstanceOf(IOException.class)
+			.hasMessage("Line 1: invalid counter many");
+	}
+
+	@Test
+	public void testCsvWithUnterminatedQuoteFails() {
+		assertThatThrownBy(() -> read(GoalFormat.CSV, "\"Goal,Habit,1\n"))
+			.isInstanceOf(IOException.class)
+			.hasMessage("Line 1: unterminated quoted field");
+	}
+
+	@Test
+	public void testJsonWritesAnArrayOfGoals() throws IOException {
+		assertThat(write(GoalFormat.JSON, goal("Goal 1", "Habit", 3), goal("Goal 2")))
+			.isEqualTo("[{\"name\":\"Goal 1\",\"habits\":[{\"name\":\"Habit\",\"counter\":3}]},"
+					+ "{\"name\":\"Goal 2\",\"habits\":[]}]");
+	}
+
+	@Test
+	public void testJsonRoundTrip() throws IOException {
+		Goal goal1 = goal("Say \"hi\"", "Two\nlines", 2, "Habit", 1);
+		Goal goal2 = goal("Empty");
+
+		List<Goal> read = read(GoalFormat.JSON, write(GoalFormat.JSON, goal1, goal2));
+
+		assertThat(read).containsExactly(goal1, goal2);
+		assertThat(read.get(0).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Two\nlines", 2), tuple("Habit", 1));
+		assertThat(read.get(1).getHabits()).isEmpty();
+	}
+
+	@Test
+	public void testJsonIgnoresUnknownFieldsAndDefaultsTheCounter() throws IOException {
+		List<Goal> read = read(GoalFormat.JSON,
+				"[{\"id\":{\"x\":[1]},\"habits\":[{\"name\":\"Habit\",\"tags\":[\"a\"]}],\"name\":\"Goal\"}]");
+
+		assertThat(read).containsExactly(new Goal("Goal"));
+		assertThat(read.get(0).getHabits()).extracting(Habit::getName, Habit::getCounter)
+			.containsExactly(tuple("Habit", 0));
+	}
+
+	@Test
+	public void testJsonEmptyFileHasNoGoals() throws IOException {
+		assertThat(read(GoalFormat.JSON, "")).isEmpty();
+		assertThat(read(GoalFormat.JSON, "[]")).isEmpty();
+	}
+
+	@Test
+	public void testJsonGoalWithoutNameFails() {
+		assertThatThrownBy(() -> read(GoalFormat.JSON, "[{\"habits\":[]}]"))
+			.isInstanceOf(IOException.class)
+			.hasMessageStartingWith("Goal without name");
+	}
+
+	@Test
+	public void testFromFileName() {
+		assertThat(GoalFormat.fromFileName("goals.JSON")).isEqualTo(GoalFormat.JSON);
+		assertThat(GoalFormat.fromFileName("goals.csv")).isEqualTo(GoalFormat.CSV);
+		assertThat(GoalFormat.fromFileName("goals")).isEqualTo(GoalFormat.CSV);
+	}
+
+	static Goal goal(String name, Object... habitsAndCounters) {
+		Goal goal = new Goal(name);
+		for (int i = 0; i < habitsAndCounters.length; i += 2) {
+			Habit habit = new Habit((String) habitsAndCounters[i]);
+			habit.setCounter((Integer) habitsAndCounters[i + 1]);
+			goal.addHabit(habit);
+		}
+		return goal;
+	}
+
+	private static String write(GoalFormat format, Goal... goals) throws IOException {
+		StringWriter out = new StringWriter();
+		try (GoalWriter writer = format.writer(out)) {
+			for (Goal goal : goals) {
+				writer.write(goal);
+			}
+		}
+		return out.toString();
+	}
+
+	private static List<Goal> read(GoalFormat format, String content) throws IOException {
+		List<Goal> goals = new ArrayList<>();
+		try (GoalReader reader = format.reader(new StringReader(content))) {
+			Goal goal;
+			while ((goal = reader.read()) != null) {
+				goals.add(goal);
+			}
+		}
+		return goals;
+	}
+}
@@ -0,0 +1,137 @@
+package com.aptproject.goaltracker.transfer;
+
+import static com.aptproject.goaltracker.transfer.GoalFormatTest.goal;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.repository.ModelRepository;
+import com.aptproject.goaltracker.repository.exception.GoalExistsException;
+import com.aptproject.goaltracker.repository.memory.InMemoryModelRepository;
+
+public class GoalImporterTest {
+
+	private static final String CSV = "goal,habit,counter\n"
+			+ "Goal 1,Habit 1,1\nGoal 1,Habit 2,2\nGoal 2,,\nGoal 3,Habit,3\nGoal 4,,\nGoal 5,,\n";
+
+	private ModelRepository repository;
+
+	private List<String> progress;
+
+	@Before
+	public void setup() {
+		repository = new InMemoryModelRepository();
+		progress = new ArrayList<>();
+	}
+
+	@Test
+	public void testImportAddsEveryGoalWithItsHabits() throws IOException {
+		TransferResult result = importCsv(new GoalImporter(repository, 2), CSV);
+
+		assertThat(repository.findAllGoals()).extracting(Goal::getName)
+			.containsExactly("Goal 1", "Goal 2", "Goal 3", "Goal 4", "Goal 5");
+		assertThat(repository.findGoalByName("Goal 1").getHabits()).hasSize(2);
+		assertThat(result.getGoals()).isEqualTo(5);
+		assertThat(result.getHabits()).isEqualTo(3);
+		assertThat(result.getSkippedGoals()).isZero();
+	}
+
+	@Test
+	public void testImportAddsTheGoalsInBatchesAndReportsProgressAfterEach() throws Exception {
+		ModelRepository mockRepository = mock(ModelRepository.class);
+
+		importCsv(new GoalImporter(mockRepository, 2), CSV);
+
+		verify(mockRepository).addGoals(asList(new Goal("Goal 1"), new Goal("Goal 2")));
+		verify(mockRepository).addGoals(asList(new Goal("Goal 3"), new Goal("Goal 4")));
+		verify(mockRepository).addGoals(asList(new Goal("Goal 5")));
+		verify(mockRepository, never()).addGoal(goal("Goal 1"));
+		assertThat(progress).containsExactly("2/2", "4/3", "5/3");
+	}
+
+	@Test
+	public void testBatchWithExistingGoalsIsAddedOneAtATimeSkippingThem() throws Exception {
+		repository.addGoal(goal("Goal 3", "Old habit", 7));
+
+		TransferResult result = importCsv(new GoalImporter(repository, 2), CSV);
+
+		assertThat(repository.findAllGoals()).extracting(Goal::getName)
+			.containsExactly("Goal 1", "Goal 2", "Goal 3", "Goal 4", "Goal 5");
+		assertThat(repository.findGoalByName("Goal 3").getHabits()).extracting(habit -> habit.getName())
+			.containsExactly("Old habit");
+		assertThat(result.getGoals()).isEqualTo(4);
+		assertThat(result.getHabits()).isEqualTo(2);
+		assertThat(result.getSkippedGoals()).isEqualTo(1);
+		assertThat(progress).containsExactly("2/2", "3/2", "4/2");
+	}
+
+	@Test
+	public void testImportingTheSameFileTwiceSkipsEveryGoal() throws IOException {
+		importCsv(new GoalImporter(repository, 10), CSV);
+
+		TransferResult result = importCsv(new GoalImporter(repository, 10), CSV);
+
+		assertThat(result.getGoals()).isZero();
+		assertThat(result.getSkippedGoals()).isEqualTo(5);
+	}
+
+	@Test
+	public void testMalformedFileStopsTheImportAfterTheBatchesAlreadyAdded() throws Exception {
+		ModelRepository mockRepository = mock(ModelRepository.class);
+
+		assertThatThrownBy(() -> importCsv(new GoalImporter(mockRepository, 1), "Goal 1,,\nGoal 2,,\nGoal 3,Habit\n"))
+			.isInstanceOf(IOException.class);
+
+		verify(mockRepository).addGoals(asList(new Goal("Goal 1")));
+		verify(mockRepository, never()).addGoals(asList(new Goal("Goal 2")));
+	}
+
+	@Test
+	public void testBatchSizeMustBePositive() {
+		assertThatThrownBy(() -> new GoalImporter(repository, 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testFailedBatchIsRetriedGoalByGoal() throws Exception {
+		ModelRepository mockRepository = mock(ModelRepository.class);
+		doThrow(new GoalExistsException(new Goal("Goal 2"))).when(mockRepository).addGoals(anyList());
+		doThrow(new GoalExistsException(new Goal("Goal 2"))).when(mockRepository).addGoal(new Goal("Goal 2"));
+
+		TransferResult result = importCsv(new GoalImporter(mockRepository, 5), "Goal 1,,\nGoal 2,,\nGoal 3,,\n");
+
+		verify(mockRepository).addGoal(new Goal("Goal 1"));
+		verify(mockRepository).addGoal(new Goal("Goal 3"));
+		assertThat(result.getGoals()).isEqualTo(2);
+		assertThat(result.getSkippedGoals()).isEqualTo(1);
+	}
+
+	@Test
+	public void testRepositoryFailuresStopTheImportInsteadOfSkippingGoals() throws Exception {
+		ModelRepository mockRepository = mock(ModelRepository.class);
+		doThrow(new IllegalStateException("connection lost")).when(mockRepository).addGoals(anyList());
+
+		assertThatThrownBy(() -> importCsv(new GoalImporter(mockRepository, 5), "Goal 1,,\nGoal 2,,\n"))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("connection lost");
+
+		verify(mockRepository, never()).addGoal(new Goal("Goal 1"));
+		assertThat(progress).isEmpty();
+	}
+
+	private TransferResult importCsv(GoalImporter importer, String csv) throws IOException {
+		try (GoalReader reader = GoalFormat.CSV.reader(new StringReader(csv))) {
+			return importer.importGoals(reader, (goals, habits) -> progress.add(goals + "/" + habits));
+		}
+	}
+}
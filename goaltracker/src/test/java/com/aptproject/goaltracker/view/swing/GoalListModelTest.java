@@ -0,0 +1,250 @@
+package com.aptproject.goaltracker.view.swing;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import org.junit.Before;
+import org.junit.Test;
+import com.aptproject.goaltracker.model.Goal;
+import com.aptproject.goaltracker.model.Habit;
+
+public class GoalListModelTest {
+
+	private GoalListModel model;
+
+	private List<List<String>> requests;
+
+	private List<CompletableFuture<Void>> loads;
+
+	private List<String> events;
+
+	@Before
+	public void setup() {
+		model = new GoalListModel(3);
+		requests = new ArrayList<>();
+		loads = new ArrayList<>();
+		events = new ArrayList<>();
+		model.setRowLoader(names -> {
+			requests.add(names);
+			CompletableFuture<Void> load = new CompletableFuture<>();
+			loads.add(load);
+			return load;
+		});
+		model.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+		});
+	}
+
+	@Test
+	public void testAddAllFiresASingleEvent() {
+		model.addAll(goals(0, 3));
+
+		assertThat(model.getSize()).isEqualTo(3);
+		assertThat(events).containsExactly("added 0-2");
+	}
+
+	@Test
+	public void testAddElementInsertsTheGoalInNameOrder() {
+		model.addAll(goals(0, 3));
+
+		model.addElement(new Goal("Goal 1a"));
+		model.addElement(new Goal("Goal 1"));
+
+		assertThat(model.getSize()).isEqualTo(4);
+		assertThat(model.getElementAt(2)).isEqualTo(new Goal("Goal 1a"));
+		assertThat(events).containsExactly("added 0-2", "added 2-2");
+	}
+
+	@Test
+	public void testAddAllNotifiesEveryRunOfRowsAtItsIndexes() {
+		model.addAll(asList(new Goal("Goal 0"), new Goal("Goal 2"), new Goal("Goal 4")));
+
+		model.addAll(asList(new Goal("Goal 5"), new Goal("Goal 3"), new Goal("Goal 1"), new Goal("Goal 2")));
+
+		for (int i = 0; i < 6; i++) {
+			assertThat(model.getElementAt(i)).isEqualTo(new Goal("Goal " + i));
+			assertThat(model.indexOf("Goal " + i)).isEqualTo(i);
+		}
+		assertThat(events).containsExactly("added 0-2", "added 1-1", "added 3-3", "added 5-5");
+	}
+
+	@Test
+	public void testAGoalAddedPastTheLoadedPagesIsNotListedAgainWithItsPage() {
+		model.addAll(goals(0, 3));
+		model.addElement(new Goal("Goal 5"));
+
+		model.addAll(goals(3, 6));
+
+		assertThat(model.getSize()).isEqualTo(6);
+		for (int i = 0; i < 6; i++) {
+			assertThat(model.getElementAt(i)).isEqualTo(new Goal("Goal " + i));
+		}
+		assertThat(events).containsExactly("added 0-2", "added 3-3", "added 3-4");
+	}
+
+	@Test
+	public void testOnlyTheMostRecentlyUsedGoalsStayLoaded() {
+		model.addAll(goals(0, 5));
+
+		assertThat(model.isLoaded(0)).isFalse();
+		assertThat(model.isLoaded(1)).isFalse();
+		assertThat(model.isLoaded(4)).isTrue();
+		assertThat(model.getElementAt(0)).isEqualTo(new Goal("Goal 0"));
+		assertThat(model.getElementAt(0).getHabits()).isEmpty();
+		assertThat(requests).isEmpty();
+	}
+
+	@Test
+	public void testEnsureLoadedRequestsTheMissingGoalsOfTheBlockOnce() {
+		model.addAll(goals(0, 5));
+
+		model.ensureLoaded(1);
+		model.ensureLoaded(0);
+		model.ensureLoaded(4);
+
+		assertThat(requests).containsExactly(asList("Goal 0", "Goal 1"));
+	}
+
+	@Test
+	public void testEnsureLoadedRequestsAgainIfTheRequestWasRejected() {
+		model.setRowLoader(names -> {
+			requests.add(names);
+			CompletableFuture<Void> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(new IllegalStateException("rejected"));
+			return rejected;
+		});
+		model.addAll(goals(0, 5));
+
+		model.ensureLoaded(0);
+		model.ensureLoaded(0);
+
+		assertThat(requests).hasSize(2);
+	}
+
+	@Test
+	public void testEnsureLoadedRequestsAgainOnceTheLoadFailed() {
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+		model.ensureLoaded(0);
+
+		loads.get(0).completeExceptionally(new IllegalStateException("connection lost"));
+		model.ensureLoaded(0);
+
+		assertThat(requests).containsExactly(asList("Goal 0", "Goal 1"), asList("Goal 0", "Goal 1"));
+		assertThat(model.getSize()).isEqualTo(5);
+	}
+
+	@Test
+	public void testRowsTheirLoadDidNotReturnAreRemoved() {
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+
+		model.goalsLoaded(asList(new Goal("Goal 0")));
+		loads.get(0).complete(null);
+
+		assertThat(events).containsExactly("added 0-4", "changed 0-0", "removed 1-1");
+		assertThat(model.indexOf("Goal 1")).isEqualTo(-1);
+		assertThat(model.getElementAt(1)).isEqualTo(new Goal("Goal 2"));
+		assertThat(events).containsExactly("added 0-4", "changed 0-0", "removed 1-1");
+	}
+
+	@Test
+	public void testLoadsEndedAfterTheModelWasClearedChangeNothing() {
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+		model.clear();
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+
+		loads.get(0).complete(null);
+		model.ensureLoaded(0);
+
+		assertThat(model.getSize()).isEqualTo(5);
+		assertThat(requests).hasSize(2);
+	}
+
+	@Test
+	public void testGoalsLoadedReplaceThePlaceholders() {
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+		Goal loaded = new Goal("Goal 0");
+		loaded.addHabit(new Habit("Habit"));
+
+		model.goalsLoaded(asList(loaded));
+
+		assertThat(model.getElementAt(0)).isSameAs(loaded);
+		assertThat(events).containsExactly("added 0-4", "changed 0-0");
+	}
+
+	@Test
+	public void testGoalsLoadedNotifiesOnlyTheRowsOfTheLoadedBlock() {
+		model.addAll(goals(0, 5));
+		model.ensureLoaded(0);
+
+		model.goalsLoaded(asList(new Goal("Goal 1"), new Goal("Goal 0"), new Goal("Removed meanwhile")));
+
+		assertThat(events).containsExactly("added 0-4", "changed 0-1");
+	}
+
+	@Test
+	public void testRowsAreFoundByNameAfterInsertionsAndRemovals() {
+		model.addAll(goals(0, 3));
+		model.addElement(new Goal("Goal 0a"));
+		model.removeElement(new Goal("Goal 1"));
+		model.addAll(goals(3, 5));
+		model.removeElement(new Goal("Goal 4"));
+
+		assertThat(model.indexOf("Goal 0")).isZero();
+		assertThat(model.indexOf("Goal 0a")).isEqualTo(1);
+		assertThat(model.indexOf("Goal 1")).isEqualTo(-1);
+		assertThat(model.indexOf("Goal 2")).isEqualTo(2);
+		assertThat(model.indexOf("Goal 3")).isEqualTo(3);
+		assertThat(model.indexOf("Goal 4")).isEqualTo(-1);
+	}
+
+	@Test
+	public void testRemoveElement() {
+		model.addAll(goals(0, 3));
+
+		assertThat(model.removeElement(new Goal("Goal 1"))).isTrue();
+		assertThat(model.removeElement(new Goal("Missing"))).isFalse();
+
+		assertThat(model.getElementAt(1)).isEqualTo(new Goal("Goal 2"));
+		assertThat(events).containsExactly("added 0-2", "removed 1-1");
+	}
+
+	@Test
+	public void testClear() {
+		model.addAll(goals(0, 3));
+
+		model.clear();
+
+		assertThat(model.getSize()).isZero();
+		assertThat(events).containsExactly("added 0-2", "removed 0-2");
+	}
+
+	private static List<Goal> goals(int from, int to) {
+		List<Goal> goals = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			goals.add(new Goal("Goal " + i));
+		}
+		return goals;
+	}
+}
@@ -1,9 +1,14 @@
 package com.aptproject.goaltracker.view.swing;
 
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Clock;
 import java.util.Arrays;
+import java.util.concurrent.Executors;
 import javax.swing.DefaultListModel;
 import org.assertj.swing.annotation.GUITest;
 import org.assertj.swing.core.matcher.JButtonMatcher;
@@ -17,9 +22,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import com.aptproject.goaltracker.controller.ControllerExecutor;
 import com.aptproject.goaltracker.controller.GoalController;
+import com.aptproject.goaltracker.controller.metrics.ControllerMetrics;
 import com.aptproject.goaltracker.model.Goal;
 import com.aptproject.goaltracker.model.Habit;
+import com.aptproject.goaltracker.stats.HabitStatisticsStore;
 
 @RunWith(GUITestRunner.class)
 public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
@@ -104,6 +112,39 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		assertThat(listContents).containsExactly(goal1.toString(), goal2.toString());
 	}
 
+	@Test
+	@GUITest
+	public void testShowAllGoalsShouldReplaceThePreviousGoals() {
+		GuiActionRunner.execute(() -> goalSwingView.getListGoalModel().addElement(new Goal("old")));
+		Goal goal = new Goal("new");
+		goalSwingView.showAllGoals(Arrays.asList(goal));
+		String[] listContents = window.list("goalList").contents();
+		assertThat(listContents).containsExactly(goal.toString());
+	}
+
+	@Test
+	@GUITest
+	public void testShowMoreGoalsShouldAppendTheGoalsToTheList() {
+		Goal goal1 = new Goal("test1");
+		Goal goal2 = new Goal("test2");
+		GuiActionRunner.execute(() -> goalSwingView.getListGoalModel().addElement(goal1));
+		goalSwingView.showMoreGoals(Arrays.asList(goal2));
+		String[] listContents = window.list("goalList").contents();
+		assertThat(listContents).containsExactly(goal1.toString(), goal2.toString());
+	}
+
+	@Test
+	@GUITest
+	public void testScrollingToTheEndOfTheGoalsShouldDelegateToGoalControllerMoreGoals() {
+		GuiActionRunner.execute(() -> {
+			for (int i = 0; i < 100; i++) {
+				goalSwingView.getListGoalModel().addElement(new Goal("goal" + i));
+			}
+		});
+		window.list("goalList").selectItem(99);
+		verify(goalController, timeout(TIMEOUT)).moreGoals();
+	}
+
 	@Test
 	@GUITest
 	public void testShowErrorShouldShowTheMessageInTheErrorLabel() {
@@ -128,7 +169,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Goal goal1 = new Goal("test1");
 		Goal goal2 = new Goal("test2");
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal1);
 			listGoalModel.addElement(goal2);
 		});
@@ -171,7 +212,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Goal goal = new Goal("goal");
 		Habit habit = new Habit("habit");
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 		});
 		window.list("goalList").selectItem(0);
@@ -181,6 +222,34 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		window.label("errorMessageLabel").requireText(" ");
 	}
 	
+	@Test
+	@GUITest
+	public void testHabitAddedToAnotherGoalIsOnlyAddedToThatGoal() {
+		Goal selected = new Goal("selected");
+		Goal other = new Goal("other");
+		GuiActionRunner.execute(() -> {
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
+			listGoalModel.addElement(selected);
+			listGoalModel.addElement(other);
+		});
+		window.list("goalList").selectItem(0);
+		Habit habit = new Habit("habit");
+		habit.setGoal(new Goal("other"));
+		goalSwingView.habitAdded(habit);
+		goalSwingView.habitAdded(habit);
+		assertThat(window.list("habitList").contents()).isEmpty();
+		window.list("goalList").selectItem(1);
+		assertThat(window.list("habitList").contents()).containsExactly(habit.toString());
+	}
+	
+	@Test
+	@GUITest
+	public void testGoalAddedTwiceIsListedOnce() {
+		goalSwingView.goalAdded(new Goal("goal"));
+		goalSwingView.goalAdded(new Goal("goal"));
+		assertThat(window.list("goalList").contents()).containsExactly(new Goal("goal").toString());
+	}
+	
 	@Test
 	@GUITest
 	public void testRemoveHabitButtonShouldBeEnabledOnlyWhenAnHabitIsSelected() {
@@ -188,7 +257,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -208,7 +277,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -228,7 +297,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -250,7 +319,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -268,6 +337,75 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		window.label("errorMessageLabel").requireText(" ");
 	}
 	
+	@Test
+	@GUITest
+	public void testCounterUpdatedShouldReplaceOnlyTheRowOfTheUpdatedHabit() {
+		Goal goal = new Goal("goal");
+		Habit habit1 = new Habit("habit1");
+		Habit habit2 = new Habit("habit2");
+		goal.addHabit(habit1);
+		goal.addHabit(habit2);
+		GuiActionRunner.execute(() -> goalSwingView.getListGoalModel().addElement(goal));
+		window.list("goalList").selectItem(0);
+		for (int i = 1; i <= 10; i++) {
+			habit2.setCounter(i);
+			goalSwingView.counterUpdated(habit2);
+		}
+		String[] contents = window.list("habitList").contents();
+		assertThat(contents).containsExactly("habit1 - 0", "habit2 - 10");
+	}
+
+	@Test
+	@GUITest
+	public void testSelectingAHabitShowsItsStatistics() {
+		HabitStatisticsStore statistics = new HabitStatisticsStore(Clock.systemDefaultZone());
+		Goal goal = new Goal("goal");
+		Habit habit = new Habit("habit");
+		goal.addHabit(habit);
+		statistics.record(habit.getHabitId(), 1);
+		statistics.record(habit.getHabitId(), 1);
+		GuiActionRunner.execute(() -> {
+			goalSwingView.setHabitStatistics(statistics);
+			goalSwingView.getListGoalModel().addElement(goal);
+		});
+		window.list("goalList").selectItem(0);
+		window.label("habitStatisticsLabel").requireText(" ");
+		window.list("habitList").selectItem(0);
+		window.label("habitStatisticsLabel").requireText("Today 2, week 2, month 2, streak 1 days");
+		window.list("habitList").clearSelection();
+		window.label("habitStatisticsLabel").requireText(" ");
+	}
+
+	@Test
+	@GUITest
+	public void testCounterUpdatedShouldIgnoreHabitsOfOtherGoals() {
+		Goal goal = new Goal("goal");
+		Goal other = new Goal("other");
+		goal.addHabit(new Habit("habit"));
+		Habit otherHabit = new Habit("habit");
+		other.addHabit(otherHabit);
+		GuiActionRunner.execute(() -> {
+			goalSwingView.getListGoalModel().addElement(goal);
+			goalSwingView.getListGoalModel().addElement(other);
+		});
+		window.list("goalList").selectItem(0);
+		otherHabit.setCounter(5);
+		goalSwingView.counterUpdated(otherHabit);
+		String[] contents = window.list("habitList").contents();
+		assertThat(contents).containsExactly("habit - 0");
+	}
+
+	@Test
+	@GUITest
+	public void testGoalsLoadedShouldShowTheHabitsOfTheSelectedGoal() {
+		Goal loaded = new Goal("goal");
+		loaded.addHabit(new Habit("habit"));
+		GuiActionRunner.execute(() -> goalSwingView.getListGoalModel().addElement(new Goal("goal")));
+		window.list("goalList").selectItem(0);
+		goalSwingView.goalsLoaded(Arrays.asList(loaded));
+		assertThat(window.list("habitList").contents()).containsExactly("habit - 0");
+	}
+
 	@Test
 	@GUITest
 	public void testGoalDeletedShouldRemoveAlsoTheHabitFromTheListAndResetTheErrorLabel() {
@@ -275,7 +413,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -295,7 +433,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal2.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal1);
 			listGoalModel.addElement(goal2);
 		});
@@ -321,7 +459,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Goal goal1 = new Goal("test1");
 		Goal goal2 = new Goal("test2");
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal1);
 			listGoalModel.addElement(goal2);
 		});
@@ -336,7 +474,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Goal goal1 = new Goal("test1");
 		Goal goal2 = new Goal("test2");
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal1);
 			listGoalModel.addElement(goal2);
 		});
@@ -353,7 +491,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -371,7 +509,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		Habit habit = new Habit("habit");
 		goal.addHabit(habit);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -390,7 +528,7 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		goal.addHabit(habit);
 		habit.setCounter(1);
 		GuiActionRunner.execute(() -> {
-			DefaultListModel<Goal> listGoalModel = goalSwingView.getListGoalModel();
+			GoalListModel listGoalModel = goalSwingView.getListGoalModel();
 			listGoalModel.addElement(goal);
 			DefaultListModel<Habit> listHabitModel = goalSwingView.getListHabitModel();
 			listHabitModel.addElement(habit);
@@ -401,4 +539,26 @@ public class GoalSwingViewTest extends AssertJSwingJUnitTestCase {
 		verify(goalController, timeout(TIMEOUT)).decrementCounter(habit);;
 	}
 
-}
\ No newline at end of file
+	@Test
+	@GUITest
+	public void testRejectedOperationsShouldShowAnError() {
+		GuiActionRunner.execute(() -> goalSwingView
+				.setControllerExecutor(new ControllerExecutor(Executors.newSingleThreadExecutor(), 0)));
+		window.textBox("goalTextBox").enterText("Goal");
+		window.button(JButtonMatcher.withText("Add goal")).click();
+		window.label("errorMessageLabel").requireText("Too many pending operations, please retry later");
+		verifyNoInteractions(goalController);
+	}
+
+	@Test
+	@GUITest
+	public void testFailedOperationsShouldShowAnError() {
+		Goal goal = new Goal("Goal");
+		when(goalController.getMetrics()).thenReturn(ControllerMetrics.disabled());
+		doThrow(new IllegalStateException("database down")).when(goalController).newGoal(goal);
+		window.textBox("goalTextBox").enterText("Goal");
+		window.button(JButtonMatcher.withText("Add goal")).click();
+		window.label("errorMessageLabel").requireText("The operation failed: database down");
+	}
+
+}